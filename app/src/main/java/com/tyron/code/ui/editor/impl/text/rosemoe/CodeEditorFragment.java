@@ -43,6 +43,7 @@ import com.tyron.builder.project.Project;
 import com.tyron.builder.project.api.FileManager;
 import com.tyron.builder.project.api.JavaModule;
 import com.tyron.builder.project.api.Module;
+import com.tyron.builder.project.listener.FileChange;
 import com.tyron.builder.project.listener.FileListener;
 import com.tyron.code.ApplicationLoader;
 import com.tyron.code.R;
@@ -134,6 +135,11 @@ public class CodeEditorFragment extends Fragment implements Savable,
 
     private boolean mCanSave;
     private boolean mReading;
+    private boolean mApplyingSnapshot;
+    /**
+     * The version of the snapshot that the editor has, -1 if it is not known
+     */
+    private long mSnapshotVersion = -1;
 
     public static CodeEditorFragment newInstance(File file) {
         CodeEditorFragment fragment = new CodeEditorFragment();
@@ -169,10 +175,11 @@ public class CodeEditorFragment extends Fragment implements Savable,
 
         if (mCanSave && !mReading) {
             if (ProjectManager.getInstance().getCurrentProject() != null) {
-                ProjectManager.getInstance().getCurrentProject()
+                FileManager fileManager = ProjectManager.getInstance().getCurrentProject()
                         .getModule(mCurrentFile)
-                        .getFileManager()
-                        .setSnapshotContent(mCurrentFile, mEditor.getText().toString(), false);
+                        .getFileManager();
+                fileManager.setSnapshotContent(mCurrentFile, mEditor.getText().toString(), false);
+                mSnapshotVersion = fileManager.getSnapshotVersion(mCurrentFile);
             }
         }
 
@@ -383,7 +390,11 @@ public class CodeEditorFragment extends Fragment implements Savable,
             if (event.getAction() == ContentChangeEvent.ACTION_SET_NEW_TEXT) {
                 return;
             }
-            updateFile(event.getEditor().getText());
+            if (mApplyingSnapshot) {
+                // the change came from the snapshot
+                return;
+            }
+            updateFile(event);
         });
 
         LogViewModel logViewModel =
@@ -440,10 +451,11 @@ public class CodeEditorFragment extends Fragment implements Savable,
 
         if (mCanSave && !mReading) {
             if (ProjectManager.getInstance().getCurrentProject() != null) {
-                ProjectManager.getInstance().getCurrentProject()
+                FileManager fileManager = ProjectManager.getInstance().getCurrentProject()
                         .getModule(mCurrentFile)
-                        .getFileManager()
-                        .setSnapshotContent(mCurrentFile, mEditor.getText().toString(), false);
+                        .getFileManager();
+                fileManager.setSnapshotContent(mCurrentFile, mEditor.getText().toString(), false);
+                mSnapshotVersion = fileManager.getSnapshotVersion(mCurrentFile);
             } else {
                 ProgressManager.getInstance().runNonCancelableAsync(() -> {
                     try {
@@ -483,6 +495,40 @@ public class CodeEditorFragment extends Fragment implements Savable,
         }
     }
 
+    /**
+     * Applies only the changed range to the editor, so the analyzer lexes the edited lines
+     * instead of the whole file. The whole text is set only if a change was missed, when the
+     * version of the change is not the one after the version the editor has.
+     */
+    @Override
+    public void onSnapshotChanged(File file, CharSequence contents, @NonNull FileChange change) {
+        if (!mCurrentFile.equals(file) || mEditor == null) {
+            return;
+        }
+        long expected = mSnapshotVersion + 1;
+        mSnapshotVersion = change.getVersion();
+
+        Content content = mEditor.getText();
+        int offset = change.getOffset();
+        int removedEnd = offset + change.getRemovedLength();
+        if (mSnapshotVersion != expected || removedEnd > content.length()) {
+            onSnapshotChanged(file, contents);
+            return;
+        }
+
+        io.github.rosemoe.sora.text.CharPosition start =
+                content.getIndexer().getCharPosition(offset);
+        io.github.rosemoe.sora.text.CharPosition end =
+                content.getIndexer().getCharPosition(removedEnd);
+        mApplyingSnapshot = true;
+        try {
+            content.replace(start.getLine(), start.getColumn(), end.getLine(), end.getColumn(),
+                    change.getInsertedText());
+        } finally {
+            mApplyingSnapshot = false;
+        }
+    }
+
     @Override
     public void save(boolean toDisk) {
         if (!mCanSave || mReading) {
@@ -494,10 +540,11 @@ public class CodeEditorFragment extends Fragment implements Savable,
         }
 
         if (ProjectManager.getInstance().getCurrentProject() != null && !toDisk) {
-            ProjectManager.getInstance().getCurrentProject()
+            FileManager fileManager = ProjectManager.getInstance().getCurrentProject()
                     .getModule(mCurrentFile)
-                    .getFileManager()
-                    .setSnapshotContent(mCurrentFile, mEditor.getText().toString(), false);
+                    .getFileManager();
+            fileManager.setSnapshotContent(mCurrentFile, mEditor.getText().toString(), false);
+            mSnapshotVersion = fileManager.getSnapshotVersion(mCurrentFile);
         } else {
             ProgressManager.getInstance().runNonCancelableAsync(() -> {
                 try {
@@ -528,6 +575,7 @@ public class CodeEditorFragment extends Fragment implements Savable,
         if (fileManager.isOpened(mCurrentFile)) {
             Optional<CharSequence> contents = fileManager.getFileContent(mCurrentFile);
             if (contents.isPresent()) {
+                mSnapshotVersion = fileManager.getSnapshotVersion(mCurrentFile);
                 mEditor.setText(contents.get());
                 return;
             }
@@ -543,6 +591,7 @@ public class CodeEditorFragment extends Fragment implements Savable,
                 mReading = false;
                 mEditor.setBackgroundAnalysisEnabled(true);
                 fileManager.openFileForSnapshot(mCurrentFile, result);
+                mSnapshotVersion = fileManager.getSnapshotVersion(mCurrentFile);
                 mEditor.setText(result);
                 mEditor.rerunAnalysis();
 
@@ -595,15 +644,34 @@ public class CodeEditorFragment extends Fragment implements Savable,
         }
     }
 
-    private void updateFile(CharSequence contents) {
+    /**
+     * Sends only the edited range to the file manager, the whole text is only copied when
+     * the snapshot is out of sync with the editor.
+     */
+    private void updateFile(ContentChangeEvent event) {
         Project project = ProjectManager.getInstance().getCurrentProject();
         if (project == null) {
             return;
         }
         Module module = project.getModule(mCurrentFile);
-        if (module != null) {
-            module.getFileManager().setSnapshotContent(mCurrentFile, contents.toString(), this);
+        if (module == null) {
+            return;
+        }
+        FileManager fileManager = module.getFileManager();
+        int start = event.getChangeStart().index;
+        boolean applied;
+        if (event.getAction() == ContentChangeEvent.ACTION_DELETE) {
+            int removed = event.getChangeEnd().index - start;
+            applied = fileManager.applySnapshotEdit(mCurrentFile, start, removed, "", this);
+        } else {
+            applied = fileManager.applySnapshotEdit(mCurrentFile, start, 0,
+                    event.getChangedText(), this);
+        }
+        if (!applied) {
+            fileManager.setSnapshotContent(mCurrentFile,
+                    event.getEditor().getText().toString(), this);
         }
+        mSnapshotVersion = fileManager.getSnapshotVersion(mCurrentFile);
     }
 
     public Editor getEditor() {
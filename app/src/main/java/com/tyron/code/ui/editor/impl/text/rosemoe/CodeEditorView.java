@@ -14,7 +14,7 @@ import com.tyron.code.ui.editor.CodeAssistCompletionAdapter;
 import com.tyron.code.ui.editor.CodeAssistCompletionWindow;
 import com.tyron.code.ui.editor.EditorViewModel;
 import com.tyron.code.ui.editor.NoOpTextActionWindow;
-import com.tyron.code.ui.editor.language.DiagnosticAnalyzeManager;
+import com.tyron.code.ui.editor.language.DiagnosticAnalyzer;
 import com.tyron.code.ui.project.ProjectManager;
 import com.tyron.editor.Caret;
 import com.tyron.editor.CharPosition;
@@ -120,9 +120,9 @@ public class CodeEditorView extends CodeEditor implements Editor {
         mDiagnostics = diagnostics;
 
         AnalyzeManager manager = getEditorLanguage().getAnalyzeManager();
-        if (manager instanceof DiagnosticAnalyzeManager) {
-            ((DiagnosticAnalyzeManager<?>) manager).setDiagnostics(this, mDiagnostics);
-            ((DiagnosticAnalyzeManager<?>) manager).rerunWithoutBg();
+        if (manager instanceof DiagnosticAnalyzer) {
+            ((DiagnosticAnalyzer) manager).setDiagnostics(this, mDiagnostics);
+            ((DiagnosticAnalyzer) manager).rerunWithoutBg();
         }
         if (mDiagnosticsListener != null) {
             mDiagnosticsListener.accept(mDiagnostics);
@@ -335,11 +335,11 @@ public class CodeEditorView extends CodeEditor implements Editor {
             AnalyzeManager analyzeManager = getEditorLanguage().getAnalyzeManager();
             Project project = ProjectManager.getInstance().getCurrentProject();
 
-            if (analyzeManager instanceof DiagnosticAnalyzeManager) {
+            if (analyzeManager instanceof DiagnosticAnalyzer) {
                 if (isBackgroundAnalysisEnabled() && (project != null && !project.isCompiling())) {
-                    ((DiagnosticAnalyzeManager<?>) analyzeManager).rerunWithBg();
+                    ((DiagnosticAnalyzer) analyzeManager).rerunWithBg();
                 } else {
-                    ((DiagnosticAnalyzeManager<?>) analyzeManager).rerunWithoutBg();
+                    ((DiagnosticAnalyzer) analyzeManager).rerunWithoutBg();
                 }
             } else {
                 analyzeManager.rerun();
@@ -5,6 +5,7 @@ import androidx.annotation.Nullable;
 import com.tyron.completion.model.CompletionList;
 
 import java.util.List;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
 import io.github.rosemoe.sora.lang.completion.CompletionItem;
@@ -26,4 +27,18 @@ public abstract class AbstractAutoCompleteProvider {
     }
 
     public abstract CompletionList getCompletionList(String prefix, int line, int column);
+
+    /**
+     * Same as {@link #getCompletionList(String, int, int)} but the results are also passed to
+     * the consumer as they become available. By default the whole list is passed once it has
+     * been computed.
+     */
+    public CompletionList getCompletionList(String prefix, int line, int column,
+                                            Consumer<CompletionList> partialResults) {
+        CompletionList list = getCompletionList(prefix, line, column);
+        if (list != null) {
+            partialResults.accept(list);
+        }
+        return list;
+    }
 }
@@ -9,16 +9,12 @@ import com.tyron.builder.model.DiagnosticWrapper;
 import com.tyron.editor.Editor;
 
 import org.antlr.v4.runtime.CharStream;
-import org.antlr.v4.runtime.CharStreams;
 import org.antlr.v4.runtime.Lexer;
 import org.antlr.v4.runtime.Token;
-import org.apache.commons.io.input.CharSequenceReader;
 
-import java.io.IOException;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Arrays;
 import java.util.List;
-import java.util.Map;
 
 import io.github.rosemoe.sora.lang.analysis.StyleReceiver;
 import io.github.rosemoe.sora.lang.styling.MappedSpans;
@@ -30,7 +26,29 @@ import io.github.rosemoe.sora2.text.DiagnosticSpanMapUpdater;
 
 public abstract class AbstractCodeAnalyzer<T> extends DiagnosticAnalyzeManager<T> {
 
-    private final Map<Integer, Integer> mColorMap = new HashMap<>();
+    private static final int NO_COLOR = -1;
+
+    /**
+     * The color id of each token type, indexed by the token type
+     */
+    private int[] mColors = new int[0];
+    private final IncrementalLexer mIncrementalLexer =
+            new IncrementalLexer(new IncrementalLexer.LexerProvider() {
+                @Override
+                public Lexer getLexer(CharStream input) {
+                    return AbstractCodeAnalyzer.this.getLexer(input);
+                }
+
+                @Override
+                public Object saveLexerState(Lexer lexer) {
+                    return AbstractCodeAnalyzer.this.saveLexerState(lexer);
+                }
+
+                @Override
+                public boolean restoreLexerState(Lexer lexer, @Nullable Object state) {
+                    return AbstractCodeAnalyzer.this.restoreLexerState(lexer, state);
+                }
+            });
 
     private StyleReceiver mReceiver;
     private Token mPreviousToken;
@@ -50,6 +68,7 @@ public abstract class AbstractCodeAnalyzer<T> extends DiagnosticAnalyzeManager<T
 
     @Override
     public void insert(CharPosition start, CharPosition end, CharSequence insertedContent) {
+        mIncrementalLexer.onEdit(start.getIndex(), 0, end.getIndex() - start.getIndex());
         rerunWithBg();
 
         if (start.getLine() != end.getLine()) {
@@ -72,6 +91,7 @@ public abstract class AbstractCodeAnalyzer<T> extends DiagnosticAnalyzeManager<T
 
     @Override
     public void delete(CharPosition start, CharPosition end, CharSequence deletedContent) {
+        mIncrementalLexer.onEdit(start.getIndex(), end.getIndex() - start.getIndex(), 0);
         rerunWithBg();
 
         if (start.getLine() != end.getLine()) {
@@ -94,6 +114,7 @@ public abstract class AbstractCodeAnalyzer<T> extends DiagnosticAnalyzeManager<T
 
     @Override
     public void reset(@NonNull ContentReference content, @NonNull Bundle extraArguments) {
+        mIncrementalLexer.invalidate();
         super.reset(content, extraArguments);
     }
 
@@ -123,7 +144,15 @@ public abstract class AbstractCodeAnalyzer<T> extends DiagnosticAnalyzeManager<T
      * @param tokenType the token type from the provided lexer
      */
     protected void putColor(int id, int tokenType) {
-        mColorMap.put(tokenType, id);
+        if (tokenType < 0) {
+            return;
+        }
+        if (tokenType >= mColors.length) {
+            int oldLength = mColors.length;
+            mColors = Arrays.copyOf(mColors, Math.max(tokenType + 1, oldLength * 2));
+            Arrays.fill(mColors, oldLength, mColors.length, NO_COLOR);
+        }
+        mColors[tokenType] = id;
     }
 
     /**
@@ -131,10 +160,38 @@ public abstract class AbstractCodeAnalyzer<T> extends DiagnosticAnalyzeManager<T
      */
     public abstract Lexer getLexer(CharStream input);
 
+    /**
+     * Saves the state of the lexer that is not part of its modes, it is restored when lexing
+     * restarts in the middle of the text. Lexers that keep state in their own fields must
+     * override this along with {@link #restoreLexerState(Lexer, Object)}.
+     *
+     * @return The state of the lexer, must implement equals
+     */
+    @Nullable
+    protected Object saveLexerState(Lexer lexer) {
+        return null;
+    }
+
+    /**
+     * Restores the state saved by {@link #saveLexerState(Lexer)}
+     *
+     * @return false if the state cannot be restored, the whole text is lexed then
+     */
+    protected boolean restoreLexerState(Lexer lexer, @Nullable Object state) {
+        return true;
+    }
+
     public abstract void analyzeInBackground(CharSequence contents);
 
-    public Integer getColor(int tokenType) {
-        return mColorMap.get(tokenType);
+    /**
+     * @return The color id of the token type, {@link EditorColorScheme#TEXT_NORMAL} if none
+     * has been set
+     */
+    public int getColor(int tokenType) {
+        if (tokenType < 0 || tokenType >= mColors.length || mColors[tokenType] == NO_COLOR) {
+            return EditorColorScheme.TEXT_NORMAL;
+        }
+        return mColors[tokenType];
     }
 
     /**
@@ -152,16 +209,15 @@ public abstract class AbstractCodeAnalyzer<T> extends DiagnosticAnalyzeManager<T
         Styles styles = new Styles();
         MappedSpans.Builder result = new MappedSpans.Builder(1024);
 
-        try {
-            Lexer lexer = getLexer(CharStreams.fromReader(new CharSequenceReader(text)));
-            while (!delegate.isCancelled()) {
-                Token token = lexer.nextToken();
-                if (token == null) {
-                    break;
-                }
-                if (token.getType() == Token.EOF) {
-                    break;
-                }
+        // only the edited part of the text is lexed, the lexer also keeps the tokens of
+        // the text to reuse them on the next analysis so it is locked until they are used
+        synchronized (mIncrementalLexer) {
+            List<Token> tokens = mIncrementalLexer.lex(text, delegate::isCancelled);
+            if (tokens == null) {
+                return styles;
+            }
+            for (int i = 0; i < tokens.size() && !delegate.isCancelled(); i++) {
+                Token token = tokens.get(i);
 
                 boolean skip = onNextToken(token, styles, result);
                 if (skip) {
@@ -169,28 +225,23 @@ public abstract class AbstractCodeAnalyzer<T> extends DiagnosticAnalyzeManager<T
                     continue;
                 }
 
-                Integer id = getColor(token.getType());
-                if (id == null) {
-                    id = EditorColorScheme.TEXT_NORMAL;
-                }
-                result.addIfNeeded(token.getLine() - 1, token.getCharPositionInLine(), id);
+                result.addIfNeeded(token.getLine() - 1, token.getCharPositionInLine(),
+                        getColor(token.getType()));
 
                 mPreviousToken = token;
             }
+        }
 
-            if (mPreviousToken != null) {
-                result.determine(mPreviousToken.getLine() - 1);
-            }
+        if (mPreviousToken != null) {
+            result.determine(mPreviousToken.getLine() - 1);
+        }
 
-            styles.spans = result.build();
-            styles.finishBuilding();
-            afterAnalyze(text, styles, result);
+        styles.spans = result.build();
+        styles.finishBuilding();
+        afterAnalyze(text, styles, result);
 
-            if (mShouldAnalyzeInBg) {
-                analyzeInBackground(text);
-            }
-        } catch (IOException e) {
-            // ignored
+        if (mShouldAnalyzeInBg) {
+            analyzeInBackground(text);
         }
 
         mLastStyles = styles;
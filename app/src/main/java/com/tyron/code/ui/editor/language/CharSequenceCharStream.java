@@ -0,0 +1,112 @@
+package com.tyron.code.ui.editor.language;
+
+import androidx.annotation.NonNull;
+
+import org.antlr.v4.runtime.CharStream;
+import org.antlr.v4.runtime.IntStream;
+import org.antlr.v4.runtime.misc.Interval;
+
+/**
+ * A {@link CharStream} that reads a {@link CharSequence} directly instead of copying it.
+ *
+ * Positions are in UTF-16 chars like the columns of the editor. The stream also remembers
+ * the furthest index the lexer has looked at, so that {@link IncrementalLexer} knows which
+ * tokens depend on an edited region.
+ */
+public class CharSequenceCharStream implements CharStream {
+
+    private CharSequence mText;
+    private int mIndex;
+    private int mMaxLookahead;
+
+    public CharSequenceCharStream(@NonNull CharSequence text) {
+        mText = text;
+    }
+
+    /**
+     * Replaces the text of this stream, tokens that were created from this stream will read
+     * their text from the new one
+     */
+    public void setText(@NonNull CharSequence text) {
+        mText = text;
+        mIndex = 0;
+    }
+
+    /**
+     * Starts tracking the lookahead from the current index
+     */
+    public void resetLookahead() {
+        mMaxLookahead = mIndex;
+    }
+
+    /**
+     * @return The furthest index that has been read since {@link #resetLookahead()}, the
+     * length of the text if the end of the stream has been read
+     */
+    public int getMaxLookahead() {
+        return mMaxLookahead;
+    }
+
+    @Override
+    public String getText(Interval interval) {
+        int start = Math.max(0, interval.a);
+        int stop = Math.min(interval.b, mText.length() - 1);
+        if (stop < start) {
+            return "";
+        }
+        return mText.subSequence(start, stop + 1).toString();
+    }
+
+    @Override
+    public void consume() {
+        if (mIndex >= mText.length()) {
+            throw new IllegalStateException("cannot consume EOF");
+        }
+        mIndex++;
+    }
+
+    @Override
+    public int LA(int i) {
+        if (i == 0) {
+            return 0;
+        }
+        int index = i > 0 ? mIndex + i - 1 : mIndex + i;
+        if (index > mMaxLookahead) {
+            mMaxLookahead = index;
+        }
+        if (index < 0 || index >= mText.length()) {
+            return IntStream.EOF;
+        }
+        return mText.charAt(index);
+    }
+
+    @Override
+    public int mark() {
+        return -1;
+    }
+
+    @Override
+    public void release(int marker) {
+
+    }
+
+    @Override
+    public int index() {
+        return mIndex;
+    }
+
+    @Override
+    public void seek(int index) {
+        mIndex = Math.min(Math.max(0, index), mText.length());
+    }
+
+    @Override
+    public int size() {
+        return mText.length();
+    }
+
+    @Override
+    public String getSourceName() {
+        return IntStream.UNKNOWN_SOURCE_NAME;
+    }
+}
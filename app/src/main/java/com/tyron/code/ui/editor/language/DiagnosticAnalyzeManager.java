@@ -13,17 +13,21 @@ import io.github.rosemoe.sora.lang.analysis.AnalyzeManager;
 import io.github.rosemoe.sora.lang.analysis.SimpleAnalyzeManager;
 import io.github.rosemoe.sora.text.ContentReference;
 
-public abstract class DiagnosticAnalyzeManager<T> extends SimpleAnalyzeManager<T> {
+public abstract class DiagnosticAnalyzeManager<T> extends SimpleAnalyzeManager<T>
+        implements DiagnosticAnalyzer {
 
     protected boolean mShouldAnalyzeInBg = false;
 
+    @Override
     public abstract void setDiagnostics(Editor editor, List<DiagnosticWrapper> diagnostics);
 
+    @Override
     public void rerunWithoutBg() {
         mShouldAnalyzeInBg = false;
         super.rerun();
     }
 
+    @Override
     public void rerunWithBg() {
         mShouldAnalyzeInBg = true;
         super.rerun();
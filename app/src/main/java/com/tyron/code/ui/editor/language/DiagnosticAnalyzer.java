@@ -0,0 +1,25 @@
+package com.tyron.code.ui.editor.language;
+
+import com.tyron.builder.model.DiagnosticWrapper;
+import com.tyron.editor.Editor;
+
+import java.util.List;
+
+/**
+ * An analyze manager that marks the diagnostics of the editor and that may compute them in
+ * the background.
+ */
+public interface DiagnosticAnalyzer {
+
+    void setDiagnostics(Editor editor, List<DiagnosticWrapper> diagnostics);
+
+    /**
+     * Highlights the file again without computing its diagnostics
+     */
+    void rerunWithoutBg();
+
+    /**
+     * Highlights the file again and computes its diagnostics in the background
+     */
+    void rerunWithBg();
+}
@@ -0,0 +1,634 @@
+package com.tyron.code.ui.editor.language;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import org.antlr.v4.runtime.CharStream;
+import org.antlr.v4.runtime.CommonToken;
+import org.antlr.v4.runtime.Lexer;
+import org.antlr.v4.runtime.Token;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Keeps the tokens of the last analysis of an {@link AbstractCodeAnalyzer} and lexes only the
+ * part of the text that changed since then.
+ *
+ * Before each token, the state of the lexer is saved as a checkpoint: its position, mode,
+ * mode stack and any state the analyzer saves with
+ * {@link LexerProvider#saveLexerState(Lexer)}, along with the furthest character the
+ * lexer looked at to produce the token. After an edit, lexing restarts from the last
+ * checkpoint whose token did not look at the edited region and stops as soon as a
+ * checkpoint after the edit has the same state as in the previous run. The tokens after it
+ * are reused as they are.
+ *
+ * The checkpoints are kept in a gap buffer at the last edited checkpoint. The ones before
+ * the gap have absolute offsets and lines, the ones after it are relative to the end of the
+ * text, so an edit only touches the checkpoints that were lexed again and the ones the gap
+ * moves over. The positions of the reused tokens are updated as they are read.
+ */
+public class IncrementalLexer {
+
+    /**
+     * Past this many unprocessed edits, the next analysis lexes the whole text
+     */
+    private static final int MAX_PENDING_EDITS = 1024;
+
+    /**
+     * Creates the lexers of the text, see {@link AbstractCodeAnalyzer#getLexer(CharStream)}
+     */
+    public interface LexerProvider {
+
+        Lexer getLexer(CharStream input);
+
+        /**
+         * @return The state of the lexer that is not part of its modes, must implement equals
+         */
+        @Nullable
+        default Object saveLexerState(Lexer lexer) {
+            return null;
+        }
+
+        /**
+         * @return false if the state cannot be restored, the whole text is lexed then
+         */
+        default boolean restoreLexerState(Lexer lexer, @Nullable Object state) {
+            return true;
+        }
+    }
+
+    private static class Edit {
+        private final int mStart;
+        private final int mRemoved;
+        private final int mInserted;
+
+        private Edit(int start, int removed, int inserted) {
+            mStart = start;
+            mRemoved = removed;
+            mInserted = inserted;
+        }
+    }
+
+    private final LexerProvider mProvider;
+    private final CharSequenceCharStream mStream = new CharSequenceCharStream("");
+    private final List<Edit> mEdits = new ArrayList<>();
+    private boolean mInvalidated;
+    /**
+     * Incremented each time the edits are invalidated
+     */
+    private int mInvalidations;
+
+    /**
+     * The checkpoints of the last run, the last one is the end of the text
+     */
+    private CommonToken[] mTokens = new CommonToken[0];
+    private int[] mStarts = new int[0];
+    /**
+     * The distance between the start of each checkpoint and the furthest character the
+     * lexer looked at to produce its token
+     */
+    private int[] mDistances = new int[0];
+    /**
+     * The offset and the line of each token relative to its checkpoint
+     */
+    private int[] mTokenStarts = new int[0];
+    private int[] mTokenLines = new int[0];
+    private int[] mLines = new int[0];
+    private int[] mColumns = new int[0];
+    private int[] mModes = new int[0];
+    private int[][] mModeStacks = new int[0][];
+    private Object[] mStates = new Object[0];
+    private int mCount;
+    private int mGapStart;
+    private int mGapEnd;
+    /**
+     * The offset and the line the checkpoints after the gap are relative to, they change by
+     * the size of each edit
+     */
+    private int mEndOffset;
+    private int mEndLine;
+    /**
+     * The furthest distance of any checkpoint, only the checkpoints within it of an edit
+     * may have looked at it. It is only reduced when the whole text is lexed.
+     */
+    private int mMaxDistance;
+    private int mTextLength = -1;
+
+    private int mLexedCount;
+
+    public IncrementalLexer(@NonNull LexerProvider provider) {
+        mProvider = provider;
+    }
+
+    /**
+     * Records an edit of the text, called in the same order the edits are made
+     *
+     * @param start    The offset of the edit
+     * @param removed  The number of characters removed at the offset
+     * @param inserted The number of characters inserted at the offset
+     */
+    public void onEdit(int start, int removed, int inserted) {
+        synchronized (mEdits) {
+            if (mInvalidated) {
+                return;
+            }
+            if (mEdits.size() >= MAX_PENDING_EDITS) {
+                invalidate();
+                return;
+            }
+            mEdits.add(new Edit(start, removed, inserted));
+        }
+    }
+
+    /**
+     * Makes the next run lex the whole text, used when the text is replaced
+     */
+    public void invalidate() {
+        synchronized (mEdits) {
+            mInvalidated = true;
+            mInvalidations++;
+            mEdits.clear();
+        }
+    }
+
+    /**
+     * @return The number of tokens that were lexed in the last run, the rest were reused
+     */
+    public int getLexedCount() {
+        return mLexedCount;
+    }
+
+    /**
+     * Lexes the text, reusing the tokens of the previous run outside of the edited region
+     *
+     * @return The tokens of the text without the EOF token, or null if lexing was cancelled.
+     * The list is only valid until the next call.
+     */
+    @Nullable
+    public synchronized List<Token> lex(@NonNull CharSequence text,
+                                        @NonNull BooleanSupplier cancelled) {
+        List<Edit> edits;
+        boolean invalidated;
+        int invalidations;
+        synchronized (mEdits) {
+            edits = new ArrayList<>(mEdits);
+            invalidated = mInvalidated;
+            invalidations = mInvalidations;
+        }
+
+        mStream.setText(text);
+        boolean lexed = false;
+        if (!invalidated && mTextLength != -1) {
+            int[] region = getEditedRegion(edits);
+            if (region != null && mTextLength + region[2] - region[1] == text.length()) {
+                Boolean result = lexEditedRegion(region[0], region[1], region[2], cancelled);
+                if (result == null) {
+                    return null;
+                }
+                lexed = result;
+            }
+        }
+        if (!lexed && !lexAll(cancelled)) {
+            return null;
+        }
+        mTextLength = text.length();
+
+        synchronized (mEdits) {
+            if (invalidations != mInvalidations) {
+                // invalidated while lexing, the next run lexes the whole text again
+                return getTokens();
+            }
+            if (invalidated) {
+                mInvalidated = false;
+            } else {
+                // the edits made while lexing are applied on the next run
+                mEdits.subList(0, edits.size()).clear();
+            }
+        }
+        return getTokens();
+    }
+
+    /**
+     * Merges the edits in a single region
+     *
+     * @return The start, the end before the edits and the end after the edits of the region
+     */
+    @Nullable
+    private static int[] getEditedRegion(List<Edit> edits) {
+        if (edits.isEmpty()) {
+            return new int[]{0, 0, 0};
+        }
+        int start = Integer.MAX_VALUE;
+        int oldEnd = 0;
+        int newEnd = 0;
+        for (Edit edit : edits) {
+            if (start == Integer.MAX_VALUE) {
+                start = edit.mStart;
+                oldEnd = edit.mStart + edit.mRemoved;
+                newEnd = edit.mStart + edit.mInserted;
+                continue;
+            }
+            int editEnd = edit.mStart + edit.mRemoved;
+            if (editEnd > newEnd) {
+                oldEnd += editEnd - newEnd;
+                newEnd = editEnd;
+            }
+            if (edit.mStart < start) {
+                start = edit.mStart;
+            }
+            newEnd += edit.mInserted - edit.mRemoved;
+        }
+        if (start < 0 || start > newEnd) {
+            return null;
+        }
+        return new int[]{start, oldEnd, newEnd};
+    }
+
+    private boolean lexAll(BooleanSupplier cancelled) {
+        Checkpoints result = new Checkpoints(Math.max(16, mCount));
+        Lexer lexer = createLexer();
+        while (true) {
+            if (cancelled.getAsBoolean()) {
+                return false;
+            }
+            if (lexNext(lexer, result)) {
+                break;
+            }
+        }
+        result.commit(0, mCount, 0, 0);
+        return true;
+    }
+
+    /**
+     * @return Whether the region was lexed, false if the whole text needs to be lexed, or
+     * null if lexing was cancelled
+     */
+    @Nullable
+    private Boolean lexEditedRegion(int start, int oldEnd, int newEnd,
+                                    BooleanSupplier cancelled) {
+        if (mCount == 0) {
+            return false;
+        }
+        int delta = newEnd - oldEnd;
+
+        // lexing restarts from the first checkpoint whose token looked at the region
+        int restart = findFirstLookahead(start);
+
+        Lexer lexer = createLexer();
+        if (!restore(lexer, restart)) {
+            return false;
+        }
+
+        Checkpoints result = new Checkpoints(16);
+        int previous = restart;
+        while (true) {
+            if (cancelled.getAsBoolean()) {
+                return null;
+            }
+
+            int position = mStream.index();
+            if (position >= newEnd) {
+                int old = findCheckpoint(position - delta, previous);
+                if (old != -1 && isSameState(lexer, old)) {
+                    // the rest of the tokens are the same as in the previous run
+                    result.commit(restart, old, delta, lexer.getLine() - getLine(old));
+                    return true;
+                }
+                if (old != -1) {
+                    previous = old;
+                }
+            }
+
+            if (lexNext(lexer, result)) {
+                break;
+            }
+        }
+        result.commit(restart, mCount, 0, 0);
+        return true;
+    }
+
+    /**
+     * @return The first checkpoint whose token looked at the position
+     */
+    private int findFirstLookahead(int position) {
+        int low = 0;
+        int high = mCount - 1;
+        // the checkpoints that start before this are too far to have looked at the position
+        int from = position - mMaxDistance;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (getStart(middle) >= from) {
+                high = middle;
+            } else {
+                low = middle + 1;
+            }
+        }
+        for (int i = low; i < mCount - 1; i++) {
+            if (getStart(i) + mDistances[physical(i)] >= position) {
+                return i;
+            }
+        }
+        return mCount - 1;
+    }
+
+    private int findCheckpoint(int start, int from) {
+        int low = from;
+        int high = mCount - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            int value = getStart(middle);
+            if (value < start) {
+                low = middle + 1;
+            } else if (value > start) {
+                high = middle - 1;
+            } else {
+                return middle;
+            }
+        }
+        return -1;
+    }
+
+    private boolean isSameState(Lexer lexer, int checkpoint) {
+        int index = physical(checkpoint);
+        return lexer.getCharPositionInLine() == mColumns[index]
+                && lexer._mode == mModes[index]
+                && Arrays.equals(lexer._modeStack.toArray(), mModeStacks[index])
+                && Objects.equals(mProvider.saveLexerState(lexer), mStates[index]);
+    }
+
+    private Lexer createLexer() {
+        Lexer lexer = mProvider.getLexer(mStream);
+        lexer.removeErrorListeners();
+        return lexer;
+    }
+
+    private boolean restore(Lexer lexer, int checkpoint) {
+        int index = physical(checkpoint);
+        mStream.seek(getStart(checkpoint));
+        lexer.setLine(getLine(checkpoint));
+        lexer.setCharPositionInLine(mColumns[index]);
+        lexer._mode = mModes[index];
+        lexer._modeStack.clear();
+        lexer._modeStack.addAll(mModeStacks[index]);
+        return mProvider.restoreLexerState(lexer, mStates[index]);
+    }
+
+    /**
+     * Saves a checkpoint and lexes the next token
+     *
+     * @return Whether the end of the text has been reached
+     */
+    private boolean lexNext(Lexer lexer, Checkpoints result) {
+        int start = mStream.index();
+        int line = lexer.getLine();
+        int column = lexer.getCharPositionInLine();
+        int mode = lexer._mode;
+        int[] modeStack = lexer._modeStack.toArray();
+        Object state = mProvider.saveLexerState(lexer);
+
+        mStream.resetLookahead();
+        Token token = lexer.nextToken();
+        if (!(token instanceof CommonToken)) {
+            throw new IllegalStateException("Unsupported token " + token);
+        }
+        result.add((CommonToken) token, start, mStream.getMaxLookahead(), line, column, mode,
+                modeStack, state);
+        return token.getType() == Token.EOF;
+    }
+
+    private List<Token> getTokens() {
+        final int size = mCount - 1;
+        return new AbstractList<Token>() {
+            @Override
+            public Token get(int index) {
+                return getToken(index);
+            }
+
+            @Override
+            public int size() {
+                return size;
+            }
+        };
+    }
+
+    /**
+     * @return The token of the checkpoint, moved to the position of the checkpoint if it was
+     * reused after an edit
+     */
+    private CommonToken getToken(int checkpoint) {
+        int index = physical(checkpoint);
+        CommonToken token = mTokens[index];
+        int start = getStart(checkpoint) + mTokenStarts[index];
+        if (token.getStartIndex() != start) {
+            token.setStopIndex(token.getStopIndex() + start - token.getStartIndex());
+            token.setStartIndex(start);
+        }
+        int line = getLine(checkpoint) + mTokenLines[index];
+        if (token.getLine() != line) {
+            token.setLine(line);
+        }
+        return token;
+    }
+
+    private int physical(int checkpoint) {
+        return checkpoint < mGapStart ? checkpoint : checkpoint + mGapEnd - mGapStart;
+    }
+
+    private int getStart(int checkpoint) {
+        if (checkpoint < mGapStart) {
+            return mStarts[checkpoint];
+        }
+        return mStarts[checkpoint + mGapEnd - mGapStart] + mEndOffset;
+    }
+
+    private int getLine(int checkpoint) {
+        if (checkpoint < mGapStart) {
+            return mLines[checkpoint];
+        }
+        return mLines[checkpoint + mGapEnd - mGapStart] + mEndLine;
+    }
+
+    /**
+     * Moves the gap before the given checkpoint, the checkpoints it moves over are made
+     * absolute or relative to the end
+     */
+    private void moveGap(int checkpoint) {
+        while (mGapStart > checkpoint) {
+            mGapStart--;
+            mGapEnd--;
+            moveCheckpoint(mGapStart, mGapEnd);
+            mStarts[mGapEnd] -= mEndOffset;
+            mLines[mGapEnd] -= mEndLine;
+        }
+        while (mGapStart < checkpoint) {
+            moveCheckpoint(mGapEnd, mGapStart);
+            mStarts[mGapStart] += mEndOffset;
+            mLines[mGapStart] += mEndLine;
+            mGapStart++;
+            mGapEnd++;
+        }
+    }
+
+    private void moveCheckpoint(int from, int to) {
+        if (from == to) {
+            return;
+        }
+        mTokens[to] = mTokens[from];
+        mStarts[to] = mStarts[from];
+        mDistances[to] = mDistances[from];
+        mTokenStarts[to] = mTokenStarts[from];
+        mTokenLines[to] = mTokenLines[from];
+        mLines[to] = mLines[from];
+        mColumns[to] = mColumns[from];
+        mModes[to] = mModes[from];
+        mModeStacks[to] = mModeStacks[from];
+        mStates[to] = mStates[from];
+        release(from, from + 1);
+    }
+
+    /**
+     * Releases the tokens and states of the checkpoints in the gap
+     */
+    private void release(int from, int to) {
+        Arrays.fill(mTokens, from, to, null);
+        Arrays.fill(mModeStacks, from, to, null);
+        Arrays.fill(mStates, from, to, null);
+    }
+
+    private void ensureGap(int size) {
+        int gap = mGapEnd - mGapStart;
+        if (gap >= size) {
+            return;
+        }
+        int capacity = Math.max(mCount + size, mTokens.length * 3 / 2);
+        int suffix = mTokens.length - mGapEnd;
+        int gapEnd = capacity - suffix;
+        mTokens = grow(mTokens, new CommonToken[capacity], gapEnd, suffix);
+        mStarts = grow(mStarts, new int[capacity], gapEnd, suffix);
+        mDistances = grow(mDistances, new int[capacity], gapEnd, suffix);
+        mTokenStarts = grow(mTokenStarts, new int[capacity], gapEnd, suffix);
+        mTokenLines = grow(mTokenLines, new int[capacity], gapEnd, suffix);
+        mLines = grow(mLines, new int[capacity], gapEnd, suffix);
+        mColumns = grow(mColumns, new int[capacity], gapEnd, suffix);
+        mModes = grow(mModes, new int[capacity], gapEnd, suffix);
+        mModeStacks = grow(mModeStacks, new int[capacity][], gapEnd, suffix);
+        mStates = grow(mStates, new Object[capacity], gapEnd, suffix);
+        mGapEnd = gapEnd;
+    }
+
+    /**
+     * Copies the checkpoints to the larger array, the ones after the gap are moved to its end
+     */
+    private <T> T grow(T array, T larger, int gapEnd, int suffix) {
+        System.arraycopy(array, 0, larger, 0, mGapStart);
+        System.arraycopy(array, mGapEnd, larger, gapEnd, suffix);
+        return larger;
+    }
+
+    /**
+     * The checkpoints lexed in the run in progress, they replace the edited checkpoints of
+     * the previous run when it completes
+     */
+    private class Checkpoints {
+        private CommonToken[] mNewTokens;
+        private int[] mNewStarts;
+        private int[] mNewDistances;
+        private int[] mNewTokenStarts;
+        private int[] mNewTokenLines;
+        private int[] mNewLines;
+        private int[] mNewColumns;
+        private int[] mNewModes;
+        private int[][] mNewModeStacks;
+        private Object[] mNewStates;
+        private int mNewCount;
+        private int mNewMaxDistance;
+
+        private Checkpoints(int capacity) {
+            mNewTokens = new CommonToken[capacity];
+            mNewStarts = new int[capacity];
+            mNewDistances = new int[capacity];
+            mNewTokenStarts = new int[capacity];
+            mNewTokenLines = new int[capacity];
+            mNewLines = new int[capacity];
+            mNewColumns = new int[capacity];
+            mNewModes = new int[capacity];
+            mNewModeStacks = new int[capacity][];
+            mNewStates = new Object[capacity];
+        }
+
+        private void add(CommonToken token, int start, int lookahead, int line, int column,
+                         int mode, int[] modeStack, Object state) {
+            if (mNewCount == mNewStarts.length) {
+                int size = mNewCount * 2;
+                mNewTokens = Arrays.copyOf(mNewTokens, size);
+                mNewStarts = Arrays.copyOf(mNewStarts, size);
+                mNewDistances = Arrays.copyOf(mNewDistances, size);
+                mNewTokenStarts = Arrays.copyOf(mNewTokenStarts, size);
+                mNewTokenLines = Arrays.copyOf(mNewTokenLines, size);
+                mNewLines = Arrays.copyOf(mNewLines, size);
+                mNewColumns = Arrays.copyOf(mNewColumns, size);
+                mNewModes = Arrays.copyOf(mNewModes, size);
+                mNewModeStacks = Arrays.copyOf(mNewModeStacks, size);
+                mNewStates = Arrays.copyOf(mNewStates, size);
+            }
+            mNewTokens[mNewCount] = token;
+            mNewStarts[mNewCount] = start;
+            mNewDistances[mNewCount] = lookahead - start;
+            mNewMaxDistance = Math.max(mNewMaxDistance, lookahead - start);
+            mNewTokenStarts[mNewCount] = token.getStartIndex() - start;
+            mNewTokenLines[mNewCount] = token.getLine() - line;
+            mNewLines[mNewCount] = line;
+            mNewColumns[mNewCount] = column;
+            mNewModes[mNewCount] = mode;
+            // most checkpoints have the same mode stack as the previous one
+            if (mNewCount > 0 && Arrays.equals(modeStack, mNewModeStacks[mNewCount - 1])) {
+                modeStack = mNewModeStacks[mNewCount - 1];
+            }
+            mNewModeStacks[mNewCount] = modeStack;
+            mNewStates[mNewCount] = state;
+            mNewCount++;
+        }
+
+        /**
+         * Replaces the checkpoints of the previous run from {@code start} to {@code end}
+         * with the ones of this run, the checkpoints after them are moved by the deltas
+         */
+        private void commit(int start, int end, int delta, int lineDelta) {
+            if (start == 0 && end == mCount) {
+                mMaxDistance = mNewMaxDistance;
+            } else {
+                mMaxDistance = Math.max(mMaxDistance, mNewMaxDistance);
+            }
+
+            moveGap(start);
+            // the replaced checkpoints are right after the gap
+            release(mGapEnd, mGapEnd + end - start);
+            mGapEnd += end - start;
+            mCount -= end - start;
+
+            ensureGap(mNewCount);
+            System.arraycopy(mNewTokens, 0, mTokens, mGapStart, mNewCount);
+            System.arraycopy(mNewStarts, 0, mStarts, mGapStart, mNewCount);
+            System.arraycopy(mNewDistances, 0, mDistances, mGapStart, mNewCount);
+            System.arraycopy(mNewTokenStarts, 0, mTokenStarts, mGapStart, mNewCount);
+            System.arraycopy(mNewTokenLines, 0, mTokenLines, mGapStart, mNewCount);
+            System.arraycopy(mNewLines, 0, mLines, mGapStart, mNewCount);
+            System.arraycopy(mNewColumns, 0, mColumns, mGapStart, mNewCount);
+            System.arraycopy(mNewModes, 0, mModes, mGapStart, mNewCount);
+            System.arraycopy(mNewModeStacks, 0, mModeStacks, mGapStart, mNewCount);
+            System.arraycopy(mNewStates, 0, mStates, mGapStart, mNewCount);
+            mGapStart += mNewCount;
+            mCount += mNewCount;
+
+            // the checkpoints after the gap move along with the end of the text
+            mEndOffset += delta;
+            mEndLine += lineDelta;
+            mLexedCount = mNewCount;
+        }
+    }
+}
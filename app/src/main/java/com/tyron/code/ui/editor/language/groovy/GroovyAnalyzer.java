@@ -32,6 +32,20 @@ public class GroovyAnalyzer extends AbstractCodeAnalyzer<Object> {
         return new GroovyLexer(input);
     }
 
+    @Override
+    protected Object saveLexerState(Lexer lexer) {
+        return ((GroovyLexer) lexer).saveState();
+    }
+
+    @Override
+    protected boolean restoreLexerState(Lexer lexer, Object state) {
+        if (!(state instanceof GroovyLexer.State)) {
+            return false;
+        }
+        ((GroovyLexer) lexer).restoreState((GroovyLexer.State) state);
+        return true;
+    }
+
     @Override
     public void setup() {
         putColor(EditorColorScheme.KEYWORD, GroovyLexer.KW_DO,
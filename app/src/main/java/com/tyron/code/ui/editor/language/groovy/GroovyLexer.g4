@@ -64,8 +64,20 @@ lexer grammar GroovyLexer;
         //System.out.println("> " + topBrace);
     }
 
+    @Override
+    public int popMode() {
+        // a closing brace without an opening one stays in the current mode
+        if (_modeStack.isEmpty()) {
+            return _mode;
+        }
+        return super.popMode();
+    }
+
     private void popBrace() {
-        braceStack.pop();
+        // the braces of a file that is being edited are not always balanced
+        if (!braceStack.isEmpty()) {
+            braceStack.pop();
+        }
         topBrace = braceStack.peekFirst();
         //System.out.println("> " + topBrace);
     }
@@ -79,6 +91,57 @@ lexer grammar GroovyLexer;
         return res;
     }
 
+    /**
+     * The state of the lexer at the start of a token, used to restart lexing in the middle
+     * of a file. Two states are equal if lexing from them produces the same tokens.
+     */
+    public static final class State {
+        private final Brace[] braces;
+        private final int lastTokenType;
+        private final long tokenIndex;
+        private final long tlePos;
+
+        private State(Brace[] braces, int lastTokenType, long tokenIndex, long tlePos) {
+            this.braces = braces;
+            this.lastTokenType = lastTokenType;
+            this.tokenIndex = tokenIndex;
+            this.tlePos = tlePos;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof State)) {
+                return false;
+            }
+            State state = (State) o;
+            return lastTokenType == state.lastTokenType
+                    && (tokenIndex == 0) == (state.tokenIndex == 0)
+                    && (tlePos == tokenIndex) == (state.tlePos == state.tokenIndex)
+                    && Arrays.equals(braces, state.braces);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * Arrays.hashCode(braces) + lastTokenType;
+        }
+    }
+
+    public State saveState() {
+        return new State(braceStack.toArray(new Brace[0]), lastTokenType, tokenIndex, tlePos);
+    }
+
+    public void restoreState(State state) {
+        braceStack.clear();
+        braceStack.addAll(Arrays.asList(state.braces));
+        topBrace = braceStack.peekFirst();
+        lastTokenType = state.lastTokenType;
+        tokenIndex = state.tokenIndex;
+        tlePos = state.tlePos;
+    }
+
 }
 
 
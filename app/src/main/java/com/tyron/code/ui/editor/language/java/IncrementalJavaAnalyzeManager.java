@@ -1,84 +1,714 @@
 package com.tyron.code.ui.editor.language.java;
 
+import android.content.SharedPreferences;
 import android.os.Bundle;
+import android.util.Log;
 
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 
+import com.tyron.builder.model.DiagnosticWrapper;
+import com.tyron.builder.project.Project;
+import com.tyron.builder.project.api.JavaModule;
+import com.tyron.builder.project.api.Module;
+import com.tyron.code.ApplicationLoader;
+import com.tyron.code.BuildConfig;
+import com.tyron.code.ui.editor.language.DiagnosticAnalyzer;
+import com.tyron.code.ui.editor.language.HighlightUtil;
+import com.tyron.code.ui.project.ProjectManager;
+import com.tyron.common.SharedPreferenceKeys;
+import com.tyron.common.util.Debouncer;
+import com.tyron.completion.index.CompilerService;
+import com.tyron.completion.java.JavaCompilerProvider;
+import com.tyron.completion.java.compiler.CompileTask;
+import com.tyron.completion.java.compiler.CompilerContainer;
+import com.tyron.completion.java.compiler.JavaCompilerService;
+import com.tyron.completion.java.compiler.RelocatedDiagnostic;
+import com.tyron.completion.java.util.ErrorCodes;
+import com.tyron.completion.java.util.TreeUtil;
+import com.tyron.completion.progress.ProgressManager;
+import com.tyron.editor.Editor;
+
 import org.jetbrains.kotlin.com.intellij.lang.java.lexer.JavaLexer;
 import org.jetbrains.kotlin.com.intellij.lexer.Lexer;
 import org.jetbrains.kotlin.com.intellij.lexer.LexerPosition;
 import org.jetbrains.kotlin.com.intellij.pom.java.LanguageLevel;
+import org.jetbrains.kotlin.com.intellij.psi.JavaTokenType;
+import org.jetbrains.kotlin.com.intellij.psi.TokenType;
+import org.jetbrains.kotlin.com.intellij.psi.impl.source.tree.ElementType;
+import org.jetbrains.kotlin.com.intellij.psi.tree.IElementType;
+import org.jetbrains.kotlin.com.intellij.psi.tree.TokenSet;
+import org.openjdk.javax.tools.Diagnostic;
+import org.openjdk.javax.tools.JavaFileObject;
+import org.openjdk.source.tree.BlockTree;
+import org.openjdk.source.tree.MethodTree;
+import org.openjdk.source.tree.Tree;
+import org.openjdk.source.util.SourcePositions;
+import org.openjdk.source.util.TreePath;
+import org.openjdk.source.util.Trees;
+import org.openjdk.tools.javac.api.ClientCodeWrapper;
+import org.openjdk.tools.javac.tree.JCTree;
+import org.openjdk.tools.javac.util.JCDiagnostic;
 
+import java.io.File;
+import java.lang.ref.WeakReference;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Stack;
+import java.util.stream.Collectors;
 
 import io.github.rosemoe.sora.lang.analysis.IncrementalAnalyzeManager;
 import io.github.rosemoe.sora.lang.analysis.StyleReceiver;
+import io.github.rosemoe.sora.lang.styling.CodeBlock;
+import io.github.rosemoe.sora.lang.styling.MappedSpans;
 import io.github.rosemoe.sora.lang.styling.Span;
+import io.github.rosemoe.sora.lang.styling.Spans;
+import io.github.rosemoe.sora.lang.styling.Styles;
 import io.github.rosemoe.sora.text.CharPosition;
+import io.github.rosemoe.sora.text.Content;
 import io.github.rosemoe.sora.text.ContentReference;
+import io.github.rosemoe.sora.widget.schemes.EditorColorScheme;
+import io.github.rosemoe.sora2.text.DiagnosticSpanMapUpdater;
+import kotlin.Unit;
+import kotlin.jvm.functions.Function0;
 
+/**
+ * Highlights java files line by line.
+ *
+ * The {@link JavaLexer} does not carry any state across lines, a block comment or a text
+ * block is lexed as a single token. So each line is lexed on its own and the only state kept
+ * at the end of a line is whether it ends inside a block comment or a text block. When the
+ * file is edited, lines are tokenized again starting from the edited line until the state at
+ * the end of a line is the same as in the previous run, and only the spans of those lines
+ * are updated. Typing in a large file costs the same as typing in a small one.
+ *
+ * The columns of the braces of a line are kept in its state, the code blocks are built
+ * from them every time the styles are published.
+ *
+ * The diagnostics of the file are computed in the background by compiling it once the user
+ * stops typing, and are marked on top of the spans of the lines.
+ */
 public class IncrementalJavaAnalyzeManager
-        implements IncrementalAnalyzeManager<LexerPosition, Object> {
+        implements IncrementalAnalyzeManager<LexerPosition, Span>, DiagnosticAnalyzer {
+
+    private static final Debouncer sDebouncer = new Debouncer(Duration.ofMillis(700));
+    private static final String TAG = IncrementalJavaAnalyzeManager.class.getSimpleName();
+
+    private static final int STATE_NORMAL = 0;
+    private static final int STATE_BLOCK_COMMENT = 1;
+    private static final int STATE_TEXT_BLOCK = 2;
+
+    private static final LexerPosition[] STATES = {
+            new LineState(STATE_NORMAL),
+            new LineState(STATE_BLOCK_COMMENT),
+            new LineState(STATE_TEXT_BLOCK)
+    };
+
+    private static final TokenSet KEYWORDS = TokenSet.orSet(ElementType.KEYWORD_BIT_SET,
+            TokenSet.create(JavaTokenType.TRUE_KEYWORD, JavaTokenType.FALSE_KEYWORD,
+                    JavaTokenType.NULL_KEYWORD, JavaTokenType.SEMICOLON));
+
+    /**
+     * An identifier followed by a parenthesis is not a function name if it comes after these
+     */
+    private static final TokenSet TOKENS_BEFORE_CALL = TokenSet.create(
+            JavaTokenType.RETURN_KEYWORD, JavaTokenType.BREAK_KEYWORD, JavaTokenType.IF_KEYWORD,
+            JavaTokenType.AND, JavaTokenType.OR, JavaTokenType.OREQ, JavaTokenType.OROR,
+            JavaTokenType.ANDAND, JavaTokenType.ANDEQ, JavaTokenType.RPARENTH,
+            JavaTokenType.LPARENTH, JavaTokenType.LBRACE, JavaTokenType.NEW_KEYWORD,
+            JavaTokenType.DOT, JavaTokenType.SEMICOLON, JavaTokenType.EQ, JavaTokenType.NE,
+            JavaTokenType.EXCL, JavaTokenType.RBRACE, JavaTokenType.COMMA, JavaTokenType.PLUS,
+            JavaTokenType.PLUSEQ, JavaTokenType.MINUS, JavaTokenType.MINUSEQ,
+            JavaTokenType.ASTERISK, JavaTokenType.ASTERISKEQ, JavaTokenType.DIV,
+            JavaTokenType.DIVEQ);
+
+    private static final int[] NO_BRACES = new int[0];
+
+    private static class LineState implements LexerPosition {
+
+        private final int mState;
 
+        /**
+         * The columns of the braces of the line in order, a closing brace is stored as
+         * {@code -column - 1}
+         */
+        private final int[] mBraces;
+
+        private LineState(int state) {
+            this(state, NO_BRACES);
+        }
+
+        private LineState(int state, int[] braces) {
+            mState = state;
+            mBraces = braces;
+        }
+
+        @Override
+        public int getOffset() {
+            return 0;
+        }
+
+        @Override
+        public int getState() {
+            return mState;
+        }
+    }
+
+    private final WeakReference<Editor> mEditorReference;
+    private final SharedPreferences mPreferences;
     private final Lexer mLexer;
 
-    public IncrementalJavaAnalyzeManager() {
+    /**
+     * The result of the last tokenization of each line of the file
+     */
+    private final List<LineTokenizeResult<LexerPosition, Span>> mLines = new ArrayList<>();
+
+    private ContentReference mContent;
+    private StyleReceiver mReceiver;
+    private Styles mStyles;
+    private List<DiagnosticWrapper> mDiagnostics = new ArrayList<>();
+
+    public IncrementalJavaAnalyzeManager(Editor editor) {
+        mEditorReference = new WeakReference<>(editor);
+        mPreferences = ApplicationLoader.getDefaultPreferences();
         mLexer = new JavaLexer(LanguageLevel.HIGHEST);
     }
 
     @Override
     public LexerPosition getInitialState() {
-        return mLexer.getCurrentPosition();
+        return STATES[STATE_NORMAL];
     }
 
     @Override
-    public LineTokenizeResult<LexerPosition, Object> getState(int line) {
-        return null;
+    public synchronized LineTokenizeResult<LexerPosition, Span> getState(int line) {
+        if (line < 0 || line >= mLines.size()) {
+            return null;
+        }
+        return mLines.get(line);
     }
 
     @Override
     public boolean stateEquals(LexerPosition state, LexerPosition another) {
-        return state.equals(another);
+        return state.getState() == another.getState();
     }
 
     @Override
-    public LineTokenizeResult<LexerPosition, Object> tokenizeLine(CharSequence line, LexerPosition state) {
-        return null;
+    public LineTokenizeResult<LexerPosition, Span> tokenizeLine(CharSequence line,
+                                                               LexerPosition state) {
+        List<Span> spans = new ArrayList<>();
+        int offset = 0;
+        int endState = STATE_NORMAL;
+        int[] braces = NO_BRACES;
+        int braceCount = 0;
+
+        // the rest of a comment or a text block that started on a previous line
+        if (state.getState() == STATE_BLOCK_COMMENT) {
+            int end = findCommentEnd(line);
+            addSpan(spans, 0, EditorColorScheme.COMMENT);
+            if (end == -1) {
+                return new LineTokenizeResult<>(STATES[STATE_BLOCK_COMMENT], spans);
+            }
+            offset = end;
+        } else if (state.getState() == STATE_TEXT_BLOCK) {
+            int end = findTextBlockEnd(line, 0);
+            addSpan(spans, 0, EditorColorScheme.LITERAL);
+            if (end == -1) {
+                return new LineTokenizeResult<>(STATES[STATE_TEXT_BLOCK], spans);
+            }
+            offset = end;
+        }
+
+        synchronized (mLexer) {
+            mLexer.start(line, offset, line.length(), 0);
+            IElementType previous = null;
+            IElementType type;
+            while ((type = mLexer.getTokenType()) != null) {
+                int start = mLexer.getTokenStart();
+                int end = mLexer.getTokenEnd();
+                mLexer.advance();
+                if (type == TokenType.WHITE_SPACE) {
+                    continue;
+                }
+
+                if (type == JavaTokenType.LBRACE || type == JavaTokenType.RBRACE) {
+                    if (braceCount == braces.length) {
+                        braces = Arrays.copyOf(braces, Math.max(4, braceCount * 2));
+                    }
+                    braces[braceCount++] = type == JavaTokenType.LBRACE ? start : -start - 1;
+                }
+
+                if (type == JavaTokenType.IDENTIFIER) {
+                    addSpan(spans, start, getIdentifierColor(previous));
+                } else if (KEYWORDS.contains(type)) {
+                    addSpan(spans, start, EditorColorScheme.KEYWORD);
+                } else if (ElementType.JAVA_COMMENT_BIT_SET.contains(type)) {
+                    addSpan(spans, start, EditorColorScheme.COMMENT);
+                    if (type != JavaTokenType.END_OF_LINE_COMMENT
+                            && !isCommentTerminated(line, start, end)) {
+                        endState = STATE_BLOCK_COMMENT;
+                    }
+                } else if (ElementType.ALL_LITERALS.contains(type)) {
+                    addSpan(spans, start, EditorColorScheme.LITERAL);
+                    if (type == JavaTokenType.TEXT_BLOCK_LITERAL
+                            && findTextBlockEnd(line, start + 3) == -1) {
+                        endState = STATE_TEXT_BLOCK;
+                    }
+                } else {
+                    addSpan(spans, start, EditorColorScheme.OPERATOR);
+                }
+                previous = type;
+            }
+        }
+
+        if (spans.isEmpty()) {
+            addSpan(spans, 0, EditorColorScheme.TEXT_NORMAL);
+        }
+        if (braceCount == 0) {
+            return new LineTokenizeResult<>(STATES[endState], spans);
+        }
+        return new LineTokenizeResult<>(
+                new LineState(endState, Arrays.copyOf(braces, braceCount)), spans);
+    }
+
+    /**
+     * Must be called after the token has been consumed, the lexer points to the next one
+     */
+    private int getIdentifierColor(@Nullable IElementType previous) {
+        if (previous == JavaTokenType.AT) {
+            return EditorColorScheme.ANNOTATION;
+        }
+        while (mLexer.getTokenType() == TokenType.WHITE_SPACE) {
+            mLexer.advance();
+        }
+        if (mLexer.getTokenType() == JavaTokenType.LPARENTH
+                && (previous == null || !TOKENS_BEFORE_CALL.contains(previous))) {
+            return EditorColorScheme.FUNCTION_NAME;
+        }
+        return EditorColorScheme.TEXT_NORMAL;
+    }
+
+    private static void addSpan(List<Span> spans, int column, int color) {
+        if (spans.isEmpty() && column != 0) {
+            // the spans of a line must start at its first column
+            spans.add(Span.obtain(0, EditorColorScheme.TEXT_NORMAL));
+        }
+        if (!spans.isEmpty()) {
+            Span last = spans.get(spans.size() - 1);
+            if (last.style == color) {
+                return;
+            }
+            if (last.column == column) {
+                spans.set(spans.size() - 1, Span.obtain(column, color));
+                return;
+            }
+        }
+        spans.add(Span.obtain(column, color));
+    }
+
+    private static boolean isCommentTerminated(CharSequence line, int start, int end) {
+        // the shortest terminated comment is /**/
+        return end - start >= 4 && line.charAt(end - 2) == '*' && line.charAt(end - 1) == '/';
+    }
+
+    /**
+     * @return The index after the closing delimiter of a text block, or -1 if the text block
+     * does not end on this line
+     */
+    private static int findTextBlockEnd(CharSequence line, int from) {
+        for (int i = from; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (c == '\\') {
+                i++;
+            } else if (c == '"' && i + 2 < line.length()
+                    && line.charAt(i + 1) == '"' && line.charAt(i + 2) == '"') {
+                return i + 3;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @return The index after the end of a block comment, or -1 if the comment does not end
+     * on this line
+     */
+    private static int findCommentEnd(CharSequence line) {
+        for (int i = 1; i < line.length(); i++) {
+            if (line.charAt(i - 1) == '*' && line.charAt(i) == '/') {
+                return i + 1;
+            }
+        }
+        return -1;
     }
 
     @Override
-    public List<Span> generateSpansForLine(LineTokenizeResult<LexerPosition, Object> tokens) {
-        return null;
+    public List<Span> generateSpansForLine(LineTokenizeResult<LexerPosition, Span> tokens) {
+        // diagnostics are marked on the spans of the styles, the tokens of a line are kept
+        // as they were lexed
+        List<Span> spans = new ArrayList<>(tokens.tokens.size());
+        for (Span span : tokens.tokens) {
+            spans.add(span.copy());
+        }
+        return spans;
     }
 
     @Override
-    public void setReceiver(@Nullable StyleReceiver receiver) {
+    public synchronized void setReceiver(@Nullable StyleReceiver receiver) {
+        mReceiver = receiver;
+    }
 
+    @Override
+    public synchronized void reset(@NonNull ContentReference content,
+                                   @NonNull Bundle extraArguments) {
+        mContent = content;
+        rerun();
     }
 
     @Override
-    public void reset(@NonNull ContentReference content, @NonNull Bundle extraArguments) {
-        mLexer.start(content.getReference().toString());
+    public synchronized void insert(CharPosition start, CharPosition end,
+                                    CharSequence insertedContent) {
+        if (mContent == null || mStyles == null) {
+            return;
+        }
+        // the previous result of the edited line moves to the last inserted line, as that
+        // is the line that ends like it did
+        int addedLines = end.getLine() - start.getLine();
+        for (int i = 0; i < addedLines; i++) {
+            mLines.add(start.getLine(), null);
+        }
+        if (addedLines != 0) {
+            DiagnosticSpanMapUpdater.shiftDiagnosticsOnMultiLineInsert(mDiagnostics,
+                    start.getLine(), start.getColumn(), end.getLine(), end.getColumn());
+        } else {
+            DiagnosticSpanMapUpdater.shiftDiagnosticsOnSingleLineInsert(mDiagnostics,
+                    start.getLine(), start.getColumn(), end.getColumn());
+        }
+        update(start.getLine(), end.getLine(), addedLines);
+        analyzeInBackground();
     }
 
     @Override
-    public void insert(CharPosition start, CharPosition end, CharSequence insertedContent) {
+    public synchronized void delete(CharPosition start, CharPosition end,
+                                    CharSequence deletedContent) {
+        if (mContent == null || mStyles == null) {
+            return;
+        }
+        int removedLines = end.getLine() - start.getLine();
+        if (removedLines > 0) {
+            // keep the previous result of the last deleted line, the edited line ends like it
+            mLines.subList(start.getLine(), end.getLine()).clear();
+            DiagnosticSpanMapUpdater.shiftDiagnosticsOnMultiLineDelete(mDiagnostics,
+                    start.getLine(), start.getColumn(), end.getLine(), end.getColumn());
+        } else {
+            DiagnosticSpanMapUpdater.shiftDiagnosticsOnSingleLineDelete(mDiagnostics,
+                    start.getLine(), start.getColumn(), end.getColumn());
+        }
+        update(start.getLine(), start.getLine(), -removedLines);
+        analyzeInBackground();
+    }
+
+    /**
+     * Tokenizes the lines from {@code startLine} until the state at the end of a line after
+     * {@code endLine} is the same as before, then updates the spans of the lines that changed
+     *
+     * @param addedLines The number of lines inserted after {@code startLine}, negative if
+     *                   lines were removed
+     */
+    private void update(int startLine, int endLine, int addedLines) {
+        Content content = mContent.getReference();
+        int lineCount = content.getLineCount();
+        if (lineCount != mLines.size()) {
+            // edits were missed, start over
+            rerun();
+            return;
+        }
 
+        LexerPosition state = startLine == 0
+                ? getInitialState()
+                : mLines.get(startLine - 1).state;
+        int line = startLine;
+        for (; line < lineCount; line++) {
+            LineTokenizeResult<LexerPosition, Span> previous = mLines.get(line);
+            LineTokenizeResult<LexerPosition, Span> result =
+                    tokenizeLine(content.getLine(line), state);
+            mLines.set(line, result);
+            state = result.state;
+            if (line >= endLine && previous != null && stateEquals(previous.state, state)) {
+                break;
+            }
+        }
+        int lastLine = Math.min(line, lineCount - 1);
+
+        Spans spans = mStyles.getSpans();
+        Spans.Modifier modifier = spans.modify();
+        // the editor may have already moved the lines of the spans
+        if (addedLines != 0 && spans.getLineCount() != lineCount) {
+            for (int i = 0; i < addedLines; i++) {
+                // replaced below, every added line is tokenized again
+                List<Span> placeholder = new ArrayList<>(1);
+                placeholder.add(Span.obtain(0, EditorColorScheme.TEXT_NORMAL));
+                modifier.addLineAt(startLine, placeholder);
+            }
+            for (int i = 0; i < -addedLines; i++) {
+                modifier.deleteLineAt(startLine);
+            }
+        }
+        for (int i = startLine; i <= lastLine; i++) {
+            modifier.setSpansOnLine(i, generateSpansForLine(mLines.get(i)));
+        }
+        publish(spans);
     }
 
     @Override
-    public void delete(CharPosition start, CharPosition end, CharSequence deletedContent) {
+    public synchronized void rerun() {
+        if (mContent == null) {
+            return;
+        }
+        Content content = mContent.getReference();
+        mLines.clear();
+        LexerPosition state = getInitialState();
+        for (int line = 0; line < content.getLineCount(); line++) {
+            LineTokenizeResult<LexerPosition, Span> result =
+                    tokenizeLine(content.getLine(line), state);
+            mLines.add(result);
+            state = result.state;
+        }
+        publish(buildSpans());
+    }
 
+    private Spans buildSpans() {
+        MappedSpans.Builder builder = new MappedSpans.Builder(mLines.size());
+        for (int line = 0; line < mLines.size(); line++) {
+            for (Span span : generateSpansForLine(mLines.get(line))) {
+                builder.add(line, span);
+            }
+        }
+        builder.determine(mLines.size() - 1);
+        return builder.build();
+    }
+
+    /**
+     * Matches the braces kept in the state of each line to build the code blocks of the file
+     */
+    private Styles buildStyles(Spans spans) {
+        Styles styles = new Styles();
+        styles.spans = spans;
+
+        Stack<CodeBlock> blocks = new Stack<>();
+        int maxSwitch = 1;
+        int currSwitch = 0;
+        for (int line = 0; line < mLines.size(); line++) {
+            for (int brace : ((LineState) mLines.get(line).state).mBraces) {
+                if (brace >= 0) {
+                    if (blocks.isEmpty()) {
+                        if (currSwitch > maxSwitch) {
+                            maxSwitch = currSwitch;
+                        }
+                        currSwitch = 0;
+                    }
+                    currSwitch++;
+                    CodeBlock block = styles.obtainNewBlock();
+                    block.startLine = line;
+                    block.startColumn = brace;
+                    blocks.push(block);
+                } else if (!blocks.isEmpty()) {
+                    CodeBlock block = blocks.pop();
+                    block.endLine = line;
+                    block.endColumn = -brace - 1;
+                    if (block.startLine != block.endLine) {
+                        styles.addCodeBlock(block);
+                    }
+                }
+            }
+        }
+        if (blocks.isEmpty()) {
+            if (currSwitch > maxSwitch) {
+                maxSwitch = currSwitch;
+            }
+        }
+        styles.setSuppressSwitch(maxSwitch + 10);
+        styles.finishBuilding();
+        return styles;
+    }
+
+    private void publish(Spans spans) {
+        Styles styles = buildStyles(spans);
+        mStyles = styles;
+        Editor editor = mEditorReference.get();
+        if (editor != null) {
+            HighlightUtil.markDiagnostics(editor, mDiagnostics, styles);
+        }
+        if (mReceiver != null) {
+            mReceiver.setStyles(this, styles);
+        }
+    }
+
+    @Override
+    public synchronized void setDiagnostics(Editor editor, List<DiagnosticWrapper> diagnostics) {
+        mDiagnostics = diagnostics;
     }
 
+    /**
+     * Marks the diagnostics again on the spans of the last run, without lexing the file
+     */
     @Override
-    public void rerun() {
+    public synchronized void rerunWithoutBg() {
+        if (mContent == null || mStyles == null) {
+            return;
+        }
+        publish(buildSpans());
+    }
 
+    @Override
+    public synchronized void rerunWithBg() {
+        rerun();
+        analyzeInBackground();
     }
 
     @Override
-    public void destroy() {
+    public synchronized void destroy() {
+        mReceiver = null;
+        mContent = null;
+        mStyles = null;
+        mLines.clear();
+    }
+
+    private void analyzeInBackground() {
+        Editor editor = mEditorReference.get();
+        if (editor == null || mContent == null || !editor.isBackgroundAnalysisEnabled()) {
+            return;
+        }
+        if (!mPreferences.getBoolean(SharedPreferenceKeys.JAVA_ERROR_HIGHLIGHTING, true)) {
+            return;
+        }
+        String contents = mContent.getReference().toString();
+        sDebouncer.cancel();
+        sDebouncer.schedule(cancel -> {
+            doAnalyzeInBackground(editor, cancel, contents);
+            return Unit.INSTANCE;
+        });
+    }
+
+    private JavaCompilerService getCompiler(Editor editor) {
+        Project project = ProjectManager.getInstance()
+                .getCurrentProject();
+        if (project == null) {
+            return null;
+        }
+        if (project.isCompiling()) {
+            return null;
+        }
+        Module module = project.getModule(editor.getCurrentFile());
+        if (module instanceof JavaModule) {
+            JavaCompilerProvider provider = CompilerService.getInstance()
+                    .getIndex(JavaCompilerProvider.KEY);
+            if (provider != null) {
+                return provider.getCompiler(project, (JavaModule) module);
+            }
+        }
+        return null;
+    }
+
+    private void doAnalyzeInBackground(Editor editor, Function0<Boolean> cancel,
+                                       String contents) {
+        if (cancel.invoke()) {
+            return;
+        }
+        JavaCompilerService service = getCompiler(editor);
+        if (service == null) {
+            return;
+        }
+        File currentFile = editor.getCurrentFile();
+        if (currentFile == null) {
+            return;
+        }
+        // do not compile the file if it not yet closed as it will cause issues when
+        // compiling multiple files at the same time
+        Module module = ProjectManager.getInstance().getCurrentProject().getModule(currentFile);
+        if (!module.getFileManager().isOpened(currentFile)) {
+            return;
+        }
+        try {
+            ProgressManager.getInstance()
+                    .runLater(() -> editor.setAnalyzing(true));
+            // only the edited method is compiled again if the edit is inside of it
+            CompilerContainer container = service.compileIncrementally(
+                    currentFile.toPath(), contents);
+            if (BuildConfig.DEBUG) {
+                Log.d(TAG, "Compile statistics: " + service.getCompileStatistics());
+            }
+            container.run(task -> {
+                if (!cancel.invoke()) {
+                    List<DiagnosticWrapper> collect = task.diagnostics.stream()
+                            .map(d -> modifyDiagnostic(task, d))
+                            .peek(it -> ProgressManager.checkCanceled())
+                            .collect(Collectors.toList());
+                    editor.setDiagnostics(collect);
+
+                    ProgressManager.getInstance()
+                            .runLater(() -> editor.setAnalyzing(false), 300);
+                }
+            });
+        } catch (Throwable e) {
+            if (BuildConfig.DEBUG) {
+                Log.e(TAG, "Unable to get diagnostics", e);
+            }
+            service.close();
+            ProgressManager.getInstance()
+                    .runLater(() -> editor.setAnalyzing(false));
+        }
+    }
+
+    private DiagnosticWrapper modifyDiagnostic(CompileTask task,
+                                               Diagnostic<? extends JavaFileObject> diagnostic) {
+        DiagnosticWrapper wrapped = new DiagnosticWrapper(diagnostic);
+
+        // the diagnostics outside of the edited method are reported by a previous compilation
+        Diagnostic<? extends JavaFileObject> reported = diagnostic;
+        if (reported instanceof RelocatedDiagnostic) {
+            reported = ((RelocatedDiagnostic) reported).getDelegate();
+        }
+        if (reported instanceof ClientCodeWrapper.DiagnosticSourceUnwrapper) {
+            Trees trees = Trees.instance(task.task);
+            SourcePositions positions = trees.getSourcePositions();
+
+            JCDiagnostic jcDiagnostic = ((ClientCodeWrapper.DiagnosticSourceUnwrapper) reported).d;
+            JCDiagnostic.DiagnosticPosition diagnosticPosition =
+                    jcDiagnostic.getDiagnosticPosition();
+            JCTree tree = diagnosticPosition.getTree();
+
+            if (tree != null) {
+                TreePath treePath = trees.getPath(task.root(), tree);
+                String code = jcDiagnostic.getCode();
+
+                long start = diagnostic.getStartPosition();
+                long end = diagnostic.getEndPosition();
+                switch (code) {
+                    case ErrorCodes.MISSING_RETURN_STATEMENT:
+                        TreePath block = TreeUtil.findParentOfType(treePath, BlockTree.class);
+                        if (block != null) {
+                            // show error span only at the end parenthesis
+                            end = positions.getEndPosition(task.root(), block.getLeaf()) + 1;
+                            start = end - 2;
+                        }
+                        break;
+                    case ErrorCodes.DEPRECATED:
+                        if (treePath.getLeaf()
+                                    .getKind() == Tree.Kind.METHOD) {
+                            MethodTree methodTree = (MethodTree) treePath.getLeaf();
+                            if (methodTree.getBody() != null) {
+                                start = positions.getStartPosition(task.root(), methodTree);
+                                end = positions.getStartPosition(task.root(), methodTree.getBody());
+                            }
+                        }
+                        break;
+                }
 
+                wrapped.setStartPosition(start);
+                wrapped.setEndPosition(end);
+            }
+        }
+        return wrapped;
     }
 }
@@ -16,6 +16,7 @@ import com.tyron.completion.model.CompletionList;
 import com.tyron.editor.Editor;
 
 import java.util.Optional;
+import java.util.function.Consumer;
 
 public class JavaAutoCompleteProvider extends AbstractAutoCompleteProvider {
 
@@ -31,6 +32,13 @@ public class JavaAutoCompleteProvider extends AbstractAutoCompleteProvider {
     @Nullable
     @Override
     public CompletionList getCompletionList(String prefix, int line, int column) {
+        return getCompletionList(prefix, line, column, null);
+    }
+
+    @Nullable
+    @Override
+    public CompletionList getCompletionList(String prefix, int line, int column,
+                                            @Nullable Consumer<CompletionList> partialResults) {
         if (!mPreferences.getBoolean(SharedPreferenceKeys.JAVA_CODE_COMPLETION, true)) {
             return null;
         }
@@ -55,7 +63,8 @@ public class JavaAutoCompleteProvider extends AbstractAutoCompleteProvider {
                                 prefix,
                                 line,
                                 column,
-                                mEditor.getCaret().getStart());
+                                mEditor.getCaret().getStart(),
+                                partialResults);
             }
         }
         return null;
@@ -11,7 +11,6 @@ import com.google.googlejavaformat.java.FormatterException;
 import com.google.googlejavaformat.java.JavaFormatterOptions;
 import com.tyron.code.ui.editor.language.CompletionItemWrapper;
 import com.tyron.completion.model.CompletionItem;
-import com.tyron.completion.model.CompletionList;
 import com.tyron.editor.Editor;
 
 import java.util.ArrayList;
@@ -37,11 +36,11 @@ public class JavaLanguage implements Language {
 
     private Editor mEditor;
 
-    private final JavaAnalyzer mAnalyzer;
+    private final IncrementalJavaAnalyzeManager mAnalyzer;
 
     public JavaLanguage(Editor editor) {
         mEditor = editor;
-        mAnalyzer = new JavaAnalyzer(editor);
+        mAnalyzer = new IncrementalJavaAnalyzeManager(editor);
     }
 
     public boolean isAutoCompleteChar(char p1) {
@@ -100,14 +99,13 @@ public class JavaLanguage implements Language {
         }
         String prefix = CompletionHelper.computePrefix(content, position, this::isAutoCompleteChar);
         JavaAutoCompleteProvider provider = new JavaAutoCompleteProvider(mEditor);
-        CompletionList list = provider.getCompletionList(prefix, position.getLine(), position.getColumn());
-        if (list == null) {
-            return;
-        }
-        for (CompletionItem item : list.getItems()) {
-            CompletionItemWrapper wrapper = new CompletionItemWrapper(item);
-            publisher.addItem(wrapper);
-        }
+        // the items of each completion provider are shown as soon as they are available
+        provider.getCompletionList(prefix, position.getLine(), position.getColumn(), list -> {
+            for (CompletionItem item : list.getItems()) {
+                CompletionItemWrapper wrapper = new CompletionItemWrapper(item);
+                publisher.addItem(wrapper);
+            }
+        });
     }
 
     @Override
@@ -8,7 +8,9 @@ import androidx.annotation.NonNull;
 import com.tyron.builder.compiler.manifest.xml.XmlFormatPreferences;
 import com.tyron.builder.compiler.manifest.xml.XmlFormatStyle;
 import com.tyron.builder.compiler.manifest.xml.XmlPrettyPrinter;
+import com.tyron.code.ui.editor.language.CompletionItemWrapper;
 import com.tyron.code.util.ProjectUtils;
+import com.tyron.completion.model.CompletionItem;
 import com.tyron.completion.xml.lexer.XMLLexer;
 import com.tyron.editor.Editor;
 
@@ -22,13 +24,11 @@ import org.eclipse.lemminx.dom.parser.TokenType;
 import org.eclipse.lemminx.dom.parser.XMLScanner;
 
 import java.io.File;
-import java.util.List;
 
 import io.github.rosemoe.sora.lang.Language;
 import io.github.rosemoe.sora.lang.analysis.AnalyzeManager;
 import io.github.rosemoe.sora.lang.completion.CompletionCancelledException;
 import io.github.rosemoe.sora.lang.completion.CompletionHelper;
-import io.github.rosemoe.sora.lang.completion.CompletionItem;
 import io.github.rosemoe.sora.lang.completion.CompletionPublisher;
 import io.github.rosemoe.sora.lang.completion.SimpleCompletionItem;
 import io.github.rosemoe.sora.lang.smartEnter.NewlineHandleResult;
@@ -119,15 +119,13 @@ public class LanguageXML implements Language {
 									@NonNull CompletionPublisher publisher,
 									@NonNull Bundle extraArguments) throws CompletionCancelledException {
 		String prefix = CompletionHelper.computePrefix(content, position, this::isAutoCompleteChar);
-		List<CompletionItem> items =
-				new XMLAutoCompleteProvider(mEditor).getAutoCompleteItems(prefix,
-						position.getLine(), position.getColumn());
-		if (items == null) {
-			return;
-		}
-		for (CompletionItem item : items) {
-			publisher.addItem(item);
-		}
+		// the items of each completion provider are shown as soon as they are available
+		new XMLAutoCompleteProvider(mEditor).getCompletionList(prefix, position.getLine(),
+				position.getColumn(), list -> {
+					for (CompletionItem item : list.getItems()) {
+						publisher.addItem(new CompletionItemWrapper(item));
+					}
+				});
 	}
 
 	@Override
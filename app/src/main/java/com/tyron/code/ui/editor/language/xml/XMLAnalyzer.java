@@ -4,11 +4,9 @@ import android.graphics.Color;
 import android.os.Handler;
 import android.util.Log;
 
-import com.tyron.builder.compiler.BuildType;
-import com.tyron.builder.compiler.incremental.resource.IncrementalAapt2Task;
-import com.tyron.builder.exception.CompilationFailedException;
 import com.tyron.builder.log.ILogger;
 import com.tyron.builder.model.DiagnosticWrapper;
+import com.tyron.builder.model.SourceFileObject;
 import com.tyron.builder.project.Project;
 import com.tyron.builder.project.api.AndroidModule;
 import com.tyron.builder.project.api.Module;
@@ -24,6 +22,7 @@ import com.tyron.completion.java.compiler.CompilerContainer;
 import com.tyron.completion.java.compiler.JavaCompilerService;
 import com.tyron.completion.progress.ProgressManager;
 import com.tyron.completion.xml.lexer.XMLLexer;
+import com.tyron.completion.xml.repository.ResourceSymbolTable;
 import com.tyron.editor.Editor;
 
 import org.antlr.v4.runtime.CharStream;
@@ -38,7 +37,10 @@ import java.nio.charset.StandardCharsets;
 import java.time.Duration;
 import java.time.Instant;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.Stack;
 import java.util.concurrent.Executors;
@@ -55,6 +57,11 @@ import kotlin.Unit;
 public class XMLAnalyzer extends AbstractCodeAnalyzer<Object> {
 
     private static final Debouncer sDebouncer = new Debouncer(Duration.ofMillis(900L));
+    /**
+     * The symbol tables of the modules of {@link #sSymbolTablesProject}, keyed by module root
+     */
+    private static final Map<File, ResourceSymbolTable> sSymbolTables = new HashMap<>();
+    private static Project sSymbolTablesProject;
 
     private final WeakReference<Editor> mEditorReference;
     private final Stack<CodeBlock> mBlockLine = new Stack<>();
@@ -276,7 +283,7 @@ public class XMLAnalyzer extends AbstractCodeAnalyzer<Object> {
                 if (module instanceof AndroidModule) {
                     try {
                         doGenerate(project, (AndroidModule) module, file, contents, logger);
-                    } catch (IOException | CompilationFailedException e) {
+                    } catch (IOException e) {
                         if (BuildConfig.DEBUG) {
                             Log.e("XMLAnalyzer", "Failed compiling", e);
                         }
@@ -287,7 +294,7 @@ public class XMLAnalyzer extends AbstractCodeAnalyzer<Object> {
     }
 
     private void doGenerate(Project project, AndroidModule module, File file,
-                            String contents, ILogger logger) throws IOException, CompilationFailedException {
+                            String contents, ILogger logger) throws IOException {
         if (!file.canWrite() || !file.canRead()) {
             return;
         }
@@ -304,27 +311,52 @@ public class XMLAnalyzer extends AbstractCodeAnalyzer<Object> {
         }
 
         contents = fileContent.get().toString();
-        FileUtils.writeStringToFile(file, contents, StandardCharsets.UTF_8);
-        IncrementalAapt2Task task = new IncrementalAapt2Task(module, logger, false);
-
-        try {
-            task.prepare(BuildType.DEBUG);
-            task.run();
-        } catch (CompilationFailedException e) {
-            throw e;
+
+        ResourceSymbolTable symbolTable = getSymbolTable(project, module, logger);
+        if (!symbolTable.updateFile(file, contents)) {
+            // the R class does not change, the file is linked when the project is built
+            return;
         }
 
-        // work around to refresh R.java file
+        String resourceContents = symbolTable.generateRClass();
         File resourceClass = module.getJavaFile(module.getPackageName() + ".R");
-        if (resourceClass != null) {
-            JavaCompilerProvider provider =
-                    CompilerService.getInstance().getIndex(JavaCompilerProvider.KEY);
-            JavaCompilerService service = provider.getCompiler(project, module);
+        if (resourceClass == null) {
+            resourceClass = new File(module.getBuildDirectory(),
+                    "gen/" + module.getPackageName().replace('.', '/') + "/R.java");
+            FileUtils.writeStringToFile(resourceClass, resourceContents, StandardCharsets.UTF_8);
+            module.addJavaFile(resourceClass);
+        }
 
-            CompilerContainer container = service.compile(resourceClass.toPath());
-            container.run(__ -> {
+        JavaCompilerProvider provider =
+                CompilerService.getInstance().getIndex(JavaCompilerProvider.KEY);
+        JavaCompilerService service = provider.getCompiler(project, module);
 
-            });
+        // the generated class is not opened as a snapshot, as the snapshots are written
+        // to disk and would replace the R class generated by aapt2
+        SourceFileObject source = new SourceFileObject(resourceClass.toPath(), resourceContents,
+                Instant.now());
+        CompilerContainer container = service.compile(Collections.singletonList(source));
+        container.run(__ -> {
+
+        });
+    }
+
+    private static ResourceSymbolTable getSymbolTable(Project project,
+                                                      AndroidModule module,
+                                                      ILogger logger) throws IOException {
+        synchronized (sSymbolTables) {
+            if (sSymbolTablesProject != project) {
+                // another project has been opened, the tables of the previous one are stale
+                sSymbolTables.clear();
+                sSymbolTablesProject = project;
+            }
+            ResourceSymbolTable symbolTable = sSymbolTables.get(module.getRootFile());
+            if (symbolTable == null || symbolTable.isOutdated()) {
+                symbolTable = new ResourceSymbolTable(module, logger);
+                symbolTable.initialize();
+                sSymbolTables.put(module.getRootFile(), symbolTable);
+            }
+            return symbolTable;
         }
     }
 }
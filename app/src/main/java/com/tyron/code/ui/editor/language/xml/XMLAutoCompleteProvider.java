@@ -20,6 +20,7 @@ import java.util.ArrayList;
 import java.util.List;
 
 import java.util.Stack;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
 public class XMLAutoCompleteProvider extends AbstractAutoCompleteProvider {
@@ -32,6 +33,12 @@ public class XMLAutoCompleteProvider extends AbstractAutoCompleteProvider {
 
     @Override
     public CompletionList getCompletionList(String prefix, int line, int column) {
+        return getCompletionList(prefix, line, column, null);
+    }
+
+    @Override
+    public CompletionList getCompletionList(String prefix, int line, int column,
+                                            Consumer<CompletionList> partialResults) {
         Project currentProject = ProjectManager.getInstance().getCurrentProject();
         if (currentProject == null) {
             return null;
@@ -47,6 +54,6 @@ public class XMLAutoCompleteProvider extends AbstractAutoCompleteProvider {
         }
         return CompletionEngine.getInstance().complete(currentProject, module,
                 currentFile, mEditor.getContent().toString(), prefix, line, column,
-                mEditor.getCaret().getStart());
+                mEditor.getCaret().getStart(), partialResults);
     }
 }
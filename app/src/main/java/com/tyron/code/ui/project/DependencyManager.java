@@ -140,7 +140,7 @@ public class DependencyManager {
         List<Pom> resolvedPoms = mResolver.resolveDependencies(declaredDependencies);
 
         listener.onTaskStarted("Downloading dependencies");
-        List<Library> files = getFiles(resolvedPoms, logger);
+        List<Library> files = getFiles(resolvedPoms);
 
         listener.onTaskStarted("Checking dependencies");
         checkLibraries(project, logger, files);
@@ -240,20 +240,14 @@ public class DependencyManager {
                 .apply();
     }
 
-    public List<Library> getFiles(List<Pom> resolvedPoms, ILogger logger) {
+    public List<Library> getFiles(List<Pom> resolvedPoms) {
         List<Library> files = new ArrayList<>();
-        for (Pom resolvedPom : resolvedPoms) {
-            try {
-                File file = mRepository.getLibrary(resolvedPom);
-                if (file != null) {
-                    Library library = new Library();
-                    library.setSourceFile(file);
-                    library.setDeclaration(resolvedPom.getDeclarationString());
-                    files.add(library);
-                }
-            } catch (IOException e) {
-                logger.error("Unable to download " + resolvedPom + ": " + e.getMessage());
-            }
+        Map<Pom, File> libraries = mResolver.getLibraries(resolvedPoms);
+        for (Map.Entry<Pom, File> entry : libraries.entrySet()) {
+            Library library = new Library();
+            library.setSourceFile(entry.getValue());
+            library.setDeclaration(entry.getKey().getDeclarationString());
+            files.add(library);
         }
         return files;
     }
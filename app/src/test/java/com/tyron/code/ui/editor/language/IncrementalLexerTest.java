@@ -0,0 +1,166 @@
+package com.tyron.code.ui.editor.language;
+
+import static com.google.common.truth.Truth.assertThat;
+import static com.google.common.truth.Truth.assertWithMessage;
+
+import com.tyron.code.ui.editor.language.groovy.GroovyLexer;
+import com.tyron.code.ui.editor.language.kotlin.KotlinLexer;
+
+import org.antlr.v4.runtime.CharStream;
+import org.antlr.v4.runtime.Lexer;
+import org.antlr.v4.runtime.Token;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Applies random edits to a text and checks that the tokens of the incremental lexer are
+ * the same as the ones of a full lex after each analysis.
+ */
+public class IncrementalLexerTest {
+
+    private static final int EDITS = 2000;
+
+    /**
+     * Fragments that change the mode or the state of the lexers
+     */
+    private static final String[] FRAGMENTS = {
+            "\"", "\"\"\"", "'", "/*", "*/", "//", "${", "$", "}", "{", "(", ")", "\n", " ",
+            "\\", "name", "fun ", "class ", "123", "1.5e3", ".", "=", "\"text\"", "// end\n",
+            "/** doc */", "\"a ${b} c\"", "'''x'''", "/x/", "def "
+    };
+
+    private static final String KOTLIN = "package test\n" +
+            "\n" +
+            "/* a block\n" +
+            "   comment */\n" +
+            "class Main(val name: String) {\n" +
+            "    fun greet() = \"Hello, ${name.trim()}!\"\n" +
+            "    val raw = \"\"\"line\n" +
+            "        $name\n" +
+            "    \"\"\"\n" +
+            "    // the end\n" +
+            "}\n";
+
+    private static final String GROOVY = "plugins {\n" +
+            "    id 'com.android.application'\n" +
+            "}\n" +
+            "/* a block\n" +
+            "   comment */\n" +
+            "def name = \"world ${project.name}\"\n" +
+            "def slashy = /a\\/b/\n" +
+            "android {\n" +
+            "    compileSdk 31\n" +
+            "    defaultConfig { minSdk 21 }\n" +
+            "}\n";
+
+    @Test
+    public void testKotlin() {
+        check(KotlinLexer::new, KOTLIN, 1);
+    }
+
+    @Test
+    public void testGroovy() {
+        IncrementalLexer.LexerProvider provider = new IncrementalLexer.LexerProvider() {
+            @Override
+            public Lexer getLexer(CharStream input) {
+                return new GroovyLexer(input);
+            }
+
+            @Override
+            public Object saveLexerState(Lexer lexer) {
+                return ((GroovyLexer) lexer).saveState();
+            }
+
+            @Override
+            public boolean restoreLexerState(Lexer lexer, Object state) {
+                if (!(state instanceof GroovyLexer.State)) {
+                    return false;
+                }
+                ((GroovyLexer) lexer).restoreState((GroovyLexer.State) state);
+                return true;
+            }
+        };
+        check(provider, GROOVY, 2);
+    }
+
+    @Test
+    public void testReusesTokens() {
+        IncrementalLexer lexer = new IncrementalLexer(KotlinLexer::new);
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 200; i++) {
+            text.append("val value").append(i).append(" = ").append(i).append('\n');
+        }
+        List<Token> tokens = lexer.lex(text, () -> false);
+        assertThat(tokens).isNotNull();
+        int count = tokens.size();
+
+        int offset = text.indexOf("value100");
+        text.insert(offset, "x");
+        lexer.onEdit(offset, 0, 1);
+        assertSameTokens(lexer.lex(text, () -> false), lex(KotlinLexer::new, text));
+        assertThat(lexer.getLexedCount()).isLessThan(count / 10);
+    }
+
+    private static void check(IncrementalLexer.LexerProvider provider, String initial,
+                              long seed) {
+        IncrementalLexer lexer = new IncrementalLexer(provider);
+        StringBuilder text = new StringBuilder(initial);
+        Random random = new Random(seed);
+
+        assertSameTokens(lexer.lex(text, () -> false), lex(provider, text));
+        for (int i = 0; i < EDITS; i++) {
+            // a few edits may be made before the next analysis
+            int batch = 1 + random.nextInt(3);
+            for (int j = 0; j < batch; j++) {
+                edit(lexer, text, random);
+            }
+            List<Token> tokens = lexer.lex(text, () -> false);
+            assertWithMessage("edit %s of %s", i, text).that(tokens).isNotNull();
+            assertSameTokens(tokens, lex(provider, text));
+        }
+    }
+
+    private static void edit(IncrementalLexer lexer, StringBuilder text, Random random) {
+        int offset = random.nextInt(text.length() + 1);
+        if (random.nextBoolean() && offset < text.length()) {
+            int removed = 1 + random.nextInt(Math.min(8, text.length() - offset));
+            text.delete(offset, offset + removed);
+            lexer.onEdit(offset, removed, 0);
+        } else {
+            String inserted = FRAGMENTS[random.nextInt(FRAGMENTS.length)];
+            text.insert(offset, inserted);
+            lexer.onEdit(offset, 0, inserted.length());
+        }
+    }
+
+    private static List<Token> lex(IncrementalLexer.LexerProvider provider,
+                                   CharSequence text) {
+        Lexer lexer = provider.getLexer(new CharSequenceCharStream(text));
+        lexer.removeErrorListeners();
+        List<Token> tokens = new ArrayList<>();
+        Token token;
+        while ((token = lexer.nextToken()).getType() != Token.EOF) {
+            tokens.add(token);
+        }
+        return tokens;
+    }
+
+    private static void assertSameTokens(List<Token> actual, List<Token> expected) {
+        assertThat(actual).isNotNull();
+        assertThat(describe(actual)).containsExactlyElementsIn(describe(expected)).inOrder();
+    }
+
+    private static List<String> describe(List<Token> tokens) {
+        List<String> descriptions = new ArrayList<>(tokens.size());
+        for (Token token : tokens) {
+            descriptions.add(token.getType() + ":" + token.getChannel() + ":" +
+                             token.getStartIndex() + "-" + token.getStopIndex() + ":" +
+                             token.getLine() + ":" + token.getCharPositionInLine() + ":" +
+                             token.getText());
+        }
+        return descriptions;
+    }
+}
@@ -46,7 +46,7 @@ public class ApkSigner {
     }
 
 
-    private String getTestKeyFilePath() {
+    public static String getTestKeyFilePath() {
         if (sTestKeyFile != null) {
             return sTestKeyFile.getAbsolutePath();
         }
@@ -63,7 +63,7 @@ public class ApkSigner {
         return check.getAbsolutePath();
     }
 
-    private String getTestCertFilePath() {
+    public static String getTestCertFilePath() {
         if (sTestCertFile != null) {
             return sTestCertFile.getAbsolutePath();
         }
@@ -52,6 +52,9 @@ public abstract class BuilderImpl<T extends Module> implements Builder<T> {
             Task<? super T> task = tasks.get(i);
             final float current = i;
             getLogger().info("Running " + task.getName());
+            task.setProgressListener((message, progress) ->
+                    mMainHandler.post(() -> updateProgress(task.getName(), message,
+                            (int) (((current + progress / 100f) / tasks.size()) * 100f))));
             try {
                 mMainHandler.post(() -> updateProgress(task.getName(), "Task started",
                         (int) ((current / (float) tasks.size()) * 100f)));
@@ -65,11 +68,22 @@ public abstract class BuilderImpl<T extends Module> implements Builder<T> {
                 }
                 task.clean();
                 mTasksRan.forEach(Task::clean);
+                // the tasks that succeeded have already updated their caches
+                saveCaches();
                 throw e;
             }
             mTasksRan.add(task);
         }
         mTasksRan.forEach(Task::clean);
+        saveCaches();
+    }
+
+    private void saveCaches() {
+        try {
+            getModule().saveCaches();
+        } catch (IOException e) {
+            getLogger().warning("Unable to save build caches: " + e.getMessage());
+        }
     }
 
     public abstract List<Task<? super T>> getTasks(BuildType type);
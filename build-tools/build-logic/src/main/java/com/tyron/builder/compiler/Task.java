@@ -11,8 +11,20 @@ import java.io.IOException;
  */
 public abstract class Task<T extends Module> {
 
+    /**
+     * Receives the progress made inside of a task
+     */
+    public interface ProgressListener {
+        /**
+         * @param message  The message to display
+         * @param progress The progress of the task from 0 to 100
+         */
+        void onProgress(String message, int progress);
+    }
+
     private final T mProject;
     private final ILogger mLogger;
+    private ProgressListener mProgressListener;
 
     public Task(T project, ILogger logger) {
         mProject = project;
@@ -33,6 +45,20 @@ public abstract class Task<T extends Module> {
         return mProject;
     }
 
+    void setProgressListener(ProgressListener listener) {
+        mProgressListener = listener;
+    }
+
+    /**
+     * Reports the progress of a long running task, may be called from any thread
+     */
+    protected void updateProgress(String message, int progress) {
+        ProgressListener listener = mProgressListener;
+        if (listener != null) {
+            listener.onProgress(message, progress);
+        }
+    }
+
     /**
      * Called by {@link ApkBuilder} to display the name of the task to the logs
      */
@@ -1,13 +1,14 @@
 package com.tyron.builder.compiler.apk;
 
-import android.net.Uri;
+import static com.android.sdklib.build.ApkBuilder.checkFileForPackaging;
+import static com.android.sdklib.build.ApkBuilder.checkFolderForPackaging;
 
-import com.android.sdklib.build.ApkBuilder;
-import com.android.sdklib.build.ApkCreationException;
 import com.android.sdklib.build.DuplicateFileException;
-import com.android.sdklib.build.SealedApkException;
 import com.tyron.builder.compiler.BuildType;
 import com.tyron.builder.compiler.Task;
+import com.tyron.builder.compiler.incremental.apk.ApkChunkDigests;
+import com.tyron.builder.compiler.incremental.apk.IncrementalApkWriter;
+import com.tyron.builder.compiler.incremental.apk.ZipArchive;
 import com.tyron.builder.exception.CompilationFailedException;
 import com.tyron.builder.log.ILogger;
 import com.tyron.builder.project.api.AndroidModule;
@@ -15,10 +16,20 @@ import com.tyron.builder.project.api.AndroidModule;
 import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
 import java.util.List;
+import java.util.Locale;
 
+/**
+ * Packages the APK incrementally, the compressed contents of unchanged entries are copied
+ * from the previous APK and the entries of the resources and library jars are copied without
+ * being compressed again.
+ */
 public class PackageTask extends Task<AndroidModule> {
 
+    private static final String GDB_SERVER = "gdbserver";
+
     /**
      * List of extra dex files not including the main dex file
      */
@@ -39,8 +50,20 @@ public class PackageTask extends Task<AndroidModule> {
      * The output apk file
      */
     private File mApk;
+    /**
+     * The chunk digests of the apk used when signing it
+     */
+    private File mDigestsFile;
     private BuildType mBuildType;
 
+    /**
+     * @return The file that stores the chunk digests of the unsigned apk, shared with
+     * {@link SignTask}
+     */
+    public static File getDigestsFile(AndroidModule module) {
+        return new File(module.getBuildDirectory(), "intermediate/apk/digests.bin");
+    }
+
     public PackageTask(AndroidModule project, ILogger logger) {
         super(project, logger);
     }
@@ -59,6 +82,7 @@ public class PackageTask extends Task<AndroidModule> {
         mApk = new File(mBinDir, "generated.apk");
         mDexFile = new File(mBinDir, "classes.dex");
         mGeneratedRes = new File(mBinDir, "generated.apk.res");
+        mDigestsFile = getDigestsFile(getModule());
         File[] binFiles = mBinDir.listFiles();
         if (binFiles != null) {
             for (File child : binFiles) {
@@ -70,6 +94,7 @@ public class PackageTask extends Task<AndroidModule> {
                 }
             }
         }
+        mDexFiles.sort(Comparator.comparing(File::getName));
 
         mLibraries.addAll(getModule().getLibraries());
 
@@ -78,68 +103,163 @@ public class PackageTask extends Task<AndroidModule> {
 
     @Override
     public void run() throws IOException, CompilationFailedException {
+        long previousLength = mApk.length();
+        long previousLastModified = mApk.lastModified();
 
-        int dexCount = 1;
+        IncrementalApkWriter writer = new IncrementalApkWriter(mApk);
         try {
-            ApkBuilder builder = new ApkBuilder(
-                    mApk.getAbsolutePath(),
-                    mGeneratedRes.getAbsolutePath(),
-                    mDexFile.getAbsolutePath(),
-                    null,
-                    null);
-
-            for (File extraDex : mDexFiles) {
-                dexCount++;
-                builder.addFile(extraDex, Uri.parse(extraDex.getAbsolutePath()).getLastPathSegment());
-            }
-
+            // the entries that change the least are written first, so the region at the start
+            // of the apk that stays the same between builds is as large as possible
             for (File library : mLibraries) {
-                builder.addResourcesFromJar(library);
+                addResourcesFromJar(writer, library);
 
                 File parent = library.getParentFile();
                 if (parent != null) {
                     File jniFolder = new File(parent, "jni");
                     if (jniFolder.exists() && jniFolder.isDirectory()) {
-                        builder.addNativeLibraries(jniFolder);
+                        addNativeLibraries(writer, jniFolder);
                     }
                 }
             }
 
             if (getModule().getNativeLibrariesDirectory().exists()) {
-                builder.addNativeLibraries(getModule().getNativeLibrariesDirectory());
+                addNativeLibraries(writer, getModule().getNativeLibrariesDirectory());
+            }
+
+            File resourcesDir = getModule().getResourcesDir();
+            if (resourcesDir.exists()) {
+                addSourceFolder(writer, resourcesDir, "");
             }
 
+            try (ZipArchive resources = ZipArchive.open(mGeneratedRes)) {
+                for (ZipArchive.Entry entry : resources.getEntries()) {
+                    if (!entry.isDirectory()) {
+                        writer.addEntry(entry.getName(), resources, entry);
+                    }
+                }
+            }
+
+            int dexCount = 1 + mDexFiles.size();
             if (mBuildType == BuildType.DEBUG) {
-                builder.setDebugMode(true);
                 // For debug mode, dex files are not merged to save up compile time
                 for (File it : getModule().getLibraries()) {
                     File parent = it.getParentFile();
                     if (parent != null) {
                         File[] dexFiles = parent.listFiles(c -> c.getName().endsWith(".dex"));
                         if (dexFiles != null) {
-                            for (File dexFile : dexFiles) {
+                            for (File dexFile : sorted(dexFiles)) {
                                 dexCount++;
-                                builder.addFile(dexFile, "classes" + dexCount + ".dex");
+                                writer.addFile("classes" + dexCount + ".dex", dexFile);
                             }
                         }
                     }
                 }
             }
 
-            File resourcesDir = getModule().getResourcesDir();
-            if (resourcesDir.exists()) {
-                builder.addSourceFolder(resourcesDir);
+            for (File extraDex : mDexFiles) {
+                writer.addFile(extraDex.getName(), extraDex);
             }
-
-            builder.sealApk();
-        } catch (ApkCreationException | SealedApkException e) {
-            throw new CompilationFailedException(e);
+            writer.addFile("classes.dex", mDexFile);
         } catch (DuplicateFileException e) {
+            writer.abort();
             String message = "Duplicate files from two libraries detected. \n";
             message += "File1: " + e.getFile1() + " \n";
             message += "File2: " + e.getFile2() + " \n";
             message += "Archive path: " + e.getArchivePath();
             throw new CompilationFailedException(message);
+        } catch (IOException | RuntimeException e) {
+            writer.abort();
+            throw e;
         }
+        writer.close();
+
+        getLogger().debug("Reused " + writer.getReusedCount() + " of " +
+                writer.getEntryCount() + " entries from the previous APK.");
+
+        ApkChunkDigests digests = ApkChunkDigests.read(mDigestsFile);
+        digests.retain(previousLength, previousLastModified, writer.getUnchangedLength());
+        digests.setApk(mApk);
+        digests.write(mDigestsFile);
+    }
+
+    /**
+     * Adds the java resources of the jar, class files and files in META-INF are skipped
+     */
+    private void addResourcesFromJar(IncrementalApkWriter writer, File jar)
+            throws IOException, DuplicateFileException {
+        if (!jar.exists()) {
+            return;
+        }
+        try (ZipArchive archive = ZipArchive.open(jar)) {
+            for (ZipArchive.Entry entry : archive.getEntries()) {
+                if (!entry.isDirectory() && isJavaResource(entry.getName())) {
+                    writer.addEntry(entry.getName(), archive, entry);
+                }
+            }
+        }
+    }
+
+    private static boolean isJavaResource(String archivePath) {
+        String[] segments = archivePath.split("/");
+        if (segments.length == 0) {
+            return false;
+        }
+        for (int i = 0; i < segments.length - 1; i++) {
+            if (!checkFolderForPackaging(segments[i])) {
+                return false;
+            }
+        }
+        return checkFileForPackaging(segments[segments.length - 1]);
+    }
+
+    /**
+     * Adds the native libraries in the folder, which contains a folder for each ABI
+     */
+    private void addNativeLibraries(IncrementalApkWriter writer, File nativeFolder)
+            throws IOException, DuplicateFileException {
+        File[] abiList = nativeFolder.listFiles();
+        if (abiList == null) {
+            return;
+        }
+        for (File abi : sorted(abiList)) {
+            File[] libs = abi.listFiles();
+            if (!abi.isDirectory() || libs == null) {
+                continue;
+            }
+            for (File lib : sorted(libs)) {
+                String name = lib.getName();
+                boolean isNativeLibrary = name.toLowerCase(Locale.ROOT).endsWith(".so") ||
+                        (mBuildType == BuildType.DEBUG && GDB_SERVER.equals(name));
+                if (lib.isFile() && isNativeLibrary) {
+                    writer.addFile("lib/" + abi.getName() + "/" + name, lib);
+                }
+            }
+        }
+    }
+
+    private void addSourceFolder(IncrementalApkWriter writer, File folder, String path)
+            throws IOException, DuplicateFileException {
+        File[] children = folder.listFiles();
+        if (children == null) {
+            return;
+        }
+        for (File child : sorted(children)) {
+            if (child.isDirectory()) {
+                if (checkFolderForPackaging(child.getName())) {
+                    addSourceFolder(writer, child, path + child.getName() + "/");
+                }
+            } else if (checkFileForPackaging(child.getName())) {
+                writer.addFile(path + child.getName(), child);
+            }
+        }
+    }
+
+    /**
+     * Files are listed in an unspecified order, they are sorted so the entries are written in
+     * the same order on every build
+     */
+    private static File[] sorted(File[] files) {
+        Arrays.sort(files, Comparator.comparing(File::getName));
+        return files;
     }
 }
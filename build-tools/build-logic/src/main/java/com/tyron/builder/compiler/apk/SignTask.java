@@ -3,6 +3,8 @@ package com.tyron.builder.compiler.apk;
 import com.tyron.builder.compiler.ApkSigner;
 import com.tyron.builder.compiler.BuildType;
 import com.tyron.builder.compiler.Task;
+import com.tyron.builder.compiler.incremental.apk.ApkChunkDigests;
+import com.tyron.builder.compiler.incremental.apk.IncrementalApkSigner;
 import com.tyron.builder.exception.CompilationFailedException;
 import com.tyron.builder.log.ILogger;
 import com.tyron.builder.project.api.AndroidModule;
@@ -11,11 +13,15 @@ import org.apache.commons.io.FileUtils;
 
 import java.io.File;
 import java.io.IOException;
+import java.security.GeneralSecurityException;
 
 public class SignTask extends Task<AndroidModule> {
 
     private File mInputApk;
     private File mOutputApk;
+    private File mDigestsFile;
+    private boolean mAligned;
+    private int mMinSdk;
 
     public SignTask(AndroidModule project, ILogger logger) {
         super(project, logger);
@@ -31,9 +37,12 @@ public class SignTask extends Task<AndroidModule> {
         mInputApk = new File(getModule().getBuildDirectory(), "bin/aligned.apk");
         mOutputApk = new File(getModule().getBuildDirectory(), "bin/signed.apk");
 
-        if (!mInputApk.exists()) {
+        mAligned = mInputApk.exists();
+        if (!mAligned) {
             mInputApk = new File(getModule().getBuildDirectory(), "bin/generated.apk");
         }
+        mDigestsFile = PackageTask.getDigestsFile(getModule());
+        mMinSdk = getModule().getMinSdk();
 
         if (!mInputApk.exists()) {
             throw new IOException("Unable to find generated apk file.");
@@ -44,15 +53,39 @@ public class SignTask extends Task<AndroidModule> {
 
     @Override
     public void run() throws IOException, CompilationFailedException {
-        ApkSigner signer = new ApkSigner(mInputApk.getAbsolutePath(),
-                mOutputApk.getAbsolutePath(), ApkSigner.Mode.TEST);
+        if (mMinSdk >= IncrementalApkSigner.MIN_SDK_VERSION) {
+            signIncrementally();
+        } else {
+            // the JAR signature is needed below API 24, every entry is digested again
+            ApkSigner signer = new ApkSigner(mInputApk.getAbsolutePath(),
+                    mOutputApk.getAbsolutePath(), ApkSigner.Mode.TEST);
+
+            try {
+                signer.sign();
+            } catch (Exception e) {
+                throw new CompilationFailedException(e);
+            }
+        }
+
+        // the generated apk is kept so the next build can reuse its entries
+        if (mAligned) {
+            FileUtils.forceDelete(mInputApk);
+        }
+    }
 
+    private void signIncrementally() throws IOException, CompilationFailedException {
+        // zipalign moves the entries, so the saved digests are not used for the aligned apk
+        ApkChunkDigests digests = mAligned ? null : ApkChunkDigests.read(mDigestsFile);
         try {
-            signer.sign();
-        } catch (Exception e) {
+            IncrementalApkSigner signer = IncrementalApkSigner.create(
+                    new File(ApkSigner.getTestKeyFilePath()),
+                    new File(ApkSigner.getTestCertFilePath()));
+            signer.sign(mInputApk, mOutputApk, digests);
+        } catch (GeneralSecurityException e) {
             throw new CompilationFailedException(e);
         }
-
-        FileUtils.forceDelete(mInputApk);
+        if (digests != null) {
+            digests.write(mDigestsFile);
+        }
     }
 }
@@ -0,0 +1,142 @@
+package com.tyron.builder.compiler.incremental.apk;
+
+import androidx.annotation.NonNull;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The digests of the 1 MB chunks of the entries of an unsigned APK, computed while signing it
+ * with the APK Signature Scheme v2.
+ *
+ * The digests are saved along with the length and last modified time of the APK they were
+ * computed for. When the APK is packaged again, {@link #retain(long, long, long)} keeps only
+ * the chunks before the first changed entry so the signer only digests the rest.
+ */
+public class ApkChunkDigests {
+
+    private static final int MAGIC = 0x41434447;
+    private static final int VERSION = 1;
+    private static final int DIGEST_SIZE = 32;
+
+    /**
+     * @return The digests saved in the file, or empty digests if it cannot be read
+     */
+    @NonNull
+    public static ApkChunkDigests read(@NonNull File file) {
+        ApkChunkDigests digests = new ApkChunkDigests();
+        if (!file.exists()) {
+            return digests;
+        }
+        try (DataInputStream in = new DataInputStream(
+                new BufferedInputStream(new FileInputStream(file)))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                return digests;
+            }
+            digests.mApkLength = in.readLong();
+            digests.mApkLastModified = in.readLong();
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                byte[] digest = new byte[DIGEST_SIZE];
+                in.readFully(digest);
+                digests.mDigests.add(digest);
+            }
+        } catch (IOException e) {
+            return new ApkChunkDigests();
+        }
+        return digests;
+    }
+
+    private long mApkLength = -1;
+    private long mApkLastModified = -1;
+    private final List<byte[]> mDigests = new ArrayList<>();
+
+    /**
+     * @return Whether the digests were computed for the current contents of the APK
+     */
+    public boolean isFor(@NonNull File apk) {
+        return isFor(apk.length(), apk.lastModified());
+    }
+
+    private boolean isFor(long length, long lastModified) {
+        return mApkLength == length && mApkLastModified == lastModified;
+    }
+
+    /**
+     * Keeps the digests of the chunks that are entirely in the unchanged region of an APK
+     * that has been packaged again.
+     *
+     * @param previousLength       The length of the APK before it was packaged again
+     * @param previousLastModified The last modified time of the APK before it was packaged
+     * @param unchangedLength      The length of the region at the start of the APK that was
+     *                             not changed
+     */
+    public void retain(long previousLength, long previousLastModified, long unchangedLength) {
+        if (!isFor(previousLength, previousLastModified)) {
+            mDigests.clear();
+            return;
+        }
+        int count = (int) Math.min(mDigests.size(),
+                unchangedLength / IncrementalApkSigner.CHUNK_SIZE);
+        mDigests.subList(count, mDigests.size()).clear();
+    }
+
+    /**
+     * Marks the digests as computed for the current contents of the APK
+     */
+    public void setApk(@NonNull File apk) {
+        mApkLength = apk.length();
+        mApkLastModified = apk.lastModified();
+    }
+
+    public int size() {
+        return mDigests.size();
+    }
+
+    @NonNull
+    byte[] get(int index) {
+        return mDigests.get(index);
+    }
+
+    void set(@NonNull List<byte[]> digests) {
+        mDigests.clear();
+        mDigests.addAll(digests);
+    }
+
+    /**
+     * Saves the digests, the file is replaced atomically
+     */
+    public void write(@NonNull File file) throws IOException {
+        File parent = file.getParentFile();
+        if (parent != null && !parent.exists() && !parent.mkdirs()) {
+            throw new IOException("Unable to create directory " + parent);
+        }
+        File temp = new File(file.getPath() + ".tmp");
+        try (FileOutputStream fileOut = new FileOutputStream(temp)) {
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(fileOut));
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(mApkLength);
+            out.writeLong(mApkLastModified);
+            out.writeInt(mDigests.size());
+            for (byte[] digest : mDigests) {
+                out.write(digest);
+            }
+            out.flush();
+            fileOut.getFD().sync();
+        }
+        if (!temp.renameTo(file)) {
+            //noinspection ResultOfMethodCallIgnored
+            temp.delete();
+            throw new IOException("Unable to save chunk digests to " + file);
+        }
+    }
+}
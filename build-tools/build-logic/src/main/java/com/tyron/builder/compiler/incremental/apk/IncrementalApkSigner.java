@@ -0,0 +1,325 @@
+package com.tyron.builder.compiler.incremental.apk;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.GeneralSecurityException;
+import java.security.KeyFactory;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.PrivateKey;
+import java.security.PublicKey;
+import java.security.Signature;
+import java.security.cert.CertificateFactory;
+import java.security.cert.X509Certificate;
+import java.security.spec.InvalidKeySpecException;
+import java.security.spec.PKCS8EncodedKeySpec;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.IntStream;
+
+/**
+ * Signs APKs with the APK Signature Scheme v2 only, reusing the digests of the chunks that
+ * did not change since the APK was last signed.
+ *
+ * The v2 scheme digests the APK in 1 MB chunks, so when {@link IncrementalApkWriter} keeps
+ * the start of the APK the same, the digests of the chunks in that region are read from
+ * {@link ApkChunkDigests} and only the remaining chunks are digested.
+ *
+ * Since the JAR signature is not written, the APK can only be installed on Android 7.0
+ * (API level 24) and above.
+ */
+public class IncrementalApkSigner {
+
+    /**
+     * The minimum API level that verifies the APK Signature Scheme v2 without a JAR signature
+     */
+    public static final int MIN_SDK_VERSION = 24;
+
+    static final int CHUNK_SIZE = 1024 * 1024;
+
+    private static final int APK_SIGNATURE_SCHEME_V2_BLOCK_ID = 0x7109871a;
+    private static final int SIGNATURE_RSA_PKCS1_V1_5_WITH_SHA256 = 0x0103;
+    private static final int SIGNATURE_ECDSA_WITH_SHA256 = 0x0201;
+    private static final byte[] APK_SIGNING_BLOCK_MAGIC =
+            "APK Sig Block 42".getBytes(StandardCharsets.US_ASCII);
+
+    /**
+     * Loads the key and certificate in the format used by apksigner, a PKCS#8 encoded private
+     * key and a PEM or DER encoded X.509 certificate.
+     */
+    @NonNull
+    public static IncrementalApkSigner create(@NonNull File keyFile, @NonNull File certFile)
+            throws IOException, GeneralSecurityException {
+        X509Certificate certificate;
+        try (InputStream in = new FileInputStream(certFile)) {
+            certificate = (X509Certificate) CertificateFactory.getInstance("X.509")
+                    .generateCertificate(in);
+        }
+        String algorithm = certificate.getPublicKey().getAlgorithm();
+        PKCS8EncodedKeySpec spec = new PKCS8EncodedKeySpec(Files.readAllBytes(keyFile.toPath()));
+        PrivateKey privateKey = KeyFactory.getInstance(algorithm).generatePrivate(spec);
+        return new IncrementalApkSigner(privateKey, certificate);
+    }
+
+    private final PrivateKey mPrivateKey;
+    private final X509Certificate mCertificate;
+    private final int mSignatureAlgorithm;
+
+    public IncrementalApkSigner(@NonNull PrivateKey privateKey,
+                                @NonNull X509Certificate certificate)
+            throws InvalidKeySpecException {
+        mPrivateKey = privateKey;
+        mCertificate = certificate;
+
+        String algorithm = certificate.getPublicKey().getAlgorithm();
+        if ("RSA".equalsIgnoreCase(algorithm)) {
+            mSignatureAlgorithm = SIGNATURE_RSA_PKCS1_V1_5_WITH_SHA256;
+        } else if ("EC".equalsIgnoreCase(algorithm)) {
+            mSignatureAlgorithm = SIGNATURE_ECDSA_WITH_SHA256;
+        } else {
+            throw new InvalidKeySpecException("Unsupported key algorithm: " + algorithm);
+        }
+    }
+
+    /**
+     * Signs the APK
+     *
+     * @param input   The unsigned APK
+     * @param output  The file to write the signed APK to
+     * @param digests The digests of the chunks of the previous version of the input, updated
+     *                with the digests of the input. May be null to digest every chunk.
+     */
+    public void sign(@NonNull File input, @NonNull File output, @Nullable ApkChunkDigests digests)
+            throws IOException, GeneralSecurityException {
+        long entriesSize;
+        long centralDirectorySize;
+        long endOfCentralDirectoryOffset;
+        try (ZipArchive archive = ZipArchive.open(input)) {
+            entriesSize = archive.getCentralDirectoryOffset();
+            centralDirectorySize = archive.getCentralDirectorySize();
+            endOfCentralDirectoryOffset = archive.getEndOfCentralDirectoryOffset();
+            if (entriesSize + centralDirectorySize != endOfCentralDirectoryOffset) {
+                throw new IOException(input + " is already signed or has data before the" +
+                        " central directory");
+            }
+        }
+
+        File temp = new File(output.getPath() + ".tmp");
+        try (FileChannel in = FileChannel.open(input.toPath(), StandardOpenOption.READ)) {
+            ByteBuffer centralDirectory = read(in, entriesSize, (int) centralDirectorySize);
+            ByteBuffer endOfCentralDirectory = read(in, endOfCentralDirectoryOffset,
+                    (int) (in.size() - endOfCentralDirectoryOffset));
+
+            List<byte[]> entryDigests = digestEntries(in, entriesSize,
+                    digests != null && digests.isFor(input) ? digests : null);
+            byte[] contentDigest = computeContentDigest(entryDigests,
+                    centralDirectory.duplicate(), endOfCentralDirectory.duplicate());
+            byte[] signingBlock = createSigningBlock(contentDigest);
+
+            // the central directory is moved after the signing block
+            ByteBuffer signedEnd = ByteBuffer.allocate(endOfCentralDirectory.remaining())
+                    .order(ByteOrder.LITTLE_ENDIAN);
+            signedEnd.put(endOfCentralDirectory.duplicate());
+            signedEnd.flip();
+            signedEnd.putInt(16, (int) (entriesSize + signingBlock.length));
+
+            try (FileChannel out = FileChannel.open(temp.toPath(), StandardOpenOption.CREATE,
+                    StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                long position = 0;
+                while (position < entriesSize) {
+                    position += in.transferTo(position, entriesSize - position, out);
+                }
+                writeFully(out, ByteBuffer.wrap(signingBlock));
+                writeFully(out, centralDirectory.duplicate());
+                writeFully(out, signedEnd);
+                out.force(false);
+            }
+
+            if (digests != null) {
+                digests.set(entryDigests);
+                digests.setApk(input);
+            }
+        } catch (IOException | GeneralSecurityException | RuntimeException e) {
+            Files.deleteIfExists(temp.toPath());
+            throw e;
+        }
+        Files.move(temp.toPath(), output.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Digests the chunks of the entries, the chunks that are in the cached digests are not
+     * read. The remaining chunks are digested in parallel.
+     */
+    private static List<byte[]> digestEntries(FileChannel in, long size,
+                                              @Nullable ApkChunkDigests cached)
+            throws IOException, NoSuchAlgorithmException {
+        int chunkCount = getChunkCount(size);
+        byte[][] result = new byte[chunkCount][];
+        int reused = 0;
+        if (cached != null) {
+            reused = Math.min(cached.size(), chunkCount);
+            for (int i = 0; i < reused; i++) {
+                result[i] = cached.get(i);
+            }
+        }
+
+        // fail early if the algorithm is missing instead of inside the worker threads
+        MessageDigest.getInstance("SHA-256");
+        try {
+            IntStream.range(reused, chunkCount).parallel().forEach(i -> {
+                try {
+                    long offset = (long) i * CHUNK_SIZE;
+                    int length = (int) Math.min(CHUNK_SIZE, size - offset);
+                    result[i] = digestChunk(read(in, offset, length));
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        return new ArrayList<>(Arrays.asList(result));
+    }
+
+    private static byte[] computeContentDigest(List<byte[]> entryDigests,
+                                               ByteBuffer centralDirectory,
+                                               ByteBuffer endOfCentralDirectory)
+            throws NoSuchAlgorithmException {
+        List<byte[]> chunkDigests = new ArrayList<>(entryDigests);
+        for (ByteBuffer section : new ByteBuffer[]{centralDirectory, endOfCentralDirectory}) {
+            while (section.hasRemaining()) {
+                ByteBuffer chunk = section.slice();
+                int length = Math.min(CHUNK_SIZE, chunk.remaining());
+                chunk.limit(length);
+                chunkDigests.add(digestChunk(chunk));
+                section.position(section.position() + length);
+            }
+        }
+
+        MessageDigest digest = MessageDigest.getInstance("SHA-256");
+        digest.update((byte) 0x5a);
+        digest.update(intToBytes(chunkDigests.size()));
+        for (byte[] chunkDigest : chunkDigests) {
+            digest.update(chunkDigest);
+        }
+        return digest.digest();
+    }
+
+    private static byte[] digestChunk(ByteBuffer chunk) {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        digest.update((byte) 0xa5);
+        digest.update(intToBytes(chunk.remaining()));
+        digest.update(chunk);
+        return digest.digest();
+    }
+
+    private static int getChunkCount(long size) {
+        return (int) ((size + CHUNK_SIZE - 1) / CHUNK_SIZE);
+    }
+
+    private byte[] createSigningBlock(byte[] contentDigest)
+            throws IOException, GeneralSecurityException {
+        PublicKey publicKey = mCertificate.getPublicKey();
+
+        ByteArrayOutputStream digests = new ByteArrayOutputStream();
+        writeLengthPrefixed(digests, concat(intToBytes(mSignatureAlgorithm),
+                lengthPrefixed(contentDigest)));
+        ByteArrayOutputStream certificates = new ByteArrayOutputStream();
+        writeLengthPrefixed(certificates, mCertificate.getEncoded());
+
+        ByteArrayOutputStream signedData = new ByteArrayOutputStream();
+        writeLengthPrefixed(signedData, digests.toByteArray());
+        writeLengthPrefixed(signedData, certificates.toByteArray());
+        // no additional attributes
+        writeLengthPrefixed(signedData, new byte[0]);
+
+        Signature signature = Signature.getInstance(
+                mSignatureAlgorithm == SIGNATURE_ECDSA_WITH_SHA256
+                        ? "SHA256withECDSA" : "SHA256withRSA");
+        signature.initSign(mPrivateKey);
+        signature.update(signedData.toByteArray());
+        ByteArrayOutputStream signatures = new ByteArrayOutputStream();
+        writeLengthPrefixed(signatures, concat(intToBytes(mSignatureAlgorithm),
+                lengthPrefixed(signature.sign())));
+
+        ByteArrayOutputStream signer = new ByteArrayOutputStream();
+        writeLengthPrefixed(signer, signedData.toByteArray());
+        writeLengthPrefixed(signer, signatures.toByteArray());
+        writeLengthPrefixed(signer, publicKey.getEncoded());
+
+        ByteArrayOutputStream signers = new ByteArrayOutputStream();
+        writeLengthPrefixed(signers, signer.toByteArray());
+        byte[] schemeBlock = lengthPrefixed(signers.toByteArray());
+
+        // size of block, one id-value pair, size of block again and the magic
+        long blockSize = 8 + 4 + schemeBlock.length + 8 + APK_SIGNING_BLOCK_MAGIC.length;
+        ByteBuffer block = ByteBuffer.allocate((int) (8 + blockSize))
+                .order(ByteOrder.LITTLE_ENDIAN);
+        block.putLong(blockSize);
+        block.putLong(4 + schemeBlock.length);
+        block.putInt(APK_SIGNATURE_SCHEME_V2_BLOCK_ID);
+        block.put(schemeBlock);
+        block.putLong(blockSize);
+        block.put(APK_SIGNING_BLOCK_MAGIC);
+        return block.array();
+    }
+
+    private static void writeLengthPrefixed(ByteArrayOutputStream out, byte[] bytes)
+            throws IOException {
+        out.write(intToBytes(bytes.length));
+        out.write(bytes);
+    }
+
+    private static byte[] lengthPrefixed(byte[] bytes) {
+        return concat(intToBytes(bytes.length), bytes);
+    }
+
+    private static byte[] concat(byte[] first, byte[] second) {
+        byte[] result = Arrays.copyOf(first, first.length + second.length);
+        System.arraycopy(second, 0, result, first.length, second.length);
+        return result;
+    }
+
+    private static byte[] intToBytes(int value) {
+        return ByteBuffer.allocate(4).order(ByteOrder.LITTLE_ENDIAN).putInt(value).array();
+    }
+
+    private static ByteBuffer read(FileChannel channel, long position, int size)
+            throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(size).order(ByteOrder.LITTLE_ENDIAN);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new IOException("Unexpected end of file");
+            }
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+}
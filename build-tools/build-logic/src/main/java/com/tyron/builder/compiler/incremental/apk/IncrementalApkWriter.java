@@ -0,0 +1,339 @@
+package com.tyron.builder.compiler.incremental.apk;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.android.sdklib.build.DuplicateFileException;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+
+/**
+ * Writes an APK, reusing the compressed contents of the APK it replaces.
+ *
+ * An entry whose CRC and size are the same as the entry with the same name in the previous
+ * APK is copied from it as is, so only new and changed files are compressed. Entries are
+ * written in the order they are added with a fixed timestamp, so as long as the same entries
+ * are added in the same order the start of the new APK is byte for byte the same as the
+ * previous one. {@link #getUnchangedLength()} returns the length of that region so the
+ * digests computed for it while signing can be reused.
+ *
+ * Stored entries are aligned to 4 bytes.
+ */
+public class IncrementalApkWriter implements Closeable {
+
+    private static final int ALIGNMENT = 4;
+    private static final int VERSION_STORED = 10;
+    private static final int VERSION_DEFLATED = 20;
+    /**
+     * 1981-01-01 00:00 in MS-DOS format, the earliest date that every zip reader supports.
+     */
+    private static final int DOS_TIME = 0;
+    private static final int DOS_DATE = ((1981 - 1980) << 9) | (1 << 5) | 1;
+
+    private static class WrittenEntry {
+        private final String mName;
+        private final int mMethod;
+        private final long mCrc;
+        private final long mCompressedSize;
+        private final long mSize;
+        private final long mOffset;
+
+        private WrittenEntry(String name, int method, long crc, long compressedSize, long size,
+                             long offset) {
+            mName = name;
+            mMethod = method;
+            mCrc = crc;
+            mCompressedSize = compressedSize;
+            mSize = size;
+            mOffset = offset;
+        }
+    }
+
+    private final File mOutputFile;
+    private final File mTempFile;
+    private final FileChannel mOutput;
+    @Nullable
+    private final ZipArchive mPrevious;
+    private final List<WrittenEntry> mEntries = new ArrayList<>();
+    private final Map<String, File> mOrigins = new HashMap<>();
+
+    private long mOffset;
+    private boolean mUnchanged = true;
+    private long mUnchangedLength;
+    private int mReusedCount;
+    private boolean mClosed;
+
+    /**
+     * @param outputFile The APK to write, its current contents are reused if it exists
+     */
+    public IncrementalApkWriter(@NonNull File outputFile) throws IOException {
+        mOutputFile = outputFile;
+        mTempFile = new File(outputFile.getPath() + ".tmp");
+        mPrevious = openPrevious(outputFile);
+        mOutput = FileChannel.open(mTempFile.toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+    }
+
+    @Nullable
+    private static ZipArchive openPrevious(File file) {
+        if (!file.exists()) {
+            return null;
+        }
+        try {
+            return ZipArchive.open(file);
+        } catch (IOException e) {
+            // the apk is packaged from scratch
+            return null;
+        }
+    }
+
+    /**
+     * Adds the file, it is compressed unless the previous APK has the same contents
+     */
+    public void addFile(@NonNull String name, @NonNull File file)
+            throws IOException, DuplicateFileException {
+        checkDuplicate(name, file);
+
+        byte[] contents = Files.readAllBytes(file.toPath());
+        CRC32 crc = new CRC32();
+        crc.update(contents);
+        if (reusePrevious(name, crc.getValue(), contents.length)) {
+            return;
+        }
+
+        byte[] compressed = deflate(contents);
+        writeLocalHeader(name, ZipEntry.DEFLATED, crc.getValue(), compressed.length,
+                contents.length);
+        writeFully(ByteBuffer.wrap(compressed));
+    }
+
+    /**
+     * Adds an entry of another zip file, its compressed contents are copied as they are
+     */
+    public void addEntry(@NonNull String name, @NonNull ZipArchive source,
+                         @NonNull ZipArchive.Entry entry)
+            throws IOException, DuplicateFileException {
+        checkDuplicate(name, source.getFile());
+
+        if (reusePrevious(name, entry.getCrc(), entry.getSize())) {
+            return;
+        }
+        writeLocalHeader(name, entry.getMethod(), entry.getCrc(), entry.getCompressedSize(),
+                entry.getSize());
+        source.transferData(entry, mOutput);
+        mOffset += entry.getCompressedSize();
+    }
+
+    private void checkDuplicate(String name, File origin) throws DuplicateFileException {
+        File existing = mOrigins.put(name, origin);
+        if (existing != null) {
+            throw new DuplicateFileException(name, existing, origin);
+        }
+    }
+
+    private boolean reusePrevious(String name, long crc, long size) throws IOException {
+        ZipArchive.Entry previous = mPrevious == null ? null : mPrevious.getEntry(name);
+        if (previous == null || previous.getCrc() != crc || previous.getSize() != size) {
+            mUnchanged = false;
+            return false;
+        }
+
+        long start = mOffset;
+        ByteBuffer header = writeLocalHeader(name, previous.getMethod(), crc,
+                previous.getCompressedSize(), size);
+        mPrevious.transferData(previous, mOutput);
+        mOffset += previous.getCompressedSize();
+        mReusedCount++;
+
+        // the header and the data are the same, so the bytes are the same as long as the
+        // entry is at the same position
+        mUnchanged = mUnchanged
+                && previous.getLocalHeaderOffset() == start
+                && header.equals(mPrevious.readLocalHeader(previous));
+        if (mUnchanged) {
+            mUnchangedLength = mOffset;
+        }
+        return true;
+    }
+
+    private ByteBuffer writeLocalHeader(String name, int method, long crc, long compressedSize,
+                                        long size) throws IOException {
+        byte[] nameBytes = name.getBytes(StandardCharsets.UTF_8);
+        int padding = 0;
+        if (method == ZipEntry.STORED) {
+            long dataOffset = mOffset + ZipArchive.LOCAL_HEADER_SIZE + nameBytes.length;
+            padding = (int) ((ALIGNMENT - dataOffset % ALIGNMENT) % ALIGNMENT);
+        }
+
+        ByteBuffer header = ByteBuffer.allocate(ZipArchive.LOCAL_HEADER_SIZE
+                + nameBytes.length + padding).order(ByteOrder.LITTLE_ENDIAN);
+        header.putInt(ZipArchive.LOCAL_HEADER_SIGNATURE);
+        header.putShort((short) getVersion(method));
+        header.putShort((short) 0);
+        header.putShort((short) method);
+        header.putShort((short) DOS_TIME);
+        header.putShort((short) DOS_DATE);
+        header.putInt((int) crc);
+        header.putInt((int) compressedSize);
+        header.putInt((int) size);
+        header.putShort((short) nameBytes.length);
+        header.putShort((short) padding);
+        header.put(nameBytes);
+        // the extra field is left zeroed, it only pads the data to the alignment
+        header.position(header.capacity());
+        header.flip();
+
+        mEntries.add(new WrittenEntry(name, method, crc, compressedSize, size, mOffset));
+        writeFully(header.duplicate());
+        return header;
+    }
+
+    private static int getVersion(int method) {
+        return method == ZipEntry.STORED ? VERSION_STORED : VERSION_DEFLATED;
+    }
+
+    private static byte[] deflate(byte[] contents) {
+        Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+        try {
+            deflater.setInput(contents);
+            deflater.finish();
+            ByteArrayOutputStream out = new ByteArrayOutputStream(contents.length / 2 + 64);
+            byte[] buffer = new byte[64 * 1024];
+            while (!deflater.finished()) {
+                int count = deflater.deflate(buffer);
+                out.write(buffer, 0, count);
+            }
+            return out.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private void writeFully(ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            mOffset += mOutput.write(buffer);
+        }
+    }
+
+    /**
+     * @return The length of the region at the start of the APK that has the same bytes as
+     * the previous APK, only valid after the writer has been closed
+     */
+    public long getUnchangedLength() {
+        return mUnchangedLength;
+    }
+
+    /**
+     * @return The number of entries copied from the previous APK
+     */
+    public int getReusedCount() {
+        return mReusedCount;
+    }
+
+    public int getEntryCount() {
+        return mEntries.size();
+    }
+
+    /**
+     * Writes the central directory and replaces the previous APK
+     */
+    @Override
+    public void close() throws IOException {
+        if (mClosed) {
+            return;
+        }
+        mClosed = true;
+        try {
+            writeCentralDirectory();
+            mOutput.force(false);
+        } finally {
+            mOutput.close();
+            if (mPrevious != null) {
+                mPrevious.close();
+            }
+        }
+        Files.move(mTempFile.toPath(), mOutputFile.toPath(),
+                StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Discards the APK being written, the previous APK is left as is
+     */
+    public void abort() throws IOException {
+        if (mClosed) {
+            return;
+        }
+        mClosed = true;
+        try {
+            mOutput.close();
+            if (mPrevious != null) {
+                mPrevious.close();
+            }
+        } finally {
+            Files.deleteIfExists(mTempFile.toPath());
+        }
+    }
+
+    private void writeCentralDirectory() throws IOException {
+        long centralDirectoryOffset = mOffset;
+        for (WrittenEntry entry : mEntries) {
+            byte[] nameBytes = entry.mName.getBytes(StandardCharsets.UTF_8);
+            ByteBuffer header = ByteBuffer.allocate(ZipArchive.CENTRAL_DIRECTORY_HEADER_SIZE
+                    + nameBytes.length).order(ByteOrder.LITTLE_ENDIAN);
+            header.putInt(ZipArchive.CENTRAL_DIRECTORY_SIGNATURE);
+            header.putShort((short) VERSION_DEFLATED);
+            header.putShort((short) getVersion(entry.mMethod));
+            header.putShort((short) 0);
+            header.putShort((short) entry.mMethod);
+            header.putShort((short) DOS_TIME);
+            header.putShort((short) DOS_DATE);
+            header.putInt((int) entry.mCrc);
+            header.putInt((int) entry.mCompressedSize);
+            header.putInt((int) entry.mSize);
+            header.putShort((short) nameBytes.length);
+            header.putShort((short) 0);
+            header.putShort((short) 0);
+            header.putShort((short) 0);
+            header.putShort((short) 0);
+            header.putInt(0);
+            header.putInt((int) entry.mOffset);
+            header.put(nameBytes);
+            header.flip();
+            writeFully(header);
+        }
+        long centralDirectorySize = mOffset - centralDirectoryOffset;
+
+        if (mEntries.size() >= 0xFFFF || mOffset >= 0xFFFFFFFFL) {
+            throw new IOException("The APK is too large, zip64 is not supported");
+        }
+        ByteBuffer end = ByteBuffer.allocate(ZipArchive.END_OF_CENTRAL_DIRECTORY_SIZE)
+                .order(ByteOrder.LITTLE_ENDIAN);
+        end.putInt(ZipArchive.END_OF_CENTRAL_DIRECTORY_SIGNATURE);
+        end.putShort((short) 0);
+        end.putShort((short) 0);
+        end.putShort((short) mEntries.size());
+        end.putShort((short) mEntries.size());
+        end.putInt((int) centralDirectorySize);
+        end.putInt((int) centralDirectoryOffset);
+        end.putShort((short) 0);
+        end.flip();
+        writeFully(end);
+    }
+}
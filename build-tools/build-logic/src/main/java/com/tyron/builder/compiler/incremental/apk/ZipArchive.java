@@ -0,0 +1,251 @@
+package com.tyron.builder.compiler.incremental.apk;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Read only view of the central directory of a zip file, used to copy the compressed
+ * contents of its entries into another zip without inflating them.
+ *
+ * Zip64 archives are not supported.
+ */
+public class ZipArchive implements Closeable {
+
+    static final int LOCAL_HEADER_SIGNATURE = 0x04034b50;
+    static final int CENTRAL_DIRECTORY_SIGNATURE = 0x02014b50;
+    static final int END_OF_CENTRAL_DIRECTORY_SIGNATURE = 0x06054b50;
+
+    static final int LOCAL_HEADER_SIZE = 30;
+    static final int CENTRAL_DIRECTORY_HEADER_SIZE = 46;
+    static final int END_OF_CENTRAL_DIRECTORY_SIZE = 22;
+
+    private static final int MAX_COMMENT_SIZE = 0xFFFF;
+
+    public static class Entry {
+        private final String mName;
+        private final int mMethod;
+        private final long mCrc;
+        private final long mCompressedSize;
+        private final long mSize;
+        private final long mLocalHeaderOffset;
+
+        Entry(String name, int method, long crc, long compressedSize, long size,
+              long localHeaderOffset) {
+            mName = name;
+            mMethod = method;
+            mCrc = crc;
+            mCompressedSize = compressedSize;
+            mSize = size;
+            mLocalHeaderOffset = localHeaderOffset;
+        }
+
+        public String getName() {
+            return mName;
+        }
+
+        public int getMethod() {
+            return mMethod;
+        }
+
+        public long getCrc() {
+            return mCrc;
+        }
+
+        public long getCompressedSize() {
+            return mCompressedSize;
+        }
+
+        public long getSize() {
+            return mSize;
+        }
+
+        public long getLocalHeaderOffset() {
+            return mLocalHeaderOffset;
+        }
+
+        public boolean isDirectory() {
+            return mName.endsWith("/");
+        }
+    }
+
+    /**
+     * Opens the zip file and reads its central directory
+     *
+     * @throws IOException if the file is not a zip file or uses features that are not supported
+     */
+    @NonNull
+    public static ZipArchive open(@NonNull File file) throws IOException {
+        FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+        try {
+            return new ZipArchive(file, channel);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    private final File mFile;
+    private final FileChannel mChannel;
+    private final Map<String, Entry> mEntries = new LinkedHashMap<>();
+    private long mCentralDirectoryOffset;
+    private long mCentralDirectorySize;
+    private long mEndOfCentralDirectoryOffset;
+
+    private ZipArchive(File file, FileChannel channel) throws IOException {
+        mFile = file;
+        mChannel = channel;
+        readEndOfCentralDirectory();
+        readCentralDirectory();
+    }
+
+    private void readEndOfCentralDirectory() throws IOException {
+        long size = mChannel.size();
+        if (size < END_OF_CENTRAL_DIRECTORY_SIZE) {
+            throw new IOException(mFile + " is not a zip file");
+        }
+        int searchSize = (int) Math.min(size, END_OF_CENTRAL_DIRECTORY_SIZE + MAX_COMMENT_SIZE);
+        ByteBuffer buffer = read(size - searchSize, searchSize);
+        for (int i = searchSize - END_OF_CENTRAL_DIRECTORY_SIZE; i >= 0; i--) {
+            if (buffer.getInt(i) != END_OF_CENTRAL_DIRECTORY_SIGNATURE) {
+                continue;
+            }
+            int commentLength = buffer.getShort(i + 20) & 0xFFFF;
+            if (i + END_OF_CENTRAL_DIRECTORY_SIZE + commentLength != searchSize) {
+                continue;
+            }
+            int entryCount = buffer.getShort(i + 10) & 0xFFFF;
+            mCentralDirectorySize = buffer.getInt(i + 12) & 0xFFFFFFFFL;
+            mCentralDirectoryOffset = buffer.getInt(i + 16) & 0xFFFFFFFFL;
+            mEndOfCentralDirectoryOffset = size - searchSize + i;
+            if (entryCount == 0xFFFF || mCentralDirectoryOffset == 0xFFFFFFFFL) {
+                throw new IOException("Zip64 is not supported: " + mFile);
+            }
+            if (mCentralDirectoryOffset + mCentralDirectorySize
+                    > mEndOfCentralDirectoryOffset) {
+                throw new IOException("Invalid central directory in " + mFile);
+            }
+            return;
+        }
+        throw new IOException(mFile + " is not a zip file");
+    }
+
+    private void readCentralDirectory() throws IOException {
+        ByteBuffer buffer = read(mCentralDirectoryOffset, (int) mCentralDirectorySize);
+        while (buffer.remaining() >= CENTRAL_DIRECTORY_HEADER_SIZE) {
+            int start = buffer.position();
+            if (buffer.getInt(start) != CENTRAL_DIRECTORY_SIGNATURE) {
+                throw new IOException("Invalid central directory in " + mFile);
+            }
+            int method = buffer.getShort(start + 10) & 0xFFFF;
+            long crc = buffer.getInt(start + 16) & 0xFFFFFFFFL;
+            long compressedSize = buffer.getInt(start + 20) & 0xFFFFFFFFL;
+            long size = buffer.getInt(start + 24) & 0xFFFFFFFFL;
+            int nameLength = buffer.getShort(start + 28) & 0xFFFF;
+            int extraLength = buffer.getShort(start + 30) & 0xFFFF;
+            int commentLength = buffer.getShort(start + 32) & 0xFFFF;
+            long localHeaderOffset = buffer.getInt(start + 42) & 0xFFFFFFFFL;
+
+            byte[] nameBytes = new byte[nameLength];
+            buffer.position(start + CENTRAL_DIRECTORY_HEADER_SIZE);
+            buffer.get(nameBytes);
+            String name = new String(nameBytes, StandardCharsets.UTF_8);
+            mEntries.put(name, new Entry(name, method, crc, compressedSize, size,
+                    localHeaderOffset));
+
+            buffer.position(buffer.position() + extraLength + commentLength);
+        }
+    }
+
+    @NonNull
+    public File getFile() {
+        return mFile;
+    }
+
+    /**
+     * @return The entries in the order they appear in the central directory
+     */
+    @NonNull
+    public List<Entry> getEntries() {
+        return Collections.unmodifiableList(new ArrayList<>(mEntries.values()));
+    }
+
+    @Nullable
+    public Entry getEntry(@NonNull String name) {
+        return mEntries.get(name);
+    }
+
+    public long getCentralDirectoryOffset() {
+        return mCentralDirectoryOffset;
+    }
+
+    public long getCentralDirectorySize() {
+        return mCentralDirectorySize;
+    }
+
+    public long getEndOfCentralDirectoryOffset() {
+        return mEndOfCentralDirectoryOffset;
+    }
+
+    /**
+     * @return The local header of the entry, including its name and extra field
+     */
+    @NonNull
+    ByteBuffer readLocalHeader(@NonNull Entry entry) throws IOException {
+        ByteBuffer fixed = read(entry.getLocalHeaderOffset(), LOCAL_HEADER_SIZE);
+        if (fixed.getInt(0) != LOCAL_HEADER_SIGNATURE) {
+            throw new IOException("Invalid local header of " + entry.getName() + " in " + mFile);
+        }
+        int nameLength = fixed.getShort(26) & 0xFFFF;
+        int extraLength = fixed.getShort(28) & 0xFFFF;
+        return read(entry.getLocalHeaderOffset(), LOCAL_HEADER_SIZE + nameLength + extraLength);
+    }
+
+    /**
+     * Copies the contents of the entry as they are stored in this zip, without decompressing
+     * them.
+     */
+    public void transferData(@NonNull Entry entry, @NonNull WritableByteChannel target)
+            throws IOException {
+        long position = entry.getLocalHeaderOffset() + readLocalHeader(entry).capacity();
+        long remaining = entry.getCompressedSize();
+        while (remaining > 0) {
+            long transferred = mChannel.transferTo(position, remaining, target);
+            if (transferred <= 0) {
+                throw new IOException("Unexpected end of " + mFile);
+            }
+            position += transferred;
+            remaining -= transferred;
+        }
+    }
+
+    private ByteBuffer read(long position, int size) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(size).order(ByteOrder.LITTLE_ENDIAN);
+        while (buffer.hasRemaining()) {
+            if (mChannel.read(buffer, position + buffer.position()) < 0) {
+                throw new IOException("Unexpected end of " + mFile);
+            }
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    @Override
+    public void close() throws IOException {
+        mChannel.close();
+    }
+}
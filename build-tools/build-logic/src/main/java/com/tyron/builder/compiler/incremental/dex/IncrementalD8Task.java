@@ -5,6 +5,7 @@ import com.android.tools.r8.D8;
 import com.android.tools.r8.D8Command;
 import com.android.tools.r8.DiagnosticsHandler;
 import com.android.tools.r8.OutputMode;
+import com.android.tools.r8.Version;
 import com.tyron.builder.compiler.BuildType;
 import com.tyron.builder.compiler.Task;
 import com.tyron.builder.compiler.dex.D8Task;
@@ -13,6 +14,7 @@ import com.tyron.builder.exception.CompilationFailedException;
 import com.tyron.builder.log.ILogger;
 import com.tyron.builder.project.api.AndroidModule;
 import com.tyron.builder.project.cache.CacheHolder;
+import com.tyron.builder.project.cache.DataExternalizer;
 import com.tyron.common.util.Cache;
 
 import org.apache.commons.io.FileUtils;
@@ -23,10 +25,14 @@ import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashSet;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Collectors;
 
 public class IncrementalD8Task extends Task<AndroidModule> {
@@ -34,7 +40,8 @@ public class IncrementalD8Task extends Task<AndroidModule> {
     private static final String TAG = IncrementalD8Task.class.getSimpleName();
 
     public static final CacheHolder.CacheKey<String, List<File>> CACHE_KEY =
-            new CacheHolder.CacheKey<>("dexCache");
+            new CacheHolder.CacheKey<>("dexCache", DataExternalizer.STRING,
+                    DataExternalizer.FILE_LIST);
 
     private DiagnosticsHandler diagnosticsHandler;
     private List<Path> mClassFiles;
@@ -201,12 +208,15 @@ public class IncrementalD8Task extends Task<AndroidModule> {
     }
 
     /**
-     * Ensures that all libraries of the project has been dex-ed
+     * Ensures that all libraries of the project has been dex-ed. Libraries are dexed in
+     * parallel, jars that have been dexed before by any project are taken from the
+     * {@link LibraryDexCache} instead.
      *
-     * @throws com.android.tools.r8.CompilationFailedException if the compilation has failed
+     * @throws CompilationFailedException if the compilation has failed
      */
-    protected void ensureDexedLibraries() throws com.android.tools.r8.CompilationFailedException {
+    protected void ensureDexedLibraries() throws CompilationFailedException {
         List<File> libraries = getModule().getLibraries();
+        List<File> librariesToDex = new ArrayList<>();
 
         for (File lib : libraries) {
             File parentFile = lib.getParentFile();
@@ -224,20 +234,106 @@ public class IncrementalD8Task extends Task<AndroidModule> {
                     continue;
                 }
                 if (lib.exists()) {
-                    getLogger().debug("Dexing jar " + parentFile.getName());
-                    D8Command command = D8Command.builder(diagnosticsHandler)
-                            .addLibraryFiles(getLibraryFiles())
-                            .addClasspathFiles(libraries.stream().map(File::toPath)
-                                    .collect(Collectors.toList()))
-                            .setMinApiLevel(getModule().getMinSdk())
-                            .addProgramFiles(lib.toPath())
-                            .setMode(CompilationMode.RELEASE)
-                            .setOutput(lib.getParentFile().toPath(), OutputMode.DexIndexed)
-                            .build();
-                    D8.run(command);
+                    librariesToDex.add(lib);
                 }
             }
         }
+        if (librariesToDex.isEmpty()) {
+            return;
+        }
+
+        List<Path> classpath = libraries.stream().map(File::toPath)
+                .collect(Collectors.toList());
+        int total = librariesToDex.size();
+        AtomicInteger dexed = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(getDexThreadCount(total));
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (File lib : librariesToDex) {
+                futures.add(executor.submit(() -> {
+                    dexLibrary(lib, libraries, classpath);
+                    int count = dexed.incrementAndGet();
+                    updateProgress("Dexed " + lib.getParentFile().getName() +
+                                   " (" + count + "/" + total + ")", count * 100 / total);
+                    return null;
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CompilationFailedException(e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            throw new CompilationFailedException(String.valueOf(cause.getMessage()), cause);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Dexing a large library can take a couple hundred megabytes of heap, so the number of
+     * libraries dexed at once is limited by the available heap as well as the cores.
+     */
+    private static int getDexThreadCount(int libraries) {
+        Runtime runtime = Runtime.getRuntime();
+        int byMemory = (int) (runtime.maxMemory() / (256L * 1024 * 1024));
+        return Math.max(1, Math.min(libraries, Math.min(runtime.availableProcessors(), byMemory)));
+    }
+
+    private void dexLibrary(File lib, List<File> libraries, List<Path> classpath)
+            throws IOException, com.android.tools.r8.CompilationFailedException {
+        File outputDir = lib.getParentFile();
+        LibraryDexCache cache = LibraryDexCache.getInstance();
+        if (!cache.isEnabled()) {
+            getLogger().debug("Dexing jar " + outputDir.getName());
+            runD8(lib, classpath, outputDir.toPath());
+            return;
+        }
+
+        String key = cache.getKey(lib, libraries, getModule().getMinSdk(),
+                Version.getVersionString() + ":" + CompilationMode.RELEASE);
+        List<File> dexFiles = cache.get(key);
+        if (dexFiles == null) {
+            getLogger().debug("Dexing jar " + outputDir.getName());
+            File temp = cache.createTempDirectory();
+            try {
+                runD8(lib, classpath, temp.toPath());
+            } catch (IOException | com.android.tools.r8.CompilationFailedException |
+                    RuntimeException e) {
+                FileUtils.deleteQuietly(temp);
+                throw e;
+            }
+            dexFiles = cache.put(key, temp);
+        } else {
+            getLogger().debug("Using cached dex files of " + outputDir.getName());
+        }
+
+        // classes.dex is copied last since its existence marks the library as dexed
+        dexFiles.sort(Comparator.comparing(file -> file.getName().equals("classes.dex")));
+        for (File dexFile : dexFiles) {
+            File temp = new File(outputDir, dexFile.getName() + ".tmp");
+            FileUtils.copyFile(dexFile, temp);
+            File target = new File(outputDir, dexFile.getName());
+            if (!temp.renameTo(target)) {
+                FileUtils.deleteQuietly(temp);
+                throw new IOException("Unable to copy dex file to " + target);
+            }
+        }
+    }
+
+    private void runD8(File lib, List<Path> classpath, Path output)
+            throws com.android.tools.r8.CompilationFailedException {
+        D8Command command = D8Command.builder(diagnosticsHandler)
+                .addLibraryFiles(getLibraryFiles())
+                .addClasspathFiles(classpath)
+                .setMinApiLevel(getModule().getMinSdk())
+                .addProgramFiles(lib.toPath())
+                .setMode(CompilationMode.RELEASE)
+                .setOutput(output, OutputMode.DexIndexed)
+                .build();
+        D8.run(command);
     }
 
     private List<Path> getLibraryFiles() {
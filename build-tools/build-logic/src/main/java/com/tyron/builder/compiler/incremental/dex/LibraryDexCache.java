@@ -0,0 +1,169 @@
+package com.tyron.builder.compiler.incremental.dex;
+
+import android.content.Context;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.google.common.hash.HashCode;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import com.google.common.io.Files;
+import com.tyron.builder.BuildModule;
+
+import org.apache.commons.io.FileUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Keeps the dex files of library jars in a directory shared by every project, so the same
+ * version of a library is only dexed once per device.
+ *
+ * Entries are keyed by the SHA-256 of the jar contents along with everything else that affects
+ * the output of D8. Each entry is a directory holding the dex files of one jar, it is written
+ * to a temporary directory first and renamed into place so a partially written entry is never
+ * used.
+ */
+public class LibraryDexCache {
+
+    private static final String DIRECTORY_NAME = "dex-cache";
+
+    /**
+     * Below this API level, D8 desugars default and static interface methods using the
+     * classpath, so the output of a jar depends on the other libraries as well.
+     */
+    private static final int MIN_SDK_WITHOUT_DESUGARING = 24;
+
+    private static volatile LibraryDexCache sInstance;
+
+    /**
+     * @return The cache in the cache directory of the app, the cache is disabled if the
+     * app has not been initialized.
+     */
+    @NonNull
+    public static LibraryDexCache getInstance() {
+        if (sInstance == null) {
+            synchronized (LibraryDexCache.class) {
+                if (sInstance == null) {
+                    Context context = BuildModule.getContext();
+                    sInstance = new LibraryDexCache(context == null ? null :
+                            new File(context.getCacheDir(), DIRECTORY_NAME));
+                }
+            }
+        }
+        return sInstance;
+    }
+
+    @Nullable
+    private final File mDirectory;
+    private final Map<String, HashCode> mContentHashes = new ConcurrentHashMap<>();
+
+    public LibraryDexCache(@Nullable File directory) {
+        mDirectory = directory;
+    }
+
+    /**
+     * Computes the key of the dex files of a jar
+     *
+     * @param jar       The jar to dex
+     * @param classpath The other libraries passed to D8 as classpath
+     * @param minSdk    The minimum API level the jar is dexed for
+     * @param options   Anything else that affects the output, such as the D8 version and mode
+     */
+    @NonNull
+    public String getKey(@NonNull File jar, @NonNull List<File> classpath, int minSdk,
+                         @NonNull String options) throws IOException {
+        Hasher hasher = Hashing.sha256().newHasher()
+                .putBytes(hash(jar).asBytes())
+                .putInt(minSdk)
+                .putString(options, StandardCharsets.UTF_8);
+        if (minSdk < MIN_SDK_WITHOUT_DESUGARING) {
+            List<String> hashes = new ArrayList<>(classpath.size());
+            for (File file : classpath) {
+                hashes.add(hash(file).toString());
+            }
+            // the order of the libraries does not matter
+            hashes.sort(String::compareTo);
+            for (String hash : hashes) {
+                hasher.putString(hash, StandardCharsets.UTF_8);
+            }
+        }
+        return hasher.hash().toString();
+    }
+
+    private HashCode hash(File file) throws IOException {
+        String id = file.getAbsolutePath() + ':' + file.length() + ':' + file.lastModified();
+        HashCode hash = mContentHashes.get(id);
+        if (hash == null) {
+            hash = Files.asByteSource(file).hash(Hashing.sha256());
+            mContentHashes.put(id, hash);
+        }
+        return hash;
+    }
+
+    public boolean isEnabled() {
+        return mDirectory != null;
+    }
+
+    /**
+     * @return The dex files stored under the key, or null if there are none
+     */
+    @Nullable
+    public List<File> get(@NonNull String key) {
+        if (mDirectory == null) {
+            return null;
+        }
+        File[] dexFiles = new File(mDirectory, key).listFiles(
+                file -> file.getName().endsWith(".dex"));
+        if (dexFiles == null || dexFiles.length == 0) {
+            return null;
+        }
+        List<File> result = new ArrayList<>(dexFiles.length);
+        for (File dexFile : dexFiles) {
+            result.add(dexFile);
+        }
+        return result;
+    }
+
+    /**
+     * @return A new empty directory to write the dex files to before calling
+     * {@link #put(String, File)}
+     */
+    @NonNull
+    public File createTempDirectory() throws IOException {
+        if (mDirectory == null) {
+            throw new IllegalStateException("The dex cache is disabled");
+        }
+        File temp = new File(mDirectory, "tmp-" + UUID.randomUUID());
+        if (!temp.mkdirs()) {
+            throw new IOException("Unable to create directory " + temp);
+        }
+        return temp;
+    }
+
+    /**
+     * Moves the dex files in the temporary directory into the cache
+     *
+     * @return The dex files stored under the key
+     */
+    @NonNull
+    public List<File> put(@NonNull String key, @NonNull File tempDirectory) throws IOException {
+        File entry = new File(mDirectory, key);
+        if (!tempDirectory.renameTo(entry)) {
+            // another thread or project has stored the same jar in the meantime
+            FileUtils.deleteDirectory(tempDirectory);
+        }
+        List<File> dexFiles = get(key);
+        if (dexFiles == null) {
+            throw new IOException("Unable to store dex files in " + entry);
+        }
+        return dexFiles;
+    }
+}
@@ -14,6 +14,7 @@ import com.tyron.builder.model.ModuleSettings;
 import com.tyron.builder.model.SourceFileObject;
 import com.tyron.builder.project.api.JavaModule;
 import com.tyron.builder.project.cache.CacheHolder;
+import com.tyron.builder.project.cache.DataExternalizer;
 import com.tyron.common.TestUtil;
 import com.tyron.common.util.Cache;
 
@@ -32,23 +33,28 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Locale;
 import java.util.Objects;
+import java.util.Set;
 
 import org.openjdk.javax.tools.DiagnosticListener;
 import org.openjdk.javax.tools.JavaFileObject;
 import org.openjdk.javax.tools.SimpleJavaFileObject;
 import org.openjdk.javax.tools.StandardJavaFileManager;
 import org.openjdk.javax.tools.StandardLocation;
+import org.openjdk.source.tree.CompilationUnitTree;
 
 public class IncrementalJavaTask extends Task<JavaModule> {
 
     public static final CacheHolder.CacheKey<String, List<File>> CACHE_KEY =
-            new CacheHolder.CacheKey<>("javaCache");
+            new CacheHolder.CacheKey<>("javaCache", DataExternalizer.STRING,
+                    DataExternalizer.FILE_LIST);
     private static final String TAG = IncrementalJavaTask.class.getSimpleName();
 
     private File mOutputDir;
     private List<File> mJavaFiles;
     private List<File> mFilesToCompile;
     private Cache<String, List<File>> mClassCache;
+    private File mDependencyFile;
+    private JavaDependencyGraph mDependencyGraph;
 
     public IncrementalJavaTask(JavaModule project, ILogger logger) {
         super(project, logger);
@@ -70,6 +76,9 @@ public class IncrementalJavaTask extends Task<JavaModule> {
         mClassCache = getModule().getCache(CACHE_KEY, new Cache<>());
 
         mJavaFiles = new ArrayList<>(getModule().getJavaFiles().values());
+        mDependencyFile = new File(getModule().getBuildDirectory(),
+                "intermediate/java/dependencies.bin");
+        mDependencyGraph = JavaDependencyGraph.read(mDependencyFile);
 
         for (Cache.Key<String> key : new HashSet<>(mClassCache.getKeys())) {
             if (!mJavaFiles.contains(key.file.toFile())) {
@@ -79,13 +88,26 @@ public class IncrementalJavaTask extends Task<JavaModule> {
             }
         }
 
+        // the classes of deleted files are gone, the files using them have to be compiled
+        Set<String> deletedTypes = new HashSet<>();
+        for (File source : mDependencyGraph.getSources()) {
+            if (!mJavaFiles.contains(source)) {
+                JavaDependencyGraph.Node node = mDependencyGraph.remove(source);
+                if (node != null) {
+                    deletedTypes.addAll(node.getTypes());
+                }
+            }
+        }
+        Set<File> dependents = mDependencyGraph.getDependents(deletedTypes);
+
         for (File file : mJavaFiles) {
             Path filePath = file.toPath();
-            if (mClassCache.needs(filePath, "class")) {
+            JavaDependencyGraph.Node node = mDependencyGraph.get(file);
+            if (mClassCache.needs(filePath, "class") || node == null || node.isDirty() ||
+                dependents.contains(file)) {
                 mFilesToCompile.add(file);
             }
         }
-
     }
 
     private boolean mHasErrors = false;
@@ -129,8 +151,45 @@ public class IncrementalJavaTask extends Task<JavaModule> {
             throw new CompilationFailedException(e);
         }
 
+        // files whose dependencies changed their ABI are compiled in further rounds
+        List<File> round = new ArrayList<>(mFilesToCompile);
+        while (!round.isEmpty()) {
+            Set<String> changedTypes = compile(tool, standardJavaFileManager,
+                    diagnosticCollector, round);
+
+            List<File> dependents = new ArrayList<>();
+            for (File dependent : mDependencyGraph.getDependents(changedTypes)) {
+                if (!round.contains(dependent) && mJavaFiles.contains(dependent)) {
+                    dependents.add(dependent);
+                }
+            }
+            if (!dependents.isEmpty()) {
+                getLogger().debug("Compiling " + dependents.size() +
+                                  " files affected by API changes");
+            }
+            for (File dependent : dependents) {
+                if (!mFilesToCompile.contains(dependent)) {
+                    mFilesToCompile.add(dependent);
+                }
+            }
+            round = dependents;
+        }
+    }
+
+    /**
+     * Compiles the files and updates the dependency graph
+     *
+     * @return The classes whose ABI changed
+     */
+    private Set<String> compile(JavacTool tool, StandardJavaFileManager standardJavaFileManager,
+                                DiagnosticListener<JavaFileObject> diagnosticCollector,
+                                List<File> filesToCompile)
+            throws IOException, CompilationFailedException {
+        mDependencyGraph.markDirty(filesToCompile);
+        mDependencyGraph.write(mDependencyFile);
+
         List<JavaFileObject> javaFileObjects = new ArrayList<>();
-        for (File file : mFilesToCompile) {
+        for (File file : filesToCompile) {
             javaFileObjects.add(new SimpleJavaFileObject(file.toURI(), JavaFileObject.Kind.SOURCE) {
                 @Override
                 public CharSequence getCharContent(boolean ignoreEncodingErrors) throws IOException {
@@ -143,10 +202,24 @@ public class IncrementalJavaTask extends Task<JavaModule> {
                 Collections.emptyList(), null, javaFileObjects);
 
         HashMap<String, List<File>> compiledFiles = new HashMap<>();
+        Set<String> changedTypes = new HashSet<>();
         try {
 
-            task.parse();
+            Iterable<? extends CompilationUnitTree> units = task.parse();
             task.analyze();
+            if (!mHasErrors) {
+                JavaDependencyCollector collector = new JavaDependencyCollector(task);
+                for (CompilationUnitTree unit : units) {
+                    File source = new File(unit.getSourceFile().toUri());
+                    JavaDependencyGraph.Node node = collector.collect(unit);
+                    JavaDependencyGraph.Node previous = mDependencyGraph.get(source);
+                    if (previous != null && previous.getAbiHash() != node.getAbiHash()) {
+                        changedTypes.addAll(previous.getTypes());
+                        changedTypes.addAll(node.getTypes());
+                    }
+                    mDependencyGraph.put(source, node);
+                }
+            }
             Iterable<? extends JavaFileObject> generate = task.generate();
             for (JavaFileObject fileObject : generate) {
                 String path = fileObject.getName();
@@ -204,6 +277,9 @@ public class IncrementalJavaTask extends Task<JavaModule> {
         if (mHasErrors) {
             throw new CompilationFailedException("Compilation failed, check logs for more details");
         }
+
+        mDependencyGraph.write(mDependencyFile);
+        return changedTypes;
     }
 
     @VisibleForTesting
@@ -0,0 +1,204 @@
+package com.tyron.builder.compiler.incremental.java;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+
+import org.openjdk.javax.lang.model.element.AnnotationValue;
+import org.openjdk.javax.lang.model.element.Element;
+import org.openjdk.javax.lang.model.element.ElementKind;
+import org.openjdk.javax.lang.model.element.ExecutableElement;
+import org.openjdk.javax.lang.model.element.Modifier;
+import org.openjdk.javax.lang.model.element.PackageElement;
+import org.openjdk.javax.lang.model.element.TypeElement;
+import org.openjdk.javax.lang.model.element.TypeParameterElement;
+import org.openjdk.javax.lang.model.element.VariableElement;
+import org.openjdk.javax.lang.model.type.DeclaredType;
+import org.openjdk.javax.lang.model.type.TypeKind;
+import org.openjdk.javax.lang.model.type.TypeMirror;
+import org.openjdk.source.tree.ClassTree;
+import org.openjdk.source.tree.CompilationUnitTree;
+import org.openjdk.source.tree.IdentifierTree;
+import org.openjdk.source.tree.MemberReferenceTree;
+import org.openjdk.source.tree.MemberSelectTree;
+import org.openjdk.source.tree.NewClassTree;
+import org.openjdk.source.tree.Tree;
+import org.openjdk.source.util.JavacTask;
+import org.openjdk.source.util.TreePath;
+import org.openjdk.source.util.TreePathScanner;
+import org.openjdk.source.util.Trees;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Builds the {@link JavaDependencyGraph.Node} of an analyzed compilation unit, the classes it
+ * references are found by resolving the identifiers in its tree and its ABI hash covers every
+ * non private declaration of its classes, including the values of constants since those are
+ * inlined into the classes that use them.
+ */
+class JavaDependencyCollector {
+
+    private final Trees mTrees;
+
+    JavaDependencyCollector(@NonNull JavacTask task) {
+        mTrees = Trees.instance(task);
+    }
+
+    /**
+     * @param unit A compilation unit that has been analyzed by the task
+     */
+    @NonNull
+    JavaDependencyGraph.Node collect(@NonNull CompilationUnitTree unit) {
+        Set<String> types = new HashSet<>();
+        Set<String> supertypes = new HashSet<>();
+        List<String> signatures = new ArrayList<>();
+        for (Tree declaration : unit.getTypeDecls()) {
+            if (!(declaration instanceof ClassTree)) {
+                continue;
+            }
+            Element element = mTrees.getElement(TreePath.getPath(unit, declaration));
+            if (!(element instanceof TypeElement)) {
+                continue;
+            }
+            TypeElement type = (TypeElement) element;
+            types.add(type.getQualifiedName().toString());
+            addSignatures(type, signatures, supertypes);
+        }
+
+        // declaration order does not matter for the ABI
+        Collections.sort(signatures);
+        Hasher hasher = Hashing.murmur3_128().newHasher();
+        for (String signature : signatures) {
+            hasher.putString(signature, StandardCharsets.UTF_8);
+        }
+
+        Set<String> references = new HashSet<>();
+        new ReferenceScanner().scan(unit, references);
+        references.removeAll(types);
+        return new JavaDependencyGraph.Node(types, supertypes, references,
+                hasher.hash().asLong());
+    }
+
+    private void addSignatures(TypeElement type, List<String> signatures,
+                               Set<String> supertypes) {
+        StringBuilder header = new StringBuilder()
+                .append(type.getKind()).append(' ')
+                .append(type.getModifiers()).append(' ')
+                .append(type.getQualifiedName())
+                .append(type.getTypeParameters())
+                .append(" extends ").append(type.getSuperclass())
+                .append(" implements ").append(type.getInterfaces())
+                .append(' ').append(type.getAnnotationMirrors());
+        for (TypeParameterElement parameter : type.getTypeParameters()) {
+            header.append(' ').append(parameter.getBounds());
+        }
+        signatures.add(header.toString());
+
+        addSupertype(type.getSuperclass(), supertypes);
+        for (TypeMirror anInterface : type.getInterfaces()) {
+            addSupertype(anInterface, supertypes);
+        }
+
+        for (Element member : type.getEnclosedElements()) {
+            if (member.getModifiers().contains(Modifier.PRIVATE)) {
+                continue;
+            }
+            if (member instanceof TypeElement) {
+                addSignatures((TypeElement) member, signatures, supertypes);
+                continue;
+            }
+
+            StringBuilder signature = new StringBuilder()
+                    .append(type.getQualifiedName()).append('#')
+                    .append(member.getKind()).append(' ')
+                    .append(member.getModifiers()).append(' ')
+                    .append(member.getSimpleName()).append(' ')
+                    .append(member.asType()).append(' ')
+                    .append(member.getAnnotationMirrors());
+            if (member instanceof ExecutableElement) {
+                ExecutableElement method = (ExecutableElement) member;
+                signature.append(" throws ").append(method.getThrownTypes());
+                AnnotationValue defaultValue = method.getDefaultValue();
+                if (defaultValue != null) {
+                    signature.append(" default ").append(defaultValue);
+                }
+            } else if (member instanceof VariableElement) {
+                Object constant = ((VariableElement) member).getConstantValue();
+                if (constant != null) {
+                    signature.append(" = ").append(constant);
+                }
+            }
+            signatures.add(signature.toString());
+        }
+    }
+
+    private static void addSupertype(TypeMirror type, Set<String> supertypes) {
+        if (type.getKind() != TypeKind.DECLARED) {
+            return;
+        }
+        String name = getTopLevelName(((DeclaredType) type).asElement());
+        if (name != null) {
+            supertypes.add(name);
+        }
+    }
+
+    /**
+     * @return The fully qualified name of the top level class containing the element
+     */
+    @Nullable
+    private static String getTopLevelName(@Nullable Element element) {
+        TypeElement topLevel = null;
+        while (element != null && !(element instanceof PackageElement)) {
+            if (element instanceof TypeElement) {
+                topLevel = (TypeElement) element;
+            }
+            element = element.getEnclosingElement();
+        }
+        return topLevel != null ? topLevel.getQualifiedName().toString() : null;
+    }
+
+    private class ReferenceScanner extends TreePathScanner<Void, Set<String>> {
+
+        @Override
+        public Void visitIdentifier(IdentifierTree tree, Set<String> references) {
+            addReference(references);
+            return super.visitIdentifier(tree, references);
+        }
+
+        @Override
+        public Void visitMemberSelect(MemberSelectTree tree, Set<String> references) {
+            addReference(references);
+            return super.visitMemberSelect(tree, references);
+        }
+
+        @Override
+        public Void visitMemberReference(MemberReferenceTree tree, Set<String> references) {
+            addReference(references);
+            return super.visitMemberReference(tree, references);
+        }
+
+        @Override
+        public Void visitNewClass(NewClassTree tree, Set<String> references) {
+            addReference(references);
+            return super.visitNewClass(tree, references);
+        }
+
+        private void addReference(Set<String> references) {
+            Element element = mTrees.getElement(getCurrentPath());
+            if (element == null || element.getKind() == ElementKind.PACKAGE) {
+                return;
+            }
+            String name = getTopLevelName(element);
+            if (name != null) {
+                references.add(name);
+            }
+        }
+    }
+}
@@ -0,0 +1,264 @@
+package com.tyron.builder.compiler.incremental.java;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Records which classes each source file of a module declares and references, along with a
+ * hash of the public API (ABI) of the declared classes. When the ABI of a class changes, only
+ * the sources that reference it or one of its subclasses have to be recompiled.
+ *
+ * The graph is saved in the build directory so it survives restarts. A source that is about to
+ * be recompiled is marked dirty first, if the build fails it stays dirty and is compiled again
+ * on the next build while keeping the ABI hash its dependents were compiled against.
+ */
+public class JavaDependencyGraph {
+
+    private static final int MAGIC = 0x4a444550;
+    private static final int VERSION = 1;
+
+    public static class Node {
+        private final Set<String> mTypes;
+        private final Set<String> mSupertypes;
+        private final Set<String> mReferences;
+        private final long mAbiHash;
+        private final boolean mDirty;
+
+        /**
+         * @param types      The fully qualified names of the top level classes in the source
+         * @param supertypes The top level classes extended or implemented by the classes
+         * @param references The top level classes referenced by the source
+         * @param abiHash    The hash of the public API of the classes
+         */
+        public Node(@NonNull Set<String> types, @NonNull Set<String> supertypes,
+                    @NonNull Set<String> references, long abiHash) {
+            this(types, supertypes, references, abiHash, false);
+        }
+
+        private Node(Set<String> types, Set<String> supertypes, Set<String> references,
+                     long abiHash, boolean dirty) {
+            mTypes = types;
+            mSupertypes = supertypes;
+            mReferences = references;
+            mAbiHash = abiHash;
+            mDirty = dirty;
+        }
+
+        public Set<String> getTypes() {
+            return mTypes;
+        }
+
+        public Set<String> getSupertypes() {
+            return mSupertypes;
+        }
+
+        public Set<String> getReferences() {
+            return mReferences;
+        }
+
+        public long getAbiHash() {
+            return mAbiHash;
+        }
+
+        /**
+         * @return Whether the source has to be recompiled, its classes may not match its source
+         */
+        public boolean isDirty() {
+            return mDirty;
+        }
+    }
+
+    /**
+     * Reads the graph saved in the given file
+     *
+     * @return The saved graph, or an empty graph if there is none or it cannot be read
+     */
+    @NonNull
+    public static JavaDependencyGraph read(@NonNull File file) {
+        JavaDependencyGraph graph = new JavaDependencyGraph();
+        if (!file.exists()) {
+            return graph;
+        }
+        try (DataInputStream in = new DataInputStream(
+                new BufferedInputStream(new FileInputStream(file)))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                return graph;
+            }
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                String path = in.readUTF();
+                boolean dirty = in.readBoolean();
+                long abiHash = in.readLong();
+                Set<String> types = readSet(in);
+                Set<String> supertypes = readSet(in);
+                Set<String> references = readSet(in);
+                graph.mNodes.put(path, new Node(types, supertypes, references, abiHash, dirty));
+            }
+        } catch (IOException e) {
+            // a truncated graph is treated as missing, every file gets compiled again
+            graph.mNodes.clear();
+        }
+        return graph;
+    }
+
+    private static Set<String> readSet(DataInputStream in) throws IOException {
+        int size = in.readInt();
+        Set<String> set = new HashSet<>(size);
+        for (int i = 0; i < size; i++) {
+            set.add(in.readUTF());
+        }
+        return set;
+    }
+
+    private final Map<String, Node> mNodes = new HashMap<>();
+
+    /**
+     * Saves the graph, the file is replaced atomically so a crash leaves either the old
+     * or the new graph behind.
+     */
+    public void write(@NonNull File file) throws IOException {
+        File parent = file.getParentFile();
+        if (parent != null && !parent.exists() && !parent.mkdirs()) {
+            throw new IOException("Unable to create directory " + parent);
+        }
+
+        // only classes of this module are worth keeping as references
+        Set<String> declared = new HashSet<>();
+        for (Node node : mNodes.values()) {
+            declared.addAll(node.mTypes);
+        }
+
+        File temp = new File(file.getPath() + ".tmp");
+        try (FileOutputStream fileOut = new FileOutputStream(temp)) {
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(fileOut));
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(mNodes.size());
+            for (Map.Entry<String, Node> entry : mNodes.entrySet()) {
+                Node node = entry.getValue();
+                out.writeUTF(entry.getKey());
+                out.writeBoolean(node.mDirty);
+                out.writeLong(node.mAbiHash);
+                writeSet(out, node.mTypes, null);
+                writeSet(out, node.mSupertypes, declared);
+                writeSet(out, node.mReferences, declared);
+            }
+            out.flush();
+            fileOut.getFD().sync();
+        }
+        if (!temp.renameTo(file)) {
+            //noinspection ResultOfMethodCallIgnored
+            temp.delete();
+            throw new IOException("Unable to save dependency graph to " + file);
+        }
+    }
+
+    private static void writeSet(DataOutputStream out, Set<String> set,
+                                 @Nullable Set<String> filter) throws IOException {
+        List<String> values = new ArrayList<>(set.size());
+        for (String value : set) {
+            if (filter == null || filter.contains(value)) {
+                values.add(value);
+            }
+        }
+        out.writeInt(values.size());
+        for (String value : values) {
+            out.writeUTF(value);
+        }
+    }
+
+    @Nullable
+    public Node get(@NonNull File source) {
+        return mNodes.get(source.getAbsolutePath());
+    }
+
+    public void put(@NonNull File source, @NonNull Node node) {
+        mNodes.put(source.getAbsolutePath(), node);
+    }
+
+    /**
+     * @return The node of the removed source, or null if it was not in the graph
+     */
+    @Nullable
+    public Node remove(@NonNull File source) {
+        return mNodes.remove(source.getAbsolutePath());
+    }
+
+    /**
+     * Marks the sources as needing compilation, their ABI hash is kept so changes are
+     * still detected once they compile successfully.
+     */
+    public void markDirty(@NonNull Collection<File> sources) {
+        for (File source : sources) {
+            Node node = get(source);
+            if (node != null && !node.mDirty) {
+                put(source, new Node(node.mTypes, node.mSupertypes, node.mReferences,
+                        node.mAbiHash, true));
+            }
+        }
+    }
+
+    @NonNull
+    public Set<File> getSources() {
+        Set<File> sources = new HashSet<>();
+        for (String path : mNodes.keySet()) {
+            sources.add(new File(path));
+        }
+        return sources;
+    }
+
+    /**
+     * Finds the sources that have to be recompiled after the ABI of the given classes changed.
+     * Subclasses inherit the API of the changed classes, so sources referencing a subclass
+     * are included as well.
+     *
+     * @param changedTypes The fully qualified names of the top level classes that changed
+     * @return The sources referencing the changed classes or their subclasses
+     */
+    @NonNull
+    public Set<File> getDependents(@NonNull Set<String> changedTypes) {
+        if (changedTypes.isEmpty()) {
+            return Collections.emptySet();
+        }
+
+        Set<String> affected = new HashSet<>(changedTypes);
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (Node node : mNodes.values()) {
+                if (!affected.containsAll(node.mTypes) &&
+                    !Collections.disjoint(node.mSupertypes, affected)) {
+                    changed |= affected.addAll(node.mTypes);
+                }
+            }
+        }
+
+        Set<File> dependents = new LinkedHashSet<>();
+        for (Map.Entry<String, Node> entry : mNodes.entrySet()) {
+            Node node = entry.getValue();
+            if (!Collections.disjoint(node.mReferences, affected) ||
+                !Collections.disjoint(node.mSupertypes, affected)) {
+                dependents.add(new File(entry.getKey()));
+            }
+        }
+        return dependents;
+    }
+}
@@ -22,19 +22,29 @@ import java.io.File;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.util.ArrayList;
-import java.util.Arrays;
-import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
-import java.util.stream.Collectors;
+import java.util.Set;
 
 public class IncrementalAapt2Task extends Task<AndroidModule> {
 
     private static final String TAG = "IncrementalAAPT2";
 
+    private static final String RESOURCE_PREFIX = "res/";
+    private static final String LIBRARY_PREFIX = "library/";
+
     private final boolean mGenerateProtoFormat;
 
+    private File mManifestFile;
+    private ResourceManifest mManifest;
+    /**
+     * Entries of the files being compiled, added to the manifest once they compile
+     */
+    private final Map<String, ResourceManifest.Entry> mPendingEntries = new HashMap<>();
+
     public IncrementalAapt2Task(AndroidModule project, ILogger logger, boolean generateProtoFormat) {
         super(project, logger);
         mGenerateProtoFormat = generateProtoFormat;
@@ -47,7 +57,10 @@ public class IncrementalAapt2Task extends Task<AndroidModule> {
 
     @Override
     public void prepare(BuildType type) throws IOException {
-
+        mManifestFile = new File(getModule().getBuildDirectory(),
+                "intermediate/resources.manifest");
+        mManifest = ResourceManifest.read(mManifestFile);
+        mPendingEntries.clear();
     }
 
     public void run() throws IOException, CompilationFailedException {
@@ -84,12 +97,13 @@ public class IncrementalAapt2Task extends Task<AndroidModule> {
                 }
             }
         }
+        if (args.isEmpty()) {
+            mManifest.write(mManifestFile);
+            return;
+        }
         args.add("-o");
 
-        File outputCompiled = new File(getModule().getBuildDirectory(), "bin/res/compiled");
-        if (!outputCompiled.exists() && !outputCompiled.mkdirs()) {
-            throw new IOException("Failed to create compiled directory");
-        }
+        File outputCompiled = getCompiledDirectory();
         args.add(outputCompiled.getAbsolutePath());
 
         int compile = Aapt2Jni.compile(args);
@@ -100,7 +114,20 @@ public class IncrementalAapt2Task extends Task<AndroidModule> {
             throw new CompilationFailedException("Compilation failed, check logs for more details.");
         }
 
-        copyMapToDir(files);
+        commitPendingEntries(RESOURCE_PREFIX);
+        mManifest.write(mManifestFile);
+    }
+
+    private void commitPendingEntries(String prefix) {
+        Iterator<Map.Entry<String, ResourceManifest.Entry>> iterator =
+                mPendingEntries.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<String, ResourceManifest.Entry> entry = iterator.next();
+            if (entry.getKey().startsWith(prefix)) {
+                mManifest.put(entry.getKey(), entry.getValue());
+                iterator.remove();
+            }
+        }
     }
 
     private void compileLibraries(List<File> libraries)
@@ -114,33 +141,34 @@ public class IncrementalAapt2Task extends Task<AndroidModule> {
             }
         }
 
-        for (File file : libraries) {
-            File parent = file.getParentFile();
-            if (parent == null) {
-                throw new IOException("Library folder doesn't exist");
-            }
-            File[] files = parent.listFiles();
-            if (files == null) {
-                continue;
-            }
+        try {
+            for (File file : libraries) {
+                File parent = file.getParentFile();
+                if (parent == null) {
+                    throw new IOException("Library folder doesn't exist");
+                }
+
+                List<String> args = new ArrayList<>();
+                args.add("--dir");
+                args.add(new File(parent, "res").getAbsolutePath());
+                args.add("-o");
+                args.add(createNewFile(output, parent.getName() + ".zip").getAbsolutePath());
+
+                int compile = Aapt2Jni.compile(args);
+                List<DiagnosticWrapper> logs = Aapt2Jni.getLogs();
+                LogUtils.log(logs, getLogger());
 
-            for (File inside : files) {
-                if (inside.isDirectory() && inside.getName().equals("res")) {
-                    List<String> args = new ArrayList<>();
-                    args.add("--dir");
-                    args.add(inside.getAbsolutePath());
-                    args.add("-o");
-                    args.add(createNewFile(output, parent.getName() + ".zip").getAbsolutePath());
-
-                    int compile = Aapt2Jni.compile(args);
-                    List<DiagnosticWrapper> logs = Aapt2Jni.getLogs();
-                    LogUtils.log(logs, getLogger());
-
-                    if (compile != 0) {
-                        throw new CompilationFailedException("Compilation failed, check logs for more details.");
-                    }
+                if (compile != 0) {
+                    throw new CompilationFailedException("Compilation failed, check logs for more details.");
+                }
+                String key = LIBRARY_PREFIX + parent.getName();
+                ResourceManifest.Entry entry = mPendingEntries.remove(key);
+                if (entry != null) {
+                    mManifest.put(key, entry);
                 }
             }
+        } finally {
+            mManifest.write(mManifestFile);
         }
     }
 
@@ -254,188 +282,84 @@ public class IncrementalAapt2Task extends Task<AndroidModule> {
         }
     }
     /**
-     * Utility function to get all the files that needs to be recompiled
-     * @return resource files to compile
+     * Utility function to get all the files that needs to be recompiled. A file is compiled
+     * again if its contents differ from the ones recorded in the {@link ResourceManifest}
+     * or its compiled file is missing, the compiled files of deleted resources are removed.
+     *
+     * @return resource files to compile, grouped by resource type
      */
     public Map<String, List<File>> getFiles() throws IOException {
-        Map<String, List<ResourceFile>> newFiles = findFiles(getModule()
-                .getAndroidResourcesDirectory());
-        Map<String, List<ResourceFile>> oldFiles = findFiles(getOutputDirectory());
+        File compiledDirectory = getCompiledDirectory();
         Map<String, List<File>> filesToCompile = new HashMap<>();
 
-        for (String resourceType : newFiles.keySet()) {
-
-            // if the cache doesn't contain the new files then its considered new
-            if (!oldFiles.containsKey(resourceType)) {
-                List<ResourceFile> files = newFiles.get(resourceType);
-                if (files != null) {
-                    addToMapList(filesToCompile, resourceType, files);
-                }
-                continue;
-            }
-
-            // both contain the resource type, compare the contents
-            if (oldFiles.containsKey(resourceType)) {
-                List<ResourceFile> newFilesResource = newFiles.get(resourceType);
-                List<ResourceFile> oldFilesResource = oldFiles.get(resourceType);
-
-                if (newFilesResource == null) {
-                    newFilesResource = Collections.emptyList();
-                }
-                if (oldFilesResource == null) {
-                    oldFilesResource = Collections.emptyList();
-                }
-
-                addToMapList(filesToCompile, resourceType,
-                        getModifiedFiles(newFilesResource, oldFilesResource));
+        Set<String> removed = new HashSet<>();
+        for (String key : mManifest.getKeys()) {
+            if (key.startsWith(RESOURCE_PREFIX)) {
+                removed.add(key);
             }
         }
 
-        for (String resourceType : oldFiles.keySet()) {
-            // if the new files doesn't contain the old file then its deleted
-            if (!newFiles.containsKey(resourceType)) {
-                List<ResourceFile> files = oldFiles.get(resourceType);
-                if (files != null) {
-                    for (File file : files) {
-                        if (!file.delete()) {
-                            throw new IOException("Failed to delete file " + file);
-                        }
-                    }
-                }
-            }
-        }
-
-        return filesToCompile;
-    }
-
-    /**
-     * Utility method to add a list of files to a map, if it doesn't exist, it creates a new one
-     * @param map The map to add to
-     * @param key Key to add the value
-     * @param values The list of files to add
-     */
-    private void addToMapList(Map<String, List<File>> map, String key, List<ResourceFile> values) {
-        List<File> mapValues = map.get(key);
-        if (mapValues == null) {
-            mapValues = new ArrayList<>();
-        }
-
-        mapValues.addAll(values);
-        map.put(key, mapValues);
-    }
-
-    private void copyMapToDir(Map<String, List<File>> map) throws IOException {
-        File output = new File(getModule().getBuildDirectory(), "intermediate/resources");
-        if (!output.exists()) {
-            if (!output.mkdirs()) {
-                throw new IOException("Failed to create intermediate directory");
-            }
+        File[] resourceTypes = getModule().getAndroidResourcesDirectory()
+                .listFiles(File::isDirectory);
+        if (resourceTypes == null) {
+            resourceTypes = new File[0];
         }
-
-        for (String resourceType : map.keySet()) {
-            File outputDir = new File(output, resourceType);
-            if (!outputDir.exists()) {
-               if (!outputDir.mkdir()) {
-                   throw new IOException("Failed to create output directory for " + outputDir);
-               }
-            }
-
-            List<File> files = map.get(resourceType);
-            if (files != null) {
-                for (File file : files) {
-                    File copy = new File(outputDir, file.getName());
-                    if (copy.exists()) {
-                        FileUtils.deleteQuietly(copy);
-                    }
-                    FileUtils.copyFileToDirectory(file, outputDir, false);
-                }
+        for (File resourceType : resourceTypes) {
+            File[] files = resourceType.listFiles(File::isFile);
+            if (files == null) {
+                continue;
             }
-        }
-    }
-
-    /**
-     * Utility method to compare to list of files
-     */
-    private List<ResourceFile> getModifiedFiles(
-            List<ResourceFile> newFiles,
-            List<ResourceFile> oldFiles)
-            throws IOException {
-        List<ResourceFile> resourceFiles = new ArrayList<>();
-
-        for (ResourceFile newFile : newFiles) {
-            if (!oldFiles.contains(newFile)) {
-                resourceFiles.add(newFile);
-            } else {
-                File oldFile = oldFiles.get(oldFiles.indexOf(newFile));
-                if (contentModified(newFile, oldFile)) {
-                    resourceFiles.add(newFile);
-                    if (!oldFile.delete()) {
-                        throw new IOException("Failed to delete file " + oldFile.getName());
-                    }
+            for (File file : files) {
+                String key = RESOURCE_PREFIX + resourceType.getName() + "/" + file.getName();
+                removed.remove(key);
+
+                ResourceManifest.Entry previous = mManifest.get(key);
+                ResourceManifest.Entry entry = ResourceManifest.createEntry(file, previous);
+                File compiled = new File(compiledDirectory,
+                        getCompiledName(resourceType.getName(), file.getName()));
+                if (!entry.isSameContent(previous) || !compiled.exists()) {
+                    filesToCompile.computeIfAbsent(resourceType.getName(),
+                            k -> new ArrayList<>()).add(file);
+                    mPendingEntries.put(key, entry);
+                } else if (entry != previous) {
+                    // touched but not changed, remember the new stamp to avoid hashing it again
+                    mManifest.put(key, entry);
                 }
-                oldFiles.remove(oldFile);
             }
         }
 
-        for (ResourceFile removedFile : oldFiles) {
-            if (!removedFile.delete()) {
-                throw new IOException("Failed to delete old file " + removedFile);
+        for (String key : removed) {
+            String path = key.substring(RESOURCE_PREFIX.length());
+            int separator = path.indexOf('/');
+            File compiled = new File(compiledDirectory, getCompiledName(
+                    path.substring(0, separator), path.substring(separator + 1)));
+            if (compiled.exists() && !compiled.delete()) {
+                throw new IOException("Failed to delete file " + compiled);
             }
+            mManifest.remove(key);
         }
 
-        return resourceFiles;
-    }
-
-    private boolean contentModified(File newFile, File oldFile) {
-        if (!oldFile.exists() || !newFile.exists()) {
-            return true;
-        }
-
-        if (newFile.length() != oldFile.length()) {
-            return true;
-        }
-
-        return newFile.lastModified() > oldFile.lastModified();
+        return filesToCompile;
     }
 
     /**
-     * Returns a map of resource type, and the files for a given resource directory
-     * @param file res directory
-     * @return Map of resource type and the files corresponding to it
+     * @return The name of the file aapt2 compiles the resource to
      */
-    private Map<String, List<ResourceFile>> findFiles(File file) {
-        File[] children = file.listFiles();
-        if (children == null) {
-            return Collections.emptyMap();
-        }
-
-        Map<String, List<ResourceFile>> map = new HashMap<>();
-        for (File child : children) {
-            if (!file.isDirectory()) {
-                continue;
-            }
-
-            String resourceType = child.getName();
-            File[] resourceFiles = child.listFiles();
-            List<File> files;
-            if (resourceFiles == null) {
-                files = Collections.emptyList();
-            } else {
-                files = Arrays.asList(resourceFiles);
-            }
-
-
-            map.put(resourceType, files.stream()
-                    .map(ResourceFile::fromFile).collect(Collectors.toList()));
+    @VisibleForTesting
+    static String getCompiledName(String resourceType, String fileName) {
+        if (resourceType.equals("values") || resourceType.startsWith("values-")) {
+            int dot = fileName.lastIndexOf('.');
+            String name = dot == -1 ? fileName : fileName.substring(0, dot);
+            return resourceType + "_" + name + ".arsc.flat";
         }
-
-        return map;
+        return resourceType + "_" + fileName + ".flat";
     }
 
     /**
      * Returns the list of resource directories of libraries that needs to be compiled
-     * It determines whether the library should be compiled by checking the build/bin/res folder,
-     * if it contains a zip file with its name, then its most likely the same library
+     * A library is compiled if its zip file in the build/bin/res folder is missing or the
+     * contents of its res directory changed since it was last compiled. Zip files of
+     * libraries that are no longer used are deleted so they are not linked.
      */
     private List<File> getLibraries()  throws IOException {
         File resDir = new File(getModule().getBuildDirectory(), "bin/res");
@@ -446,19 +370,39 @@ public class IncrementalAapt2Task extends Task<AndroidModule> {
         }
 
         List<File> libraries = new ArrayList<>();
+        Set<String> zipNames = new HashSet<>();
 
         for (File library : getModule().getLibraries()) {
             File parent = library.getParentFile();
             if (parent != null) {
-
-                if (!new File(parent, "res").exists()) {
+                File res = new File(parent, "res");
+                if (!res.exists()) {
                     // we don't need to check it if it has no resource directory
                     continue;
                 }
+                zipNames.add(parent.getName() + ".zip");
 
+                String key = LIBRARY_PREFIX + parent.getName();
+                ResourceManifest.Entry previous = mManifest.get(key);
+                ResourceManifest.Entry entry = ResourceManifest.createDirectoryEntry(res,
+                        previous);
                 File check = new File(resDir, parent.getName() + ".zip");
-                if (!check.exists()) {
+                if (!check.exists() || !entry.isSameContent(previous)) {
                     libraries.add(library);
+                    mPendingEntries.put(key, entry);
+                } else if (entry != previous) {
+                    mManifest.put(key, entry);
+                }
+            }
+        }
+
+        File[] zipFiles = resDir.listFiles(file -> file.getName().endsWith(".zip"));
+        if (zipFiles != null) {
+            for (File zipFile : zipFiles) {
+                if (!zipNames.contains(zipFile.getName())) {
+                    FileUtils.delete(zipFile);
+                    mManifest.remove(LIBRARY_PREFIX + zipFile.getName()
+                            .substring(0, zipFile.getName().length() - ".zip".length()));
                 }
             }
         }
@@ -479,22 +423,12 @@ public class IncrementalAapt2Task extends Task<AndroidModule> {
         return createdFile;
     }
 
-    private File getOutputDirectory() throws IOException {
-        File intermediateDirectory = new File(getModule().getBuildDirectory(), "intermediate");
-
-        if (!intermediateDirectory.exists()) {
-            if (!intermediateDirectory.mkdirs()) {
-                throw new IOException("Failed to create intermediate directory");
-            }
-        }
-
-        File resourceDirectory = new File(intermediateDirectory, "resources");
-        if (!resourceDirectory.exists()) {
-            if (!resourceDirectory.mkdirs()) {
-                throw new IOException("Failed to create resource directory");
-            }
+    private File getCompiledDirectory() throws IOException {
+        File compiled = new File(getModule().getBuildDirectory(), "bin/res/compiled");
+        if (!compiled.exists() && !compiled.mkdirs()) {
+            throw new IOException("Failed to create compiled directory");
         }
-        return resourceDirectory;
+        return compiled;
     }
 
     private File getOutputPath() throws IOException {
@@ -0,0 +1,198 @@
+package com.tyron.builder.compiler.incremental.resource;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import com.google.common.io.Files;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Records the content hash of every resource compiled by {@link IncrementalAapt2Task}.
+ *
+ * Each entry also keeps a stamp of the size and last modified time of the file, the contents
+ * are only hashed again when the stamp changes. A file whose stamp changed but whose contents
+ * did not, such as one restored by git or saved without changes, is not compiled again.
+ */
+public class ResourceManifest {
+
+    private static final int MAGIC = 0x52534d46;
+    private static final int VERSION = 1;
+
+    public static class Entry {
+        private final long mStamp;
+        private final String mHash;
+
+        Entry(long stamp, String hash) {
+            mStamp = stamp;
+            mHash = hash;
+        }
+
+        public String getHash() {
+            return mHash;
+        }
+
+        /**
+         * @return Whether the contents are the same as the other entry
+         */
+        public boolean isSameContent(@Nullable Entry other) {
+            return other != null && mHash.equals(other.mHash);
+        }
+    }
+
+    /**
+     * @return The manifest saved in the file, or an empty manifest if it cannot be read
+     */
+    @NonNull
+    public static ResourceManifest read(@NonNull File file) {
+        ResourceManifest manifest = new ResourceManifest();
+        if (!file.exists()) {
+            return manifest;
+        }
+        try (DataInputStream in = new DataInputStream(
+                new BufferedInputStream(new FileInputStream(file)))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                return manifest;
+            }
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                String key = in.readUTF();
+                long stamp = in.readLong();
+                String hash = in.readUTF();
+                manifest.mEntries.put(key, new Entry(stamp, hash));
+            }
+        } catch (IOException e) {
+            // everything is compiled again
+            manifest.mEntries.clear();
+        }
+        return manifest;
+    }
+
+    /**
+     * Computes the entry of a file, the previous entry is reused if the file has the same
+     * size and last modified time.
+     */
+    @NonNull
+    public static Entry createEntry(@NonNull File file, @Nullable Entry previous)
+            throws IOException {
+        long stamp = Hashing.murmur3_128().newHasher()
+                .putLong(file.length())
+                .putLong(file.lastModified())
+                .hash().asLong();
+        if (previous != null && previous.mStamp == stamp) {
+            return previous;
+        }
+        return new Entry(stamp, Files.asByteSource(file).hash(Hashing.sha256()).toString());
+    }
+
+    /**
+     * Computes the entry of a directory from the files inside it, used for the resource
+     * directories of libraries.
+     */
+    @NonNull
+    public static Entry createDirectoryEntry(@NonNull File directory, @Nullable Entry previous)
+            throws IOException {
+        List<File> files = new ArrayList<>();
+        listFiles(directory, files);
+        files.sort((first, second) -> first.getPath().compareTo(second.getPath()));
+
+        Hasher stampHasher = Hashing.murmur3_128().newHasher();
+        for (File file : files) {
+            stampHasher.putString(file.getPath(), StandardCharsets.UTF_8)
+                    .putLong(file.length())
+                    .putLong(file.lastModified());
+        }
+        long stamp = stampHasher.hash().asLong();
+        if (previous != null && previous.mStamp == stamp) {
+            return previous;
+        }
+
+        Hasher hasher = Hashing.sha256().newHasher();
+        String root = directory.getAbsolutePath();
+        for (File file : files) {
+            hasher.putString(file.getAbsolutePath().substring(root.length()),
+                    StandardCharsets.UTF_8);
+            hasher.putBytes(Files.asByteSource(file).hash(Hashing.sha256()).asBytes());
+        }
+        return new Entry(stamp, hasher.hash().toString());
+    }
+
+    private static void listFiles(File directory, List<File> result) {
+        File[] children = directory.listFiles();
+        if (children == null) {
+            return;
+        }
+        for (File child : children) {
+            if (child.isDirectory()) {
+                listFiles(child, result);
+            } else {
+                result.add(child);
+            }
+        }
+    }
+
+    private final Map<String, Entry> mEntries = new HashMap<>();
+
+    @Nullable
+    public Entry get(@NonNull String key) {
+        return mEntries.get(key);
+    }
+
+    public void put(@NonNull String key, @NonNull Entry entry) {
+        mEntries.put(key, entry);
+    }
+
+    public void remove(@NonNull String key) {
+        mEntries.remove(key);
+    }
+
+    @NonNull
+    public Set<String> getKeys() {
+        return new HashSet<>(mEntries.keySet());
+    }
+
+    /**
+     * Saves the manifest, the file is replaced atomically
+     */
+    public void write(@NonNull File file) throws IOException {
+        File parent = file.getParentFile();
+        if (parent != null && !parent.exists() && !parent.mkdirs()) {
+            throw new IOException("Unable to create directory " + parent);
+        }
+        File temp = new File(file.getPath() + ".tmp");
+        try (FileOutputStream fileOut = new FileOutputStream(temp)) {
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(fileOut));
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(mEntries.size());
+            for (Map.Entry<String, Entry> entry : mEntries.entrySet()) {
+                out.writeUTF(entry.getKey());
+                out.writeLong(entry.getValue().mStamp);
+                out.writeUTF(entry.getValue().mHash);
+            }
+            out.flush();
+            fileOut.getFD().sync();
+        }
+        if (!temp.renameTo(file)) {
+            //noinspection ResultOfMethodCallIgnored
+            temp.delete();
+            throw new IOException("Unable to save resource manifest to " + file);
+        }
+    }
+}
@@ -11,6 +11,7 @@ import com.tyron.builder.exception.CompilationFailedException;
 import com.tyron.builder.log.ILogger;
 import com.tyron.builder.project.api.AndroidModule;
 import com.tyron.builder.project.cache.CacheHolder;
+import com.tyron.builder.project.cache.DataExternalizer;
 import com.tyron.common.util.Cache;
 
 import org.apache.commons.io.FileUtils;
@@ -29,7 +30,8 @@ import java.util.List;
 public class MergeSymbolsTask extends Task<AndroidModule> {
 
     public static final CacheHolder.CacheKey<Void, Void> CACHE_KEY =
-            new CacheHolder.CacheKey<>("mergeSymbolsCache");
+            new CacheHolder.CacheKey<>("mergeSymbolsCache", DataExternalizer.VOID,
+                    DataExternalizer.VOID);
 
     private File mSymbolOutputDir;
     private File mFullResourceFile;
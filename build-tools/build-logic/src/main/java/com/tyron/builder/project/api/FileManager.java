@@ -50,6 +50,51 @@ public interface FileManager {
         setSnapshotContent(file, content, true);
     }
 
+    /**
+     * Replaces a range of the stored contents of the file without notifying the passed
+     * FileListener, other listeners receive the edit as a
+     * {@link com.tyron.builder.project.listener.FileChange}
+     *
+     * The default implementation copies the whole contents with {@code toString()} and
+     * {@code substring()} on every edit and sets them through
+     * {@link #setSnapshotContent(File, String, FileListener)}. Only
+     * {@link com.tyron.builder.project.impl.FileManagerImpl} edits its contents in place
+     * without copying them.
+     *
+     * @param file The file to be edited, must have been opened before
+     * @param offset The start of the replaced range
+     * @param removedLength The length of the replaced range
+     * @param insertedText The text to insert at the offset
+     * @param listener The listener to ignore
+     * @return false if the file is not opened or the range is outside of the stored contents,
+     * in which case the whole contents should be set instead
+     */
+    default boolean applySnapshotEdit(@NonNull File file, int offset, int removedLength,
+                                      @NonNull CharSequence insertedText,
+                                      FileListener listener) {
+        Optional<CharSequence> current = getFileContent(file);
+        if (!current.isPresent()) {
+            return false;
+        }
+        String contents = current.get().toString();
+        if (offset < 0 || removedLength < 0 || offset + removedLength > contents.length()) {
+            return false;
+        }
+        setSnapshotContent(file, contents.substring(0, offset) + insertedText +
+                                 contents.substring(offset + removedLength), listener);
+        return true;
+    }
+
+    /**
+     * @param file The file
+     * @return The version of the stored contents, incremented on every change and reported
+     * by {@link com.tyron.builder.project.listener.FileChange#getVersion()}, or -1 if the
+     * file is not opened or this file manager does not keep versions
+     */
+    default long getSnapshotVersion(@NonNull File file) {
+        return -1;
+    }
+
     /**
      * Mark the file as closed and save its stored snapshot to disk
      * @param file the file to be saved
@@ -4,6 +4,7 @@ import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 
 import com.tyron.builder.model.Library;
+import com.tyron.builder.project.index.ClassNameIndex;
 
 import java.io.File;
 import java.util.List;
@@ -20,6 +21,13 @@ public interface JavaModule extends Module {
 
     File getJavaFile(@NonNull String packageName);
 
+    /**
+     * @param packageName The package name, empty for the default package
+     * @return The java files declared directly inside the package
+     */
+    @NonNull
+    List<File> getJavaFilesInPackage(@NonNull String packageName);
+
     void removeJavaFile(@NonNull String packageName);
 
     void addJavaFile(@NonNull File javaFile);
@@ -47,6 +55,13 @@ public interface JavaModule extends Module {
      */
     Set<String> getAllClasses();
 
+    /**
+     * @return An index of the classes in this project including its libraries,
+     * used to search classes by name without copying all of them in memory
+     */
+    @NonNull
+    ClassNameIndex getClassNameIndex();
+
     /**
      * @return The resources directory of the project. Note that
      * this is different from android's res directory
@@ -1,23 +1,59 @@
 package com.tyron.builder.project.cache;
 
+import androidx.annotation.Nullable;
+
 import com.tyron.common.util.Cache;
 
+import java.io.IOException;
+
 public interface CacheHolder {
 
     class CacheKey<K, V> {
 
         private final String name;
+        private final DataExternalizer<K> keyExternalizer;
+        private final DataExternalizer<V> valueExternalizer;
 
         public CacheKey(String name) {
+            this(name, null, null);
+        }
+
+        /**
+         * Creates a key whose cache is saved to disk by {@link CacheHolder#saveCaches()}
+         * and restored the first time it is requested after a restart.
+         */
+        public CacheKey(String name, DataExternalizer<K> keyExternalizer,
+                        DataExternalizer<V> valueExternalizer) {
             this.name = name;
+            this.keyExternalizer = keyExternalizer;
+            this.valueExternalizer = valueExternalizer;
         }
 
         public String getName() {
             return name;
         }
+
+        @Nullable
+        public DataExternalizer<K> getKeyExternalizer() {
+            return keyExternalizer;
+        }
+
+        @Nullable
+        public DataExternalizer<V> getValueExternalizer() {
+            return valueExternalizer;
+        }
+
+        public boolean isPersistent() {
+            return keyExternalizer != null && valueExternalizer != null;
+        }
     }
 
     public <K, V> Cache<K, V> getCache(CacheKey<K, V> key, Cache<K, V> defaultValue);
 
     public <K, V> void put(CacheKey<K, V> key, Cache<K, V> value);
+
+    /**
+     * Saves the caches of persistent keys that have been used
+     */
+    public void saveCaches() throws IOException;
 }
@@ -0,0 +1,195 @@
+package com.tyron.builder.project.cache;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.tyron.common.util.Cache;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * Saves the caches of a module to a single file so incremental builds still work after the
+ * app is restarted.
+ *
+ * <pre>
+ * int    magic
+ * int    version
+ * int    cache count
+ * caches, each is the name of the cache, the length of its data and the data itself
+ * long   CRC32 of everything before it
+ * </pre>
+ *
+ * The data of a cache is only decoded when the cache is first requested. The file is replaced
+ * atomically when saved, a file that is truncated or fails the checksum is ignored so the next
+ * build compiles everything instead of trusting outputs that may not match.
+ */
+public class CacheStore {
+
+    private static final int MAGIC = 0x43414348;
+    private static final int VERSION = 1;
+
+    private final File mFile;
+
+    /**
+     * The data of the caches that have not been requested yet, null until the file is read
+     */
+    private Map<String, byte[]> mPending;
+
+    public CacheStore(@NonNull File file) {
+        mFile = file;
+    }
+
+    /**
+     * @return The saved cache of the key, or null if it was not saved or cannot be read
+     */
+    @Nullable
+    public synchronized <K, V> Cache<K, V> load(@NonNull CacheHolder.CacheKey<K, V> key) {
+        byte[] data = getPending().remove(key.getName());
+        if (data == null || !key.isPersistent()) {
+            return null;
+        }
+
+        DataExternalizer<K> keyExternalizer = key.getKeyExternalizer();
+        DataExternalizer<V> valueExternalizer = key.getValueExternalizer();
+        Cache<K, V> cache = new Cache<>();
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(data))) {
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                String path = in.readUTF();
+                long modified = in.readLong();
+                long size = in.readLong();
+                K k = keyExternalizer.read(in);
+                V v = valueExternalizer.read(in);
+                if (valueExternalizer.isValid(v)) {
+                    cache.restore(new Cache.Entry<>(Paths.get(path), k, v, modified, size));
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            return null;
+        }
+        return cache;
+    }
+
+    /**
+     * Saves the given caches along with the caches that were saved before but
+     * have not been requested since.
+     */
+    public synchronized void save(@NonNull Map<CacheHolder.CacheKey<?, ?>, Cache<?, ?>> caches)
+            throws IOException {
+        Map<String, byte[]> sections = new LinkedHashMap<>(getPending());
+        for (Map.Entry<CacheHolder.CacheKey<?, ?>, Cache<?, ?>> entry : caches.entrySet()) {
+            if (entry.getKey().isPersistent()) {
+                sections.put(entry.getKey().getName(), encode(entry.getKey(), entry.getValue()));
+            }
+        }
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeInt(sections.size());
+        for (Map.Entry<String, byte[]> section : sections.entrySet()) {
+            out.writeUTF(section.getKey());
+            out.writeInt(section.getValue().length);
+            out.write(section.getValue());
+        }
+        CRC32 crc = new CRC32();
+        crc.update(bytes.toByteArray());
+        out.writeLong(crc.getValue());
+        out.flush();
+
+        File parent = mFile.getParentFile();
+        if (parent != null && !parent.exists() && !parent.mkdirs()) {
+            throw new IOException("Unable to create directory " + parent);
+        }
+        File temp = new File(mFile.getPath() + ".tmp");
+        try (FileOutputStream fileOut = new FileOutputStream(temp)) {
+            bytes.writeTo(fileOut);
+            fileOut.getFD().sync();
+        }
+        if (!temp.renameTo(mFile)) {
+            //noinspection ResultOfMethodCallIgnored
+            temp.delete();
+            throw new IOException("Unable to save caches to " + mFile);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <K, V> byte[] encode(CacheHolder.CacheKey<K, V> key, Cache<?, ?> cache)
+            throws IOException {
+        List<Cache.Entry<K, V>> entries = ((Cache<K, V>) cache).getEntries();
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(entries.size());
+        for (Cache.Entry<K, V> entry : entries) {
+            out.writeUTF(entry.file.toString());
+            out.writeLong(entry.modified);
+            out.writeLong(entry.size);
+            key.getKeyExternalizer().save(out, entry.key);
+            key.getValueExternalizer().save(out, entry.value);
+        }
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+    private Map<String, byte[]> getPending() {
+        if (mPending == null) {
+            mPending = read();
+        }
+        return mPending;
+    }
+
+    private Map<String, byte[]> read() {
+        Map<String, byte[]> sections = new HashMap<>();
+        if (!mFile.exists()) {
+            return sections;
+        }
+        try {
+            byte[] bytes = Files.readAllBytes(mFile.toPath());
+            if (bytes.length < 20) {
+                return sections;
+            }
+            CRC32 crc = new CRC32();
+            crc.update(bytes, 0, bytes.length - 8);
+            if (crc.getValue() != ByteBuffer.wrap(bytes, bytes.length - 8, 8).getLong()) {
+                return sections;
+            }
+
+            DataInputStream in = new DataInputStream(
+                    new ByteArrayInputStream(bytes, 0, bytes.length - 8));
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                return sections;
+            }
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                String name = in.readUTF();
+                int length = in.readInt();
+                if (length < 0 || length > in.available()) {
+                    sections.clear();
+                    return sections;
+                }
+                byte[] data = new byte[length];
+                in.readFully(data);
+                sections.put(name, data);
+            }
+        } catch (IOException e) {
+            // a damaged file is treated as missing
+            sections.clear();
+        }
+        return sections;
+    }
+}
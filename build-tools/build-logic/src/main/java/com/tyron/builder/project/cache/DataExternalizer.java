@@ -0,0 +1,87 @@
+package com.tyron.builder.project.cache;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Writes and reads the keys and values of a persistent cache
+ */
+public interface DataExternalizer<T> {
+
+    DataExternalizer<Void> VOID = new DataExternalizer<Void>() {
+        @Override
+        public void save(DataOutput out, Void value) {
+
+        }
+
+        @Override
+        public Void read(DataInput in) {
+            return null;
+        }
+    };
+
+    DataExternalizer<String> STRING = new DataExternalizer<String>() {
+        @Override
+        public void save(DataOutput out, String value) throws IOException {
+            out.writeUTF(value);
+        }
+
+        @Override
+        public String read(DataInput in) throws IOException {
+            return in.readUTF();
+        }
+    };
+
+    /**
+     * A list of output files, the value is discarded when one of the files has been deleted
+     * since the outputs have to be generated again.
+     */
+    DataExternalizer<List<File>> FILE_LIST = new DataExternalizer<List<File>>() {
+        @Override
+        public void save(DataOutput out, List<File> value) throws IOException {
+            out.writeInt(value.size());
+            for (File file : value) {
+                out.writeUTF(file.getAbsolutePath());
+            }
+        }
+
+        @Override
+        public List<File> read(DataInput in) throws IOException {
+            int size = in.readInt();
+            if (size < 0) {
+                throw new IOException("Invalid list size " + size);
+            }
+            List<File> files = new ArrayList<>(size);
+            for (int i = 0; i < size; i++) {
+                files.add(new File(in.readUTF()));
+            }
+            return Collections.unmodifiableList(files);
+        }
+
+        @Override
+        public boolean isValid(List<File> value) {
+            for (File file : value) {
+                if (!file.exists()) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    };
+
+    void save(DataOutput out, T value) throws IOException;
+
+    T read(DataInput in) throws IOException;
+
+    /**
+     * @return Whether a value read from disk can still be used
+     */
+    default boolean isValid(T value) {
+        return true;
+    }
+}
@@ -9,6 +9,9 @@ import com.tyron.builder.compiler.manifest.xml.ManifestData;
 import com.tyron.builder.compiler.symbol.MergeSymbolsTask;
 import com.tyron.builder.model.ModuleSettings;
 import com.tyron.builder.project.api.AndroidModule;
+import com.tyron.builder.project.index.ClassNameIndex;
+import com.tyron.builder.project.index.ClassNameTrie;
+import com.tyron.builder.project.index.CompositeClassNameIndex;
 import com.tyron.common.util.StringSearch;
 
 import org.apache.commons.io.FileUtils;
@@ -20,6 +23,7 @@ import org.xml.sax.SAXException;
 import java.io.File;
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -30,11 +34,13 @@ public class AndroidModuleImpl extends JavaModuleImpl implements AndroidModule {
 
     private ManifestData mManifestData;
     private final Map<String, File> mKotlinFiles;
+    private final ClassNameTrie mKotlinClassNames;
 
     public AndroidModuleImpl(File root) {
         super(root);
 
         mKotlinFiles = new HashMap<>();
+        mKotlinClassNames = new ClassNameTrie();
     }
 
     @Override
@@ -94,6 +100,14 @@ public class AndroidModuleImpl extends JavaModuleImpl implements AndroidModule {
         return classes;
     }
 
+    @NonNull
+    @Override
+    public ClassNameIndex getClassNameIndex() {
+        return new CompositeClassNameIndex(Arrays.asList(
+                mKotlinClassNames,
+                super.getClassNameIndex()));
+    }
+
     @Override
     public File getNativeLibrariesDirectory() {
         File custom = getPathSetting("native_libraries_directory");
@@ -169,6 +183,7 @@ public class AndroidModuleImpl extends JavaModuleImpl implements AndroidModule {
         }
         String fqn = packageName + "." + file.getName().replace(".kt", "");
         mKotlinFiles.put(fqn, file);
+        mKotlinClassNames.add(fqn);
     }
 
     @Override
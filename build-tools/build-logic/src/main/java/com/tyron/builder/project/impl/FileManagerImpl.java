@@ -6,7 +6,9 @@ import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 
 import com.tyron.builder.project.api.FileManager;
+import com.tyron.builder.project.listener.FileChange;
 import com.tyron.builder.project.listener.FileListener;
+import com.tyron.builder.util.Rope;
 
 import org.apache.commons.io.FileUtils;
 
@@ -19,7 +21,6 @@ import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Objects;
 import java.util.Optional;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
@@ -28,15 +29,16 @@ public class FileManagerImpl implements FileManager {
 
     private static class FileState {
 
-        private String mContents;
+        private Rope mContents;
         private Instant mModified;
+        private long mVersion;
 
         public FileState(String contents, Instant modified) {
-            mContents = contents;
+            mContents = Rope.of(contents);
             mModified = modified;
         }
 
-        public String getContents() {
+        public Rope getContents() {
             return mContents;
         }
 
@@ -44,8 +46,13 @@ public class FileManagerImpl implements FileManager {
             return mModified;
         }
 
-        public void setContents(String content) {
+        public long getVersion() {
+            return mVersion;
+        }
+
+        public void setContents(Rope content) {
             mContents = content;
+            mVersion++;
         }
 
         public void setModified(Instant now) {
@@ -104,45 +111,110 @@ public class FileManagerImpl implements FileManager {
 
     @Override
     public void setSnapshotContent(@NonNull File file, String content, FileListener listener) {
-        if (!mSnapshots.containsKey(file)) {
+        Rope contents = Rope.of(content);
+        FileChange change = replaceContents(file, content, contents);
+        if (change == null) {
+            return;
+        }
+        notifyListeners(file, contents, change, listener);
+    }
+
+    @Override
+    public void setSnapshotContent(@NonNull File file, String content, boolean notify) {
+        Rope contents = Rope.of(content);
+        FileChange change = replaceContents(file, content, contents);
+        if (change == null) {
             return;
         }
+        if (notify) {
+            notifyListeners(file, contents, change, null);
+        }
+    }
 
+    /**
+     * Applies the edit to the rope of the file, so only the edited chunks are copied
+     * instead of the whole contents of the file.
+     */
+    @Override
+    public boolean applySnapshotEdit(@NonNull File file, int offset, int removedLength,
+                                     @NonNull CharSequence insertedText,
+                                     FileListener listener) {
+        FileChange[] change = new FileChange[1];
+        Rope[] edited = new Rope[1];
         mSnapshots.computeIfPresent(file, (f, state) -> {
-            boolean equals = Objects.equals(content, state.getContents());
-            state.setContents(content);
-            if (!equals) {
-                state.setModified(Instant.now());
+            Rope contents = state.getContents();
+            if (offset < 0 || removedLength < 0 ||
+                offset + removedLength > contents.length()) {
+                return state;
             }
+            CharSequence inserted = insertedText.toString();
+            edited[0] = contents.replace(offset, offset + removedLength, inserted);
+            state.setContents(edited[0]);
+            state.setModified(Instant.now());
+            change[0] = new FileChange(offset, removedLength, inserted, state.getVersion());
             return state;
         });
-
-        for (FileListener l : mListeners) {
-            if (l.equals(listener)) {
-                continue;
-            }
-            l.onSnapshotChanged(file, content);
+        if (change[0] == null) {
+            return false;
         }
+        notifyListeners(file, edited[0], change[0], listener);
+        return true;
     }
 
     @Override
-    public void setSnapshotContent(@NonNull File file, String content, boolean notify) {
-        if (!mSnapshots.containsKey(file)) {
-            return;
+    public long getSnapshotVersion(@NonNull File file) {
+        FileState state = mSnapshots.get(file);
+        if (state == null) {
+            return -1;
         }
+        return state.getVersion();
+    }
 
+    /**
+     * Replaces the whole contents of the file, the change only covers the text between the
+     * common prefix and suffix of the previous and the new contents.
+     *
+     * @param text The new contents
+     * @param content The rope of the new contents
+     * @return The change made, or null if the file is not opened or its contents are the same
+     */
+    @Nullable
+    private FileChange replaceContents(@NonNull File file, @NonNull String text,
+                                       @NonNull Rope content) {
+        FileChange[] change = new FileChange[1];
         mSnapshots.computeIfPresent(file, (f, state) -> {
-            boolean equals = Objects.equals(content, state.getContents());
-            state.setContents(content);
-            if (!equals) {
-                state.setModified(Instant.now());
+            String previous = state.getContents().toString();
+            if (previous.equals(text)) {
+                return state;
             }
+            int start = 0;
+            int max = Math.min(previous.length(), text.length());
+            while (start < max && previous.charAt(start) == text.charAt(start)) {
+                start++;
+            }
+            int previousEnd = previous.length();
+            int end = text.length();
+            while (previousEnd > start && end > start &&
+                   previous.charAt(previousEnd - 1) == text.charAt(end - 1)) {
+                previousEnd--;
+                end--;
+            }
+            state.setContents(content);
+            state.setModified(Instant.now());
+            change[0] = new FileChange(start, previousEnd - start, text.substring(start, end),
+                    state.getVersion());
             return state;
         });
-        if (notify) {
-            for (FileListener listener : mListeners) {
-                listener.onSnapshotChanged(file, content);
+        return change[0];
+    }
+
+    private void notifyListeners(@NonNull File file, @NonNull Rope contents,
+                                 @NonNull FileChange change, @Nullable FileListener ignored) {
+        for (FileListener l : mListeners) {
+            if (l.equals(ignored)) {
+                continue;
             }
+            l.onSnapshotChanged(file, contents, change);
         }
     }
 
@@ -155,7 +227,7 @@ public class FileManagerImpl implements FileManager {
             try {
                 FileState state = mSnapshots.get(file);
                 FileUtils.writeStringToFile(file,
-                        state.getContents(),
+                        state.getContents().toString(),
                         StandardCharsets.UTF_8);
             } catch (IOException e) {
                 Log.d(TAG, "Failed to save file " + file.getName(), e);
@@ -188,7 +260,7 @@ public class FileManagerImpl implements FileManager {
         mSnapshots.forEach((k, v) -> mService.execute(() -> {
             try {
                 FileUtils.writeStringToFile(k,
-                        v.getContents(), StandardCharsets.UTF_8);
+                        v.getContents().toString(), StandardCharsets.UTF_8);
             } catch (IOException e) {
                 // ignored
             }
@@ -7,6 +7,11 @@ import com.google.common.collect.ImmutableList;
 import com.tyron.builder.BuildModule;
 import com.tyron.builder.model.Library;
 import com.tyron.builder.project.api.JavaModule;
+import com.tyron.builder.project.index.ClassNameIndex;
+import com.tyron.builder.project.index.ClassNameTrie;
+import com.tyron.builder.project.index.CompositeClassNameIndex;
+import com.tyron.builder.project.index.JarClassNameIndex;
+import com.tyron.builder.project.index.PackageIndex;
 import com.tyron.common.util.StringSearch;
 
 import org.apache.commons.io.FileUtils;
@@ -16,27 +21,29 @@ import org.apache.commons.io.filefilter.TrueFileFilter;
 import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
-import java.util.Enumeration;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.jar.JarEntry;
-import java.util.jar.JarFile;
 
 public class JavaModuleImpl extends ModuleImpl implements JavaModule {
 
-    // Map of fully qualified names and the jar they are contained in
-    private final Map<String, File> mClassFiles;
+    // Map of jar files and the index of the classes they contain
+    private final Map<File, ClassNameIndex> mJarIndexes;
     private final Map<String, File> mJavaFiles;
+    private final ClassNameTrie mJavaClassNames;
+    private final PackageIndex mJavaPackages;
     private final Map<String, Library> mLibraryHashMap;
     private final Set<File> mLibraries;
 
     public JavaModuleImpl(File root) {
         super(root);
         mJavaFiles = new HashMap<>();
-        mClassFiles = new HashMap<>();
+        mJavaClassNames = new ClassNameTrie();
+        mJavaPackages = new PackageIndex();
+        mJarIndexes = new LinkedHashMap<>();
         mLibraries = new HashSet<>();
         mLibraryHashMap = new HashMap<>();
     }
@@ -53,9 +60,17 @@ public class JavaModuleImpl extends ModuleImpl implements JavaModule {
         return mJavaFiles.get(packageName);
     }
 
+    @NonNull
+    @Override
+    public List<File> getJavaFilesInPackage(@NonNull String packageName) {
+        return mJavaPackages.get(packageName);
+    }
+
     @Override
     public void removeJavaFile(@NonNull String packageName) {
         mJavaFiles.remove(packageName);
+        mJavaClassNames.remove(packageName);
+        mJavaPackages.remove(packageName);
     }
 
     @Override
@@ -71,6 +86,8 @@ public class JavaModuleImpl extends ModuleImpl implements JavaModule {
             className = packageName + "." + javaFile.getName().replace(".java", "");
         }
         mJavaFiles.put(className, javaFile);
+        mJavaClassNames.add(className);
+        mJavaPackages.put(className, javaFile);
     }
 
     @Override
@@ -88,10 +105,21 @@ public class JavaModuleImpl extends ModuleImpl implements JavaModule {
     public Set<String> getAllClasses() {
         Set<String> classes = new HashSet<>();
         classes.addAll(mJavaFiles.keySet());
-        classes.addAll(mClassFiles.keySet());
+        for (ClassNameIndex index : mJarIndexes.values()) {
+            index.forEach(classes::add);
+        }
         return classes;
     }
 
+    @NonNull
+    @Override
+    public ClassNameIndex getClassNameIndex() {
+        List<ClassNameIndex> indexes = new ArrayList<>();
+        indexes.add(mJavaClassNames);
+        indexes.addAll(mJarIndexes.values());
+        return new CompositeClassNameIndex(indexes);
+    }
+
     @Override
     public List<File> getLibraries() {
         return ImmutableList.copyOf(mLibraries);
@@ -103,8 +131,6 @@ public class JavaModuleImpl extends ModuleImpl implements JavaModule {
             return;
         }
         try {
-            // noinspection unused, used to check if jar is valid.
-            JarFile jarFile = new JarFile(jar);
             putJar(jar);
             mLibraries.add(jar);
         } catch (IOException e) {
@@ -116,27 +142,7 @@ public class JavaModuleImpl extends ModuleImpl implements JavaModule {
         if (file == null) {
             return;
         }
-        try (JarFile jar = new JarFile(file)) {
-            Enumeration<JarEntry> entries = jar.entries();
-            while (entries.hasMoreElements()) {
-                JarEntry entry = entries.nextElement();
-
-                if (!entry.getName().endsWith(".class")) {
-                    continue;
-                }
-
-                // We only want top level classes, if it contains $ then
-                // its an inner class, we ignore it
-                if (entry.getName().contains("$")) {
-                    continue;
-                }
-
-                String packageName = entry.getName().replace("/", ".")
-                        .substring(0, entry.getName().length() - ".class".length());
-
-                mClassFiles.put(packageName, file);
-            }
-        }
+        mJarIndexes.put(file, JarClassNameIndex.get(file));
     }
 
     @NonNull
@@ -222,6 +228,9 @@ public class JavaModuleImpl extends ModuleImpl implements JavaModule {
     @Override
     public void clear() {
         mJavaFiles.clear();
+        mJavaClassNames.clear();
+        mJavaPackages.clear();
+        mJarIndexes.clear();
         mLibraries.clear();
         mLibraryHashMap.clear();
     }
@@ -5,6 +5,7 @@ import androidx.annotation.Nullable;
 import com.tyron.builder.model.ModuleSettings;
 import com.tyron.builder.project.api.FileManager;
 import com.tyron.builder.project.api.Module;
+import com.tyron.builder.project.cache.CacheStore;
 import com.tyron.common.util.Cache;
 
 import org.jetbrains.annotations.NotNull;
@@ -15,8 +16,8 @@ import org.jetbrains.kotlin.com.intellij.util.keyFMap.KeyFMap;
 
 import java.io.File;
 import java.io.IOException;
-import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class ModuleImpl implements Module {
 
@@ -145,13 +146,26 @@ public class ModuleImpl implements Module {
 
     private static final AtomicFieldUpdater<ModuleImpl, KeyFMap> updater = AtomicFieldUpdater.forFieldOfType(ModuleImpl.class, KeyFMap.class);
 
-    private final Map<CacheKey<?, ?>, Cache<?, ?>> mCacheMap = new HashMap<>();
+    private final Map<CacheKey<?, ?>, Cache<?, ?>> mCacheMap = new ConcurrentHashMap<>();
+    private CacheStore mCacheStore;
+
+    private synchronized CacheStore getCacheStore() {
+        if (mCacheStore == null) {
+            mCacheStore = new CacheStore(new File(getBuildDirectory(), "intermediate/caches.bin"));
+        }
+        return mCacheStore;
+    }
 
     @Override
     public <K, V> Cache<K, V> getCache(CacheKey<K, V> key, Cache<K, V> defaultValue) {
-        Object o = mCacheMap.get(key);
+        if (key.isPersistent() && !mCacheMap.containsKey(key)) {
+            Cache<K, V> saved = getCacheStore().load(key);
+            if (saved != null) {
+                defaultValue = saved;
+            }
+        }
+        Object o = mCacheMap.putIfAbsent(key, defaultValue);
         if (o == null) {
-            put(key, defaultValue);
             return defaultValue;
         }
         //noinspection unchecked
@@ -166,4 +180,9 @@ public class ModuleImpl implements Module {
     public <K, V> void put(CacheKey<K, V> key, Cache<K, V> value) {
         mCacheMap.put(key, value);
     }
+
+    @Override
+    public void saveCaches() throws IOException {
+        getCacheStore().save(mCacheMap);
+    }
 }
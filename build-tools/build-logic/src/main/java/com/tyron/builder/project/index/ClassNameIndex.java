@@ -0,0 +1,91 @@
+package com.tyron.builder.project.index;
+
+import androidx.annotation.NonNull;
+
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+/**
+ * An index of fully qualified class names that can be searched by the simple name of the
+ * class, without copying every known class name into memory.
+ *
+ * Lookups pass matching names to a {@link Predicate}, returning {@code false} from it stops
+ * the search early.
+ */
+public interface ClassNameIndex {
+
+    ClassNameIndex EMPTY = new ClassNameIndex() {
+        @Override
+        public void findByPrefix(@NonNull String prefix, boolean caseSensitive,
+                                 @NonNull Predicate<String> consumer) {
+
+        }
+
+        @Override
+        public void findByCamelHump(@NonNull String pattern, @NonNull Predicate<String> consumer) {
+
+        }
+
+        @Override
+        public boolean contains(@NonNull String fqn) {
+            return false;
+        }
+
+        @Override
+        public void forEach(@NonNull Consumer<String> consumer) {
+
+        }
+
+        @Override
+        public int size() {
+            return 0;
+        }
+    };
+
+    /**
+     * Finds the classes whose simple name starts with the given prefix
+     *
+     * @param prefix        The prefix of the simple name, an empty prefix matches every class
+     * @param caseSensitive Whether the case of the prefix should match
+     * @param consumer      Receives the fully qualified names, return false to stop searching
+     */
+    void findByPrefix(@NonNull String prefix, boolean caseSensitive,
+                      @NonNull Predicate<String> consumer);
+
+    /**
+     * Finds the classes whose simple name matches the pattern using camel humps,
+     * e.g. {@code AL} matches {@code java.util.ArrayList}.
+     *
+     * @see com.tyron.common.util.StringSearch#matchesCamelHump(CharSequence, CharSequence)
+     */
+    void findByCamelHump(@NonNull String pattern, @NonNull Predicate<String> consumer);
+
+    /**
+     * Finds the best matching classes for the pattern, ranked by {@link ClassNameRanking}.
+     * Both prefix and camel hump matches are included.
+     *
+     * @param pattern       The text typed by the user
+     * @param caseSensitive Whether the case of prefix matches must be the same
+     * @param limit         The maximum number of names returned
+     * @return The fully qualified names, best match first
+     */
+    @NonNull
+    default List<String> findBest(@NonNull String pattern, boolean caseSensitive, int limit) {
+        ClassNameRanking.Collector collector =
+                new ClassNameRanking.Collector(pattern, caseSensitive, limit);
+        findByPrefix(pattern, caseSensitive, collector);
+        findByCamelHump(pattern, collector);
+        return collector.getResult();
+    }
+
+    /**
+     * @param fqn The fully qualified name of the class
+     * @return whether this index contains the class
+     */
+    boolean contains(@NonNull String fqn);
+
+    void forEach(@NonNull Consumer<String> consumer);
+
+    int size();
+}
@@ -0,0 +1,120 @@
+package com.tyron.builder.project.index;
+
+import androidx.annotation.NonNull;
+
+import com.tyron.common.util.StringSearch;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.function.Predicate;
+
+/**
+ * Ranks class names against a completion pattern. Exact matches come first, then prefix
+ * matches and then camel hump matches. Names with the same rank are ordered by the length
+ * of their simple name and then alphabetically, so the result does not depend on the order
+ * in which the classes were found.
+ */
+public class ClassNameRanking {
+
+    public static final int EXACT = 0;
+    public static final int EXACT_IGNORE_CASE = 1;
+    public static final int PREFIX = 2;
+    public static final int PREFIX_IGNORE_CASE = 3;
+    public static final int CAMEL_HUMP = 4;
+    public static final int NO_MATCH = Integer.MAX_VALUE;
+
+    private static final Comparator<Candidate> ORDER =
+            Comparator.comparingInt((Candidate c) -> c.rank)
+                    .thenComparingInt(c -> c.simpleName.length())
+                    .thenComparing(c -> c.simpleName)
+                    .thenComparing(c -> c.fqn);
+
+    /**
+     * @param simpleName    The simple name of the class
+     * @param pattern       The text typed by the user
+     * @param caseSensitive Whether matches that ignore case are allowed
+     * @return The rank of the class, lower is better, {@link #NO_MATCH} if it does not match.
+     */
+    public static int rank(@NonNull String simpleName, @NonNull String pattern,
+                           boolean caseSensitive) {
+        if (simpleName.startsWith(pattern)) {
+            return simpleName.length() == pattern.length() ? EXACT : PREFIX;
+        }
+        if (!caseSensitive && simpleName.regionMatches(true, 0, pattern, 0, pattern.length())) {
+            return simpleName.length() == pattern.length() ? EXACT_IGNORE_CASE
+                    : PREFIX_IGNORE_CASE;
+        }
+        if (StringSearch.matchesCamelHump(simpleName, pattern)) {
+            return CAMEL_HUMP;
+        }
+        return NO_MATCH;
+    }
+
+    /**
+     * Collects the best ranked class names passed to it, keeping at most {@code limit}
+     * names in memory.
+     */
+    static class Collector implements Predicate<String> {
+
+        private final String mPattern;
+        private final boolean mCaseSensitive;
+        private final int mLimit;
+        private final Set<String> mSeen = new HashSet<>();
+        private final PriorityQueue<Candidate> mQueue;
+
+        Collector(String pattern, boolean caseSensitive, int limit) {
+            mPattern = pattern;
+            mCaseSensitive = caseSensitive;
+            mLimit = limit;
+            // the worst candidate is at the head so it can be replaced
+            mQueue = new PriorityQueue<>(Math.max(1, limit), ORDER.reversed());
+        }
+
+        @Override
+        public boolean test(String fqn) {
+            if (mLimit <= 0 || !mSeen.add(fqn)) {
+                return true;
+            }
+            String simpleName = JarClassNameIndex.simpleName(fqn);
+            int rank = rank(simpleName, mPattern, mCaseSensitive);
+            if (rank == NO_MATCH) {
+                return true;
+            }
+            Candidate candidate = new Candidate(rank, simpleName, fqn);
+            if (mQueue.size() < mLimit) {
+                mQueue.add(candidate);
+            } else if (ORDER.compare(candidate, mQueue.peek()) < 0) {
+                mQueue.poll();
+                mQueue.add(candidate);
+            }
+            return true;
+        }
+
+        List<String> getResult() {
+            List<Candidate> candidates = new ArrayList<>(mQueue);
+            candidates.sort(ORDER);
+            List<String> result = new ArrayList<>(candidates.size());
+            for (Candidate candidate : candidates) {
+                result.add(candidate.fqn);
+            }
+            return Collections.unmodifiableList(result);
+        }
+    }
+
+    private static class Candidate {
+        final int rank;
+        final String simpleName;
+        final String fqn;
+
+        Candidate(int rank, String simpleName, String fqn) {
+            this.rank = rank;
+            this.simpleName = simpleName;
+            this.fqn = fqn;
+        }
+    }
+}
@@ -0,0 +1,268 @@
+package com.tyron.builder.project.index;
+
+import androidx.annotation.NonNull;
+
+import com.tyron.common.util.StringSearch;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+/**
+ * A {@link ClassNameIndex} that can be updated as classes are added or removed, used for
+ * the source files of a module.
+ *
+ * Class names are stored in two tries, one keyed by their simple name and one keyed by the
+ * initials of the humps of their simple name ({@code AL} for {@code ArrayList}). Lookups only
+ * visit the part of the trie that can match, case insensitive lookups follow both the
+ * lower case and upper case variant of each character.
+ */
+public class ClassNameTrie implements ClassNameIndex {
+
+    private final Node mNames = new Node();
+    private final Node mHumps = new Node();
+    private final Set<String> mClassNames = new HashSet<>();
+
+    /**
+     * @param fqn The fully qualified name of the class
+     * @return true if the class was not in this trie before
+     */
+    public synchronized boolean add(@NonNull String fqn) {
+        if (!mClassNames.add(fqn)) {
+            return false;
+        }
+        String simpleName = JarClassNameIndex.simpleName(fqn);
+        mNames.put(simpleName, fqn);
+        mHumps.put(StringSearch.camelHumpInitials(simpleName), fqn);
+        return true;
+    }
+
+    /**
+     * @param fqn The fully qualified name of the class
+     * @return true if the class was in this trie
+     */
+    public synchronized boolean remove(@NonNull String fqn) {
+        if (!mClassNames.remove(fqn)) {
+            return false;
+        }
+        String simpleName = JarClassNameIndex.simpleName(fqn);
+        mNames.remove(simpleName, 0, fqn);
+        mHumps.remove(StringSearch.camelHumpInitials(simpleName), 0, fqn);
+        return true;
+    }
+
+    public synchronized void clear() {
+        mClassNames.clear();
+        mNames.clear();
+        mHumps.clear();
+    }
+
+    @Override
+    public synchronized void findByPrefix(@NonNull String prefix, boolean caseSensitive,
+                                          @NonNull Predicate<String> consumer) {
+        List<Node> starts = new ArrayList<>();
+        findPrefixNodes(mNames, prefix, 0, caseSensitive, starts);
+
+        // breadth first, so shorter names are found first
+        Deque<Node> queue = new ArrayDeque<>(starts);
+        while (!queue.isEmpty()) {
+            Node node = queue.poll();
+            if (node.values != null) {
+                for (String value : node.values) {
+                    if (!consumer.test(value)) {
+                        return;
+                    }
+                }
+            }
+            queue.addAll(Arrays.asList(node.children).subList(0, node.size));
+        }
+    }
+
+    private static void findPrefixNodes(Node node, String prefix, int index,
+                                        boolean caseSensitive, List<Node> result) {
+        if (index == prefix.length()) {
+            result.add(node);
+            return;
+        }
+        char c = prefix.charAt(index);
+        if (caseSensitive) {
+            Node child = node.get(c);
+            if (child != null) {
+                findPrefixNodes(child, prefix, index + 1, true, result);
+            }
+            return;
+        }
+        char lower = Character.toLowerCase(c);
+        char upper = Character.toUpperCase(c);
+        Node child = node.get(lower);
+        if (child != null) {
+            findPrefixNodes(child, prefix, index + 1, false, result);
+        }
+        if (upper != lower) {
+            child = node.get(upper);
+            if (child != null) {
+                findPrefixNodes(child, prefix, index + 1, false, result);
+            }
+        }
+    }
+
+    @Override
+    public synchronized void findByCamelHump(@NonNull String pattern,
+                                             @NonNull Predicate<String> consumer) {
+        if (pattern.isEmpty()) {
+            findByPrefix(pattern, false, consumer);
+            return;
+        }
+        List<Node> matches = new ArrayList<>();
+        findHumpNodes(mHumps, StringSearch.camelHumpInitials(pattern), 0, matches);
+
+        Deque<Node> stack = new ArrayDeque<>(matches);
+        while (!stack.isEmpty()) {
+            Node node = stack.pop();
+            if (node.values != null) {
+                for (String value : node.values) {
+                    // the initials only narrow down the candidates, check the whole pattern
+                    if (!StringSearch.matchesCamelHump(JarClassNameIndex.simpleName(value),
+                            pattern)) {
+                        continue;
+                    }
+                    if (!consumer.test(value)) {
+                        return;
+                    }
+                }
+            }
+            for (int i = 0; i < node.size; i++) {
+                stack.push(node.children[i]);
+            }
+        }
+    }
+
+    /**
+     * Finds the nodes whose key contains the initials in order, the first initial must
+     * match the first character of the key and the others may skip humps.
+     */
+    private static void findHumpNodes(Node node, String initials, int index, List<Node> result) {
+        if (index == initials.length()) {
+            result.add(node);
+            return;
+        }
+        char c = initials.charAt(index);
+        for (int i = 0; i < node.size; i++) {
+            if (node.keys[i] == c) {
+                findHumpNodes(node.children[i], initials, index + 1, result);
+            } else if (index > 0) {
+                findHumpNodes(node.children[i], initials, index, result);
+            }
+        }
+    }
+
+    @Override
+    public synchronized boolean contains(@NonNull String fqn) {
+        return mClassNames.contains(fqn);
+    }
+
+    @Override
+    public void forEach(@NonNull Consumer<String> consumer) {
+        List<String> copy;
+        synchronized (this) {
+            copy = new ArrayList<>(mClassNames);
+        }
+        copy.forEach(consumer);
+    }
+
+    @Override
+    public synchronized int size() {
+        return mClassNames.size();
+    }
+
+    private static class Node {
+
+        private static final char[] EMPTY_KEYS = new char[0];
+        private static final Node[] EMPTY_CHILDREN = new Node[0];
+
+        // sorted, only the first size elements are used
+        char[] keys = EMPTY_KEYS;
+        Node[] children = EMPTY_CHILDREN;
+        int size;
+
+        // the fully qualified names whose key ends at this node
+        List<String> values;
+
+        Node get(char c) {
+            int index = Arrays.binarySearch(keys, 0, size, c);
+            return index >= 0 ? children[index] : null;
+        }
+
+        void put(String key, String value) {
+            Node node = this;
+            for (int i = 0; i < key.length(); i++) {
+                node = node.getOrCreate(key.charAt(i));
+            }
+            if (node.values == null) {
+                node.values = new ArrayList<>(1);
+            }
+            node.values.add(value);
+        }
+
+        private Node getOrCreate(char c) {
+            int index = Arrays.binarySearch(keys, 0, size, c);
+            if (index >= 0) {
+                return children[index];
+            }
+            index = -(index + 1);
+            if (size == keys.length) {
+                int capacity = Math.max(2, size * 2);
+                keys = Arrays.copyOf(keys, capacity);
+                children = Arrays.copyOf(children, capacity);
+            }
+            System.arraycopy(keys, index, keys, index + 1, size - index);
+            System.arraycopy(children, index, children, index + 1, size - index);
+            Node node = new Node();
+            keys[index] = c;
+            children[index] = node;
+            size++;
+            return node;
+        }
+
+        /**
+         * Removes the value and the nodes that are left empty
+         */
+        void remove(String key, int index, String value) {
+            if (index == key.length()) {
+                if (values != null) {
+                    values.remove(value);
+                    if (values.isEmpty()) {
+                        values = null;
+                    }
+                }
+                return;
+            }
+            int childIndex = Arrays.binarySearch(keys, 0, size, key.charAt(index));
+            if (childIndex < 0) {
+                return;
+            }
+            Node child = children[childIndex];
+            child.remove(key, index + 1, value);
+            if (child.size == 0 && child.values == null) {
+                System.arraycopy(keys, childIndex + 1, keys, childIndex, size - childIndex - 1);
+                System.arraycopy(children, childIndex + 1, children, childIndex,
+                        size - childIndex - 1);
+                size--;
+                children[size] = null;
+            }
+        }
+
+        void clear() {
+            keys = EMPTY_KEYS;
+            children = EMPTY_CHILDREN;
+            size = 0;
+            values = null;
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package com.tyron.builder.project.index;
+
+import androidx.annotation.NonNull;
+
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+/**
+ * A {@link ClassNameIndex} that searches several indexes in order, for example the
+ * source files of a module followed by its libraries.
+ *
+ * A class that is contained in more than one index is reported once per index.
+ */
+public class CompositeClassNameIndex implements ClassNameIndex {
+
+    private final List<? extends ClassNameIndex> mIndexes;
+
+    public CompositeClassNameIndex(@NonNull List<? extends ClassNameIndex> indexes) {
+        mIndexes = indexes;
+    }
+
+    @Override
+    public void findByPrefix(@NonNull String prefix, boolean caseSensitive,
+                             @NonNull Predicate<String> consumer) {
+        StoppablePredicate predicate = new StoppablePredicate(consumer);
+        for (ClassNameIndex index : mIndexes) {
+            index.findByPrefix(prefix, caseSensitive, predicate);
+            if (predicate.stopped) {
+                return;
+            }
+        }
+    }
+
+    @Override
+    public void findByCamelHump(@NonNull String pattern, @NonNull Predicate<String> consumer) {
+        StoppablePredicate predicate = new StoppablePredicate(consumer);
+        for (ClassNameIndex index : mIndexes) {
+            index.findByCamelHump(pattern, predicate);
+            if (predicate.stopped) {
+                return;
+            }
+        }
+    }
+
+    @Override
+    public boolean contains(@NonNull String fqn) {
+        for (ClassNameIndex index : mIndexes) {
+            if (index.contains(fqn)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public void forEach(@NonNull Consumer<String> consumer) {
+        for (ClassNameIndex index : mIndexes) {
+            index.forEach(consumer);
+        }
+    }
+
+    @Override
+    public int size() {
+        int size = 0;
+        for (ClassNameIndex index : mIndexes) {
+            size += index.size();
+        }
+        return size;
+    }
+
+    /**
+     * Remembers whether the consumer asked to stop so the remaining indexes
+     * are not searched.
+     */
+    private static class StoppablePredicate implements Predicate<String> {
+
+        private final Predicate<String> mDelegate;
+        private boolean stopped;
+
+        private StoppablePredicate(Predicate<String> delegate) {
+            mDelegate = delegate;
+        }
+
+        @Override
+        public boolean test(String s) {
+            if (!mDelegate.test(s)) {
+                stopped = true;
+            }
+            return !stopped;
+        }
+    }
+}
@@ -0,0 +1,339 @@
+package com.tyron.builder.project.index;
+
+import android.content.Context;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.VisibleForTesting;
+
+import com.tyron.builder.BuildModule;
+import com.tyron.common.util.StringSearch;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+
+/**
+ * A {@link ClassNameIndex} of the top level classes inside a jar file.
+ *
+ * The index is a sorted string table that is written once per jar to the cache directory,
+ * keyed by the path, size and last modified time of the jar. Later sessions memory map the
+ * table instead of enumerating the entries of the jar again.
+ *
+ * <pre>
+ * int    magic
+ * int    version
+ * long   jar size
+ * long   jar last modified
+ * int    length of the jar path, followed by the UTF-8 bytes of the path
+ * int    entry count
+ * int[]  offset of each entry relative to the start of the entries
+ * entries, each is an unsigned short length followed by the UTF-8 bytes of the name
+ * </pre>
+ *
+ * Entries are sorted by their simple name ignoring case, so all the classes whose simple name
+ * starts with a given prefix are next to each other.
+ */
+public class JarClassNameIndex implements ClassNameIndex {
+
+    private static final String TAG = JarClassNameIndex.class.getSimpleName();
+
+    private static final int MAGIC = 0x434e4958;
+    private static final int VERSION = 1;
+
+    /**
+     * Order of the entries in the table
+     */
+    static final Comparator<String> SIMPLE_NAME_ORDER =
+            Comparator.comparing(JarClassNameIndex::simpleName, String.CASE_INSENSITIVE_ORDER)
+                    .thenComparing(Comparator.naturalOrder());
+
+    private static final Map<String, JarClassNameIndex> sIndexes = new ConcurrentHashMap<>();
+
+    /**
+     * Returns the index of the jar file, the index is read from the cache directory
+     * if it has been built before, otherwise the jar is scanned and its index is saved.
+     * Indexes are shared across modules and projects as long as the jar has not changed.
+     *
+     * @param jar The jar file
+     * @return The index of the jar file
+     * @throws IOException if the jar cannot be read
+     */
+    @NonNull
+    public static JarClassNameIndex get(@NonNull File jar) throws IOException {
+        String path = jar.getAbsolutePath();
+        JarClassNameIndex index = sIndexes.get(path);
+        if (index != null && index.isUpToDate(jar)) {
+            return index;
+        }
+        index = open(jar, getIndexDirectory());
+        sIndexes.put(path, index);
+        return index;
+    }
+
+    @Nullable
+    private static File getIndexDirectory() {
+        Context context = BuildModule.getContext();
+        if (context == null) {
+            return null;
+        }
+        File directory = new File(context.getCacheDir(), "class-index");
+        if (!directory.exists() && !directory.mkdirs()) {
+            return null;
+        }
+        return directory;
+    }
+
+    /**
+     * Opens the index of the jar file stored in the given directory, building it if
+     * it does not exist or is out of date.
+     *
+     * @param jar       The jar file to index
+     * @param directory The directory where the index is stored, if null the index
+     *                  is only kept in memory.
+     */
+    @VisibleForTesting
+    @NonNull
+    static JarClassNameIndex open(@NonNull File jar,
+                                  @Nullable File directory) throws IOException {
+        if (directory == null) {
+            return new JarClassNameIndex(jar, ByteBuffer.wrap(build(jar)));
+        }
+
+        File indexFile = new File(directory, jar.getName() + "-" +
+                                             Integer.toHexString(jar.getAbsolutePath().hashCode()) +
+                                             ".idx");
+        if (indexFile.exists()) {
+            try {
+                JarClassNameIndex index = new JarClassNameIndex(jar, map(indexFile));
+                if (index.isUpToDate(jar)) {
+                    return index;
+                }
+            } catch (IOException | RuntimeException e) {
+                Log.w(TAG, "Discarding corrupt index " + indexFile, e);
+            }
+        }
+
+        byte[] bytes = build(jar);
+        File temp = new File(directory, indexFile.getName() + ".tmp");
+        try (FileOutputStream out = new FileOutputStream(temp)) {
+            out.write(bytes);
+            out.getFD().sync();
+        }
+        if (!temp.renameTo(indexFile)) {
+            //noinspection ResultOfMethodCallIgnored
+            temp.delete();
+            return new JarClassNameIndex(jar, ByteBuffer.wrap(bytes));
+        }
+        return new JarClassNameIndex(jar, map(indexFile));
+    }
+
+    private static ByteBuffer map(File file) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r");
+             FileChannel channel = raf.getChannel()) {
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+    }
+
+    private static byte[] build(File file) throws IOException {
+        List<String> names = new ArrayList<>();
+        try (JarFile jar = new JarFile(file)) {
+            Enumeration<JarEntry> entries = jar.entries();
+            while (entries.hasMoreElements()) {
+                JarEntry entry = entries.nextElement();
+                String name = entry.getName();
+                if (!name.endsWith(".class")) {
+                    continue;
+                }
+
+                // We only want top level classes, if it contains $ then
+                // its an inner class, we ignore it
+                if (name.contains("$")) {
+                    continue;
+                }
+
+                names.add(name.substring(0, name.length() - ".class".length())
+                                  .replace('/', '.'));
+            }
+        }
+        names.sort(SIMPLE_NAME_ORDER);
+
+        ByteArrayOutputStream data = new ByteArrayOutputStream();
+        DataOutputStream dataOut = new DataOutputStream(data);
+        int[] offsets = new int[names.size()];
+        for (int i = 0; i < names.size(); i++) {
+            offsets[i] = dataOut.size();
+            byte[] bytes = names.get(i).getBytes(StandardCharsets.UTF_8);
+            dataOut.writeShort(bytes.length);
+            dataOut.write(bytes);
+        }
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream(data.size() + offsets.length * 4 + 256);
+        DataOutputStream header = new DataOutputStream(out);
+        byte[] path = file.getAbsolutePath().getBytes(StandardCharsets.UTF_8);
+        header.writeInt(MAGIC);
+        header.writeInt(VERSION);
+        header.writeLong(file.length());
+        header.writeLong(file.lastModified());
+        header.writeInt(path.length);
+        header.write(path);
+        header.writeInt(offsets.length);
+        for (int offset : offsets) {
+            header.writeInt(offset);
+        }
+        data.writeTo(header);
+        header.flush();
+        return out.toByteArray();
+    }
+
+    static String simpleName(String fqn) {
+        return fqn.substring(fqn.lastIndexOf('.') + 1);
+    }
+
+    private final ByteBuffer mBuffer;
+    private final String mPath;
+    private final long mJarSize;
+    private final long mJarLastModified;
+    private final int mCount;
+    private final int mOffsetsStart;
+    private final int mEntriesStart;
+
+    private JarClassNameIndex(File jar, ByteBuffer buffer) throws IOException {
+        mBuffer = buffer;
+        if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+            throw new IOException("Not a class name index of " + jar);
+        }
+        mJarSize = buffer.getLong(8);
+        mJarLastModified = buffer.getLong(16);
+        int pathLength = buffer.getInt(24);
+        mPath = new String(readBytes(28, pathLength), StandardCharsets.UTF_8);
+        mCount = buffer.getInt(28 + pathLength);
+        mOffsetsStart = 32 + pathLength;
+        mEntriesStart = mOffsetsStart + mCount * 4;
+        if (mCount < 0 || mEntriesStart > buffer.limit()) {
+            throw new IOException("Truncated class name index of " + jar);
+        }
+    }
+
+    private boolean isUpToDate(File jar) {
+        return mPath.equals(jar.getAbsolutePath()) &&
+               mJarSize == jar.length() &&
+               mJarLastModified == jar.lastModified();
+    }
+
+    private byte[] readBytes(int position, int length) {
+        // absolute reads only, so the buffer can be shared across threads
+        byte[] bytes = new byte[length];
+        for (int i = 0; i < length; i++) {
+            bytes[i] = mBuffer.get(position + i);
+        }
+        return bytes;
+    }
+
+    @VisibleForTesting
+    String getName(int index) {
+        int position = mEntriesStart + mBuffer.getInt(mOffsetsStart + index * 4);
+        int length = mBuffer.getShort(position) & 0xFFFF;
+        return new String(readBytes(position + 2, length), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * @return the index of the first entry whose simple name is not less than the prefix,
+     * ignoring case.
+     */
+    private int lowerBound(String prefix) {
+        int low = 0;
+        int high = mCount;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            String simpleName = simpleName(getName(mid));
+            if (String.CASE_INSENSITIVE_ORDER.compare(simpleName, prefix) < 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    @Override
+    public void findByPrefix(@NonNull String prefix, boolean caseSensitive,
+                             @NonNull Predicate<String> consumer) {
+        for (int i = lowerBound(prefix); i < mCount; i++) {
+            String name = getName(i);
+            String simpleName = simpleName(name);
+            if (!simpleName.regionMatches(true, 0, prefix, 0, prefix.length())) {
+                return;
+            }
+            if (caseSensitive && !simpleName.startsWith(prefix)) {
+                continue;
+            }
+            if (!consumer.test(name)) {
+                return;
+            }
+        }
+    }
+
+    @Override
+    public void findByCamelHump(@NonNull String pattern, @NonNull Predicate<String> consumer) {
+        if (pattern.isEmpty()) {
+            findByPrefix(pattern, false, consumer);
+            return;
+        }
+        // all camel hump matches share the first character of the pattern
+        String first = pattern.substring(0, 1);
+        findByPrefix(first, true, name -> {
+            if (!StringSearch.matchesCamelHump(simpleName(name), pattern)) {
+                return true;
+            }
+            return consumer.test(name);
+        });
+    }
+
+    @Override
+    public boolean contains(@NonNull String fqn) {
+        int low = 0;
+        int high = mCount - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int compare = SIMPLE_NAME_ORDER.compare(getName(mid), fqn);
+            if (compare < 0) {
+                low = mid + 1;
+            } else if (compare > 0) {
+                high = mid - 1;
+            } else {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public void forEach(@NonNull Consumer<String> consumer) {
+        for (int i = 0; i < mCount; i++) {
+            consumer.accept(getName(i));
+        }
+    }
+
+    @Override
+    public int size() {
+        return mCount;
+    }
+}
@@ -0,0 +1,78 @@
+package com.tyron.builder.project.index;
+
+import androidx.annotation.NonNull;
+
+import com.google.common.collect.ImmutableList;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Maps package names to the source files they contain. The index is updated as files are
+ * added or removed so listing a package does not need to go through every file of the module,
+ * javac lists packages many times during a single compilation.
+ *
+ * The lists returned are immutable snapshots, they are replaced when the package changes.
+ */
+public class PackageIndex {
+
+    private final Map<String, File> mFiles = new HashMap<>();
+    private final Map<String, List<File>> mPackages = new HashMap<>();
+
+    /**
+     * @param fqn  The fully qualified name of the class declared by the file
+     * @param file The source file
+     */
+    public synchronized void put(@NonNull String fqn, @NonNull File file) {
+        File previous = mFiles.put(fqn, file);
+        String packageName = packageName(fqn);
+        List<File> files = new ArrayList<>(mPackages.getOrDefault(packageName,
+                ImmutableList.of()));
+        if (previous != null) {
+            files.remove(previous);
+        }
+        files.add(file);
+        mPackages.put(packageName, ImmutableList.copyOf(files));
+    }
+
+    /**
+     * @param fqn The fully qualified name of the class declared by the file
+     */
+    public synchronized void remove(@NonNull String fqn) {
+        File previous = mFiles.remove(fqn);
+        if (previous == null) {
+            return;
+        }
+        String packageName = packageName(fqn);
+        List<File> files = new ArrayList<>(mPackages.getOrDefault(packageName,
+                ImmutableList.of()));
+        files.remove(previous);
+        if (files.isEmpty()) {
+            mPackages.remove(packageName);
+        } else {
+            mPackages.put(packageName, ImmutableList.copyOf(files));
+        }
+    }
+
+    /**
+     * @param packageName The package name, empty for the default package
+     * @return The source files directly inside the package, sub packages are not included
+     */
+    @NonNull
+    public synchronized List<File> get(@NonNull String packageName) {
+        return mPackages.getOrDefault(packageName, ImmutableList.of());
+    }
+
+    public synchronized void clear() {
+        mFiles.clear();
+        mPackages.clear();
+    }
+
+    private static String packageName(String fqn) {
+        int index = fqn.lastIndexOf('.');
+        return index == -1 ? "" : fqn.substring(0, index);
+    }
+}
@@ -0,0 +1,55 @@
+package com.tyron.builder.project.listener;
+
+import androidx.annotation.NonNull;
+
+/**
+ * Describes an edit made to the in memory snapshot of a file, the text between
+ * {@link #getOffset()} and {@code getOffset() + getRemovedLength()} has been replaced
+ * with {@link #getInsertedText()}.
+ */
+public class FileChange {
+
+    private final int mOffset;
+    private final int mRemovedLength;
+    private final CharSequence mInsertedText;
+    private final long mVersion;
+
+    public FileChange(int offset, int removedLength, @NonNull CharSequence insertedText,
+                      long version) {
+        mOffset = offset;
+        mRemovedLength = removedLength;
+        mInsertedText = insertedText;
+        mVersion = version;
+    }
+
+    public int getOffset() {
+        return mOffset;
+    }
+
+    public int getRemovedLength() {
+        return mRemovedLength;
+    }
+
+    @NonNull
+    public CharSequence getInsertedText() {
+        return mInsertedText;
+    }
+
+    /**
+     * @return The version of the snapshot after this change, incremented on every change
+     */
+    public long getVersion() {
+        return mVersion;
+    }
+
+    @NonNull
+    @Override
+    public String toString() {
+        return "FileChange{" +
+               "offset=" + mOffset +
+               ", removedLength=" + mRemovedLength +
+               ", insertedLength=" + mInsertedText.length() +
+               ", version=" + mVersion +
+               '}';
+    }
+}
@@ -1,8 +1,21 @@
 package com.tyron.builder.project.listener;
 
+import androidx.annotation.NonNull;
+
 import java.io.File;
 
 public interface FileListener {
 
     void onSnapshotChanged(File file, CharSequence contents);
+
+    /**
+     * Called when the snapshot of the file has been edited. Listeners that keep their own
+     * copy of the file can apply the change instead of reading the whole contents.
+     *
+     * @param contents An immutable view of the contents after the change
+     * @param change The edit that has been made
+     */
+    default void onSnapshotChanged(File file, CharSequence contents, @NonNull FileChange change) {
+        onSnapshotChanged(file, contents);
+    }
 }
@@ -7,6 +7,8 @@ import com.tyron.builder.model.ModuleSettings;
 import com.tyron.builder.project.api.FileManager;
 import com.tyron.builder.project.api.JavaModule;
 import com.tyron.builder.project.impl.ModuleImpl;
+import com.tyron.builder.project.index.ClassNameIndex;
+import com.tyron.builder.project.index.PackageIndex;
 import com.tyron.common.util.StringSearch;
 
 import org.jetbrains.annotations.NotNull;
@@ -31,6 +33,7 @@ public class MockJavaModule extends ModuleImpl implements JavaModule {
 
     private final KeyFMap mDataMap = KeyFMap.EMPTY_MAP;
     private final Map<String, File> mJavaFiles = new HashMap<>();
+    private final PackageIndex mJavaPackages = new PackageIndex();
 
     private final FileManager mFileManager;
     private final File mRootDir;
@@ -53,9 +56,16 @@ public class MockJavaModule extends ModuleImpl implements JavaModule {
         return mJavaFiles.get(packageName);
     }
 
+    @NonNull
+    @Override
+    public List<File> getJavaFilesInPackage(@NonNull String packageName) {
+        return mJavaPackages.get(packageName);
+    }
+
     @Override
     public void removeJavaFile(@NonNull String packageName) {
         mJavaFiles.remove(packageName);
+        mJavaPackages.remove(packageName);
     }
 
     @Override
@@ -68,6 +78,7 @@ public class MockJavaModule extends ModuleImpl implements JavaModule {
             className = packageName + "." + javaFile.getName().replace(".java", "");
         }
         mJavaFiles.put(className, javaFile);
+        mJavaPackages.put(className, javaFile);
     }
 
     @Override
@@ -96,6 +107,12 @@ public class MockJavaModule extends ModuleImpl implements JavaModule {
         return Collections.emptySet();
     }
 
+    @NonNull
+    @Override
+    public ClassNameIndex getClassNameIndex() {
+        return ClassNameIndex.EMPTY;
+    }
+
     @NonNull
     @Override
     public File getResourcesDir() {
@@ -165,6 +182,7 @@ public class MockJavaModule extends ModuleImpl implements JavaModule {
     @Override
     public void clear() {
         mJavaFiles.clear();
+        mJavaPackages.clear();
     }
 
     @Override
@@ -0,0 +1,329 @@
+package com.tyron.builder.util;
+
+import androidx.annotation.NonNull;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * An immutable {@link CharSequence} stored as a balanced tree of text chunks.
+ *
+ * Replacing a range of text returns a new rope that shares every chunk outside of the
+ * replaced range with this one, so an edit costs O(log n) instead of copying the whole text.
+ * As ropes never change, they can be handed to other threads as snapshots of the text.
+ */
+public abstract class Rope implements CharSequence {
+
+    /**
+     * The maximum length of the chunk of a leaf, ropes shorter than this are stored as a
+     * single leaf
+     */
+    static final int MAX_LEAF_LENGTH = 1024;
+
+    /**
+     * The depth after which the tree is rebuilt, a balanced tree of this depth would contain
+     * far more text than can be edited
+     */
+    private static final int MAX_DEPTH = 48;
+
+    private static final Rope EMPTY = new Leaf("");
+
+    private String mString;
+
+    private Rope() {
+
+    }
+
+    @NonNull
+    public static Rope empty() {
+        return EMPTY;
+    }
+
+    /**
+     * Creates a rope containing the given text
+     */
+    @NonNull
+    public static Rope of(@NonNull CharSequence text) {
+        if (text instanceof Rope) {
+            return (Rope) text;
+        }
+        int length = text.length();
+        if (length == 0) {
+            return EMPTY;
+        }
+        List<Rope> leaves = new ArrayList<>(length / MAX_LEAF_LENGTH + 1);
+        for (int start = 0; start < length; start += MAX_LEAF_LENGTH) {
+            int end = Math.min(length, start + MAX_LEAF_LENGTH);
+            leaves.add(new Leaf(text.subSequence(start, end).toString()));
+        }
+        return build(leaves, 0, leaves.size());
+    }
+
+    /**
+     * Replaces the text between start and end with the given text
+     *
+     * @param start The start index, inclusive
+     * @param end The end index, exclusive
+     * @param text The text to insert in place of the removed range
+     * @return A new rope with the replaced text, this rope is not modified
+     */
+    @NonNull
+    public Rope replace(int start, int end, @NonNull CharSequence text) {
+        checkRange(start, end, length());
+        if (start == end && text.length() == 0) {
+            return this;
+        }
+        Rope result = concat(concat(subRope(0, start), of(text)), subRope(end, length()));
+        if (result.depth() > MAX_DEPTH) {
+            result = rebalance(result);
+        }
+        return result;
+    }
+
+    @NonNull
+    public Rope insert(int offset, @NonNull CharSequence text) {
+        return replace(offset, offset, text);
+    }
+
+    @NonNull
+    public Rope delete(int start, int end) {
+        return replace(start, end, "");
+    }
+
+    /**
+     * @return A rope containing the text between start and end, sharing the chunks of this rope
+     */
+    @NonNull
+    public abstract Rope subRope(int start, int end);
+
+    /**
+     * Copies the characters between srcBegin and srcEnd to the destination array, in the same
+     * way as {@link String#getChars(int, int, char[], int)}
+     */
+    public abstract void getChars(int srcBegin, int srcEnd, @NonNull char[] dst, int dstBegin);
+
+    /**
+     * @return Whether this rope contains the same characters as the given sequence
+     */
+    public boolean contentEquals(@NonNull CharSequence other) {
+        if (other == this) {
+            return true;
+        }
+        if (other.length() != length()) {
+            return false;
+        }
+        return toString().contentEquals(other);
+    }
+
+    abstract int depth();
+
+    abstract void collectLeaves(@NonNull List<Rope> leaves);
+
+    @NonNull
+    @Override
+    public CharSequence subSequence(int start, int end) {
+        return subRope(start, end);
+    }
+
+    /**
+     * The string is created only once, so all the users of this rope share the same copy
+     */
+    @NonNull
+    @Override
+    public String toString() {
+        String string = mString;
+        if (string == null) {
+            char[] chars = new char[length()];
+            getChars(0, chars.length, chars, 0);
+            string = new String(chars);
+            mString = string;
+        }
+        return string;
+    }
+
+    private static Rope concat(Rope left, Rope right) {
+        if (left.length() == 0) {
+            return right;
+        }
+        if (right.length() == 0) {
+            return left;
+        }
+        if (left.length() + right.length() <= MAX_LEAF_LENGTH) {
+            // keep short texts as a single leaf, e.g. when characters are typed one at a time
+            return new Leaf(left.toString() + right);
+        }
+        if (left instanceof Node && right.length() < MAX_LEAF_LENGTH) {
+            Node node = (Node) left;
+            if (node.mRight.length() + right.length() <= MAX_LEAF_LENGTH) {
+                return new Node(node.mLeft, new Leaf(node.mRight.toString() + right));
+            }
+        }
+        if (right instanceof Node && left.length() < MAX_LEAF_LENGTH) {
+            Node node = (Node) right;
+            if (left.length() + node.mLeft.length() <= MAX_LEAF_LENGTH) {
+                return new Node(new Leaf(left.toString() + node.mLeft), node.mRight);
+            }
+        }
+        return new Node(left, right);
+    }
+
+    private static Rope rebalance(Rope rope) {
+        List<Rope> leaves = new ArrayList<>();
+        rope.collectLeaves(leaves);
+        return build(leaves, 0, leaves.size());
+    }
+
+    private static Rope build(List<Rope> leaves, int start, int end) {
+        int count = end - start;
+        if (count == 0) {
+            return EMPTY;
+        }
+        if (count == 1) {
+            return leaves.get(start);
+        }
+        int middle = start + count / 2;
+        return new Node(build(leaves, start, middle), build(leaves, middle, end));
+    }
+
+    private static void checkRange(int start, int end, int length) {
+        if (start < 0 || end > length || start > end) {
+            throw new IndexOutOfBoundsException(
+                    "start " + start + ", end " + end + ", length " + length);
+        }
+    }
+
+    private static final class Leaf extends Rope {
+
+        private final String mText;
+
+        Leaf(String text) {
+            mText = text;
+        }
+
+        @Override
+        public int length() {
+            return mText.length();
+        }
+
+        @Override
+        public char charAt(int index) {
+            return mText.charAt(index);
+        }
+
+        @NonNull
+        @Override
+        public Rope subRope(int start, int end) {
+            checkRange(start, end, length());
+            if (start == 0 && end == length()) {
+                return this;
+            }
+            return new Leaf(mText.substring(start, end));
+        }
+
+        @Override
+        public void getChars(int srcBegin, int srcEnd, @NonNull char[] dst, int dstBegin) {
+            mText.getChars(srcBegin, srcEnd, dst, dstBegin);
+        }
+
+        @Override
+        int depth() {
+            return 0;
+        }
+
+        @Override
+        void collectLeaves(@NonNull List<Rope> leaves) {
+            if (!mText.isEmpty()) {
+                leaves.add(this);
+            }
+        }
+
+        @NonNull
+        @Override
+        public String toString() {
+            return mText;
+        }
+    }
+
+    private static final class Node extends Rope {
+
+        private final Rope mLeft;
+        private final Rope mRight;
+        private final int mLength;
+        private final int mDepth;
+
+        Node(Rope left, Rope right) {
+            mLeft = left;
+            mRight = right;
+            mLength = left.length() + right.length();
+            mDepth = Math.max(left.depth(), right.depth()) + 1;
+        }
+
+        @Override
+        public int length() {
+            return mLength;
+        }
+
+        @Override
+        public char charAt(int index) {
+            if (index < 0 || index >= mLength) {
+                throw new IndexOutOfBoundsException("index " + index + ", length " + mLength);
+            }
+            Rope rope = this;
+            while (rope instanceof Node) {
+                Node node = (Node) rope;
+                int leftLength = node.mLeft.length();
+                if (index < leftLength) {
+                    rope = node.mLeft;
+                } else {
+                    index -= leftLength;
+                    rope = node.mRight;
+                }
+            }
+            return rope.charAt(index);
+        }
+
+        @NonNull
+        @Override
+        public Rope subRope(int start, int end) {
+            checkRange(start, end, mLength);
+            if (start == 0 && end == mLength) {
+                return this;
+            }
+            int leftLength = mLeft.length();
+            if (end <= leftLength) {
+                return mLeft.subRope(start, end);
+            }
+            if (start >= leftLength) {
+                return mRight.subRope(start - leftLength, end - leftLength);
+            }
+            return concat(mLeft.subRope(start, leftLength),
+                    mRight.subRope(0, end - leftLength));
+        }
+
+        @Override
+        public void getChars(int srcBegin, int srcEnd, @NonNull char[] dst, int dstBegin) {
+            checkRange(srcBegin, srcEnd, mLength);
+            int leftLength = mLeft.length();
+            if (srcBegin < leftLength) {
+                int leftEnd = Math.min(srcEnd, leftLength);
+                mLeft.getChars(srcBegin, leftEnd, dst, dstBegin);
+                dstBegin += leftEnd - srcBegin;
+            }
+            if (srcEnd > leftLength) {
+                int rightBegin = Math.max(srcBegin, leftLength) - leftLength;
+                mRight.getChars(rightBegin, srcEnd - leftLength, dst, dstBegin);
+            }
+        }
+
+        @Override
+        int depth() {
+            return mDepth;
+        }
+
+        @Override
+        void collectLeaves(@NonNull List<Rope> leaves) {
+            mLeft.collectLeaves(leaves);
+            mRight.collectLeaves(leaves);
+        }
+    }
+}
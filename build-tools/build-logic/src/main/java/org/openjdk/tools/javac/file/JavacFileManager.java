@@ -22,13 +22,16 @@ import org.openjdk.tools.javac.util.ListBuffer;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.UnsupportedEncodingException;
 import java.net.MalformedURLException;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.net.URL;
+import java.nio.ByteBuffer;
 import java.nio.CharBuffer;
 import java.nio.charset.Charset;
+import java.nio.file.DirectoryStream;
 import java.nio.file.FileSystem;
 import java.nio.file.FileVisitOption;
 import java.nio.file.FileVisitResult;
@@ -54,6 +57,7 @@ import java.util.Map;
 import java.util.Objects;
 import java.util.ServiceLoader;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
@@ -322,11 +326,86 @@ public class JavacFileManager extends BaseFileManager implements StandardJavaFil
         }
     }
 
-    public void flush() {
+    public synchronized void flush() {
         this.contentCache.clear();
     }
 
-    public void close() throws IOException {
+    // the content and byte buffer caches are shared between the compilations that use
+    // this file manager, which may run concurrently
+
+    @Override
+    public synchronized ByteBuffer makeByteBuffer(InputStream var1) throws IOException {
+        return super.makeByteBuffer(var1);
+    }
+
+    @Override
+    public synchronized void recycleByteBuffer(ByteBuffer var1) {
+        super.recycleByteBuffer(var1);
+    }
+
+    @Override
+    public synchronized CharBuffer getCachedContent(JavaFileObject var1) {
+        return super.getCachedContent(var1);
+    }
+
+    @Override
+    public synchronized void cache(JavaFileObject var1, CharBuffer var2) {
+        super.cache(var1, var2);
+    }
+
+    @Override
+    public synchronized void flushCache(JavaFileObject var1) {
+        super.flushCache(var1);
+    }
+
+    // the number of compilations using this file manager, see acquire()
+    private int users;
+    // the invalidated containers that are closed once no compilation uses them
+    private final java.util.List<JavacFileManager.Container> retired = new ArrayList<>();
+
+    /**
+     * Marks the file manager as used by a compilation, the containers invalidated while it
+     * is used are only closed once {@link #release()} has been called for every compilation,
+     * as the files of a compilation may still be read from them.
+     */
+    public synchronized void acquire() {
+        this.users++;
+    }
+
+    public synchronized void release() throws IOException {
+        if (this.users > 0 && --this.users == 0) {
+            for (JavacFileManager.Container var2 : this.retired) {
+                var2.close();
+            }
+            this.retired.clear();
+        }
+    }
+
+    /**
+     * Closes the archive or directory at the given path if it has been opened, it will be
+     * opened and indexed again the next time it is used. The close is deferred until the
+     * running compilations are done.
+     */
+    public synchronized void invalidate(Path var1) throws IOException {
+        JavacFileManager.Container var2 = this.containers.remove(var1);
+        JavacFileManager.Container var3 = this.containers.remove(this.fsInfo.getCanonicalFile(var1));
+        if (var2 != null) {
+            this.retire(var2);
+        }
+        if (var3 != null && var3 != var2) {
+            this.retire(var3);
+        }
+    }
+
+    private void retire(JavacFileManager.Container var1) throws IOException {
+        if (this.users > 0) {
+            this.retired.add(var1);
+        } else {
+            var1.close();
+        }
+    }
+
+    public synchronized void close() throws IOException {
         if (this.deferredCloseTimeout > 0L) {
             this.deferredClose();
         } else {
@@ -339,6 +418,10 @@ public class JavacFileManager extends BaseFileManager implements StandardJavaFil
             }
 
             this.containers.clear();
+            for (JavacFileManager.Container var3 : this.retired) {
+                var3.close();
+            }
+            this.retired.clear();
             this.contentCache.clear();
         }
     }
@@ -761,6 +844,8 @@ public class JavacFileManager extends BaseFileManager implements StandardJavaFil
         private final Path archivePath;
         private final FileSystem fileSystem;
         private final Map<RelativePath, Path> packages;
+        // the files directly inside each package, the archive does not change while it is open
+        private final Map<RelativePath, java.util.List<Path>> entries = new ConcurrentHashMap<>();
 
         public ArchiveContainer(Path var2) throws IOException, ProviderNotFoundException, SecurityException {
             this.archivePath = var2;
@@ -792,8 +877,14 @@ public class JavacFileManager extends BaseFileManager implements StandardJavaFil
 
         public void list(Path var1, RelativeDirectory var2, final Set<Kind> var3, boolean var4, final ListBuffer<JavaFileObject> var5) throws IOException {
             Path var6 = (Path)this.packages.get(var2);
-            if (var6 != null) {
-                int var7 = var4 ? 2147483647 : 1;
+            if (var6 != null && !var4) {
+                for (Path var9 : this.getEntries(var2, var6)) {
+                    if (var3.contains(BaseFileManager.getKind(var9.getFileName().toString()))) {
+                        var5.append(PathFileObject.forJarPath(JavacFileManager.this, var9, this.archivePath));
+                    }
+                }
+            } else if (var6 != null) {
+                int var7 = 2147483647;
                 EnumSet<FileVisitOption> var8 = EnumSet.of(FileVisitOption.FOLLOW_LINKS);
                 Files.walkFileTree(var6, var8, var7, new SimpleFileVisitor<Path>() {
                     public FileVisitResult preVisitDirectory(Path var1, BasicFileAttributes var2) {
@@ -812,6 +903,22 @@ public class JavacFileManager extends BaseFileManager implements StandardJavaFil
             }
         }
 
+        private java.util.List<Path> getEntries(RelativeDirectory var1, Path var2) throws IOException {
+            java.util.List<Path> var3 = this.entries.get(var1);
+            if (var3 == null) {
+                var3 = new ArrayList<>();
+                try (DirectoryStream<Path> var4 = Files.newDirectoryStream(var2)) {
+                    for (Path var6 : var4) {
+                        if (Files.isRegularFile(var6)) {
+                            var3.add(var6);
+                        }
+                    }
+                }
+                this.entries.put(var1, var3);
+            }
+            return var3;
+        }
+
         private boolean isValid(Path var1) {
             if (var1 == null) {
                 return true;
@@ -0,0 +1,159 @@
+package com.tyron.builder.compiler.incremental.apk;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.android.apksig.ApkVerifier;
+import com.tyron.common.TestUtil;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import java.util.zip.ZipFile;
+
+public class IncrementalApkSignerTest {
+
+    @Rule
+    public TemporaryFolder mFolder = new TemporaryFolder();
+
+    private IncrementalApkSigner mSigner;
+    private File mApk;
+    private File mSignedApk;
+    private File mLargeFile;
+    private File mManifestFile;
+    private File mDexFile;
+
+    @Before
+    public void setup() throws Exception {
+        File resources = new File(TestUtil.getResourcesDirectory(), "apksigner");
+        mSigner = IncrementalApkSigner.create(new File(resources, "testkey.pk8"),
+                new File(resources, "testkey.x509.pem"));
+
+        mApk = new File(mFolder.getRoot(), "generated.apk");
+        mSignedApk = new File(mFolder.getRoot(), "signed.apk");
+
+        // random bytes do not compress, so the apk spans a few chunks
+        byte[] large = new byte[3 * IncrementalApkSigner.CHUNK_SIZE];
+        new Random(0).nextBytes(large);
+        mLargeFile = mFolder.newFile("library.so");
+        FileUtils.writeByteArrayToFile(mLargeFile, large);
+        mManifestFile = mFolder.newFile("AndroidManifest.xml");
+        FileUtils.writeByteArrayToFile(mManifestFile, createBinaryManifest());
+        mDexFile = mFolder.newFile("classes.dex");
+        FileUtils.writeStringToFile(mDexFile, "first", StandardCharsets.UTF_8);
+    }
+
+    @Test
+    public void testSignedApkIsValid() throws Exception {
+        IncrementalApkWriter writer = writeApk();
+        assertThat(writer.getReusedCount()).isEqualTo(0);
+        mSigner.sign(mApk, mSignedApk, null);
+
+        assertVerified();
+        try (ZipFile zipFile = new ZipFile(mSignedApk)) {
+            assertThat(zipFile.size()).isEqualTo(3);
+            assertThat(zipFile.getEntry("classes.dex").getSize()).isEqualTo(5);
+        }
+    }
+
+    @Test
+    public void testUnchangedChunksAreReused() throws Exception {
+        writeApk();
+        ApkChunkDigests digests = new ApkChunkDigests();
+        mSigner.sign(mApk, mSignedApk, digests);
+        assertThat(digests.size()).isEqualTo(4);
+        byte[] firstDigest = digests.get(0);
+
+        long previousLength = mApk.length();
+        long previousLastModified = mApk.lastModified();
+        FileUtils.writeStringToFile(mDexFile, "second", StandardCharsets.UTF_8);
+        IncrementalApkWriter writer = writeApk();
+        assertThat(writer.getReusedCount()).isEqualTo(2);
+        assertThat(writer.getUnchangedLength()).isGreaterThan(mLargeFile.length());
+
+        digests.retain(previousLength, previousLastModified, writer.getUnchangedLength());
+        digests.setApk(mApk);
+        assertThat(digests.size()).isEqualTo(3);
+        assertThat(digests.get(0)).isSameInstanceAs(firstDigest);
+
+        mSigner.sign(mApk, mSignedApk, digests);
+        assertThat(digests.size()).isEqualTo(4);
+        assertVerified();
+    }
+
+    @Test
+    public void testStaleDigestsAreDropped() throws Exception {
+        writeApk();
+        ApkChunkDigests digests = new ApkChunkDigests();
+        mSigner.sign(mApk, mSignedApk, digests);
+
+        // packaged by something else, the digests do not match the apk anymore
+        digests.retain(0, 0, Long.MAX_VALUE);
+        assertThat(digests.size()).isEqualTo(0);
+    }
+
+    private IncrementalApkWriter writeApk() throws Exception {
+        IncrementalApkWriter writer = new IncrementalApkWriter(mApk);
+        try {
+            writer.addFile("AndroidManifest.xml", mManifestFile);
+            writer.addFile("lib/arm64-v8a/library.so", mLargeFile);
+            writer.addFile("classes.dex", mDexFile);
+        } catch (Exception e) {
+            writer.abort();
+            throw e;
+        }
+        writer.close();
+        return writer;
+    }
+
+    /**
+     * @return A binary xml file with an empty manifest element, the verifier reads the target
+     * sdk from it
+     */
+    private static byte[] createBinaryManifest() {
+        ByteBuffer buffer = ByteBuffer.allocate(120).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.putShort((short) 0x0003).putShort((short) 8).putInt(120);
+        // string pool with the utf-16 string "manifest"
+        buffer.putShort((short) 0x0001).putShort((short) 28).putInt(52);
+        buffer.putInt(1).putInt(0).putInt(0).putInt(32).putInt(0);
+        buffer.putInt(0);
+        buffer.putShort((short) 8);
+        for (char c : "manifest".toCharArray()) {
+            buffer.putChar(c);
+        }
+        buffer.putShort((short) 0);
+        // start element without attributes
+        buffer.putShort((short) 0x0102).putShort((short) 16).putInt(36);
+        buffer.putInt(1).putInt(-1).putInt(-1).putInt(0);
+        buffer.putShort((short) 20).putShort((short) 20).putShort((short) 0);
+        buffer.putShort((short) 0).putShort((short) 0).putShort((short) 0);
+        // end element
+        buffer.putShort((short) 0x0103).putShort((short) 16).putInt(24);
+        buffer.putInt(1).putInt(-1).putInt(-1).putInt(0);
+        return buffer.array();
+    }
+
+    private void assertVerified() throws IOException {
+        ApkVerifier.Result result;
+        try {
+            result = new ApkVerifier.Builder(mSignedApk)
+                    .setMinCheckedPlatformVersion(IncrementalApkSigner.MIN_SDK_VERSION)
+                    .setMaxCheckedPlatformVersion(27)
+                    .build()
+                    .verify();
+        } catch (Exception e) {
+            throw new IOException(e);
+        }
+        assertThat(result.getErrors()).isEmpty();
+        assertThat(result.isVerifiedUsingV2Scheme()).isTrue();
+        assertThat(result.isVerified()).isTrue();
+    }
+}
@@ -0,0 +1,77 @@
+package com.tyron.builder.compiler.incremental.java;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.google.common.collect.ImmutableSet;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collections;
+
+public class JavaDependencyGraphTest {
+
+    @Rule
+    public TemporaryFolder mFolder = new TemporaryFolder();
+
+    private final File mBase = new File("/src/Base.java");
+    private final File mChild = new File("/src/Child.java");
+    private final File mUser = new File("/src/User.java");
+    private final File mOther = new File("/src/Other.java");
+
+    private JavaDependencyGraph createGraph() {
+        JavaDependencyGraph graph = new JavaDependencyGraph();
+        graph.put(mBase, node("test.Base", ImmutableSet.of(), ImmutableSet.of(), 1));
+        graph.put(mChild, node("test.Child", ImmutableSet.of("test.Base"),
+                ImmutableSet.of("test.Base"), 2));
+        graph.put(mUser, node("test.User", ImmutableSet.of(),
+                ImmutableSet.of("test.Child", "java.lang.String"), 3));
+        graph.put(mOther, node("test.Other", ImmutableSet.of(), ImmutableSet.of(), 4));
+        return graph;
+    }
+
+    @Test
+    public void testDependents() {
+        JavaDependencyGraph graph = createGraph();
+
+        assertThat(graph.getDependents(ImmutableSet.of("test.Child")))
+                .containsExactly(mUser);
+        // User inherits the API of Base through Child
+        assertThat(graph.getDependents(ImmutableSet.of("test.Base")))
+                .containsExactly(mChild, mUser);
+        assertThat(graph.getDependents(ImmutableSet.of("test.Other"))).isEmpty();
+    }
+
+    @Test
+    public void testReadWrite() throws IOException {
+        JavaDependencyGraph graph = createGraph();
+        graph.markDirty(Collections.singletonList(mChild));
+
+        File file = new File(mFolder.getRoot(), "java/dependencies.bin");
+        graph.write(file);
+        JavaDependencyGraph read = JavaDependencyGraph.read(file);
+
+        assertThat(read.getSources()).containsExactly(mBase, mChild, mUser, mOther);
+        JavaDependencyGraph.Node child = read.get(mChild);
+        assertThat(child).isNotNull();
+        assertThat(child.isDirty()).isTrue();
+        assertThat(child.getAbiHash()).isEqualTo(2);
+        assertThat(read.get(mBase).isDirty()).isFalse();
+        // classes outside of the module are not saved
+        assertThat(read.get(mUser).getReferences()).containsExactly("test.Child");
+    }
+
+    @Test
+    public void testReadCorrupt() throws IOException {
+        File file = mFolder.newFile("dependencies.bin");
+        assertThat(JavaDependencyGraph.read(file).getSources()).isEmpty();
+    }
+
+    private static JavaDependencyGraph.Node node(String type, ImmutableSet<String> supertypes,
+                                                 ImmutableSet<String> references, long abi) {
+        return new JavaDependencyGraph.Node(ImmutableSet.of(type), supertypes, references, abi);
+    }
+}
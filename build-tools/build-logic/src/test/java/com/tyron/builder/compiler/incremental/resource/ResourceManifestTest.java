@@ -0,0 +1,71 @@
+package com.tyron.builder.compiler.incremental.resource;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+public class ResourceManifestTest {
+
+    @Rule
+    public TemporaryFolder mFolder = new TemporaryFolder();
+
+    @Test
+    public void testTouchedFileHasSameContent() throws IOException {
+        File file = mFolder.newFile("activity_main.xml");
+        FileUtils.writeStringToFile(file, "<LinearLayout/>", StandardCharsets.UTF_8);
+        ResourceManifest.Entry first = ResourceManifest.createEntry(file, null);
+
+        assertThat(file.setLastModified(file.lastModified() + 10_000)).isTrue();
+        ResourceManifest.Entry touched = ResourceManifest.createEntry(file, first);
+        assertThat(touched).isNotSameInstanceAs(first);
+        assertThat(touched.isSameContent(first)).isTrue();
+
+        FileUtils.writeStringToFile(file, "<FrameLayout/>", StandardCharsets.UTF_8);
+        assertThat(ResourceManifest.createEntry(file, touched).isSameContent(touched)).isFalse();
+    }
+
+    @Test
+    public void testDirectoryEntry() throws IOException {
+        File res = mFolder.newFolder("res");
+        File values = new File(res, "values/strings.xml");
+        FileUtils.writeStringToFile(values, "<resources/>", StandardCharsets.UTF_8);
+        ResourceManifest.Entry first = ResourceManifest.createDirectoryEntry(res, null);
+        assertThat(ResourceManifest.createDirectoryEntry(res, first)).isSameInstanceAs(first);
+
+        FileUtils.writeStringToFile(new File(res, "values/colors.xml"), "<resources/>",
+                StandardCharsets.UTF_8);
+        assertThat(ResourceManifest.createDirectoryEntry(res, first).isSameContent(first))
+                .isFalse();
+    }
+
+    @Test
+    public void testReadWrite() throws IOException {
+        File file = mFolder.newFile("colors.xml");
+        ResourceManifest manifest = new ResourceManifest();
+        ResourceManifest.Entry entry = ResourceManifest.createEntry(file, null);
+        manifest.put("res/values/colors.xml", entry);
+
+        File manifestFile = new File(mFolder.getRoot(), "intermediate/resources.manifest");
+        manifest.write(manifestFile);
+        ResourceManifest read = ResourceManifest.read(manifestFile);
+        assertThat(read.getKeys()).containsExactly("res/values/colors.xml");
+        assertThat(read.get("res/values/colors.xml").isSameContent(entry)).isTrue();
+    }
+
+    @Test
+    public void testCompiledName() {
+        assertThat(IncrementalAapt2Task.getCompiledName("layout", "activity_main.xml"))
+                .isEqualTo("layout_activity_main.xml.flat");
+        assertThat(IncrementalAapt2Task.getCompiledName("values-night", "colors.xml"))
+                .isEqualTo("values-night_colors.arsc.flat");
+        assertThat(IncrementalAapt2Task.getCompiledName("drawable", "button.9.png"))
+                .isEqualTo("drawable_button.9.png.flat");
+    }
+}
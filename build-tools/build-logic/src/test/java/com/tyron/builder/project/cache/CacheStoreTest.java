@@ -0,0 +1,107 @@
+package com.tyron.builder.project.cache;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.tyron.common.util.Cache;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+public class CacheStoreTest {
+
+    private static final CacheHolder.CacheKey<String, List<File>> FILES_KEY =
+            new CacheHolder.CacheKey<>("files", DataExternalizer.STRING,
+                    DataExternalizer.FILE_LIST);
+    private static final CacheHolder.CacheKey<Void, Void> VOID_KEY =
+            new CacheHolder.CacheKey<>("void", DataExternalizer.VOID, DataExternalizer.VOID);
+
+    @Rule
+    public TemporaryFolder mFolder = new TemporaryFolder();
+
+    private File mStoreFile;
+    private Path mSource;
+    private File mOutput;
+
+    @Before
+    public void setup() throws IOException {
+        mStoreFile = new File(mFolder.getRoot(), "intermediate/caches.bin");
+        mSource = mFolder.newFile("Test.java").toPath();
+        mOutput = mFolder.newFile("Test.class");
+    }
+
+    @Test
+    public void testSaveAndLoad() throws IOException {
+        save();
+
+        CacheStore store = new CacheStore(mStoreFile);
+        Cache<String, List<File>> files = store.load(FILES_KEY);
+        assertThat(files).isNotNull();
+        assertThat(files.needs(mSource, "class")).isFalse();
+        assertThat(files.get(mSource, "class")).containsExactly(mOutput.getAbsoluteFile());
+
+        Cache<Void, Void> symbols = store.load(VOID_KEY);
+        assertThat(symbols).isNotNull();
+        assertThat(symbols.needs(mSource, null)).isFalse();
+    }
+
+    @Test
+    public void testUnrequestedCachesAreKept() throws IOException {
+        save();
+
+        CacheStore store = new CacheStore(mStoreFile);
+        Cache<Void, Void> symbols = store.load(VOID_KEY);
+        Map<CacheHolder.CacheKey<?, ?>, Cache<?, ?>> caches = new HashMap<>();
+        caches.put(VOID_KEY, symbols);
+        store.save(caches);
+
+        assertThat(new CacheStore(mStoreFile).load(FILES_KEY)).isNotNull();
+    }
+
+    @Test
+    public void testDeletedOutput() throws IOException {
+        save();
+        assertThat(mOutput.delete()).isTrue();
+
+        Cache<String, List<File>> files = new CacheStore(mStoreFile).load(FILES_KEY);
+        assertThat(files).isNotNull();
+        assertThat(files.needs(mSource, "class")).isTrue();
+    }
+
+    @Test
+    public void testCorruptFile() throws IOException {
+        save();
+        try (RandomAccessFile file = new RandomAccessFile(mStoreFile, "rw")) {
+            file.seek(file.length() / 2);
+            int b = file.read();
+            file.seek(file.length() / 2);
+            file.write(b ^ 0xFF);
+        }
+
+        CacheStore store = new CacheStore(mStoreFile);
+        assertThat(store.load(FILES_KEY)).isNull();
+        assertThat(store.load(VOID_KEY)).isNull();
+    }
+
+    private void save() throws IOException {
+        Cache<String, List<File>> files = new Cache<>();
+        files.load(mSource, "class", Collections.singletonList(mOutput.getAbsoluteFile()));
+        Cache<Void, Void> symbols = new Cache<>();
+        symbols.load(mSource, null, null);
+
+        Map<CacheHolder.CacheKey<?, ?>, Cache<?, ?>> caches = new HashMap<>();
+        caches.put(FILES_KEY, files);
+        caches.put(VOID_KEY, symbols);
+        new CacheStore(mStoreFile).save(caches);
+    }
+}
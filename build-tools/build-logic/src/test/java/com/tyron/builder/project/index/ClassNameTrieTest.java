@@ -0,0 +1,90 @@
+package com.tyron.builder.project.index;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class ClassNameTrieTest {
+
+    private ClassNameTrie mTrie;
+
+    @Before
+    public void setup() {
+        mTrie = new ClassNameTrie();
+        mTrie.add("java.util.ArrayList");
+        mTrie.add("java.util.Arrays");
+        mTrie.add("java.util.AbstractList");
+        mTrie.add("java.util.List");
+        mTrie.add("java.awt.List");
+        mTrie.add("android.widget.ArrayAdapter");
+        mTrie.add("com.test.arrayUtils");
+    }
+
+    @Test
+    public void testPrefix() {
+        List<String> result = new ArrayList<>();
+        mTrie.findByPrefix("Arr", true, result::add);
+        assertThat(result).containsExactly("java.util.Arrays", "java.util.ArrayList",
+                "android.widget.ArrayAdapter").inOrder();
+
+        result.clear();
+        mTrie.findByPrefix("arr", false, result::add);
+        assertThat(result).containsExactly("java.util.Arrays", "java.util.ArrayList",
+                "android.widget.ArrayAdapter", "com.test.arrayUtils");
+
+        result.clear();
+        mTrie.findByPrefix("List", true, result::add);
+        assertThat(result).containsExactly("java.util.List", "java.awt.List");
+    }
+
+    @Test
+    public void testCamelHump() {
+        List<String> result = new ArrayList<>();
+        mTrie.findByCamelHump("AL", result::add);
+        assertThat(result).containsExactly("java.util.ArrayList", "java.util.AbstractList");
+
+        result.clear();
+        mTrie.findByCamelHump("ArrAd", result::add);
+        assertThat(result).containsExactly("android.widget.ArrayAdapter");
+
+        result.clear();
+        mTrie.findByCamelHump("AbL", result::add);
+        assertThat(result).containsExactly("java.util.AbstractList");
+    }
+
+    @Test
+    public void testRemove() {
+        assertThat(mTrie.remove("java.util.ArrayList")).isTrue();
+        assertThat(mTrie.remove("java.util.ArrayList")).isFalse();
+        assertThat(mTrie.contains("java.util.ArrayList")).isFalse();
+
+        List<String> result = new ArrayList<>();
+        mTrie.findByPrefix("Array", true, result::add);
+        assertThat(result).containsExactly("java.util.Arrays", "android.widget.ArrayAdapter");
+
+        result.clear();
+        mTrie.findByCamelHump("AL", result::add);
+        assertThat(result).containsExactly("java.util.AbstractList");
+
+        mTrie.add("java.util.ArrayList");
+        assertThat(mTrie.contains("java.util.ArrayList")).isTrue();
+    }
+
+    @Test
+    public void testFindBest() {
+        List<String> best = mTrie.findBest("List", false, 10);
+        assertThat(best.subList(0, 2)).containsExactly("java.awt.List", "java.util.List")
+                .inOrder();
+
+        best = mTrie.findBest("arr", false, 2);
+        assertThat(best).containsExactly("com.test.arrayUtils", "java.util.Arrays").inOrder();
+
+        best = mTrie.findBest("AL", true, 10);
+        assertThat(best).containsExactly("java.util.ArrayList", "java.util.AbstractList")
+                .inOrder();
+    }
+}
@@ -0,0 +1,111 @@
+package com.tyron.builder.project.index;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.jar.JarOutputStream;
+import java.util.zip.ZipEntry;
+
+public class JarClassNameIndexTest {
+
+    private static final String[] ENTRIES = {
+            "java/util/ArrayList.class",
+            "java/util/ArrayList$Itr.class",
+            "java/util/Arrays.class",
+            "java/util/AbstractList.class",
+            "java/util/List.class",
+            "android/widget/ListView.class",
+            "android/widget/ArrayAdapter.class",
+            "META-INF/MANIFEST.MF"
+    };
+
+    @Rule
+    public TemporaryFolder mFolder = new TemporaryFolder();
+
+    private File mJar;
+    private File mIndexDirectory;
+
+    @Before
+    public void setup() throws IOException {
+        mJar = mFolder.newFile("test.jar");
+        mIndexDirectory = mFolder.newFolder("index");
+        try (JarOutputStream out = new JarOutputStream(new FileOutputStream(mJar))) {
+            for (String entry : ENTRIES) {
+                out.putNextEntry(new ZipEntry(entry));
+                out.closeEntry();
+            }
+        }
+    }
+
+    @Test
+    public void testPrefix() throws IOException {
+        JarClassNameIndex index = JarClassNameIndex.open(mJar, mIndexDirectory);
+        assertThat(index.size()).isEqualTo(6);
+
+        assertThat(findByPrefix(index, "Arr", true))
+                .containsExactly("java.util.ArrayList", "java.util.Arrays",
+                        "android.widget.ArrayAdapter");
+        assertThat(findByPrefix(index, "list", true)).isEmpty();
+        assertThat(findByPrefix(index, "list", false))
+                .containsExactly("java.util.List", "android.widget.ListView");
+        assertThat(findByPrefix(index, "", false)).hasSize(6);
+    }
+
+    @Test
+    public void testCamelHump() throws IOException {
+        JarClassNameIndex index = JarClassNameIndex.open(mJar, mIndexDirectory);
+
+        List<String> result = new ArrayList<>();
+        index.findByCamelHump("AL", result::add);
+        assertThat(result).containsExactly("java.util.AbstractList", "java.util.ArrayList");
+
+        result.clear();
+        index.findByCamelHump("ArrAd", result::add);
+        assertThat(result).containsExactly("android.widget.ArrayAdapter");
+    }
+
+    @Test
+    public void testContains() throws IOException {
+        JarClassNameIndex index = JarClassNameIndex.open(mJar, mIndexDirectory);
+        assertThat(index.contains("java.util.List")).isTrue();
+        assertThat(index.contains("android.widget.ListView")).isTrue();
+        assertThat(index.contains("java.util.ArrayList$Itr")).isFalse();
+        assertThat(index.contains("java.util.Map")).isFalse();
+    }
+
+    @Test
+    public void testReusedAndRebuilt() throws IOException {
+        JarClassNameIndex.open(mJar, mIndexDirectory);
+        File[] files = mIndexDirectory.listFiles();
+        assertThat(files).hasLength(1);
+        long lastModified = files[0].lastModified();
+
+        JarClassNameIndex reopened = JarClassNameIndex.open(mJar, mIndexDirectory);
+        assertThat(reopened.size()).isEqualTo(6);
+        assertThat(files[0].lastModified()).isEqualTo(lastModified);
+
+        try (JarOutputStream out = new JarOutputStream(new FileOutputStream(mJar))) {
+            out.putNextEntry(new ZipEntry("java/util/Map.class"));
+            out.closeEntry();
+        }
+        JarClassNameIndex rebuilt = JarClassNameIndex.open(mJar, mIndexDirectory);
+        assertThat(rebuilt.size()).isEqualTo(1);
+        assertThat(rebuilt.contains("java.util.Map")).isTrue();
+    }
+
+    private static List<String> findByPrefix(ClassNameIndex index, String prefix,
+                                             boolean caseSensitive) {
+        List<String> result = new ArrayList<>();
+        index.findByPrefix(prefix, caseSensitive, result::add);
+        return result;
+    }
+}
@@ -0,0 +1,107 @@
+package com.tyron.builder.project.index;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+public class PackageIndexTest {
+
+    private static final int PACKAGES = 100;
+    private static final int FILES_PER_PACKAGE = 50;
+    private static final int LOOKUPS = 2_000;
+
+    @Test
+    public void testPutAndRemove() {
+        PackageIndex index = new PackageIndex();
+        File first = new File("com/test/First.java");
+        File second = new File("com/test/Second.java");
+        File nested = new File("com/test/inner/Nested.java");
+        File root = new File("Root.java");
+        index.put("com.test.First", first);
+        index.put("com.test.Second", second);
+        index.put("com.test.inner.Nested", nested);
+        index.put("Root", root);
+
+        assertThat(index.get("com.test")).containsExactly(first, second);
+        assertThat(index.get("com.test.inner")).containsExactly(nested);
+        assertThat(index.get("")).containsExactly(root);
+        assertThat(index.get("com")).isEmpty();
+
+        File moved = new File("other/First.java");
+        index.put("com.test.First", moved);
+        assertThat(index.get("com.test")).containsExactly(moved, second);
+
+        index.remove("com.test.First");
+        index.remove("com.test.Second");
+        assertThat(index.get("com.test")).isEmpty();
+        assertThat(index.get("com.test.inner")).containsExactly(nested);
+    }
+
+    /**
+     * Compares listing a package through the index against scanning every file of a
+     * module with 5,000 source files, which is what SourceFileManager used to do.
+     */
+    @Test
+    public void benchmarkLookup() {
+        Map<String, File> javaFiles = new HashMap<>();
+        PackageIndex index = new PackageIndex();
+        List<String> packages = new ArrayList<>();
+        for (int p = 0; p < PACKAGES; p++) {
+            String packageName = "com.example.feature" + p;
+            packages.add(packageName);
+            for (int f = 0; f < FILES_PER_PACKAGE; f++) {
+                String fqn = packageName + ".Class" + f;
+                File file = new File(fqn.replace('.', '/') + ".java");
+                javaFiles.put(fqn, file);
+                index.put(fqn, file);
+            }
+        }
+
+        // warm up
+        int expected = scan(javaFiles, packages, LOOKUPS);
+        int actual = lookup(index, packages, LOOKUPS);
+        assertThat(actual).isEqualTo(expected);
+
+        long start = System.nanoTime();
+        scan(javaFiles, packages, LOOKUPS);
+        long scanTime = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        lookup(index, packages, LOOKUPS);
+        long indexTime = System.nanoTime() - start;
+
+        System.out.println("Package lookup on " + javaFiles.size() + " files: " +
+                           "scan " + scanTime / LOOKUPS + " ns/lookup, " +
+                           "index " + indexTime / LOOKUPS + " ns/lookup");
+    }
+
+    private static int scan(Map<String, File> javaFiles, List<String> packages, int lookups) {
+        int found = 0;
+        for (int i = 0; i < lookups; i++) {
+            String packageName = packages.get(i % packages.size());
+            for (String name : javaFiles.keySet()) {
+                if (!name.startsWith(packageName)) {
+                    continue;
+                }
+                if (name.substring(0, name.lastIndexOf(".")).equals(packageName)) {
+                    found++;
+                }
+            }
+        }
+        return found;
+    }
+
+    private static int lookup(PackageIndex index, List<String> packages, int lookups) {
+        int found = 0;
+        for (int i = 0; i < lookups; i++) {
+            found += index.get(packages.get(i % packages.size())).size();
+        }
+        return found;
+    }
+}
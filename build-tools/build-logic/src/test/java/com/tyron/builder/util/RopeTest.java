@@ -0,0 +1,75 @@
+package com.tyron.builder.util;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+public class RopeTest {
+
+    @Test
+    public void testReplace() {
+        Rope rope = Rope.of("public class Main {}");
+        Rope edited = rope.replace(13, 17, "Test");
+
+        assertThat(edited.toString()).isEqualTo("public class Test {}");
+        assertThat(rope.toString()).isEqualTo("public class Main {}");
+        assertThat(edited.insert(0, "// comment\n").toString())
+                .isEqualTo("// comment\npublic class Test {}");
+        assertThat(edited.delete(0, 7).toString()).isEqualTo("class Test {}");
+    }
+
+    @Test
+    public void testLargeText() {
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < 1000; i++) {
+            builder.append("int field").append(i).append(" = ").append(i).append(";\n");
+        }
+        String text = builder.toString();
+        Rope rope = Rope.of(text);
+
+        assertThat(rope.length()).isEqualTo(text.length());
+        assertThat(rope.toString()).isEqualTo(text);
+        assertThat(rope.subSequence(5000, 6000).toString())
+                .isEqualTo(text.substring(5000, 6000));
+        for (int i = 0; i < text.length(); i += 97) {
+            assertThat(rope.charAt(i)).isEqualTo(text.charAt(i));
+        }
+    }
+
+    @Test
+    public void testRandomEdits() {
+        Random random = new Random(42);
+        StringBuilder expected = new StringBuilder();
+        Rope rope = Rope.empty();
+        for (int i = 0; i < 5000; i++) {
+            int start = random.nextInt(expected.length() + 1);
+            int end = start + random.nextInt(Math.min(20, expected.length() - start) + 1);
+            String inserted = randomText(random, random.nextInt(3) == 0 ? 2000 : 10);
+            if (random.nextInt(4) == 0) {
+                inserted = "";
+            }
+
+            expected.replace(start, end, inserted);
+            rope = rope.replace(start, end, inserted);
+
+            assertThat(rope.length()).isEqualTo(expected.length());
+            if (expected.length() > 0) {
+                int index = random.nextInt(expected.length());
+                assertThat(rope.charAt(index)).isEqualTo(expected.charAt(index));
+            }
+        }
+        assertThat(rope.toString()).isEqualTo(expected.toString());
+        assertThat(rope.contentEquals(expected)).isTrue();
+    }
+
+    private static String randomText(Random random, int maxLength) {
+        int length = random.nextInt(maxLength + 1);
+        StringBuilder builder = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            builder.append((char) ('a' + random.nextInt(26)));
+        }
+        return builder.toString();
+    }
+}
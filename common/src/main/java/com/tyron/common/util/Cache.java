@@ -3,14 +3,29 @@ package com.tyron.common.util;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.nio.file.attribute.FileTime;
-import java.time.Instant;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
+import java.util.function.Supplier;
 
-/** Cache maps a file + an arbitrary key to a value. When the file is modified, the mapping expires. */
+/**
+ * Cache maps a file + an arbitrary key to a value. When the file is modified, the mapping expires.
+ *
+ * The cache is safe to use from multiple threads. Values are grouped by file, the file is only
+ * checked once per lookup regardless of how many keys it has and the check is done outside of
+ * the lock. A cache created with a maximum size evicts the least recently used values once it
+ * holds more values than the maximum, regardless of their file, and drops every value of a
+ * file as soon as the file is found to be modified. Unbounded caches keep stale values around
+ * until they are loaded again or removed, so callers can still go through {@link #getKeys()}
+ * to clean up after files that were deleted.
+ */
 public class Cache<K, V> {
     public static class Key<K> {
         public final Path file;
@@ -34,67 +49,399 @@ public class Cache<K, V> {
         }
     }
 
+    /**
+     * A value along with the state of its file when it was loaded, used to save a cache
+     * and restore it later.
+     */
+    public static class Entry<K, V> {
+        public final Path file;
+        public final K key;
+        public final V value;
+        public final long modified;
+        public final long size;
+
+        public Entry(Path file, K key, V value, long modified, long size) {
+            this.file = file;
+            this.key = key;
+            this.value = value;
+            this.modified = modified;
+            this.size = size;
+        }
+    }
+
+    /**
+     * A snapshot of the counters of a cache
+     */
+    public static class Stats {
+        private final long hits;
+        private final long misses;
+        private final long evictions;
+        private final long invalidations;
+        private final int size;
+
+        Stats(long hits, long misses, long evictions, long invalidations, int size) {
+            this.hits = hits;
+            this.misses = misses;
+            this.evictions = evictions;
+            this.invalidations = invalidations;
+            this.size = size;
+        }
+
+        public long getHits() {
+            return hits;
+        }
+
+        public long getMisses() {
+            return misses;
+        }
+
+        /**
+         * @return The number of values removed to keep the cache within its maximum size
+         */
+        public long getEvictions() {
+            return evictions;
+        }
+
+        /**
+         * @return The number of values dropped because their file was modified
+         */
+        public long getInvalidations() {
+            return invalidations;
+        }
+
+        public int getSize() {
+            return size;
+        }
+
+        public double getHitRate() {
+            long total = hits + misses;
+            return total == 0 ? 1.0 : (double) hits / total;
+        }
+
+        @Override
+        public String toString() {
+            return "Stats{" +
+                   "hits=" + hits +
+                   ", misses=" + misses +
+                   ", evictions=" + evictions +
+                   ", invalidations=" + invalidations +
+                   ", size=" + size +
+                   '}';
+        }
+    }
+
+    /**
+     * The last modified time and the size of a file, a value is up to date as long as
+     * the stamp of its file is the same as when it was loaded.
+     */
+    private static class Stamp {
+        final long modified;
+        final long size;
+
+        Stamp(long modified, long size) {
+            this.modified = modified;
+            this.size = size;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Stamp)) return false;
+            Stamp stamp = (Stamp) o;
+            return modified == stamp.modified && size == stamp.size;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(modified, size);
+        }
+    }
+
+    private static final Stamp MISSING = new Stamp(-1, -1);
+
     private class Value {
         final V value;
-        final Instant created = Instant.now();
+        final Stamp stamp;
 
-        Value(V value) {
+        Value(V value, Stamp stamp) {
             this.value = value;
+            this.stamp = stamp;
         }
     }
 
-    private final Map<Key<K>, Value> map = new HashMap<>();
+    private class FileEntry {
+        // the stamp seen by the last check, used for values loaded after that check
+        Stamp lastChecked;
+        final Map<K, Value> values = new HashMap<>(2);
+
+        FileEntry(Stamp lastChecked) {
+            this.lastChecked = lastChecked;
+        }
+    }
+
+    private final Map<Path, FileEntry> map = new HashMap<>();
+    // access ordered, the first value is the least recently used, only kept if bounded
+    private final LinkedHashMap<Key<K>, Boolean> order = new LinkedHashMap<>(16, 0.75f, true);
+    private final int maximumSize;
+    private int size;
+
+    private long hits;
+    private long misses;
+    private long evictions;
+    private long invalidations;
+
+    /**
+     * Creates a cache without a size limit
+     */
+    public Cache() {
+        this(Integer.MAX_VALUE);
+    }
+
+    /**
+     * @param maximumSize The maximum number of values kept across all files
+     */
+    public Cache(int maximumSize) {
+        if (maximumSize <= 0) {
+            throw new IllegalArgumentException("maximumSize must be positive");
+        }
+        this.maximumSize = maximumSize;
+    }
 
     public boolean has(Path file, K k) {
         return !needs(file, k);
     }
 
-    public void clear() {
+    public synchronized void clear() {
         map.clear();
+        order.clear();
+        size = 0;
     }
 
     public boolean needs(Path file, K k) {
-        // If key is not in map, it needs to be loaded
-        Key<K> key = new Key<>(file, k);
-        if (!map.containsKey(key)) return true;
+        Stamp stamp = stat(file);
+        synchronized (this) {
+            FileEntry entry = map.get(file);
+            if (entry == null) {
+                // the entry is created once a value is loaded, files that are only checked
+                // do not take any space
+                misses++;
+                return true;
+            }
+            entry.lastChecked = stamp;
 
-        // If key was loaded before file was last modified, it needs to be reloaded
-        Value value = map.get(key);
-        FileTime modified = null;
-        try {
-            modified = Files.getLastModifiedTime(file);
-        } catch (IOException e) {
-            modified = FileTime.from(Instant.now());
+            Value value = entry.values.get(k);
+            if (value != null && stamp != MISSING && value.stamp.equals(stamp)) {
+                hits++;
+                if (isBounded()) {
+                    order.get(new Key<>(file, k));
+                }
+                return false;
+            }
+            misses++;
+            if (value != null && isBounded()) {
+                invalidateStale(file, entry, stamp);
+                if (entry.values.isEmpty()) {
+                    map.remove(file);
+                }
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Removes every value associated with the file, used when the caller knows that the
+     * file has changed before it is checked.
+     */
+    public synchronized void invalidate(Path file) {
+        FileEntry entry = map.remove(file);
+        if (entry != null) {
+            for (K k : entry.values.keySet()) {
+                order.remove(new Key<>(file, k));
+            }
+            size -= entry.values.size();
+            invalidations += entry.values.size();
         }
-        // TODO remove all keys associated with file when file changes
-        boolean before = value.created.isBefore(modified.toInstant());
-        return before;
     }
 
     @SafeVarargs
-    public final void remove(Path file, K... keys) {
+    public final synchronized void remove(Path file, K... keys) {
+        FileEntry entry = map.get(file);
+        if (entry == null) {
+            return;
+        }
         for (K k : keys) {
-            Key<K> key = new Key<>(file, k);
-            map.remove(key);
+            if (entry.values.remove(k) != null) {
+                order.remove(new Key<>(file, k));
+                size--;
+            }
+        }
+        if (entry.values.isEmpty()) {
+            map.remove(file);
         }
     }
 
-    public Set<Key<K>> getKeys() {
-        return map.keySet();
+    /**
+     * @return A copy of the keys currently in the cache
+     */
+    public synchronized Set<Key<K>> getKeys() {
+        Set<Key<K>> keys = new HashSet<>(size);
+        for (Map.Entry<Path, FileEntry> entry : map.entrySet()) {
+            for (K k : entry.getValue().values.keySet()) {
+                keys.add(new Key<>(entry.getKey(), k));
+            }
+        }
+        return keys;
     }
 
     public void load(Path file, K k, V v) {
-        // TODO limit total size of cache
-        Key<K> key = new Key<>(file, k);
-        Value value = new Value(v);
-        map.put(key, value);
+        Stamp stamp = null;
+        synchronized (this) {
+            FileEntry entry = map.get(file);
+            if (entry != null) {
+                stamp = entry.lastChecked;
+            }
+        }
+        if (stamp == null) {
+            stamp = stat(file);
+        }
+
+        synchronized (this) {
+            FileEntry entry = map.get(file);
+            if (entry == null) {
+                entry = new FileEntry(stamp);
+                map.put(file, entry);
+            }
+            if (entry.values.put(k, new Value(v, stamp)) == null) {
+                size++;
+            }
+            track(file, k);
+            evict();
+        }
+    }
+
+    /**
+     * @return A copy of every value in the cache
+     */
+    public synchronized List<Entry<K, V>> getEntries() {
+        List<Entry<K, V>> entries = new ArrayList<>(size);
+        for (Map.Entry<Path, FileEntry> entry : map.entrySet()) {
+            for (Map.Entry<K, Value> value : entry.getValue().values.entrySet()) {
+                Stamp stamp = value.getValue().stamp;
+                entries.add(new Entry<>(entry.getKey(), value.getKey(), value.getValue().value,
+                        stamp.modified, stamp.size));
+            }
+        }
+        return entries;
+    }
+
+    /**
+     * Puts back a value returned by {@link #getEntries()}, it is up to date as long as its
+     * file has not been modified since it was first loaded.
+     */
+    public synchronized void restore(Entry<K, V> restored) {
+        Stamp stamp = new Stamp(restored.modified, restored.size);
+        FileEntry entry = map.get(restored.file);
+        if (entry == null) {
+            entry = new FileEntry(null);
+            map.put(restored.file, entry);
+        }
+        if (entry.values.put(restored.key, new Value(restored.value, stamp)) == null) {
+            size++;
+        }
+        track(restored.file, restored.key);
+        evict();
     }
 
     public V get(Path file, K k) {
-        Key<K> key = new Key<>(file, k);
-        if (!map.containsKey(key)) {
-            throw new IllegalArgumentException(k + " is not in map " + map);
+        Value value = lookup(file, k);
+        if (value == null) {
+            throw new IllegalArgumentException(k + " of " + file + " is not in the cache");
+        }
+        return value.value;
+    }
+
+    /**
+     * Returns the value of the key, loading it if it is missing or its file has been modified.
+     * Unlike calling {@link #needs(Path, Object)} and {@link #get(Path, Object)} separately,
+     * this does not fail if another thread evicts the value in between.
+     */
+    public V get(Path file, K k, Supplier<V> loader) {
+        if (!needs(file, k)) {
+            Value value = lookup(file, k);
+            if (value != null) {
+                return value.value;
+            }
+        }
+        V v = loader.get();
+        load(file, k, v);
+        return v;
+    }
+
+    public synchronized Stats getStats() {
+        return new Stats(hits, misses, evictions, invalidations, size);
+    }
+
+    private synchronized Value lookup(Path file, K k) {
+        FileEntry entry = map.get(file);
+        if (entry == null) {
+            return null;
+        }
+        return entry.values.get(k);
+    }
+
+    private boolean isBounded() {
+        return maximumSize != Integer.MAX_VALUE;
+    }
+
+    private void invalidateStale(Path file, FileEntry entry, Stamp stamp) {
+        Iterator<Map.Entry<K, Value>> iterator = entry.values.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<K, Value> value = iterator.next();
+            if (!value.getValue().stamp.equals(stamp)) {
+                iterator.remove();
+                order.remove(new Key<>(file, value.getKey()));
+                size--;
+                invalidations++;
+            }
+        }
+    }
+
+    private void track(Path file, K k) {
+        if (isBounded()) {
+            order.put(new Key<>(file, k), Boolean.TRUE);
+        }
+    }
+
+    /**
+     * Removes the least recently used values until the cache is within its maximum size.
+     * Values are evicted one by one, so a file with many values, such as an archive, does
+     * not keep the cache over its maximum.
+     */
+    private void evict() {
+        Iterator<Key<K>> iterator = order.keySet().iterator();
+        while (size > maximumSize && iterator.hasNext()) {
+            Key<K> eldest = iterator.next();
+            iterator.remove();
+            FileEntry entry = map.get(eldest.file);
+            if (entry == null || !entry.values.containsKey(eldest.key)) {
+                continue;
+            }
+            entry.values.remove(eldest.key);
+            if (entry.values.isEmpty()) {
+                map.remove(eldest.file);
+            }
+            size--;
+            evictions++;
+        }
+    }
+
+    private static Stamp stat(Path file) {
+        try {
+            BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+            return new Stamp(attributes.lastModifiedTime().toMillis(), attributes.size());
+        } catch (IOException | UnsupportedOperationException e) {
+            // treat files that cannot be read as always modified
+            return MISSING;
         }
-        return (V) map.get(key).value;
     }
-}
\ No newline at end of file
+}
@@ -254,6 +254,91 @@ public class StringSearch {
         return true;
     }
 
+    /**
+     * Checks whether the pattern matches the humps of the candidate, for example
+     * {@code ArrLi} and {@code AL} both match {@code ArrayList}. Each hump of the pattern
+     * must be a prefix of a hump in the candidate, in order. The first hump must match the
+     * start of the candidate.
+     */
+    public static boolean matchesCamelHump(CharSequence candidate, CharSequence pattern) {
+        if (pattern.length() == 0) {
+            return true;
+        }
+        if (candidate.length() < pattern.length() || candidate.charAt(0) != pattern.charAt(0)) {
+            return false;
+        }
+        int candidateIndex = 0;
+        int patternIndex = 0;
+        while (patternIndex < pattern.length()) {
+            int patternEnd = nextHump(pattern, patternIndex);
+            int length = patternEnd - patternIndex;
+            boolean found = false;
+            while (candidateIndex < candidate.length()) {
+                if (regionMatches(candidate, candidateIndex, pattern, patternIndex, length)) {
+                    found = true;
+                    break;
+                }
+                if (patternIndex == 0) {
+                    // the first hump must match the start of the candidate
+                    return false;
+                }
+                candidateIndex = nextHump(candidate, candidateIndex);
+            }
+            if (!found) {
+                return false;
+            }
+            candidateIndex += length;
+            patternIndex = patternEnd;
+            if (patternIndex < pattern.length() && candidateIndex < candidate.length() &&
+                !isHumpStart(candidate, candidateIndex)) {
+                candidateIndex = nextHump(candidate, candidateIndex);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return The first character of each hump of the name, e.g. {@code AL} for
+     * {@code ArrayList}
+     */
+    public static String camelHumpInitials(CharSequence name) {
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < name.length(); i = nextHump(name, i)) {
+            builder.append(name.charAt(i));
+        }
+        return builder.toString();
+    }
+
+    private static int nextHump(CharSequence text, int from) {
+        int i = from + 1;
+        while (i < text.length() && !isHumpStart(text, i)) {
+            i++;
+        }
+        return i;
+    }
+
+    private static boolean isHumpStart(CharSequence text, int index) {
+        char c = text.charAt(index);
+        if (Character.isUpperCase(c) || Character.isDigit(c)) {
+            return true;
+        }
+        char previous = text.charAt(index - 1);
+        return previous == '_' || previous == '$';
+    }
+
+    private static boolean regionMatches(CharSequence text, int textOffset,
+                                         CharSequence other, int otherOffset, int length) {
+        if (textOffset + length > text.length()) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (text.charAt(textOffset + i) != other.charAt(otherOffset + i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
     public static String packageName(File file) {
         Pattern packagePattern = Pattern.compile("package\\s+([a-zA_Z][.\\w]*+)(;)?");
         Pattern startOfClass = Pattern.compile("^[\\w ]*class +\\w+");
@@ -0,0 +1,138 @@
+package com.tyron.common.util;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+
+public class CacheTest {
+
+    @Rule
+    public TemporaryFolder mFolder = new TemporaryFolder();
+
+    private Path mFirst;
+    private Path mSecond;
+
+    @Before
+    public void setup() throws IOException {
+        mFirst = mFolder.newFile("First.java").toPath();
+        mSecond = mFolder.newFile("Second.java").toPath();
+    }
+
+    @Test
+    public void testLoad() {
+        Cache<String, String> cache = new Cache<>();
+        assertThat(cache.needs(mFirst, "a")).isTrue();
+
+        cache.load(mFirst, "a", "value");
+        assertThat(cache.needs(mFirst, "a")).isFalse();
+        assertThat(cache.get(mFirst, "a")).isEqualTo("value");
+        assertThat(cache.needs(mFirst, "b")).isTrue();
+
+        Cache.Stats stats = cache.getStats();
+        assertThat(stats.getHits()).isEqualTo(1);
+        assertThat(stats.getMisses()).isEqualTo(2);
+    }
+
+    @Test
+    public void testNullValues() {
+        Cache<Void, Void> cache = new Cache<>();
+        cache.needs(mFirst, null);
+        cache.load(mFirst, null, null);
+        assertThat(cache.needs(mFirst, null)).isFalse();
+        assertThat(cache.get(mFirst, null)).isNull();
+    }
+
+    @Test
+    public void testModifiedFile() throws IOException {
+        Cache<String, String> cache = new Cache<>();
+        cache.load(mFirst, "a", "value");
+        modify(mFirst);
+
+        assertThat(cache.needs(mFirst, "a")).isTrue();
+        // unbounded caches keep stale values so deleted files can be cleaned up
+        assertThat(cache.getKeys()).hasSize(1);
+    }
+
+    @Test
+    public void testModifiedFileDropsStaleValues() throws IOException {
+        Cache<String, String> cache = new Cache<>(10);
+        cache.load(mFirst, "a", "a");
+        cache.load(mFirst, "b", "b");
+        modify(mFirst);
+
+        assertThat(cache.needs(mFirst, "a")).isTrue();
+        assertThat(cache.getKeys()).isEmpty();
+        assertThat(cache.getStats().getInvalidations()).isEqualTo(2);
+    }
+
+    @Test
+    public void testEvictsLeastRecentlyUsed() {
+        Cache<String, String> cache = new Cache<>(2);
+        cache.load(mFirst, "a", "a");
+        cache.load(mSecond, "a", "a");
+        cache.get(mFirst, "a");
+        cache.load(mSecond, "b", "b");
+
+        assertThat(cache.needs(mFirst, "a")).isTrue();
+        assertThat(cache.needs(mSecond, "a")).isFalse();
+        assertThat(cache.needs(mSecond, "b")).isFalse();
+        assertThat(cache.getStats().getEvictions()).isEqualTo(1);
+        assertThat(cache.getStats().getSize()).isEqualTo(2);
+    }
+
+    @Test
+    public void testEvictsValuesOfOneFile() {
+        Cache<String, String> cache = new Cache<>(3);
+        for (int i = 0; i < 10; i++) {
+            cache.load(mFirst, String.valueOf(i), "value");
+        }
+        assertThat(cache.getStats().getSize()).isEqualTo(3);
+        assertThat(cache.getStats().getEvictions()).isEqualTo(7);
+
+        // the value that was used last is kept
+        assertThat(cache.needs(mFirst, "7")).isFalse();
+        cache.load(mFirst, "10", "value");
+        assertThat(cache.needs(mFirst, "7")).isFalse();
+        assertThat(cache.needs(mFirst, "8")).isTrue();
+        assertThat(cache.needs(mFirst, "9")).isFalse();
+        assertThat(cache.needs(mFirst, "10")).isFalse();
+    }
+
+    @Test
+    public void testLoader() throws IOException {
+        Cache<String, Integer> cache = new Cache<>(10);
+        int[] loads = new int[1];
+        cache.get(mFirst, "a", () -> ++loads[0]);
+        cache.get(mFirst, "a", () -> ++loads[0]);
+        assertThat(loads[0]).isEqualTo(1);
+
+        modify(mFirst);
+        assertThat(cache.get(mFirst, "a", () -> ++loads[0])).isEqualTo(2);
+    }
+
+    @Test
+    public void testInvalidate() {
+        Cache<String, String> cache = new Cache<>();
+        cache.load(mFirst, "a", "a");
+        cache.load(mFirst, "b", "b");
+        cache.invalidate(mFirst);
+
+        assertThat(cache.needs(mFirst, "a")).isTrue();
+        assertThat(cache.getStats().getSize()).isEqualTo(0);
+    }
+
+    private static void modify(Path file) throws IOException {
+        Files.write(file, "class Changed {}".getBytes(StandardCharsets.UTF_8));
+        FileTime modified = Files.getLastModifiedTime(file);
+        Files.setLastModifiedTime(file, FileTime.fromMillis(modified.toMillis() + 2000));
+    }
+}
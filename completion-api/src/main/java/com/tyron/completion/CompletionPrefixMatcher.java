@@ -1,5 +1,7 @@
 package com.tyron.completion;
 
+import com.tyron.common.util.StringSearch;
+
 import me.xdrop.fuzzywuzzy.FuzzySearch;
 
 /**
@@ -22,6 +24,7 @@ public class CompletionPrefixMatcher {
     public enum MatchLevel {
         NOT_MATCH,
         PARTIAL_MATCH,
+        CAMEL_HUMP,
         CASE_INSENSITIVE_PREFIX,
         CASE_SENSITIVE_PREFIX,
         CASE_INSENSITIVE_EQUAL,
@@ -41,6 +44,10 @@ public class CompletionPrefixMatcher {
                     : MatchLevel.CASE_INSENSITIVE_PREFIX;
         }
 
+        if (StringSearch.matchesCamelHump(candidateName, completionPrefix)) {
+            return MatchLevel.CAMEL_HUMP;
+        }
+
         int score = FuzzySearch.ratio(candidateName, completionPrefix);
         if (score > MINIMUM_SCORE) {
             return MatchLevel.PARTIAL_MATCH;
@@ -8,23 +8,44 @@ import com.tyron.completion.CompletionParameters;
 import com.tyron.completion.CompletionProvider;
 import com.tyron.completion.model.CompletionList;
 import com.tyron.completion.progress.ProcessCanceledException;
+import com.tyron.completion.progress.ProgressIndicator;
 import com.tyron.completion.progress.ProgressManager;
 
 import java.io.File;
-import java.time.Duration;
-import java.time.Instant;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Collections;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
 
 /**
  * Main entry point for the completions api.
+ * <p>
+ * The providers that accept a file are run in parallel on the {@link ProgressManager} pool.
+ * Providers that have not returned their results within the latency budget are canceled
+ * through {@link ProgressManager#checkCanceled()} and the returned list is marked as incomplete.
+ * <p>
+ * The results of the last request are kept in a {@link CompletionSession}, the providers are
+ * only asked again when the results can't be filtered again for the extended prefix.
  */
 public class CompletionEngine {
 
+    private static final String TAG = CompletionEngine.class.getSimpleName();
+
+    public static final long DEFAULT_LATENCY_BUDGET_MS = 3000;
+
+    /**
+     * How often the calling thread checks whether the completion request has been canceled
+     */
+    private static final long CHECK_CANCELED_INTERVAL_MS = 20;
+
     private static CompletionEngine sInstance = null;
 
     public static CompletionEngine getInstance() {
@@ -35,9 +56,12 @@ public class CompletionEngine {
     }
 
     private final Set<CompletionProvider> mCompletionProviders;
+    private final Map<String, LatencyHistogram> mLatencies = new ConcurrentHashMap<>();
+    private volatile long mLatencyBudgetMs = DEFAULT_LATENCY_BUDGET_MS;
+    private volatile CompletionSession mSession;
 
     public CompletionEngine() {
-        mCompletionProviders = new HashSet<>();
+        mCompletionProviders = Collections.synchronizedSet(new HashSet<>());
     }
 
     public void registerCompletionProvider(CompletionProvider provider) {
@@ -46,14 +70,35 @@ public class CompletionEngine {
 
     public List<CompletionProvider> getCompletionProviders(File file) {
         List<CompletionProvider> providers = new ArrayList<>();
-        for (CompletionProvider provider : mCompletionProviders) {
-            if (provider.accept(file)) {
-                providers.add(provider);
+        synchronized (mCompletionProviders) {
+            for (CompletionProvider provider : mCompletionProviders) {
+                if (provider.accept(file)) {
+                    providers.add(provider);
+                }
             }
         }
         return providers;
     }
 
+    /**
+     * Sets the time a completion request may take, providers that have not returned their
+     * results by then are canceled.
+     */
+    public void setLatencyBudget(long millis) {
+        mLatencyBudgetMs = millis;
+    }
+
+    public long getLatencyBudget() {
+        return mLatencyBudgetMs;
+    }
+
+    /**
+     * @return The latencies of the providers, keyed by their class name
+     */
+    public Map<String, LatencyHistogram> getLatencies() {
+        return Collections.unmodifiableMap(mLatencies);
+    }
+
     public CompletionList complete(Project project,
                                    Module module,
                                    File file,
@@ -62,8 +107,43 @@ public class CompletionEngine {
                                    int line,
                                    int column,
                                    long index) {
+        return complete(project, module, file, contents, prefix, line, column, index, null);
+    }
+
+    /**
+     * Same as {@link #complete(Project, Module, File, String, String, int, int, long)} but
+     * the results of each provider are also passed to the given consumer as soon as they
+     * are available. The consumer is called from the calling thread.
+     *
+     * @throws ProcessCanceledException if the calling thread has been canceled, the providers
+     *                                  that are still running are canceled as well
+     */
+    public CompletionList complete(Project project,
+                                   Module module,
+                                   File file,
+                                   String contents,
+                                   String prefix,
+                                   int line,
+                                   int column,
+                                   long index,
+                                   Consumer<CompletionList> partialResults) {
+        CompletionSession session = mSession;
+        if (session != null) {
+            String typed = session.getTypedText(file, contents, index);
+            if (typed != null) {
+                CompletionList refined = session.refine(typed);
+                if (partialResults != null) {
+                    partialResults.accept(refined);
+                }
+                return refined;
+            }
+            mSession = null;
+        }
+
         CompletionList list = new CompletionList();
         list.items = new ArrayList<>();
+        List<CompletionList> providerLists = new ArrayList<>();
+        boolean cacheable = true;
 
         CompletionParameters parameters = CompletionParameters.builder()
                 .setProject(project)
@@ -76,18 +156,140 @@ public class CompletionEngine {
                 .setIndex(index)
                 .build();
 
-        Instant now = Instant.now();
-        List<CompletionProvider> providers = getCompletionProviders(file);
-        for (CompletionProvider provider : providers) {
-            CompletionList complete = provider.complete(parameters);
-            list.items.addAll(complete.items);
+        long start = System.currentTimeMillis();
+        long deadline = start + mLatencyBudgetMs;
+
+        BlockingQueue<ProviderResult> results = new LinkedBlockingQueue<>();
+        Map<CompletionProvider, ProgressIndicator> pending = new IdentityHashMap<>();
+        for (CompletionProvider provider : getCompletionProviders(file)) {
+            ProgressIndicator indicator = new ProgressIndicator();
+            pending.put(provider, indicator);
+            ProgressManager.getInstance().runAsync(
+                    () -> results.add(runProvider(provider, parameters, start)),
+                    it -> results.add(new ProviderResult(provider, null, true, 0)),
+                    indicator);
         }
 
-        Log.d("CompletionEngine", "Completions took " + Duration.between(now, Instant.now()).toMillis() + " ms");
+        try {
+            while (!pending.isEmpty()) {
+                ProgressManager.checkCanceled();
+
+                long remaining = deadline - System.currentTimeMillis();
+                if (remaining <= 0) {
+                    break;
+                }
+                ProviderResult result = results.poll(
+                        Math.min(remaining, CHECK_CANCELED_INTERVAL_MS), TimeUnit.MILLISECONDS);
+                if (result == null || pending.remove(result.provider) == null) {
+                    continue;
+                }
+
+                LatencyHistogram histogram = getHistogram(result.provider);
+                if (result.canceled) {
+                    histogram.recordCanceled();
+                    list.isIncomplete = true;
+                    continue;
+                }
+                histogram.record(result.millis);
+                if (result.list == null) {
+                    // the provider failed, its results may be there on the next request
+                    cacheable = false;
+                    continue;
+                }
+
+                providerLists.add(result.list);
+                list.items.addAll(result.list.items);
+                if (result.list.isIncomplete) {
+                    list.isIncomplete = true;
+                }
+                if (partialResults != null) {
+                    partialResults.accept(result.list);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            cancel(pending, false);
+            throw new ProcessCanceledException(e);
+        } catch (ProcessCanceledException e) {
+            cancel(pending, false);
+            throw e;
+        }
+
+        if (!pending.isEmpty()) {
+            Log.d(TAG, "Canceled " + pending.size() + " completion providers that exceeded " +
+                       "the latency budget of " + mLatencyBudgetMs + " ms");
+            cancel(pending, true);
+            list.isIncomplete = true;
+        }
+
+        if (cacheable && !list.isIncomplete && CompletionSession.canCache(providerLists)) {
+            mSession = new CompletionSession(file, contents, (int) index, providerLists);
+        }
+
+        Log.d(TAG, "Completions took " + (System.currentTimeMillis() - start) + " ms");
         return list;
     }
 
+    private ProviderResult runProvider(CompletionProvider provider,
+                                       CompletionParameters parameters,
+                                       long start) {
+        CompletionList list = null;
+        boolean canceled = false;
+        try {
+            list = provider.complete(parameters);
+        } catch (ProcessCanceledException e) {
+            canceled = true;
+        } catch (Throwable e) {
+            Log.e(TAG, "Completion provider " + provider + " failed", e);
+        }
+        return new ProviderResult(provider, list, canceled, System.currentTimeMillis() - start);
+    }
+
+    private void cancel(Map<CompletionProvider, ProgressIndicator> pending, boolean timedOut) {
+        for (Map.Entry<CompletionProvider, ProgressIndicator> entry : pending.entrySet()) {
+            entry.getValue().cancel();
+            LatencyHistogram histogram = getHistogram(entry.getKey());
+            if (timedOut) {
+                histogram.recordTimeout();
+            } else {
+                histogram.recordCanceled();
+            }
+        }
+        pending.clear();
+    }
+
+    private LatencyHistogram getHistogram(CompletionProvider provider) {
+        return mLatencies.computeIfAbsent(provider.getClass().getName(),
+                it -> new LatencyHistogram());
+    }
+
+    /**
+     * Discards the results of the last request, so the providers are asked again on the
+     * next request.
+     */
+    public void invalidateSession() {
+        mSession = null;
+    }
+
     public void clear() {
         mCompletionProviders.clear();
+        mSession = null;
+    }
+
+    private static class ProviderResult {
+        private final CompletionProvider provider;
+        private final CompletionList list;
+        private final boolean canceled;
+        private final long millis;
+
+        private ProviderResult(CompletionProvider provider,
+                               CompletionList list,
+                               boolean canceled,
+                               long millis) {
+            this.provider = provider;
+            this.list = list;
+            this.canceled = canceled;
+            this.millis = millis;
+        }
     }
 }
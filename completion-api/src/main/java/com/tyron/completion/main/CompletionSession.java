@@ -0,0 +1,90 @@
+package com.tyron.completion.main;
+
+import com.tyron.completion.model.CompletionList;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The results of the providers for the last completion request. As the user extends the
+ * prefix, the cached items are filtered and ranked again instead of asking the providers.
+ * <p>
+ * A session is identified by the file, the offset of the request (the anchor) and the
+ * contents of the document. It is only reused while the document is the same as when the
+ * providers were asked, except for the identifier characters typed after the anchor.
+ */
+class CompletionSession {
+
+    private final File mFile;
+    private final String mContents;
+    private final int mAnchor;
+    private final List<CompletionList> mLists;
+
+    CompletionSession(File file, String contents, int anchor, List<CompletionList> lists) {
+        mFile = file;
+        mContents = contents;
+        mAnchor = anchor;
+        mLists = lists;
+    }
+
+    /**
+     * @return Whether the lists can be filtered again as the prefix is extended. Lists that
+     * are incomplete or that do not know their prefix have to be computed again.
+     */
+    static boolean canCache(List<CompletionList> lists) {
+        for (CompletionList list : lists) {
+            if (list.isIncomplete() || list.getPrefix() == null) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return The text typed after the anchor if this session can be used for the given
+     * request, or null if the providers have to be asked again because the document has been
+     * changed elsewhere, the caret moved before the anchor or something other than an
+     * identifier has been typed.
+     */
+    String getTypedText(File file, String contents, long index) {
+        if (!mFile.equals(file)) {
+            return null;
+        }
+        if (index < mAnchor || index > contents.length()) {
+            return null;
+        }
+        int typedLength = (int) index - mAnchor;
+        if (contents.length() - typedLength != mContents.length()) {
+            return null;
+        }
+        if (!contents.regionMatches(0, mContents, 0, mAnchor)) {
+            return null;
+        }
+        if (!contents.regionMatches((int) index, mContents, mAnchor,
+                mContents.length() - mAnchor)) {
+            return null;
+        }
+        String typed = contents.substring(mAnchor, (int) index);
+        for (int i = 0; i < typed.length(); i++) {
+            if (!Character.isJavaIdentifierPart(typed.charAt(i))) {
+                return null;
+            }
+        }
+        return typed;
+    }
+
+    /**
+     * Filters and ranks the cached items against the prefix of each list extended with the
+     * typed text. The items are matched against the lists returned by the providers, not the
+     * previous refinement, since fuzzy matches may come back as the prefix grows.
+     */
+    CompletionList refine(String typed) {
+        CompletionList list = new CompletionList();
+        list.items = new ArrayList<>();
+        for (CompletionList cached : mLists) {
+            list.items.addAll(CompletionList.copy(cached, cached.getPrefix() + typed).items);
+        }
+        return list;
+    }
+}
@@ -0,0 +1,119 @@
+package com.tyron.completion.main;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Counts the time a completion provider took to return its results in fixed buckets.
+ */
+public class LatencyHistogram {
+
+    /**
+     * The upper bounds in milliseconds of the buckets, the last bucket holds everything above
+     * the last bound.
+     */
+    private static final long[] BOUNDS_MS = {10, 25, 50, 100, 250, 500, 1000, 2500, 5000};
+
+    private final AtomicLongArray mCounts = new AtomicLongArray(BOUNDS_MS.length + 1);
+    private final AtomicLong mTotalMillis = new AtomicLong();
+    private final AtomicLong mTimedOutCount = new AtomicLong();
+    private final AtomicLong mCanceledCount = new AtomicLong();
+
+    void record(long millis) {
+        int bucket = 0;
+        while (bucket < BOUNDS_MS.length && millis > BOUNDS_MS[bucket]) {
+            bucket++;
+        }
+        mCounts.incrementAndGet(bucket);
+        mTotalMillis.addAndGet(millis);
+    }
+
+    void recordTimeout() {
+        mTimedOutCount.incrementAndGet();
+    }
+
+    void recordCanceled() {
+        mCanceledCount.incrementAndGet();
+    }
+
+    /**
+     * @return The number of times the provider returned its results in time
+     */
+    public long getCount() {
+        long count = 0;
+        for (int i = 0; i < mCounts.length(); i++) {
+            count += mCounts.get(i);
+        }
+        return count;
+    }
+
+    public long getAverageMillis() {
+        long count = getCount();
+        return count == 0 ? 0 : mTotalMillis.get() / count;
+    }
+
+    /**
+     * @return The number of times the provider was canceled because it did not return its
+     * results within the latency budget
+     */
+    public long getTimedOutCount() {
+        return mTimedOutCount.get();
+    }
+
+    /**
+     * @return The number of times the provider was canceled because the completion request
+     * was canceled, such as when the user has typed another character
+     */
+    public long getCanceledCount() {
+        return mCanceledCount.get();
+    }
+
+    /**
+     * @param percentile The percentile, from 0 to 100
+     * @return The upper bound of the bucket that contains the given percentile, or
+     * {@link Long#MAX_VALUE} if it is above the largest bound
+     */
+    public long getPercentileMillis(double percentile) {
+        long count = getCount();
+        if (count == 0) {
+            return 0;
+        }
+        long target = (long) Math.ceil(count * percentile / 100);
+        long seen = 0;
+        for (int i = 0; i < BOUNDS_MS.length; i++) {
+            seen += mCounts.get(i);
+            if (seen >= target) {
+                return BOUNDS_MS[i];
+            }
+        }
+        return Long.MAX_VALUE;
+    }
+
+    public void reset() {
+        for (int i = 0; i < mCounts.length(); i++) {
+            mCounts.set(i, 0);
+        }
+        mTotalMillis.set(0);
+        mTimedOutCount.set(0);
+        mCanceledCount.set(0);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder buckets = new StringBuilder();
+        for (int i = 0; i < mCounts.length(); i++) {
+            if (i > 0) {
+                buckets.append(", ");
+            }
+            buckets.append(i < BOUNDS_MS.length ? "<=" + BOUNDS_MS[i] : ">" + BOUNDS_MS[i - 1])
+                    .append("ms=").append(mCounts.get(i));
+        }
+        return "LatencyHistogram{" +
+               "count=" + getCount() +
+               ", averageMillis=" + getAverageMillis() +
+               ", timedOut=" + getTimedOutCount() +
+               ", canceled=" + getCanceledCount() +
+               ", buckets=[" + buckets + "]" +
+               '}';
+    }
+}
@@ -35,6 +35,8 @@ public class CompletionList {
 
     public List<CompletionItem> items = new ArrayList<>();
 
+    private String prefix;
+
     /**
      * For performance reasons, the completion items are limited to a certain amount.
      * A completion provider may indicate that its results are incomplete so next as
@@ -54,6 +56,14 @@ public class CompletionList {
         return items;
     }
 
+    /**
+     * @return The prefix that the items have been matched against, or null if this list has
+     * not been created from a {@link Builder}
+     */
+    public String getPrefix() {
+        return prefix;
+    }
+
     public static CompletionList copy(CompletionList old, String newPrefix) {
         Builder builder = CompletionList.builder(newPrefix);
         if (old.isIncomplete) {
@@ -129,6 +139,7 @@ public class CompletionList {
         public CompletionList build() {
             CompletionList list = new CompletionList();
             list.isIncomplete = this.incomplete;
+            list.prefix = this.completionPrefix;
             list.items = ITEM_ORDERING.immutableSortedCopy(items);
             return list;
         }
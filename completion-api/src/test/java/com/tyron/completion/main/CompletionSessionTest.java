@@ -0,0 +1,101 @@
+package com.tyron.completion.main;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import com.tyron.completion.model.CompletionItem;
+import com.tyron.completion.model.CompletionList;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+public class CompletionSessionTest {
+
+    private static final File FILE = new File("Main.java");
+
+    @Test
+    public void testRefine() {
+        String contents = "class Main { void test() { s } }";
+        int anchor = contents.indexOf(" } }");
+        CompletionSession session = new CompletionSession(FILE, contents, anchor,
+                Collections.singletonList(list("s", "setText", "setTag", "size")));
+
+        String typed = "etT";
+        String newContents = contents.substring(0, anchor) + typed + contents.substring(anchor);
+        assertEquals(typed, session.getTypedText(FILE, newContents, anchor + typed.length()));
+
+        CompletionList refined = session.refine(typed);
+        assertEquals(Arrays.asList("setTag", "setText"), labels(refined));
+    }
+
+    @Test
+    public void testInvalidated() {
+        String contents = "class Main { void test() { s } }";
+        int anchor = contents.indexOf(" } }");
+        CompletionSession session = new CompletionSession(FILE, contents, anchor,
+                Collections.singletonList(list("s", "setText", "size")));
+
+        // the prefix has been shortened past the anchor
+        String removed = contents.substring(0, anchor - 1) + contents.substring(anchor);
+        assertNull(session.getTypedText(FILE, removed, anchor - 1));
+
+        // a member select is another completion
+        String dot = contents.substring(0, anchor) + "." + contents.substring(anchor);
+        assertNull(session.getTypedText(FILE, dot, anchor + 1));
+
+        // the document has been modified elsewhere
+        String edited = "final " + contents + "a";
+        assertNull(session.getTypedText(FILE, edited, anchor + "final ".length()));
+
+        assertNull(session.getTypedText(new File("Other.java"), contents, anchor));
+    }
+
+    @Test
+    public void testCanCache() {
+        CompletionList list = list("s", "setText");
+        assertTrue(CompletionSession.canCache(Collections.singletonList(list)));
+
+        CompletionList.Builder builder = CompletionList.builder("s");
+        builder.incomplete();
+        assertFalse(CompletionSession.canCache(Arrays.asList(list, builder.build())));
+
+        // lists that are not created from a builder do not know their prefix
+        assertFalse(CompletionSession.canCache(Collections.singletonList(new CompletionList())));
+    }
+
+    @Test
+    public void testPrefixDependentListsAreNotCached() {
+        CompletionList scope = list("str", "strictMode", "string");
+
+        // class names are looked up in the index with the prefix and only the best matches
+        // are kept, filtering them again would miss the classes that match a longer prefix
+        CompletionList.Builder classNames = CompletionList.builder("str");
+        classNames.addItem(CompletionItem.create("String", "", "String"));
+        classNames.incomplete();
+
+        assertTrue(CompletionSession.canCache(Collections.singletonList(scope)));
+        assertFalse(CompletionSession.canCache(Arrays.asList(scope, classNames.build())));
+    }
+
+    private static CompletionList list(String prefix, String... labels) {
+        CompletionList.Builder builder = CompletionList.builder(prefix);
+        for (String label : labels) {
+            builder.addItem(CompletionItem.create(label, "", label));
+        }
+        return builder.build();
+    }
+
+    private static List<String> labels(CompletionList list) {
+        String[] labels = new String[list.items.size()];
+        for (int i = 0; i < labels.length; i++) {
+            labels[i] = list.items.get(i).label;
+        }
+        return Arrays.asList(labels);
+    }
+}
@@ -6,22 +6,51 @@ import com.tyron.resolver.model.Dependency;
 import com.tyron.resolver.model.Pom;
 import com.tyron.resolver.repository.RepositoryManager;
 
+import java.io.File;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 public class DependencyResolver {
 
+    /**
+     * The number of files downloaded at the same time, downloads are bound by the network
+     * latency rather than by the cpu so this is higher than the number of cores
+     */
+    private static final int DEFAULT_PARALLELISM = 8;
+
     private final RepositoryManager repository;
     private final Map<Pom, String> resolvedPoms;
+    private final int mParallelism;
 
     private ResolveListener mListener;
 
     public DependencyResolver(RepositoryManager repository) {
+        this(repository, DEFAULT_PARALLELISM);
+    }
+
+    /**
+     * @param parallelism The maximum number of POMs or libraries fetched at the same time
+     */
+    public DependencyResolver(RepositoryManager repository, int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("Parallelism must be at least 1");
+        }
         this.repository = repository;
         this.resolvedPoms = new HashMap<>();
+        mParallelism = parallelism;
     }
 
     public void setResolveListener(ResolveListener listener) {
@@ -35,11 +64,14 @@ public class DependencyResolver {
     }
 
     public List<Pom> resolveDependencies(List<Dependency> declaredDependencies) {
+        Map<String, List<Dependency>> declarations = new LinkedHashMap<>();
+        for (Dependency dependency : declaredDependencies) {
+            declarations.put(dependency.toString(), dependency.getExcludes());
+        }
+        prefetch(declarations);
+
         List<Pom> poms = new ArrayList<>();
         for (Dependency dependency : declaredDependencies) {
-            if (mListener != null) {
-                mListener.onResolve("Getting POM: " + dependency);
-            }
             Pom pom = repository.getPom(dependency.toString());
             if (pom != null) {
                 pom.setExcludes(dependency.getExcludes());
@@ -51,7 +83,7 @@ public class DependencyResolver {
                 }
             }
         }
-        return resolve(poms);
+        return resolvePoms(poms);
     }
 
     /**
@@ -59,12 +91,133 @@ public class DependencyResolver {
      * the conflicting libraries
      */
     public List<Pom> resolve(List<Pom> declaredDependencies) {
+        Map<String, List<Dependency>> declarations = new LinkedHashMap<>();
+        for (Pom pom : declaredDependencies) {
+            for (Dependency dependency : pom.getDependencies()) {
+                if (!"test".equals(dependency.getScope()) &&
+                    !isExcluded(pom.getExcludes(), dependency)) {
+                    declarations.put(dependency.toString(), pom.getExcludes());
+                }
+            }
+        }
+        prefetch(declarations);
+
+        return resolvePoms(declaredDependencies);
+    }
+
+    private List<Pom> resolvePoms(List<Pom> declaredDependencies) {
         for (Pom pom : declaredDependencies) {
             resolve(pom);
         }
         return new ArrayList<>(resolvedPoms.keySet());
     }
 
+    /**
+     * Downloads the libraries of the given POMs at the same time, libraries that cannot be
+     * downloaded are reported to the {@link ResolveListener} and are not included.
+     *
+     * @return The library files in the same order as the given POMs
+     */
+    public Map<Pom, File> getLibraries(List<Pom> poms) {
+        Map<Pom, File> libraries = new LinkedHashMap<>();
+        if (poms.isEmpty()) {
+            return libraries;
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(
+                Math.min(mParallelism, poms.size()));
+        try {
+            List<Future<File>> futures = new ArrayList<>();
+            for (Pom pom : poms) {
+                futures.add(executor.submit(() -> repository.getLibrary(pom)));
+            }
+            for (int i = 0; i < poms.size(); i++) {
+                Pom pom = poms.get(i);
+                if (mListener != null) {
+                    mListener.onResolve("Downloading " + pom);
+                }
+                try {
+                    File file = futures.get(i).get();
+                    if (file != null) {
+                        libraries.put(pom, file);
+                    }
+                } catch (ExecutionException e) {
+                    if (mListener != null) {
+                        mListener.onFailure("Unable to download " + pom + ": " +
+                                            e.getCause().getMessage());
+                    }
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            executor.shutdownNow();
+        }
+        return libraries;
+    }
+
+    /**
+     * Fetches the POMs of the given declarations and all of their transitive dependencies
+     * using a bounded pool, so the resolution afterwards only reads the POMs from memory.
+     * The dependencies of a POM are requested as soon as it is fetched, without waiting
+     * for the other requests. Every declaration is requested only once.
+     *
+     * This does not pick any versions, every version that is found is fetched since the
+     * conflict resolution depends on the order of the dependencies. POMs that are not
+     * fetched here are fetched by the resolution as before.
+     */
+    private void prefetch(Map<String, List<Dependency>> declarations) {
+        if (declarations.isEmpty()) {
+            return;
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(mParallelism);
+        CompletionService<Pom> completionService = new ExecutorCompletionService<>(executor);
+        Map<Future<Pom>, List<Dependency>> pending = new HashMap<>();
+        Set<String> requested = new HashSet<>();
+        try {
+            for (Map.Entry<String, List<Dependency>> entry : declarations.entrySet()) {
+                String declaration = entry.getKey();
+                requested.add(declaration);
+                pending.put(completionService.submit(() -> repository.getPom(declaration)),
+                        entry.getValue());
+            }
+
+            while (!pending.isEmpty()) {
+                Future<Pom> future = completionService.take();
+                List<Dependency> inheritedExcludes = pending.remove(future);
+                Pom pom;
+                try {
+                    pom = future.get();
+                } catch (ExecutionException e) {
+                    continue;
+                }
+                if (pom == null) {
+                    continue;
+                }
+                if (mListener != null) {
+                    mListener.onResolve("Getting POM: " + pom);
+                }
+                for (Dependency dependency : pom.getDependencies()) {
+                    if ("test".equals(dependency.getScope())) {
+                        continue;
+                    }
+                    if (isExcluded(inheritedExcludes, dependency)) {
+                        continue;
+                    }
+                    String declaration = dependency.toString();
+                    if (requested.add(declaration)) {
+                        pending.put(completionService.submit(
+                                () -> repository.getPom(declaration)), inheritedExcludes);
+                    }
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
     private void resolve(Pom pom) {
         if (resolvedPoms.containsKey(pom)) {
             if (pom.isUserDefined()) {
@@ -95,20 +248,7 @@ public class DependencyResolver {
                 continue;
             }
 
-            boolean excluded = excludes.stream().filter(Objects::nonNull).anyMatch(ex -> {
-                if (!ex.getGroupId().equals(dependency.getGroupId())) {
-                    return false;
-                }
-                if (!ex.getArtifactId().equals(dependency.getArtifactId())) {
-                    return false;
-                }
-                if (TextUtils.isEmpty(ex.getVersionName())) {
-                    return true;
-                }
-                return ex.getVersionName().equals(dependency.getVersionName());
-            });
-
-            if (excluded) {
+            if (isExcluded(excludes, dependency)) {
                 continue;
             }
 
@@ -127,6 +267,21 @@ public class DependencyResolver {
         resolvedPoms.put(pom, pom.getVersionName());
     }
 
+    private static boolean isExcluded(List<Dependency> excludes, Dependency dependency) {
+        return excludes.stream().filter(Objects::nonNull).anyMatch(ex -> {
+            if (!ex.getGroupId().equals(dependency.getGroupId())) {
+                return false;
+            }
+            if (!ex.getArtifactId().equals(dependency.getArtifactId())) {
+                return false;
+            }
+            if (TextUtils.isEmpty(ex.getVersionName())) {
+                return true;
+            }
+            return ex.getVersionName().equals(dependency.getVersionName());
+        });
+    }
+
     private int getHigherVersion(String firstVersion, String secondVersion) {
         ComparableVersion firstComparableVersion = new ComparableVersion(firstVersion);
         ComparableVersion secondComparableVersion = new ComparableVersion(secondVersion);
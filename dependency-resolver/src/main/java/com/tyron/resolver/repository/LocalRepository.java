@@ -83,11 +83,18 @@ public class LocalRepository extends DefaultRepository {
 
         File file = new File(rootDirectory, path);
         FileUtils.forceMkdirParent(file);
-        if (!file.exists() && !file.createNewFile()) {
-            throw new IOException("Failed to create file.");
-        }
 
-        FileUtils.copyInputStreamToFile(inputStream, file);
+        // write to a temporary file first so other threads never see a partial file
+        File temp = File.createTempFile(file.getName(), ".tmp", file.getParentFile());
+        try {
+            FileUtils.copyInputStreamToFile(inputStream, temp);
+            if (!temp.renameTo(file)) {
+                FileUtils.deleteQuietly(file);
+                FileUtils.moveFile(temp, file);
+            }
+        } finally {
+            FileUtils.deleteQuietly(temp);
+        }
         return file;
     }
 
@@ -0,0 +1,211 @@
+package com.tyron.resolver.repository;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.filefilter.SuffixFileFilter;
+import org.apache.commons.io.filefilter.TrueFileFilter;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.net.URI;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A persistent index of the POM files stored in the cache directory, keyed by their
+ * {@code groupId:artifactId:version} declaration.
+ *
+ * The index is saved as a binary file of declaration and path pairs. POMs saved after the
+ * index has been written are appended to the end of the file, so the index never has to
+ * be rewritten and the POM files are only listed when the index does not exist yet.
+ */
+class PomIndex {
+
+    private static final String FILE_NAME = "pom-index.bin";
+
+    private static final int MAGIC = 0x504F4D49;
+    private static final int VERSION = 1;
+
+    private final File mCacheDirectory;
+    private final URI mCacheUri;
+    private final File mIndexFile;
+
+    /**
+     * Maps a declaration to the path of its POM file relative to the cache directory
+     */
+    private final Map<String, String> mEntries = new ConcurrentHashMap<>();
+
+    PomIndex(@NonNull File cacheDirectory) {
+        mCacheDirectory = cacheDirectory;
+        mCacheUri = cacheDirectory.toURI();
+        mIndexFile = new File(cacheDirectory, FILE_NAME);
+    }
+
+    /**
+     * Reads the index from the disk, or builds it from the POM files of the given
+     * repositories if it does not exist or is corrupt.
+     */
+    synchronized void load(@NonNull List<Repository> repositories) {
+        mEntries.clear();
+        if (read()) {
+            return;
+        }
+
+        mEntries.clear();
+        for (Repository repository : repositories) {
+            File rootDirectory = repository.getRootDirectory();
+            if (rootDirectory == null || !rootDirectory.exists()) {
+                continue;
+            }
+            Iterator<File> pomFiles = FileUtils.iterateFiles(rootDirectory,
+                    new SuffixFileFilter(".pom"), TrueFileFilter.INSTANCE);
+            while (pomFiles.hasNext()) {
+                File pomFile = pomFiles.next();
+                String declaration = getDeclaration(rootDirectory, pomFile);
+                String path = getRelativePath(pomFile);
+                if (declaration != null && path != null) {
+                    // the first repository that has the POM is the one used when resolving
+                    mEntries.putIfAbsent(declaration, path);
+                }
+            }
+        }
+        write();
+    }
+
+    /**
+     * @return The POM file of the given declaration, or null if it is not in the cache
+     */
+    @Nullable
+    File get(@NonNull String declaration) {
+        String path = mEntries.get(declaration);
+        if (path == null) {
+            return null;
+        }
+        File file = new File(mCacheDirectory, path);
+        if (!file.exists()) {
+            // the cache has been cleared since the POM was indexed
+            mEntries.remove(declaration, path);
+            return null;
+        }
+        return file;
+    }
+
+    /**
+     * Adds a POM file that has been saved to the cache directory
+     */
+    synchronized void put(@NonNull String declaration, @NonNull File pomFile) {
+        String path = getRelativePath(pomFile);
+        if (path == null) {
+            return;
+        }
+        if (path.equals(mEntries.put(declaration, path))) {
+            return;
+        }
+        try (DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(new FileOutputStream(mIndexFile, true)))) {
+            out.writeUTF(declaration);
+            out.writeUTF(path);
+        } catch (IOException e) {
+            // the POM will be found again through the repository and added back
+        }
+    }
+
+    int size() {
+        return mEntries.size();
+    }
+
+    private boolean read() {
+        if (!mIndexFile.exists()) {
+            return false;
+        }
+        try (DataInputStream in = new DataInputStream(
+                new BufferedInputStream(new FileInputStream(mIndexFile)))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                return false;
+            }
+            while (true) {
+                String declaration;
+                String path;
+                try {
+                    declaration = in.readUTF();
+                    path = in.readUTF();
+                } catch (EOFException e) {
+                    // end of the index, or a record that was not completely written
+                    break;
+                }
+                mEntries.put(declaration, path);
+            }
+            return true;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    private void write() {
+        File temp = new File(mCacheDirectory, FILE_NAME + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(new FileOutputStream(temp)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            for (Map.Entry<String, String> entry : mEntries.entrySet()) {
+                out.writeUTF(entry.getKey());
+                out.writeUTF(entry.getValue());
+            }
+        } catch (IOException e) {
+            FileUtils.deleteQuietly(temp);
+            return;
+        }
+        FileUtils.deleteQuietly(mIndexFile);
+        if (!temp.renameTo(mIndexFile)) {
+            FileUtils.deleteQuietly(temp);
+        }
+    }
+
+    @Nullable
+    private String getRelativePath(File file) {
+        URI relative = mCacheUri.relativize(file.toURI());
+        if (relative.isAbsolute()) {
+            // not inside the cache directory
+            return null;
+        }
+        return relative.getPath();
+    }
+
+    /**
+     * Gets the declaration from the path of a POM file, which is in the format of
+     * {@code group/id/artifactId/version/artifactId-version.pom}
+     */
+    @Nullable
+    static String getDeclaration(@NonNull File rootDirectory, @NonNull File pomFile) {
+        URI relative = rootDirectory.toURI().relativize(pomFile.toURI());
+        if (relative.isAbsolute()) {
+            return null;
+        }
+        String[] segments = relative.getPath().split("/");
+        int length = segments.length;
+        if (length < 4) {
+            return null;
+        }
+        String artifactId = segments[length - 3];
+        String version = segments[length - 2];
+        if (!segments[length - 1].equals(artifactId + "-" + version + ".pom")) {
+            return null;
+        }
+        StringBuilder groupId = new StringBuilder(segments[0]);
+        for (int i = 1; i < length - 3; i++) {
+            groupId.append('.').append(segments[i]);
+        }
+        return groupId + ":" + artifactId + ":" + version;
+    }
+}
@@ -8,10 +8,15 @@ import org.apache.commons.io.FileUtils;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.net.HttpURLConnection;
 import java.net.URL;
+import java.net.URLConnection;
 
 public class RemoteRepository extends DefaultRepository {
 
+    private static final int CONNECT_TIMEOUT_MILLIS = 15_000;
+    private static final int READ_TIMEOUT_MILLIS = 30_000;
+
     private final String mName;
     private final String mUrl;
 
@@ -72,8 +77,17 @@ public class RemoteRepository extends DefaultRepository {
         String downloadUrl = mUrl + path;
         URL url = new URL(downloadUrl);
         try {
-            InputStream inputStream = url.openStream();
-            if (inputStream != null) {
+            URLConnection connection = url.openConnection();
+            // a stalled mirror should not block the resolution forever
+            connection.setConnectTimeout(CONNECT_TIMEOUT_MILLIS);
+            connection.setReadTimeout(READ_TIMEOUT_MILLIS);
+            if (connection instanceof HttpURLConnection &&
+                ((HttpURLConnection) connection).getResponseCode() !=
+                HttpURLConnection.HTTP_OK) {
+                ((HttpURLConnection) connection).disconnect();
+                return null;
+            }
+            try (InputStream inputStream = connection.getInputStream()) {
                 // save the file to cache, and then return the one from there
                 return mLocalRepository.save(path, inputStream);
             }
@@ -3,24 +3,19 @@ package com.tyron.resolver.repository;
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 
-import com.google.common.io.CharStreams;
 import com.tyron.common.util.FileUtilsEx;
 import com.tyron.resolver.model.Pom;
 import com.tyron.resolver.parser.PomParser;
 
-import org.apache.commons.io.FileUtils;
-import org.apache.commons.io.filefilter.SuffixFileFilter;
-import org.apache.commons.io.filefilter.TrueFileFilter;
 import org.xmlpull.v1.XmlPullParserException;
 
 import java.io.File;
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.InputStreamReader;
 import java.net.URL;
 import java.util.ArrayList;
-import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.jar.JarFile;
 import java.util.zip.ZipFile;
 
@@ -30,11 +25,17 @@ public class RepositoryManagerImpl implements RepositoryManager {
 
     private File cacheDir;
     private final List<Repository> repositories;
-    private final List<Pom> pomFiles;
+
+    /**
+     * The POMs that have been parsed, keyed by their declaration. POMs are fetched from
+     * multiple threads by the DependencyResolver.
+     */
+    private final Map<String, Pom> pomFiles;
+    private PomIndex pomIndex;
 
     public RepositoryManagerImpl() {
         this.repositories = new ArrayList<>();
-        this.pomFiles = new ArrayList<>();
+        this.pomFiles = new ConcurrentHashMap<>();
     }
 
     @Override
@@ -44,47 +45,55 @@ public class RepositoryManagerImpl implements RepositoryManager {
         if (pomNames == null) {
             return null;
         }
-        for (Pom pom : pomFiles) {
-            if (!pomNames[0].equals(pom.getGroupId())) {
-                continue;
-            }
-            if (!pomNames[1].equals(pom.getArtifactId())) {
-                continue;
+        String key = pomNames[0] + ":" + pomNames[1] + ":" + pomNames[2];
+        Pom pom = pomFiles.get(key);
+        if (pom != null) {
+            return pom;
+        }
+
+        File pomFile = pomIndex != null ? pomIndex.get(key) : null;
+        if (pomFile == null) {
+            pomFile = getFromUrls(getPathFromDeclaration(pomNames) + ".pom");
+            if (pomFile == null) {
+                return null;
             }
-            if (!pomNames[2].equals(pom.getVersionName())) {
-                continue;
+            if (pomIndex != null) {
+                pomIndex.put(key, pomFile);
             }
-            return pom;
         }
-        return getPomFromUrls(pomNames);
+
+        Pom parsed = parsePom(pomFile, pomNames);
+        if (parsed == null) {
+            return null;
+        }
+        // another thread may have parsed the same POM, always return the same instance
+        Pom previous = pomFiles.putIfAbsent(key, parsed);
+        return previous != null ? previous : parsed;
     }
 
-    private Pom getPomFromUrls(String[] names) {
-        InputStream is = getFromUrls(getPathFromDeclaration(names) + ".pom");
-        if (is != null) {
-            String contents;
-            try {
-                contents = CharStreams.toString(new InputStreamReader(is));
-                Pom parsed = new PomParser().parse(contents);
-                parsed.setGroupId(names[0]);
-                parsed.setArtifactId(names[1]);
-                parsed.setVersionName(names[2]);
-                pomFiles.add(parsed);
-                return parsed;
-            } catch (IOException | XmlPullParserException e) {
-                // ignored
-            }
+    @Nullable
+    private Pom parsePom(File file, String[] names) {
+        try {
+            Pom parsed = new PomParser().parse(file);
+            parsed.setGroupId(names[0]);
+            parsed.setArtifactId(names[1]);
+            parsed.setVersionName(names[2]);
+            return parsed;
+        } catch (IOException | XmlPullParserException e) {
+            // ignored
+            // TODO: should the file be deleted if its corrupt?
+            return null;
         }
-        return null;
     }
 
-    private InputStream getFromUrls(String appendUrl) {
+    @Nullable
+    private File getFromUrls(String appendUrl) {
         for (int i = 0; i < repositories.size(); i++) {
             Repository repository = repositories.get(i);
             try {
-                InputStream is = repository.getInputStream(appendUrl);
-                if (is != null) {
-                    return is;
+                File file = repository.getFile(appendUrl);
+                if (file != null && file.exists()) {
+                    return file;
                 }
             } catch (IOException e) {
                 if (i == repositories.size() - 1) {
@@ -197,26 +206,10 @@ public class RepositoryManagerImpl implements RepositoryManager {
 
         for (Repository repository : repositories) {
             repository.setCacheDirectory(cacheDir);
-
-            File rootDirectory = repository.getRootDirectory();
-            if (rootDirectory == null || !rootDirectory.exists()) {
-                continue;
-            }
-            Iterator<File> pomFiles = FileUtils.iterateFiles(rootDirectory,
-                    new SuffixFileFilter(".pom"), TrueFileFilter.INSTANCE);
-
-            // save pom files for later
-            while (pomFiles.hasNext()) {
-                File pom = pomFiles.next();
-                PomParser parser = new PomParser();
-                try {
-                    Pom parsed = parser.parse(pom);
-                    this.pomFiles.add(parsed);
-                } catch (XmlPullParserException | IOException e) {
-                    // ignored
-                    // TODO: should the file be deleted if its corrupt?
-                }
-            }
         }
+
+        // POMs are parsed when they are first requested
+        pomIndex = new PomIndex(cacheDir);
+        pomIndex.load(repositories);
     }
 }
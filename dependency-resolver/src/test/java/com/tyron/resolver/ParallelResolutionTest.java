@@ -0,0 +1,144 @@
+package com.tyron.resolver;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import com.sun.net.httpserver.HttpServer;
+import com.tyron.resolver.model.Pom;
+import com.tyron.resolver.repository.RepositoryManagerImpl;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Resolves dependencies from a repository served by a local http server, the server delays
+ * every response to check that the POMs are fetched at the same time.
+ */
+public class ParallelResolutionTest {
+
+    @Rule
+    public TemporaryFolder mFolder = new TemporaryFolder();
+
+    private final Map<String, byte[]> mFiles = new ConcurrentHashMap<>();
+    private final Map<String, AtomicInteger> mRequestCounts = new ConcurrentHashMap<>();
+    private final AtomicInteger mRunningRequests = new AtomicInteger();
+    private final AtomicInteger mMaxRunningRequests = new AtomicInteger();
+
+    private HttpServer mServer;
+    private File mCacheDir;
+    private RepositoryManagerImpl mRepository;
+
+    @Before
+    public void setup() throws IOException {
+        addLibrary("app", "1.0", "lib-a:1.0", "lib-b:1.0");
+        addLibrary("lib-a", "1.0", "core:1.0");
+        addLibrary("lib-b", "1.0", "core:2.0");
+        addLibrary("core", "1.0");
+        addLibrary("core", "2.0");
+
+        mServer = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        mServer.setExecutor(Executors.newCachedThreadPool());
+        mServer.createContext("/", exchange -> {
+            String path = exchange.getRequestURI().getPath().substring(1);
+            mRequestCounts.computeIfAbsent(path, p -> new AtomicInteger()).incrementAndGet();
+            int running = mRunningRequests.incrementAndGet();
+            mMaxRunningRequests.accumulateAndGet(running, Math::max);
+            try {
+                Thread.sleep(200);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            mRunningRequests.decrementAndGet();
+
+            byte[] bytes = mFiles.get(path);
+            if (bytes == null) {
+                exchange.sendResponseHeaders(404, -1);
+                exchange.close();
+                return;
+            }
+            exchange.sendResponseHeaders(200, bytes.length);
+            try (OutputStream os = exchange.getResponseBody()) {
+                os.write(bytes);
+            }
+        });
+        mServer.start();
+
+        mCacheDir = mFolder.newFolder("cache");
+
+        mRepository = new RepositoryManagerImpl();
+        mRepository.addRepository("local", "http://localhost:" +
+                                            mServer.getAddress().getPort());
+        mRepository.setCacheDirectory(mCacheDir);
+        mRepository.initialize();
+    }
+
+    @After
+    public void tearDown() {
+        mServer.stop(0);
+    }
+
+    @Test
+    public void testResolve() {
+        Pom app = mRepository.getPom("test:app:1.0");
+        assertNotNull(app);
+
+        DependencyResolver resolver = new DependencyResolver(mRepository, 4);
+        List<Pom> resolved = resolver.resolve(Collections.singletonList(app));
+
+        // the newer core declared by lib-b wins, as in the sequential resolution
+        Pom core = resolved.get(resolved.indexOf(Pom.valueOf("test", "core", "0")));
+        assertEquals("2.0", core.getVersionName());
+        assertEquals(4, resolved.size());
+
+        // lib-a and lib-b are both requested once app has been fetched
+        assertTrue(mMaxRunningRequests.get() >= 2);
+        for (Map.Entry<String, AtomicInteger> entry : mRequestCounts.entrySet()) {
+            assertEquals(entry.getKey(), 1, entry.getValue().get());
+        }
+
+        Map<Pom, File> libraries = resolver.getLibraries(resolved);
+        assertEquals(4, libraries.size());
+        for (File file : libraries.values()) {
+            assertTrue(file.exists());
+        }
+    }
+
+    private void addLibrary(String artifactId, String version, String... dependencies) {
+        StringBuilder pom = new StringBuilder();
+        pom.append("<project>\n");
+        pom.append("  <groupId>test</groupId>\n");
+        pom.append("  <artifactId>").append(artifactId).append("</artifactId>\n");
+        pom.append("  <version>").append(version).append("</version>\n");
+        pom.append("  <dependencies>\n");
+        for (String dependency : dependencies) {
+            String[] names = dependency.split(":");
+            pom.append("    <dependency>\n");
+            pom.append("      <groupId>test</groupId>\n");
+            pom.append("      <artifactId>").append(names[0]).append("</artifactId>\n");
+            pom.append("      <version>").append(names[1]).append("</version>\n");
+            pom.append("    </dependency>\n");
+        }
+        pom.append("  </dependencies>\n");
+        pom.append("</project>\n");
+
+        String path = "test/" + artifactId + "/" + version + "/" + artifactId + "-" + version;
+        mFiles.put(path + ".pom", pom.toString().getBytes(StandardCharsets.UTF_8));
+        mFiles.put(path + ".jar", new byte[]{'P', 'K', 3, 4});
+    }
+}
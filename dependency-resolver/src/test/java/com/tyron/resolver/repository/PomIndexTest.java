@@ -0,0 +1,103 @@
+package com.tyron.resolver.repository;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import com.tyron.common.TestUtil;
+import com.tyron.resolver.model.Pom;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.List;
+
+public class PomIndexTest {
+
+    private File mCacheDir;
+    private LocalRepository mRepository;
+
+    @Before
+    public void setup() throws IOException {
+        mCacheDir = new File(TestUtil.getResourcesDirectory(), "index-cache");
+        FileUtils.deleteQuietly(mCacheDir);
+        FileUtils.forceMkdir(mCacheDir);
+
+        mRepository = new LocalRepository("local");
+        mRepository.setCacheDirectory(mCacheDir);
+        writePom("com.test", "core", "1.0");
+    }
+
+    @After
+    public void tearDown() {
+        FileUtils.deleteQuietly(mCacheDir);
+    }
+
+    @Test
+    public void testDeclarationFromPath() {
+        File root = new File(mCacheDir, "local");
+        assertEquals("com.test:core:1.0", PomIndex.getDeclaration(root,
+                new File(root, "com/test/core/1.0/core-1.0.pom")));
+        assertNull(PomIndex.getDeclaration(root,
+                new File(root, "com/test/core/1.0/other-1.0.pom")));
+        assertNull(PomIndex.getDeclaration(root, new File(root, "core/core-1.0.pom")));
+    }
+
+    @Test
+    public void testIndexIsPersisted() throws IOException {
+        List<Repository> repositories = Collections.singletonList(mRepository);
+        PomIndex index = new PomIndex(mCacheDir);
+        index.load(repositories);
+        assertNotNull(index.get("com.test:core:1.0"));
+
+        File saved = writePom("com.test", "ui", "2.0");
+        index.put("com.test:ui:2.0", saved);
+
+        // not in the index, so it should not be found without listing the files again
+        writePom("com.test", "other", "1.0");
+
+        PomIndex loaded = new PomIndex(mCacheDir);
+        loaded.load(repositories);
+        assertEquals(2, loaded.size());
+        assertEquals(saved, loaded.get("com.test:ui:2.0"));
+        assertNull(loaded.get("com.test:other:1.0"));
+
+        // deleted files are removed from the index
+        FileUtils.forceDelete(saved);
+        assertNull(loaded.get("com.test:ui:2.0"));
+    }
+
+    @Test
+    public void testPomsAreParsedOnce() {
+        RepositoryManagerImpl manager = new RepositoryManagerImpl();
+        manager.addRepository(mRepository);
+        manager.setCacheDirectory(mCacheDir);
+        manager.initialize();
+
+        Pom pom = manager.getPom("com.test:core:1.0");
+        assertNotNull(pom);
+        assertEquals("core", pom.getArtifactId());
+        assertSame(pom, manager.getPom("com.test:core:1.0"));
+        assertNull(manager.getPom("com.test:missing:1.0"));
+    }
+
+    private File writePom(String groupId, String artifactId, String version)
+            throws IOException {
+        String path = groupId.replace('.', '/') + "/" + artifactId + "/" + version + "/" +
+                      artifactId + "-" + version + ".pom";
+        File file = new File(new File(mCacheDir, "local"), path);
+        FileUtils.writeStringToFile(file, "<project>\n" +
+                                          "  <groupId>" + groupId + "</groupId>\n" +
+                                          "  <artifactId>" + artifactId + "</artifactId>\n" +
+                                          "  <version>" + version + "</version>\n" +
+                                          "</project>\n", StandardCharsets.UTF_8);
+        return file;
+    }
+}
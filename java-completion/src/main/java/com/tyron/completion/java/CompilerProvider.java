@@ -39,5 +39,11 @@ public interface CompilerProvider {
 
     CompilerContainer compile(Collection<? extends JavaFileObject> sources);
 
+    /**
+     * Same as {@link #compile(Path...)} but a previous compilation of the file may be
+     * returned if it has the same contents, for requests that do not modify the compilation.
+     */
+    CompilerContainer compileForRead(Path file);
+
     Path NOT_FOUND = Paths.get("");
 }
@@ -24,7 +24,7 @@ public class Docs {
 
     public Docs(Project project, Set<File> docPaths) {
         // we include android sources into the list
-        fileManager = new SourceFileManager(project);
+        fileManager = SourceFileManager.forDocs(project);
         File srcZip = androidSourcesZip();
 
         List<File> sourcePaths = new ArrayList<>(docPaths);
@@ -7,6 +7,7 @@ import com.tyron.builder.project.api.JavaModule;
 import com.tyron.builder.project.api.Module;
 import com.tyron.completion.index.CompilerProvider;
 import com.tyron.completion.java.compiler.JavaCompilerService;
+import com.tyron.completion.java.compiler.SourceFileManager;
 
 import java.io.File;
 import java.util.ArrayList;
@@ -54,6 +55,15 @@ public class JavaCompilerProvider extends CompilerProvider<JavaCompilerService>
         }
 
         if (mProvider == null || changed(mCachedPaths, paths)) {
+            if (project != null) {
+                // the jars of libraries that were added or removed may have been replaced
+                Set<File> changedPaths = new HashSet<>(paths);
+                changedPaths.addAll(mCachedPaths);
+                Set<File> unchangedPaths = new HashSet<>(paths);
+                unchangedPaths.retainAll(mCachedPaths);
+                changedPaths.removeAll(unchangedPaths);
+                SourceFileManager.forProject(project).invalidate(changedPaths);
+            }
             mProvider = new JavaCompilerService(project, paths, Collections.emptySet(),
                     Collections.emptySet());
 
@@ -11,22 +11,13 @@ import com.tyron.completion.CompletionProvider;
 import com.tyron.completion.index.CompilerService;
 import com.tyron.completion.java.compiler.JavaCompilerService;
 import com.tyron.completion.java.provider.Completions;
-import com.tyron.completion.model.CachedCompletion;
-import com.tyron.completion.model.CompletionItem;
 import com.tyron.completion.model.CompletionList;
 import com.tyron.completion.progress.ProcessCanceledException;
 
 import java.io.File;
-import java.util.Comparator;
-import java.util.List;
-import java.util.stream.Collectors;
-
-import me.xdrop.fuzzywuzzy.FuzzySearch;
 
 public class JavaCompletionProvider extends CompletionProvider {
 
-    private CachedCompletion mCachedCompletion;
-
     public JavaCompletionProvider() {
 
     }
@@ -43,30 +34,13 @@ public class JavaCompletionProvider extends CompletionProvider {
         }
         checkCanceled();
 
-        if (isIncrementalCompletion(mCachedCompletion, params)) {
-            String partial = partialIdentifier(params.getPrefix(), params.getPrefix().length());
-            CompletionList cachedList = mCachedCompletion.getCompletionList();
-            CompletionList copy = CompletionList.copy(cachedList, partial);
-            if (!copy.isIncomplete || !copy.items.isEmpty()) {
-                return copy;
-            }
-        }
-
+        // the results are filtered again by the completion engine as the prefix is extended
         CompletionList.Builder complete = complete(params.getProject(), (JavaModule) params.getModule(),
                 params.getFile(), params.getContents(), params.getIndex());
         if (complete == null) {
             return CompletionList.EMPTY;
         }
-        CompletionList list = complete.build();
-
-        String newPrefix = params.getPrefix();
-        if (params.getPrefix().contains(".")) {
-            newPrefix = partialIdentifier(params.getPrefix(), params.getPrefix().length());
-        }
-
-        mCachedCompletion = new CachedCompletion(params.getFile(), params.getLine(),
-                params.getColumn(), newPrefix, list);
-        return list;
+        return complete.build();
     }
 
     public CompletionList.Builder complete(
@@ -88,68 +62,4 @@ public class JavaCompletionProvider extends CompletionProvider {
         }
         return null;
     }
-
-    private String partialIdentifier(String contents, int end) {
-        int start = end;
-        while (start > 0 && Character.isJavaIdentifierPart(contents.charAt(start - 1))) {
-            start--;
-        }
-        return contents.substring(start, end);
-    }
-
-    private int getRatio(CompletionItem item, String partialIdentifier) {
-        String label = getLabel(item);
-        return FuzzySearch.ratio(label, partialIdentifier);
-    }
-
-    private String getLabel(CompletionItem item) {
-        String label = item.label;
-        if (label.contains("(")) {
-            label = label.substring(0, label.indexOf('('));
-        }
-        return label;
-    }
-
-    private boolean isIncrementalCompletion(CachedCompletion cachedCompletion,
-                                            CompletionParameters params) {
-        String prefix = params.getPrefix();
-        File file = params.getFile();
-        int line = params.getLine();
-        int column = params.getColumn();
-        prefix = partialIdentifier(prefix, prefix.length());
-
-        if (line == -1) {
-            return false;
-        }
-
-        if (column == -1) {
-            return false;
-        }
-
-        if (cachedCompletion == null) {
-            return false;
-        }
-
-        if (!file.equals(cachedCompletion.getFile())) {
-            return false;
-        }
-
-        if (prefix.endsWith(".")) {
-            return false;
-        }
-
-        if (cachedCompletion.getLine() != line) {
-            return false;
-        }
-
-        if (cachedCompletion.getColumn() > column) {
-            return false;
-        }
-
-        if (!prefix.startsWith(cachedCompletion.getPrefix())) {
-            return false;
-        }
-
-        return prefix.length() - cachedCompletion.getPrefix().length() == column - cachedCompletion.getColumn();
-    }
 }
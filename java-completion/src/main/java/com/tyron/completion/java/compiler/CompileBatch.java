@@ -6,7 +6,9 @@ import org.openjdk.source.tree.CompilationUnitTree;
 
 import com.tyron.builder.project.api.JavaModule;
 import com.tyron.common.util.StringSearch;
+import com.tyron.completion.java.CompilerProvider;
 import com.tyron.completion.java.CompletionModule;
+import com.tyron.completion.progress.ProcessCanceledException;
 
 import org.apache.commons.io.FileUtils;
 import org.openjdk.javax.lang.model.util.Elements;
@@ -51,9 +53,19 @@ public class CompileBatch implements AutoCloseable {
     public final Types types;
     public final List<CompilationUnitTree> roots;
 
+    /**
+     * The diagnostics reported while compiling this batch
+     */
+    final List<Diagnostic<? extends JavaFileObject>> diagnostics = new ArrayList<>();
+
     public CompileBatch(JavaCompilerService parent, Collection<? extends JavaFileObject> files) {
+        this(parent, files, CompilePriority.NORMAL);
+    }
+
+    public CompileBatch(JavaCompilerService parent, Collection<? extends JavaFileObject> files,
+                        CompilePriority priority) {
         this.parent = parent;
-        this.borrow = batchTask(parent, files);
+        this.borrow = batchTask(parent, files, priority, diagnostics);
         this.task = borrow.task;
         this.trees = Trees.instance(borrow.task);
         this.elements = borrow.task.getElements();
@@ -68,8 +80,17 @@ public class CompileBatch implements AutoCloseable {
             // You can get at `Element` values using `Trees`
             task.analyze();
         } catch (IOException e) {
+            borrow.discard();
             throw new RuntimeException(e);
+        } catch (RuntimeException | Error e) {
+            // the context may be in an inconsistent state, it is not reused
+            borrow.discard();
+            if (borrow.isPreempted()) {
+                throw new ProcessCanceledException();
+            }
+            throw e;
         }
+        borrow.finishCompiling();
     }
 
     /**
@@ -84,7 +105,7 @@ public class CompileBatch implements AutoCloseable {
         JavaModule module = parent.getCurrentModule();
         // Check for "class not found errors" that refer to package private classes
         Set<Path> addFiles = new HashSet<>();
-        for (Diagnostic<? extends JavaFileObject> err : parent.getDiagnostics()) {
+        for (Diagnostic<? extends JavaFileObject> err : diagnostics) {
             if (!err.getCode().equals("compiler.err.cant.resolve.location")) {
                 continue;
             }
@@ -105,6 +126,11 @@ public class CompileBatch implements AutoCloseable {
             File javaFile = module.getJavaFile(packageName);
             if (javaFile != null) {
                 addFiles.add(javaFile.toPath());
+                continue;
+            }
+            Path file = parent.findPackagePrivateClass(module, packageName, className);
+            if (file != CompilerProvider.NOT_FOUND) {
+                addFiles.add(file);
             }
         }
         return addFiles;
@@ -156,11 +182,14 @@ public class CompileBatch implements AutoCloseable {
     }
 
     private static ReusableCompiler.Borrow batchTask(JavaCompilerService parent, Collection<?
-            extends JavaFileObject> sources) {
+            extends JavaFileObject> sources, CompilePriority priority,
+                                                     List<Diagnostic<? extends JavaFileObject>> diagnostics) {
         parent.clearDiagnostics();
         List<String> options = options(parent.classPath, parent.addExports);
-        return parent.compiler.getTask(parent.mSourceFileManager, parent::addDiagnostic, options,
-                Collections.emptyList(), sources);
+        return parent.compiler.getTask(priority, parent.mSourceFileManager, diagnostic -> {
+            diagnostics.add(diagnostic);
+            parent.addDiagnostic(diagnostic);
+        }, options, Collections.emptyList(), sources);
     }
 
     /**
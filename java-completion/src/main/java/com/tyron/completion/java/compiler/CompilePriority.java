@@ -0,0 +1,33 @@
+package com.tyron.completion.java.compiler;
+
+/**
+ * The order in which compilations are given a javac context when all the contexts of the
+ * {@link ReusableCompiler} are in use.
+ */
+public enum CompilePriority {
+
+    /**
+     * Requests that the user is waiting for, such as code completion. Background
+     * compilations are canceled to make room for them.
+     */
+    INTERACTIVE,
+
+    /**
+     * Requests made from user actions that are not time critical, such as hover or
+     * quick fixes
+     */
+    NORMAL,
+
+    /**
+     * Compilations that are done in the background, such as the diagnostics of the editor
+     */
+    BACKGROUND;
+
+    /**
+     * @return Whether a compilation with this priority can be canceled for a request with
+     * the given priority
+     */
+    boolean isPreemptedBy(CompilePriority other) {
+        return this == BACKGROUND && other == INTERACTIVE;
+    }
+}
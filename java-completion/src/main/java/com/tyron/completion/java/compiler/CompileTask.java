@@ -3,6 +3,8 @@ package com.tyron.completion.java.compiler;
 import android.annotation.SuppressLint;
 import android.net.Uri;
 
+import com.google.common.collect.ImmutableList;
+
 import org.openjdk.source.tree.CompilationUnitTree;
 import org.openjdk.source.util.JavacTask;
 
@@ -26,7 +28,7 @@ public class CompileTask implements AutoCloseable {
         mCompileBatch = batch;
         this.task = batch.task;
         this.roots = batch.roots;
-        this.diagnostics = batch.parent.getDiagnostics();
+        this.diagnostics = ImmutableList.copyOf(batch.diagnostics);
     }
 
     public CompilationUnitTree root() {
@@ -3,12 +3,16 @@ package com.tyron.completion.java.compiler;
 import android.util.Log;
 
 import androidx.annotation.GuardedBy;
+import androidx.annotation.NonNull;
 
 import com.tyron.completion.java.BuildConfig;
+import com.tyron.completion.progress.ProcessCanceledException;
+import com.tyron.completion.progress.ProgressManager;
 
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 import java.util.function.Consumer;
 
 import kotlin.jvm.functions.Function1;
@@ -25,124 +29,290 @@ import kotlin.jvm.functions.Function1;
  *
  * Only one thread is allowed to write at a time, during a write operation all threads that
  * attempts to read will be blocked until the thread writing has finished.
+ *
+ * The lock is fair, so a pending write is not starved by a continuous stream of readers.
+ * Threads waiting for the lock park instead of spinning, and periodically wake up to
+ * check whether their task has been canceled through {@link ProgressManager}.
+ *
+ * Once the compilation is no longer needed the container is retired, its javac context is
+ * returned to the {@link ReusableCompiler} and readers are given a null task from then on.
  */
 public class CompilerContainer {
 
     private static final String TAG = CompilerContainer.class.getSimpleName();
 
-    private volatile boolean mIsWriting;
+    /**
+     * How long a waiting thread parks before checking if it has been canceled.
+     */
+    private static final long WAIT_SLICE_MS = 50;
+
+    /**
+     * Waits longer than this are logged in debug builds.
+     */
+    private static final long SLOW_WAIT_MS = 500;
+
+    /**
+     * The number of containers that the current thread is reading, compiling is not
+     * allowed while reading any container since the compilation may have to wait for
+     * the context held by it.
+     */
+    private static final ThreadLocal<int[]> sReadCount = ThreadLocal.withInitial(() -> new int[1]);
+
+    private final ReentrantReadWriteLock mLock = new ReentrantReadWriteLock(true);
 
     @GuardedBy("mLock")
     private volatile CompileTask mCompileTask;
+    @GuardedBy("mLock")
+    private volatile boolean mRetired;
+    private volatile boolean mRead;
 
-    private final Object mLock = new Object();
-    private final List<Thread> mReaders = Collections.synchronizedList(new ArrayList<>());
-
+    private final WaitStatistics mReadStatistics = new WaitStatistics();
+    private final WaitStatistics mWriteStatistics = new WaitStatistics();
 
     public CompilerContainer() {
 
     }
 
-    private void closeIfEmpty() {
-        if (mReaders.isEmpty()) {
-            if (BuildConfig.DEBUG) {
-                Log.d(TAG, Thread.currentThread().getName() + " has closed the compile task.");
-            }
-            if (mCompileTask != null) {
-                mCompileTask.close();
-            }
-        }
-    }
-
     /**
      * This is for codes that will use the compile information,
      * it ensures that all other threads accessing the compile information
      * are synchronized
      */
     public void run(Consumer<CompileTask> consumer) {
-        waitForWriter();
-        mReaders.add(Thread.currentThread());
+        Lock lock = mLock.readLock();
+        acquire(lock, mReadStatistics);
+        sReadCount.get()[0]++;
         try {
+            mRead = true;
             consumer.accept(mCompileTask);
         } finally {
-            mReaders.remove(Thread.currentThread());
+            sReadCount.get()[0]--;
+            lock.unlock();
         }
     }
 
     public <T> T get(Function1<CompileTask, T> fun) {
-        waitForWriter();
-        mReaders.add(Thread.currentThread());
+        Lock lock = mLock.readLock();
+        acquire(lock, mReadStatistics);
+        sReadCount.get()[0]++;
         try {
+            mRead = true;
             return fun.invoke(mCompileTask);
         } finally {
-            mReaders.remove(Thread.currentThread());
+            sReadCount.get()[0]--;
+            lock.unlock();
         }
     }
 
+    /**
+     * Same as {@link #get(Function1)} but no other thread is allowed to read or write
+     * while the function is running.
+     */
     public <T> T getWithLock(Function1<CompileTask, T> fun) {
-        waitForWriter();
-        waitForReaders();
+        assertIsNotReader();
+        Lock lock = mLock.writeLock();
+        acquire(lock, mWriteStatistics);
         try {
-            mReaders.add(Thread.currentThread());
             return fun.invoke(mCompileTask);
         } finally {
-            mReaders.remove(Thread.currentThread());
+            lock.unlock();
         }
     }
 
     public boolean isWriting() {
-        return mIsWriting;
+        return mLock.isWriteLocked();
     }
 
-    void initialize(Runnable runnable) {
-        synchronized (mLock) {
-            assertIsNotReader();
-            waitForReaders();
-            try {
-                mIsWriting = true;
-                runnable.run();
-            } finally {
-                mIsWriting = false;
-            }
+    /**
+     * @return Whether the compilation of this container has been released
+     */
+    public boolean isRetired() {
+        return mRetired;
+    }
+
+    /**
+     * @return Whether the compile task has been read since it was set
+     */
+    boolean hasBeenRead() {
+        return mRead;
+    }
+
+    /**
+     * Called when the container is returned to a new caller that has yet to read it
+     */
+    void resetRead() {
+        mRead = false;
+    }
+
+    /**
+     * Waits for the readers to finish and runs the given release action, the container
+     * gives a null task to its readers afterwards.
+     *
+     * @return false if the container has already been retired
+     */
+    boolean retire(Runnable release) {
+        assertIsNotReader();
+        Lock lock = mLock.writeLock();
+        acquire(lock, mWriteStatistics);
+        try {
+            return doRetire(release);
+        } finally {
+            lock.unlock();
         }
     }
 
-    private void waitForReaders() {
-        if (!mReaders.isEmpty()) {
-            if (BuildConfig.DEBUG) {
-                Log.d(TAG, Thread.currentThread().getName() + " is waiting for readers:" +
-                           mReaders);
-            }
+    /**
+     * Same as {@link #retire(Runnable)} but gives up if the container is being read
+     *
+     * @return false if the container is in use or has already been retired
+     */
+    boolean tryRetire(Runnable release) {
+        Lock lock = mLock.writeLock();
+        if (!lock.tryLock()) {
+            return false;
+        }
+        try {
+            return doRetire(release);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private boolean doRetire(Runnable release) {
+        if (mRetired) {
+            return false;
         }
-        while (true) {
-            if (mReaders.isEmpty()) {
-                closeIfEmpty();
-                return;
+        mRetired = true;
+        mCompileTask = null;
+        release.run();
+        return true;
+    }
+
+    void initialize(Runnable runnable) {
+        assertIsNotReader();
+        Lock lock = mLock.writeLock();
+        acquire(lock, mWriteStatistics);
+        try {
+            // all readers are done at this point, the previous task can be released
+            if (mCompileTask != null) {
+                if (BuildConfig.DEBUG) {
+                    Log.d(TAG, Thread.currentThread().getName() + " has closed the compile task.");
+                }
+                mCompileTask.close();
             }
+            runnable.run();
+        } finally {
+            lock.unlock();
         }
     }
 
-    private void waitForWriter() {
-        if (mIsWriting) {
-            if (BuildConfig.DEBUG) {
-                Log.d(TAG, Thread.currentThread().getName() + " is waiting for writer");
+    /**
+     * Blocks until the given lock is acquired. While waiting, the thread checks whether
+     * it has been canceled, in which case a {@link ProcessCanceledException} is thrown
+     * without acquiring the lock.
+     */
+    private void acquire(Lock lock, WaitStatistics statistics) {
+        long start = System.nanoTime();
+        try {
+            while (!lock.tryLock(WAIT_SLICE_MS, TimeUnit.MILLISECONDS)) {
+                ProgressManager.checkCanceled();
             }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ProcessCanceledException(e);
         }
-        while (true) {
-            if (!mIsWriting) {
-                return;
+        long waited = System.nanoTime() - start;
+        statistics.record(waited);
+
+        if (BuildConfig.DEBUG) {
+            long waitedMs = TimeUnit.NANOSECONDS.toMillis(waited);
+            if (waitedMs > SLOW_WAIT_MS) {
+                Log.d(TAG, Thread.currentThread().getName() + " waited " + waitedMs +
+                           "ms for the compiler, " + mLock.getQueueLength() + " threads queued");
             }
         }
     }
 
     private void assertIsNotReader() {
-        if (mReaders.contains(Thread.currentThread())) {
+        if (mLock.getReadHoldCount() > 0) {
             throw new RuntimeException("Cannot compile inside a container.");
         }
+        assertNotReading();
     }
 
+    /**
+     * Throws if the current thread is reading any container
+     */
+    static void assertNotReading() {
+        if (sReadCount.get()[0] > 0) {
+            throw new RuntimeException("Cannot compile inside a container.");
+        }
+    }
 
     void setCompileTask(CompileTask task) {
         mCompileTask = task;
+        resetRead();
+    }
+
+    /**
+     * @return The time spent by threads waiting to read the compile task
+     */
+    @NonNull
+    public WaitStatistics getReadStatistics() {
+        return mReadStatistics;
+    }
+
+    /**
+     * @return The time spent by threads waiting to compile or to get exclusive access
+     * to the compile task
+     */
+    @NonNull
+    public WaitStatistics getWriteStatistics() {
+        return mWriteStatistics;
+    }
+
+    /**
+     * Counters for the time spent acquiring the container lock, used to
+     * measure contention between threads.
+     */
+    public static class WaitStatistics {
+
+        private final AtomicLong mCount = new AtomicLong();
+        private final AtomicLong mTotalNanos = new AtomicLong();
+        private final AtomicLong mMaxNanos = new AtomicLong();
+
+        void record(long nanos) {
+            mCount.incrementAndGet();
+            mTotalNanos.addAndGet(nanos);
+            mMaxNanos.accumulateAndGet(nanos, Math::max);
+        }
+
+        public long getCount() {
+            return mCount.get();
+        }
+
+        public long getTotalWaitMillis() {
+            return TimeUnit.NANOSECONDS.toMillis(mTotalNanos.get());
+        }
+
+        public long getMaxWaitMillis() {
+            return TimeUnit.NANOSECONDS.toMillis(mMaxNanos.get());
+        }
+
+        public void reset() {
+            mCount.set(0);
+            mTotalNanos.set(0);
+            mMaxNanos.set(0);
+        }
+
+        @NonNull
+        @Override
+        public String toString() {
+            return "WaitStatistics{" +
+                   "count=" + getCount() +
+                   ", totalWaitMillis=" + getTotalWaitMillis() +
+                   ", maxWaitMillis=" + getMaxWaitMillis() +
+                   '}';
+        }
     }
 }
@@ -3,6 +3,7 @@ package com.tyron.completion.java.compiler;
 import android.annotation.SuppressLint;
 import android.util.Log;
 
+import androidx.annotation.GuardedBy;
 import androidx.annotation.NonNull;
 
 import com.google.common.collect.ImmutableList;
@@ -10,6 +11,8 @@ import com.tyron.builder.model.SourceFileObject;
 import com.tyron.builder.project.Project;
 import com.tyron.builder.project.api.JavaModule;
 import com.tyron.builder.project.api.Module;
+import com.tyron.builder.project.index.ClassNameIndex;
+import com.tyron.builder.project.index.CompositeClassNameIndex;
 import com.tyron.common.util.Cache;
 import com.tyron.common.util.StringSearch;
 import com.tyron.completion.java.CompilerProvider;
@@ -22,6 +25,7 @@ import org.openjdk.javax.tools.JavaFileObject;
 import org.openjdk.javax.tools.StandardLocation;
 import org.openjdk.source.tree.CompilationUnitTree;
 import org.openjdk.tools.javac.file.PathFileObject;
+import org.openjdk.tools.javac.tree.JCTree;
 
 import java.io.File;
 import java.io.IOException;
@@ -34,10 +38,13 @@ import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.locks.ReentrantLock;
 import java.util.function.Predicate;
 import java.util.regex.Matcher;
@@ -45,11 +52,17 @@ import java.util.regex.Pattern;
 
 public class JavaCompilerService implements CompilerProvider {
 
+    /**
+     * How long a compilation that has been returned to a caller is kept before its context
+     * can be reclaimed even if the caller has not read it yet
+     */
+    private static final long PENDING_TIMEOUT_MS = 2000;
+
     private DiagnosticListener<? super JavaFileObject> mDiagnosticListener;
     public final SourceFileManager mSourceFileManager;
 
-    private final List<Diagnostic<? extends JavaFileObject>> diagnostics =
-            new ArrayList<>();
+    private volatile List<Diagnostic<? extends JavaFileObject>> mDiagnostics =
+            Collections.emptyList();
 
     private final Project mProject;
     private JavaModule mCurrentModule;
@@ -58,9 +71,20 @@ public class JavaCompilerService implements CompilerProvider {
     public final ReusableCompiler compiler = new ReusableCompiler();
     private final Docs docs;
 
-    private final CompilerContainer mContainer = new CompilerContainer();
-    private CompileBatch cachedCompile;
-    private final Map<JavaFileObject, Long> cachedModified = new HashMap<>();
+    /**
+     * The compilations that have finished, the most recently used first. Each of them holds
+     * a context of the {@link #compiler} until it is reclaimed for a new compilation.
+     */
+    @GuardedBy("mSnapshots")
+    private final LinkedList<Snapshot> mSnapshots = new LinkedList<>();
+    private volatile CompilerContainer mCachedContainer = new CompilerContainer();
+
+    /**
+     * The compilation of the last call to {@link #compileIncrementally(Path, String)},
+     * used to find which part of the file has changed on the next call
+     */
+    private volatile Snapshot mIncrementalSnapshot;
+    private final CompileStatistics mCompileStatistics = new CompileStatistics();
 
     public final ReentrantLock mLock = new ReentrantLock();
 
@@ -69,8 +93,9 @@ public class JavaCompilerService implements CompilerProvider {
         this.classPath = Collections.unmodifiableSet(classPath);
         this.docPath = Collections.unmodifiableSet(docPath);
         this.addExports = Collections.unmodifiableSet(addExports);
-        this.mSourceFileManager = new SourceFileManager(project);
+        this.mSourceFileManager = SourceFileManager.forProject(project);
         this.docs = new Docs(project, docPath);
+        this.compiler.setReclaimer(this::reclaimSnapshot);
     }
 
     public Project getProject() {
@@ -82,48 +107,10 @@ public class JavaCompilerService implements CompilerProvider {
         mCurrentModule = module;
     }
 
-    /**
-     * Checks whether this list has been compiled before
-     *
-     * @param sources list of java files to compile
-     * @return true if there's a valid cache for it, false otherwise
-     */
-    private boolean needsCompile(Collection<? extends JavaFileObject> sources) {
-        if (cachedModified.size() != sources.size()) {
-            return true;
-        }
-        for (JavaFileObject f : sources) {
-            if (!cachedModified.containsKey(f)) {
-                return true;
-            }
-            Long cached = cachedModified.get(f);
-            if (cached == null) {
-                return true;
-            }
-            if (f.getLastModified() != cached) {
-                return true;
-            }
-        }
-        return false;
-    }
-
-    private void loadCompile(Collection<? extends JavaFileObject> sources) {
-        if (cachedCompile != null) {
-            if (!cachedCompile.closed) {
-                throw new RuntimeException("Compiler is still in-use!");
-            }
-            cachedCompile.borrow.close();
-        }
-        cachedCompile = doCompile(sources);
-        cachedModified.clear();
-        for (JavaFileObject f : sources) {
-            cachedModified.put(f, f.getLastModified());
-        }
-    }
-
-    private CompileBatch doCompile(Collection<? extends JavaFileObject> sources) {
+    private CompileBatch doCompile(Collection<? extends JavaFileObject> sources,
+                                   CompilePriority priority) {
         if (sources.isEmpty()) throw new RuntimeException("empty sources");
-        CompileBatch firstAttempt = new CompileBatch(this, sources);
+        CompileBatch firstAttempt = new CompileBatch(this, sources, priority);
         Set<Path> addFiles = firstAttempt.needsAdditionalSources();
         if (addFiles.isEmpty()) return firstAttempt;
         // If the compiler needs additional source files that contain package-private files
@@ -135,37 +122,124 @@ public class JavaCompilerService implements CompilerProvider {
         for (Path add : addFiles) {
             moreSources.add(new SourceFileObject(add, mCurrentModule));
         }
-        return new CompileBatch(this, moreSources);
+        return new CompileBatch(this, moreSources, priority);
     }
 
     /**
-     * Creates a compile batch only if it has not been compiled before
+     * Creates a compile batch only if it has not been compiled before. The previous
+     * compilations can still be read while the sources are compiled, each of them is
+     * compiled in its own context.
      *
      * @param sources Files to compile
      * @return CompileBatch for this compilation
      */
-    private CompilerContainer compileBatch(Collection<? extends JavaFileObject> sources) {
-        mContainer.initialize(() -> {
-            if (needsCompile(sources)) {
-                loadCompile(sources);
-            } else {
-                Log.d("JavaCompilerService", "Using cached compile");
+    private CompilerContainer compileBatch(Collection<? extends JavaFileObject> sources,
+                                           CompilePriority priority) {
+        CompilerContainer.assertNotReading();
+        Snapshot cached = findSnapshot(sources);
+        if (cached != null) {
+            Log.d("JavaCompilerService", "Using cached compile");
+            return cached.container;
+        }
+        Snapshot snapshot = new Snapshot(doCompile(sources, priority), sources, priority);
+        publish(snapshot);
+        return snapshot.container;
+    }
+
+    /**
+     * @return A compilation of the given sources that is still valid, or null
+     */
+    private Snapshot findSnapshot(Collection<? extends JavaFileObject> sources) {
+        synchronized (mSnapshots) {
+            for (Snapshot snapshot : mSnapshots) {
+                if (!snapshot.container.isRetired() && !snapshot.needsCompile(sources)) {
+                    use(snapshot);
+                    return snapshot;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Moves the snapshot to the front of the list and prevents it from being reclaimed
+     * before the caller has read it
+     */
+    @GuardedBy("mSnapshots")
+    private void use(Snapshot snapshot) {
+        mSnapshots.remove(snapshot);
+        mSnapshots.addFirst(snapshot);
+        snapshot.lastUsed = System.currentTimeMillis();
+        snapshot.container.resetRead();
+    }
+
+    private void publish(Snapshot snapshot) {
+        snapshot.container.setCompileTask(new CompileTask(snapshot.batch));
+        List<Snapshot> outdated = new ArrayList<>();
+        synchronized (mSnapshots) {
+            for (Snapshot old : mSnapshots) {
+                if (old.priority == snapshot.priority && old.uris.equals(snapshot.uris)) {
+                    outdated.add(old);
+                }
             }
-            CompileTask task = new CompileTask(cachedCompile);
-            mContainer.setCompileTask(task);
-        });
-        return mContainer;
+            mSnapshots.addFirst(snapshot);
+        }
+        if (snapshot.priority != CompilePriority.INTERACTIVE) {
+            // the sources of a completion are modified, they are not used by other requests
+            mCachedContainer = snapshot.container;
+        }
+        mDiagnostics = ImmutableList.copyOf(snapshot.batch.diagnostics);
+
+        // the previous compilations of the same files are released now unless they are
+        // being read, otherwise they are released once their context is needed
+        for (Snapshot old : outdated) {
+            retire(old, false);
+        }
+    }
+
+    private boolean retire(Snapshot snapshot, boolean wait) {
+        boolean retired = wait
+                ? snapshot.container.retire(snapshot::release)
+                : snapshot.container.tryRetire(snapshot::release);
+        synchronized (mSnapshots) {
+            if (snapshot.container.isRetired()) {
+                mSnapshots.remove(snapshot);
+            }
+        }
+        return retired;
+    }
+
+    /**
+     * Called by the {@link #compiler} when all of its contexts are in use, releases the
+     * least recently used compilation that is not being read.
+     */
+    private boolean reclaimSnapshot() {
+        List<Snapshot> snapshots;
+        synchronized (mSnapshots) {
+            snapshots = new ArrayList<>(mSnapshots);
+        }
+        long now = System.currentTimeMillis();
+        for (int i = snapshots.size() - 1; i >= 0; i--) {
+            Snapshot snapshot = snapshots.get(i);
+            if (!snapshot.container.hasBeenRead() &&
+                now - snapshot.lastUsed < PENDING_TIMEOUT_MS) {
+                continue;
+            }
+            if (retire(snapshot, false)) {
+                Log.d("JavaCompilerService", "Released compilation of " + snapshot.uris);
+                return true;
+            }
+        }
+        return false;
     }
-    
+
     public void clearDiagnostics() {
-        diagnostics.clear();
         if (mDiagnosticListener != null) {
             mDiagnosticListener.report(null);
         }
     }
 
     public void addDiagnostic(Diagnostic<? extends JavaFileObject> diagnostic) {
-        diagnostics.add(diagnostic);
         if (mDiagnosticListener != null) {
             mDiagnosticListener.report(diagnostic);
         }
@@ -175,8 +249,11 @@ public class JavaCompilerService implements CompilerProvider {
         mDiagnosticListener = listener;
     }
 
+    /**
+     * @return The diagnostics of the most recent compilation
+     */
     public List<Diagnostic<? extends JavaFileObject>> getDiagnostics() {
-        return ImmutableList.copyOf(diagnostics);
+        return mDiagnostics;
     }
 
     @Override
@@ -196,6 +273,22 @@ public class JavaCompilerService implements CompilerProvider {
         return classes;
     }
 
+    /**
+     * @return An index of the public types of the current module and its dependencies,
+     * unlike {@link #publicTopLevelTypes()} this does not copy the class names
+     */
+    @NonNull
+    public ClassNameIndex getClassNameIndex() {
+        List<ClassNameIndex> indexes = new ArrayList<>();
+        indexes.add(mCurrentModule.getClassNameIndex());
+        for (Module module : mProject.getDependencies(mCurrentModule)) {
+            if (module instanceof JavaModule) {
+                indexes.add(((JavaModule) module).getClassNameIndex());
+            }
+        }
+        return new CompositeClassNameIndex(indexes);
+    }
+
     @Override
     public List<String> packagePrivateTopLevelTypes(String packageName) {
         return Collections.emptyList();
@@ -264,25 +357,21 @@ public class JavaCompilerService implements CompilerProvider {
         return "";
     }
 
-    private static final Cache<String, Boolean> cacheContainsWord = new Cache<>();
+    private static final Cache<String, Boolean> cacheContainsWord = new Cache<>(10_000);
 
     private boolean containsWord(Path file, String word) {
-        if (cacheContainsWord.needs(file, word)) {
-            cacheContainsWord.load(file, word, StringSearch.containsWord(file, word));
-        }
-        return cacheContainsWord.get(file, word);
+        return cacheContainsWord.get(file, word, () -> StringSearch.containsWord(file, word));
     }
 
-    private static final Cache<Void, List<String>> cacheContainsType = new Cache<>();
+    private static final Cache<Void, List<String>> cacheContainsType = new Cache<>(1_000);
 
     private boolean containsType(Path file, String className) {
-        if (cacheContainsType.needs(file, null)) {
+        return cacheContainsType.get(file, null, () -> {
             CompilationUnitTree root = parse(file).root;
             List<String> types = new ArrayList<>();
             new FindTypeDeclarations().scan(root, types);
-            cacheContainsType.load(file, null, types);
-        }
-        return cacheContainsType.get(file, null).contains(className);
+            return types;
+        }).contains(className);
     }
 
 
@@ -308,11 +397,39 @@ public class JavaCompilerService implements CompilerProvider {
     }
 
     private Path findPublicTypeDeclarationInModule(Module module, String packageName, String simpleName, String className) {
+        List<File> files = SourceFileManager.list(module, packageName);
+        // a public class is declared in a file with the same name, check it first
+        String fileName = simpleName + ".java";
+        for (File file : files) {
+            if (file.getName().equals(fileName) && containsType(file.toPath(), className)) {
+                return file.toPath();
+            }
+        }
+        for (File file : files) {
+            if (file.getName().equals(fileName)) {
+                continue;
+            }
+            if (containsWord(file.toPath(), simpleName) && containsType(file.toPath(), className)) {
+                return file.toPath();
+            }
+        }
+        return NOT_FOUND;
+    }
+
+    /**
+     * Finds the file in the package that declares the given class, used to find
+     * package private classes that are not declared in a file with the same name.
+     *
+     * @param module      The module to search in
+     * @param packageName The package of the class
+     * @param simpleName  The simple name of the class
+     * @return The path of the file, or {@link #NOT_FOUND}
+     */
+    Path findPackagePrivateClass(Module module, String packageName, String simpleName) {
+        String className = packageName.isEmpty() ? simpleName : packageName + "." + simpleName;
         for (File file : SourceFileManager.list(module, packageName)) {
             if (containsWord(file.toPath(), simpleName) && containsType(file.toPath(), className)) {
-                if (file.getName().endsWith(".java")) {
-                    return file.toPath();
-                }
+                return file.toPath();
             }
         }
         return NOT_FOUND;
@@ -355,14 +472,14 @@ public class JavaCompilerService implements CompilerProvider {
         return null;
     }
 
-    private final Cache<String, ParseTask> parseCache = new Cache<>();
+    // each parse task holds on to its own javac context, keep only a few of them
+    private final Cache<String, ParseTask> parseCache = new Cache<>(32);
 
     private ParseTask cachedParse(Path file) {
-        if (parseCache.needs(file, file.toFile().getName())) {
+        return parseCache.get(file, file.toFile().getName(), () -> {
             Parser parser = Parser.parseFile(mProject, file);
-            parseCache.load(file, file.toFile().getName(), new ParseTask(parser.task, parser.root));
-        }
-        return parseCache.get(file, file.toFile().getName());
+            return new ParseTask(parser.task, parser.root);
+        });
     }
 
     private ParseTask cachedParse(JavaFileObject file) {
@@ -372,13 +489,10 @@ public class JavaCompilerService implements CompilerProvider {
                     .substring(4, file.toUri().toString().lastIndexOf("!"));
 
             Path parsedPath = new File(URI.create(path)).toPath();
-            if (parseCache.needs(parsedPath, file.getName())) {
+            return parseCache.get(parsedPath, file.getName(), () -> {
                 Parser parser = Parser.parseJavaFileObject(mProject, file);
-                parseCache.load(parsedPath, file.getName(), new ParseTask(parser.task, parser.root));
-            } else {
-                Log.d("JavaCompilerService", "Using cached parse for " + file.getName());
-            }
-            return parseCache.get(parsedPath, file.getName());
+                return new ParseTask(parser.task, parser.root);
+            });
         } else if (file instanceof SourceFileObject) {
             return cachedParse(((SourceFileObject) file).mFile);
         }
@@ -440,13 +554,150 @@ public class JavaCompilerService implements CompilerProvider {
      */
     @Override
     public CompilerContainer compile(Collection<? extends JavaFileObject> sources) {
-        return compileBatch(sources);
+        return compile(sources, CompilePriority.NORMAL);
     }
 
-    public synchronized void close() {
-        if (cachedCompile != null && !cachedCompile.closed) {
-            cachedCompile.close();
+    /**
+     * Same as {@link #compile(Collection)}, the priority decides which compilation is given
+     * a context first when all of them are in use.
+     */
+    public CompilerContainer compile(Collection<? extends JavaFileObject> sources,
+                                     CompilePriority priority) {
+        return compileBatch(sources, priority);
+    }
+
+    /**
+     * Returns a previous compilation of the file if it has the same contents as the file
+     * currently has, the file is compiled otherwise. This is meant for requests that only
+     * read the compilation such as hover, so they do not have to wait for a new compilation
+     * of the file.
+     */
+    @Override
+    public CompilerContainer compileForRead(Path file) {
+        CharSequence contents = new SourceFileObject(file, mCurrentModule).getCharContent(true);
+        if (contents != null) {
+            URI uri = file.toUri();
+            String current = contents.toString();
+            synchronized (mSnapshots) {
+                for (Snapshot snapshot : mSnapshots) {
+                    if (snapshot.priority != CompilePriority.INTERACTIVE &&
+                        !snapshot.container.isRetired() &&
+                        snapshot.uris.size() == 1 &&
+                        snapshot.uris.contains(uri) &&
+                        current.equals(snapshot.contents)) {
+                        use(snapshot);
+                        return snapshot.container;
+                    }
+                }
+            }
         }
+        return compile(file);
+    }
+
+    /**
+     * Compiles the contents of a file that is being edited. If the previous call compiled the
+     * same file and the edit is confined to a single method body, the previous attributed tree
+     * is kept and only that method is parsed and attributed again. Otherwise the file is
+     * compiled fully.
+     *
+     * @param file The path of the file
+     * @param contents The current contents of the file
+     * @return a CompileTask for this compilation
+     */
+    public CompilerContainer compileIncrementally(@NonNull Path file, @NonNull String contents) {
+        CompilerContainer.assertNotReading();
+        SourceFileObject source = new SourceFileObject(file, contents, Instant.now());
+        long start = System.nanoTime();
+        Snapshot previous = mIncrementalSnapshot;
+        if (previous != null && reattribute(previous, source, contents)) {
+            long elapsed = System.nanoTime() - start;
+            mCompileStatistics.recordPartial(elapsed);
+            Log.d("JavaCompilerService", "Reattributed edited method in " +
+                                         TimeUnit.NANOSECONDS.toMillis(elapsed) + "ms");
+            synchronized (mSnapshots) {
+                use(previous);
+            }
+            mCachedContainer = previous.container;
+            mDiagnostics = ImmutableList.copyOf(previous.batch.diagnostics);
+            return previous.container;
+        }
+
+        // the previous compilation can still be read while the file is compiled again
+        List<JavaFileObject> sources = Collections.singletonList(source);
+        Snapshot snapshot = new Snapshot(doCompile(sources, CompilePriority.BACKGROUND), sources,
+                CompilePriority.BACKGROUND);
+        long elapsed = System.nanoTime() - start;
+        mCompileStatistics.recordFull(elapsed);
+        Log.d("JavaCompilerService", "Compiled " + file.getFileName() + " in " +
+                                     TimeUnit.NANOSECONDS.toMillis(elapsed) + "ms");
+        snapshot.incrementalContents = contents;
+        mIncrementalSnapshot = snapshot;
+        publish(snapshot);
+        return snapshot.container;
+    }
+
+    /**
+     * Applies the edit to the compilation of the previous call to
+     * {@link #compileIncrementally(Path, String)}
+     *
+     * @return false if the file has to be compiled fully
+     */
+    private boolean reattribute(Snapshot snapshot, SourceFileObject source, String contents) {
+        boolean[] reattributed = new boolean[1];
+        snapshot.container.initialize(() -> {
+            if (snapshot.container.isRetired()) {
+                return;
+            }
+            CompileBatch batch = snapshot.batch;
+            CompilationUnitTree root = null;
+            for (CompilationUnitTree tree : batch.roots) {
+                if (tree.getSourceFile().toUri().equals(source.toUri())) {
+                    root = tree;
+                }
+            }
+            if (!(root instanceof JCTree.JCCompilationUnit)) {
+                return;
+            }
+
+            if (!contents.equals(snapshot.incrementalContents)) {
+                PartialReattributor reattributor =
+                        new PartialReattributor(batch.task, (JCTree.JCCompilationUnit) root);
+                try {
+                    if (!reattributor.reattribute(snapshot.incrementalContents, source, contents,
+                            batch.diagnostics)) {
+                        return;
+                    }
+                } catch (RuntimeException e) {
+                    // the tree may be partially modified, it must not be read anymore
+                    Log.w("JavaCompilerService", "Unable to reattribute method", e);
+                    retire(snapshot, true);
+                    return;
+                }
+            }
+
+            synchronized (mSnapshots) {
+                snapshot.modified.clear();
+                snapshot.modified.put(source, source.getLastModified());
+            }
+            snapshot.incrementalContents = contents;
+            snapshot.contents = contents;
+            batch.closed = false;
+            snapshot.container.setCompileTask(new CompileTask(batch));
+            reattributed[0] = true;
+        });
+        return reattributed[0];
+    }
+
+    /**
+     * @return The number of times an edit has been compiled by attributing only the edited
+     * method, compared to the number of full compilations
+     */
+    @NonNull
+    public CompileStatistics getCompileStatistics() {
+        return mCompileStatistics;
+    }
+
+    public synchronized void close() {
         if (mLock.isHeldByCurrentThread() && mLock.isLocked()) {
             mLock.unlock();
         }
@@ -456,12 +707,149 @@ public class JavaCompilerService implements CompilerProvider {
         return mCurrentModule;
     }
 
+    /**
+     * Releases the compilations that are not being read
+     */
     public void destroy() {
-        cachedCompile = null;
+        List<Snapshot> snapshots;
+        synchronized (mSnapshots) {
+            snapshots = new ArrayList<>(mSnapshots);
+        }
+        for (Snapshot snapshot : snapshots) {
+            retire(snapshot, false);
+        }
+        mIncrementalSnapshot = null;
     }
 
+    /**
+     * @return The container of the most recent compilation that was not made for completion,
+     * it gives a null task if nothing has been compiled yet
+     */
     @NonNull
     public CompilerContainer getCachedContainer() {
-        return mContainer;
+        return mCachedContainer;
+    }
+
+    /**
+     * A compilation that is kept after it has finished so it can be read again
+     */
+    private static class Snapshot {
+
+        final CompilerContainer container = new CompilerContainer();
+        final CompileBatch batch;
+        final CompilePriority priority;
+        final Set<URI> uris = new HashSet<>();
+        final Map<JavaFileObject, Long> modified = new HashMap<>();
+
+        /**
+         * The contents of the source if a single file has been compiled
+         */
+        volatile String contents;
+
+        /**
+         * The contents given to {@link #compileIncrementally(Path, String)}
+         */
+        volatile String incrementalContents;
+        volatile long lastUsed = System.currentTimeMillis();
+
+        Snapshot(CompileBatch batch, Collection<? extends JavaFileObject> sources,
+                 CompilePriority priority) {
+            this.batch = batch;
+            this.priority = priority;
+            for (JavaFileObject source : sources) {
+                uris.add(source.toUri());
+                modified.put(source, source.getLastModified());
+            }
+            if (sources.size() == 1) {
+                try {
+                    CharSequence content = sources.iterator().next().getCharContent(true);
+                    contents = content == null ? null : content.toString();
+                } catch (IOException ignored) {
+                    // the contents are only used to find a matching compilation
+                }
+            }
+        }
+
+        /**
+         * Checks whether this list has been compiled before
+         *
+         * @param sources list of java files to compile
+         * @return true if there's a valid cache for it, false otherwise
+         */
+        boolean needsCompile(Collection<? extends JavaFileObject> sources) {
+            if (modified.size() != sources.size()) {
+                return true;
+            }
+            for (JavaFileObject f : sources) {
+                Long cached = modified.get(f);
+                if (cached == null) {
+                    return true;
+                }
+                if (f.getLastModified() != cached) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        void release() {
+            batch.close();
+            batch.borrow.close();
+        }
+    }
+
+    /**
+     * Counters of the compilations done by {@link #compileIncrementally(Path, String)}
+     */
+    public static class CompileStatistics {
+
+        private final AtomicLong mPartialCount = new AtomicLong();
+        private final AtomicLong mPartialNanos = new AtomicLong();
+        private final AtomicLong mFullCount = new AtomicLong();
+        private final AtomicLong mFullNanos = new AtomicLong();
+
+        void recordPartial(long nanos) {
+            mPartialCount.incrementAndGet();
+            mPartialNanos.addAndGet(nanos);
+        }
+
+        void recordFull(long nanos) {
+            mFullCount.incrementAndGet();
+            mFullNanos.addAndGet(nanos);
+        }
+
+        public long getPartialCount() {
+            return mPartialCount.get();
+        }
+
+        public long getPartialMillis() {
+            return TimeUnit.NANOSECONDS.toMillis(mPartialNanos.get());
+        }
+
+        public long getFullCount() {
+            return mFullCount.get();
+        }
+
+        public long getFullMillis() {
+            return TimeUnit.NANOSECONDS.toMillis(mFullNanos.get());
+        }
+
+        public void reset() {
+            mPartialCount.set(0);
+            mPartialNanos.set(0);
+            mFullCount.set(0);
+            mFullNanos.set(0);
+        }
+
+        @NonNull
+        @Override
+        public String toString() {
+            return "CompileStatistics{" +
+                   "partialCount=" + getPartialCount() +
+                   ", partialMillis=" + getPartialMillis() +
+                   ", fullCount=" + getFullCount() +
+                   ", fullMillis=" + getFullMillis() +
+                   '}';
+        }
     }
 }
@@ -36,7 +36,6 @@ import java.util.Set;
 public class Parser {
 
     private static final JavaCompiler COMPILER = JavacTool.create();
-    private static SourceFileManager FILE_MANAGER;
 
     /**
      * Create a task that compiles a single file
@@ -48,7 +47,7 @@ public class Parser {
     }
 
     private static SourceFileManager getFileManager(Project project) {
-        return new SourceFileManager(project);
+        return SourceFileManager.forProject(project);
     }
 
 
@@ -57,9 +56,11 @@ public class Parser {
     public final JavacTask task;
     public final CompilationUnitTree root;
     public final Trees trees;
+    private final long modified;
 
     private Parser(Project project, JavaFileObject file) {
         this.file = file;
+        this.modified = file.getLastModified();
         try {
             this.contents = file.getCharContent(false).toString();
         } catch (IOException e) {
@@ -78,26 +79,17 @@ public class Parser {
         return parseJavaFileObject(project, new SourceFileObject(file));
     }
 
-    private static Parser cachedParse;
-    private static long cachedModified = -1;
-
-    private static boolean needsParse(JavaFileObject file) {
-        if (cachedParse == null) return true;
-        if (!cachedParse.file.equals(file)) return true;
-        if (file.getLastModified() > cachedModified) return true;
-        return false;
-    }
-
-    private static void loadParse(Project project, JavaFileObject file) {
-        cachedParse = new Parser(project, file);
-        cachedModified = file.getLastModified();
-    }
+    private static volatile Parser cachedParse;
 
     public static Parser parseJavaFileObject(Project project, JavaFileObject file) {
-        if (needsParse(file)) {
-            loadParse(project, file);
+        Parser cached = cachedParse;
+        if (cached != null && cached.file.equals(file) &&
+            file.getLastModified() <= cached.modified) {
+            return cached;
         }
-        return cachedParse;
+        Parser parser = new Parser(project, file);
+        cachedParse = parser;
+        return parser;
     }
 
     public Set<Name> packagePrivateClasses() {
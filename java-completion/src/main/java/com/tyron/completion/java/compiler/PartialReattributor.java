@@ -0,0 +1,415 @@
+package com.tyron.completion.java.compiler;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import org.openjdk.javax.tools.Diagnostic;
+import org.openjdk.javax.tools.JavaFileObject;
+import org.openjdk.source.util.JavacTask;
+import org.openjdk.tools.javac.api.BasicJavacTask;
+import org.openjdk.tools.javac.code.DeferredLintHandler;
+import org.openjdk.tools.javac.comp.Annotate;
+import org.openjdk.tools.javac.comp.Attr;
+import org.openjdk.tools.javac.comp.AttrContext;
+import org.openjdk.tools.javac.comp.CompileStates;
+import org.openjdk.tools.javac.comp.Enter;
+import org.openjdk.tools.javac.comp.Env;
+import org.openjdk.tools.javac.comp.Flow;
+import org.openjdk.tools.javac.comp.MemberEnter;
+import org.openjdk.tools.javac.parser.JavacParser;
+import org.openjdk.tools.javac.parser.ParserFactory;
+import org.openjdk.tools.javac.parser.Tokens;
+import org.openjdk.tools.javac.tree.EndPosTable;
+import org.openjdk.tools.javac.tree.JCTree;
+import org.openjdk.tools.javac.tree.TreeInfo;
+import org.openjdk.tools.javac.tree.TreeMaker;
+import org.openjdk.tools.javac.tree.TreeScanner;
+import org.openjdk.tools.javac.util.Context;
+import org.openjdk.tools.javac.util.IntHashTable;
+import org.openjdk.tools.javac.util.Log;
+import org.openjdk.tools.javac.util.Position;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Applies an edit that is confined to a single method body to a compilation unit that has
+ * already been attributed. Only the new body is parsed and attributed, the rest of the tree
+ * is kept and its positions are moved to match the new contents.
+ *
+ * Edits that touch anything outside of a method body, such as an import, a field or a
+ * method signature, cannot be applied and require a full compilation.
+ */
+class PartialReattributor {
+
+    private final Context mContext;
+    private final JCTree.JCCompilationUnit mUnit;
+
+    PartialReattributor(@NonNull JavacTask task, @NonNull JCTree.JCCompilationUnit unit) {
+        mContext = ((BasicJavacTask) task).getContext();
+        mUnit = unit;
+    }
+
+    /**
+     * Attributes the method containing the edit again.
+     *
+     * @param oldContents The contents the unit was compiled from
+     * @param newFile The file object of the new contents, it will be set as the source of
+     *                the unit
+     * @param newContents The new contents of the file
+     * @param diagnostics The diagnostics of the compilation, diagnostics of the edited method are
+     *                    replaced with the new ones and the others are relocated
+     * @return false if the edit is not confined to a method body, the unit and the
+     * diagnostics have not been modified in that case
+     */
+    boolean reattribute(@NonNull String oldContents,
+                        @NonNull JavaFileObject newFile,
+                        @NonNull String newContents,
+                        @NonNull List<Diagnostic<? extends JavaFileObject>> diagnostics) {
+        EndPosTable endPositions = mUnit.endPositions;
+        if (endPositions == null) {
+            return false;
+        }
+
+        int oldLength = oldContents.length();
+        int newLength = newContents.length();
+        int prefix = 0;
+        int maxPrefix = Math.min(oldLength, newLength);
+        while (prefix < maxPrefix && oldContents.charAt(prefix) == newContents.charAt(prefix)) {
+            prefix++;
+        }
+        int suffix = 0;
+        int maxSuffix = maxPrefix - prefix;
+        while (suffix < maxSuffix &&
+               oldContents.charAt(oldLength - suffix - 1) ==
+               newContents.charAt(newLength - suffix - 1)) {
+            suffix++;
+        }
+
+        int delta = newLength - oldLength;
+        int changeStart = prefix;
+        int oldChangeEnd = oldLength - suffix;
+
+        Log instance = Log.instance(mContext);
+        if (!(instance instanceof ReusableCompiler.ReusableContext.ReusableLog)) {
+            return false;
+        }
+        ReusableCompiler.ReusableContext.ReusableLog log =
+                (ReusableCompiler.ReusableContext.ReusableLog) instance;
+
+        if (containsPrematureEof(diagnostics)) {
+            // the braces are not balanced, the bodies of the methods may contain the
+            // declarations after them
+            return false;
+        }
+        JCTree.JCMethodDecl method = findMethod(mUnit.defs, changeStart, oldChangeEnd);
+        if (method == null || method.sym == null) {
+            return false;
+        }
+        Env<AttrContext> classEnv = Enter.instance(mContext)
+                .getClassEnv(method.sym.enclClass());
+        if (classEnv == null) {
+            return false;
+        }
+
+        JCTree.JCBlock oldBody = method.body;
+        int bodyStart = TreeInfo.getStartPos(oldBody);
+        int oldBodyEnd = endPositions.getEndPos(oldBody);
+        int newBodyEnd = oldBodyEnd + delta;
+
+        // allow errors at the same positions as the previous contents to be reported
+        log.clearSource(newFile);
+        ParserEndPosTable parserEndPositions = new ParserEndPosTable();
+        log.setEndPosTable(newFile, parserEndPositions);
+        JavaFileObject previousSource = log.useSource(newFile);
+        int reported = diagnostics.size();
+        try {
+            // parse the new body at its position in the file, the parser stops at the
+            // closing brace of the block
+            StringBuilder builder = new StringBuilder(newBodyEnd);
+            for (int i = 0; i < bodyStart; i++) {
+                builder.append(' ');
+            }
+            builder.append(newContents, bodyStart, newBodyEnd);
+            JavacParser parser = ParserFactory.instance(mContext)
+                    .newParser(builder, false, true, false);
+            parserEndPositions.mParser = parser;
+            JCTree.JCBlock newBody = parser.block();
+            List<Diagnostic<? extends JavaFileObject>> parseErrors =
+                    new ArrayList<>(diagnostics.subList(reported, diagnostics.size()));
+            if (newBody.pos != bodyStart ||
+                parser.getEndPos(newBody) != newBodyEnd ||
+                parser.token().kind != Tokens.TokenKind.EOF ||
+                containsPrematureEof(parseErrors)) {
+                // the edit changed the structure of the method, e.g. a brace was removed
+                diagnostics.subList(reported, diagnostics.size()).clear();
+                return false;
+            }
+
+            diagnostics.subList(reported, diagnostics.size()).clear();
+            Position.LineMap lineMap =
+                    Position.makeLineMap(newContents.toCharArray(), newLength, false);
+            relocateDiagnostics(diagnostics, bodyStart, oldBodyEnd, delta, lineMap);
+            int relocated = diagnostics.size();
+            diagnostics.addAll(parseErrors);
+
+            EndPosTable newEndPositions = moveTrees(oldBody, oldBodyEnd, delta, parser, newBody);
+            method.body = newBody;
+            mUnit.endPositions = newEndPositions;
+            mUnit.lineMap = lineMap;
+            mUnit.sourcefile = newFile;
+            log.replaceEndPosTable(newFile, newEndPositions);
+            log.useSource(newFile);
+
+            Env<AttrContext> methodEnv = MemberEnter.instance(mContext)
+                    .getMethodEnv(method, classEnv);
+            Attr.instance(mContext).attribStat(newBody, methodEnv);
+            Annotate.instance(mContext).flush();
+            DeferredLintHandler.instance(mContext).flush(method.pos());
+            analyzeFlow(method, diagnostics, relocated);
+            return true;
+        } finally {
+            log.useSource(previousSource);
+        }
+    }
+
+    /**
+     * Runs the flow analysis the same way the compiler would have for the new contents. The
+     * compiler skips it once there are errors, so the file is either analyzed again or the
+     * errors of its previous analysis are removed.
+     *
+     * The analysis is not started from the method as the analyzers expect the state of the
+     * enclosing class when they visit local and anonymous classes.
+     *
+     * @param relocated The number of diagnostics that were reported before the edit
+     */
+    private void analyzeFlow(JCTree.JCMethodDecl method,
+                             List<Diagnostic<? extends JavaFileObject>> diagnostics,
+                             int relocated) {
+        Enter enter = Enter.instance(mContext);
+        CompileStates states = CompileStates.instance(mContext);
+        Env<AttrContext> outermostEnv = enter.getClassEnv(method.sym.outermostClass());
+        if (states.isDone(outermostEnv, CompileStates.CompileState.FLOW)) {
+            // the compiler would have stopped before the flow analysis if there were any
+            // other errors, so all the errors of this file were reported by it
+            diagnostics.subList(0, relocated).removeIf(it ->
+                    it.getKind() == Diagnostic.Kind.ERROR && isFromUnit(it));
+        }
+
+        boolean analyze = !containsErrors(diagnostics);
+        Flow flow = Flow.instance(mContext);
+        TreeMaker make = TreeMaker.instance(mContext).forToplevel(mUnit);
+        for (JCTree tree : mUnit.defs) {
+            if (!(tree instanceof JCTree.JCClassDecl)) {
+                continue;
+            }
+            Env<AttrContext> classEnv = enter.getClassEnv(((JCTree.JCClassDecl) tree).sym);
+            if (classEnv == null) {
+                continue;
+            }
+            if (analyze) {
+                flow.analyzeTree(classEnv, make);
+                states.put(classEnv, CompileStates.CompileState.FLOW);
+            } else {
+                states.put(classEnv, CompileStates.CompileState.ATTR);
+            }
+        }
+    }
+
+    private static boolean containsErrors(List<Diagnostic<? extends JavaFileObject>> diagnostics) {
+        for (Diagnostic<? extends JavaFileObject> diagnostic : diagnostics) {
+            if (diagnostic.getKind() == Diagnostic.Kind.ERROR) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean containsPrematureEof(List<Diagnostic<? extends JavaFileObject>> diagnostics) {
+        for (Diagnostic<? extends JavaFileObject> diagnostic : diagnostics) {
+            if ("compiler.err.premature.eof".equals(diagnostic.getCode()) &&
+                isFromUnit(diagnostic)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean isFromUnit(Diagnostic<? extends JavaFileObject> diagnostic) {
+        JavaFileObject source = diagnostic.getSource();
+        return source != null && source.toUri().equals(mUnit.sourcefile.toUri());
+    }
+
+    /**
+     * Finds the method whose body contains the given range, methods of local and anonymous
+     * classes are not returned as their enclosing method has to be attributed instead
+     */
+    @Nullable
+    private JCTree.JCMethodDecl findMethod(List<JCTree> trees, int start, int end) {
+        for (JCTree tree : trees) {
+            if (tree instanceof JCTree.JCClassDecl) {
+                JCTree.JCMethodDecl found =
+                        findMethod(((JCTree.JCClassDecl) tree).defs, start, end);
+                if (found != null) {
+                    return found;
+                }
+            } else if (tree instanceof JCTree.JCMethodDecl) {
+                JCTree.JCMethodDecl method = (JCTree.JCMethodDecl) tree;
+                if (method.body == null || TreeInfo.isConstructor(method)) {
+                    // constructors also check the initialization of the fields
+                    continue;
+                }
+                int bodyStart = TreeInfo.getStartPos(method.body);
+                int bodyEnd = mUnit.endPositions.getEndPos(method.body);
+                if (bodyEnd == Position.NOPOS) {
+                    continue;
+                }
+                // the edit must be between the braces of the body
+                if (start > bodyStart && end < bodyEnd) {
+                    return method;
+                }
+            }
+        }
+        return null;
+    }
+
+    private void relocateDiagnostics(List<Diagnostic<? extends JavaFileObject>> diagnostics,
+                                     int bodyStart,
+                                     int bodyEnd,
+                                     int delta,
+                                     Position.LineMap lineMap) {
+        List<Diagnostic<? extends JavaFileObject>> relocated = new ArrayList<>();
+        for (Diagnostic<? extends JavaFileObject> diagnostic : diagnostics) {
+            if (!isFromUnit(diagnostic)) {
+                relocated.add(diagnostic);
+                continue;
+            }
+            long position = diagnostic.getPosition();
+            if (position >= bodyStart && position < bodyEnd) {
+                // will be reported again when the body is attributed
+                continue;
+            }
+            Diagnostic<? extends JavaFileObject> delegate = diagnostic;
+            if (diagnostic instanceof RelocatedDiagnostic) {
+                delegate = ((RelocatedDiagnostic) diagnostic).getDelegate();
+            }
+            relocated.add(new RelocatedDiagnostic(delegate,
+                    move(position, bodyEnd, delta),
+                    move(diagnostic.getStartPosition(), bodyEnd, delta),
+                    move(diagnostic.getEndPosition(), bodyEnd, delta),
+                    lineMap));
+        }
+        diagnostics.clear();
+        diagnostics.addAll(relocated);
+    }
+
+    private static long move(long position, int bodyEnd, int delta) {
+        if (position == Diagnostic.NOPOS || position < bodyEnd) {
+            return position;
+        }
+        return position + delta;
+    }
+
+    /**
+     * Moves the positions of the trees after the old body and creates the end positions of
+     * the unit with the new body. The table of the parser is not reused as it does not store
+     * end positions that are before its last syntax error.
+     */
+    private EndPosTable moveTrees(JCTree.JCBlock oldBody,
+                                  int oldBodyEnd,
+                                  int delta,
+                                  JavacParser parser,
+                                  JCTree.JCBlock newBody) {
+        EndPosTable oldEndPositions = mUnit.endPositions;
+        EndPosTable endPositions = new TreeEndPosTable();
+        new TreeScanner() {
+            @Override
+            public void scan(JCTree tree) {
+                if (tree == null || tree == oldBody) {
+                    return;
+                }
+                int end = oldEndPositions.getEndPos(tree);
+                if (end != Position.NOPOS) {
+                    endPositions.storeEnd(tree, end >= oldBodyEnd ? end + delta : end);
+                }
+                if (tree.pos >= oldBodyEnd) {
+                    tree.pos += delta;
+                }
+                if (tree instanceof JCTree.JCBlock) {
+                    JCTree.JCBlock block = (JCTree.JCBlock) tree;
+                    if (block.endpos >= oldBodyEnd) {
+                        block.endpos += delta;
+                    }
+                }
+                super.scan(tree);
+            }
+        }.scan(mUnit);
+        new TreeScanner() {
+            @Override
+            public void scan(JCTree tree) {
+                if (tree == null) {
+                    return;
+                }
+                int end = parser.getEndPos(tree);
+                if (end != Position.NOPOS) {
+                    endPositions.storeEnd(tree, end);
+                }
+                super.scan(tree);
+            }
+        }.scan(newBody);
+        return endPositions;
+    }
+
+    /**
+     * Reads the end positions from the parser of the new body, the diagnostics reported while
+     * parsing only have access to the end positions of their file.
+     */
+    private static class ParserEndPosTable implements EndPosTable {
+
+        private JavacParser mParser;
+
+        @Override
+        public int getEndPos(JCTree tree) {
+            if (mParser == null) {
+                return Position.NOPOS;
+            }
+            return mParser.getEndPos(tree);
+        }
+
+        @Override
+        public void storeEnd(JCTree tree, int endpos) {
+
+        }
+
+        @Override
+        public int replaceTree(JCTree oldtree, JCTree newtree) {
+            return Position.NOPOS;
+        }
+    }
+
+    private static class TreeEndPosTable implements EndPosTable {
+
+        private final IntHashTable mTable = new IntHashTable();
+
+        @Override
+        public int getEndPos(JCTree tree) {
+            int value = mTable.getFromIndex(mTable.lookup(tree));
+            return value == -1 ? Position.NOPOS : value;
+        }
+
+        @Override
+        public void storeEnd(JCTree tree, int endpos) {
+            mTable.putAtIndex(tree, endpos, mTable.lookup(tree));
+        }
+
+        @Override
+        public int replaceTree(JCTree oldtree, JCTree newtree) {
+            int pos = mTable.remove(oldtree);
+            if (pos != -1) {
+                storeEnd(newtree, pos);
+                return pos;
+            }
+            return Position.NOPOS;
+        }
+    }
+}
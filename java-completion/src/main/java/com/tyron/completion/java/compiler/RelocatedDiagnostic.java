@@ -0,0 +1,99 @@
+package com.tyron.completion.java.compiler;
+
+import androidx.annotation.NonNull;
+
+import org.openjdk.javax.tools.Diagnostic;
+import org.openjdk.javax.tools.JavaFileObject;
+import org.openjdk.tools.javac.util.Position;
+
+import java.util.Locale;
+
+/**
+ * A diagnostic of a previous compilation whose positions have been moved to match the
+ * current contents of the file, used when only a part of the file has been compiled again.
+ */
+public class RelocatedDiagnostic implements Diagnostic<JavaFileObject> {
+
+    private final Diagnostic<? extends JavaFileObject> mDelegate;
+    private final long mPosition;
+    private final long mStartPosition;
+    private final long mEndPosition;
+    private final Position.LineMap mLineMap;
+
+    RelocatedDiagnostic(@NonNull Diagnostic<? extends JavaFileObject> delegate,
+                        long position,
+                        long startPosition,
+                        long endPosition,
+                        @NonNull Position.LineMap lineMap) {
+        mDelegate = delegate;
+        mPosition = position;
+        mStartPosition = startPosition;
+        mEndPosition = endPosition;
+        mLineMap = lineMap;
+    }
+
+    /**
+     * @return The diagnostic reported by the compiler
+     */
+    @NonNull
+    public Diagnostic<? extends JavaFileObject> getDelegate() {
+        return mDelegate;
+    }
+
+    @Override
+    public Kind getKind() {
+        return mDelegate.getKind();
+    }
+
+    @Override
+    public JavaFileObject getSource() {
+        return mDelegate.getSource();
+    }
+
+    @Override
+    public long getPosition() {
+        return mPosition;
+    }
+
+    @Override
+    public long getStartPosition() {
+        return mStartPosition;
+    }
+
+    @Override
+    public long getEndPosition() {
+        return mEndPosition;
+    }
+
+    @Override
+    public long getLineNumber() {
+        if (mPosition == NOPOS) {
+            return NOPOS;
+        }
+        return mLineMap.getLineNumber((int) mPosition);
+    }
+
+    @Override
+    public long getColumnNumber() {
+        if (mPosition == NOPOS) {
+            return NOPOS;
+        }
+        return mLineMap.getColumnNumber((int) mPosition);
+    }
+
+    @Override
+    public String getCode() {
+        return mDelegate.getCode();
+    }
+
+    @Override
+    public String getMessage(Locale locale) {
+        return mDelegate.getMessage(locale);
+    }
+
+    @NonNull
+    @Override
+    public String toString() {
+        return mDelegate.toString();
+    }
+}
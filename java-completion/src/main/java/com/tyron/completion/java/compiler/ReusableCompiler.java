@@ -1,5 +1,10 @@
 package com.tyron.completion.java.compiler;
 
+import androidx.annotation.GuardedBy;
+
+import com.tyron.completion.progress.ProcessCanceledException;
+import com.tyron.completion.progress.ProgressManager;
+
 import org.openjdk.javax.tools.Diagnostic;
 import org.openjdk.javax.tools.DiagnosticListener;
 import org.openjdk.javax.tools.JavaFileManager;
@@ -20,6 +25,7 @@ import org.openjdk.tools.javac.comp.Modules;
 import org.openjdk.tools.javac.main.Arguments;
 import org.openjdk.tools.javac.main.JavaCompiler;
 import org.openjdk.tools.javac.model.JavacElements;
+import org.openjdk.tools.javac.tree.EndPosTable;
 import org.openjdk.tools.javac.util.Context;
 import org.openjdk.tools.javac.util.DefinedBy;
 import org.openjdk.tools.javac.util.Log;
@@ -28,22 +34,24 @@ import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.util.ArrayList;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
+import java.util.PriorityQueue;
 import java.util.Set;
-import java.util.TreeSet;
-import java.util.logging.Handler;
-import java.util.logging.LogRecord;
 import java.util.logging.Logger;
 import java.util.stream.Collectors;
 import java.util.stream.StreamSupport;
 
-import me.xdrop.diffutils.DiffUtils;
-
 /**
  * A pool of reusable JavacTasks. When a task is no valid anymore, it is returned to the pool, and its Context may be
  * reused for future processing in some cases. The reuse is achieved by replacing some components (most notably
  * JavaCompiler and Log) with reusable counterparts, and by cleaning up leftovers from previous compilation.
  *
+ * <p>The pool holds a few contexts so that several compilations can run at the same time, its size depends on the
+ * number of processors and on the available memory. When all of the contexts are in use, the callers wait for one to
+ * be returned and are admitted in the order of their {@link CompilePriority}. An interactive request cancels the
+ * background compilations that are still running so it does not have to wait for them to finish.
+ *
  * <p>For each combination of options, a separate task/context is created and kept, as most option values are cached
  * inside components themselves.
  *
@@ -66,15 +74,103 @@ public class ReusableCompiler {
     private static final Logger LOG = Logger.getLogger("main");
     private static final JavacTool systemProvider = JavacTool.create();
 
-    private final List<String> currentOptions = new ArrayList<>();
-    private ReusableContext currentContext;
-    private boolean checkedOut;
+    /**
+     * The memory that a context is expected to use once the class path has been loaded
+     */
+    private static final long MEMORY_PER_CONTEXT = 128 * 1024 * 1024;
+    private static final int MAX_CONTEXTS = 3;
+
+    /**
+     * How long a waiting thread sleeps before checking if it has been canceled.
+     */
+    private static final long WAIT_SLICE_MS = 50;
+
+    /**
+     * Releases a context that is kept by a compilation that has finished, so it can be
+     * used by a new compilation when all the contexts of the pool are in use.
+     */
+    public interface Reclaimer {
+
+        /**
+         * @return true if a context has been returned to the pool
+         */
+        boolean reclaim();
+    }
+
+    private final int mMaxContexts;
+    private final Object mLock = new Object();
+
+    @GuardedBy("mLock")
+    private final List<ReusableContext> mIdle = new ArrayList<>();
+    @GuardedBy("mLock")
+    private final Set<Borrow> mBorrowed = new HashSet<>();
+    @GuardedBy("mLock")
+    private final PriorityQueue<Waiter> mWaiters = new PriorityQueue<>();
+    @GuardedBy("mLock")
+    private int mContextCount;
+    @GuardedBy("mLock")
+    private long mWaiterCount;
+
+    private volatile Reclaimer mReclaimer;
+
+    public ReusableCompiler() {
+        this(getDefaultSize());
+    }
+
+    public ReusableCompiler(int maxContexts) {
+        if (maxContexts < 1) {
+            throw new IllegalArgumentException("The pool must have at least one context");
+        }
+        mMaxContexts = maxContexts;
+    }
+
+    /**
+     * @return The number of contexts that fit in the available memory, at most half of the
+     * number of processors
+     */
+    public static int getDefaultSize() {
+        Runtime runtime = Runtime.getRuntime();
+        int byProcessors = Math.max(1, runtime.availableProcessors() / 2);
+        int byMemory = (int) Math.max(1, runtime.maxMemory() / MEMORY_PER_CONTEXT);
+        return Math.min(MAX_CONTEXTS, Math.min(byProcessors, byMemory));
+    }
+
+    public int getMaxContexts() {
+        return mMaxContexts;
+    }
+
+    public void setReclaimer(Reclaimer reclaimer) {
+        mReclaimer = reclaimer;
+    }
+
+    /**
+     * @return The number of callers waiting for a context
+     */
+    int getWaitingCount() {
+        synchronized (mLock) {
+            return mWaiters.size();
+        }
+    }
+
+    public Borrow getTask(
+		JavaFileManager fileManager,
+		DiagnosticListener<? super JavaFileObject> diagnosticListener,
+		Iterable<String> options,
+		Iterable<String> classes,
+		Iterable<? extends JavaFileObject> compilationUnits) {
+        return getTask(CompilePriority.NORMAL, fileManager, diagnosticListener, options, classes,
+                compilationUnits);
+    }
 
     /**
      * Creates a new task as if by JavaCompiler and runs the provided worker with it. The
      * task is only valid while the worker is running. The internal structures may be reused from some previous
      * compilation.
      *
+     * <p>Blocks until a context is available, a {@link ProcessCanceledException} is thrown if the calling thread is
+     * canceled while waiting.
+     *
+     * @param priority the order in which this request is given a context when all of them are in use
      * @param fileManager a file manager; if {@code null} use the compiler's standard filemanager
      * @param diagnosticListener a diagnostic listener; if {@code null} use the compiler's default method for reporting
      *     diagnostics
@@ -88,62 +184,228 @@ public class ReusableCompiler {
      *     of other kind than {@linkplain JavaFileObject.Kind#SOURCE source}
      */
     public Borrow getTask(
+            CompilePriority priority,
 		JavaFileManager fileManager,
 		DiagnosticListener<? super JavaFileObject> diagnosticListener,
 		Iterable<String> options,
 		Iterable<String> classes,
 		Iterable<? extends JavaFileObject> compilationUnits) {
-        if (checkedOut) {
-            throw new RuntimeException("Compiler is already in-use!");
-        }
-        checkedOut = true;
         List<String> opts =
 			StreamSupport.stream(options.spliterator(), false)
                     .collect(Collectors.toList());
-        if (!opts.equals(currentOptions)) {
-            List<String> difference = new ArrayList<>(currentOptions);
-            difference.removeAll(opts);
+        ReusableContext context = acquire(opts, priority);
+        Borrow borrow;
+        try {
+            JavacTaskImpl task =
+                    (JavacTaskImpl)
+                    systemProvider.getTask(
+                    null, fileManager, diagnosticListener, opts, classes, compilationUnits, context);
+
+            task.addTaskListener(context);
+            borrow = new Borrow(task, context, priority, fileManager);
+        } catch (RuntimeException e) {
+            release(context, false);
+            throw e;
+        }
+        if (fileManager instanceof SourceFileManager) {
+            // invalidated archives are kept open until the task is closed
+            ((SourceFileManager) fileManager).acquire();
+        }
+        synchronized (mLock) {
+            mBorrowed.add(borrow);
+        }
+        context.borrow = borrow;
+        return borrow;
+    }
+
+    private ReusableContext acquire(List<String> options, CompilePriority priority) {
+        Waiter waiter;
+        synchronized (mLock) {
+            waiter = new Waiter(priority, mWaiterCount++);
+            mWaiters.add(waiter);
+        }
+        try {
+            while (true) {
+                boolean exhausted = false;
+                synchronized (mLock) {
+                    if (mWaiters.peek() == waiter) {
+                        ReusableContext context = take(options);
+                        if (context != null) {
+                            return context;
+                        }
+                        preempt(priority);
+                        exhausted = true;
+                    }
+                }
+
+                // the reclaimer waits for the readers of a compilation, so it is not called
+                // while holding the lock
+                Reclaimer reclaimer = mReclaimer;
+                if (exhausted && reclaimer != null && reclaimer.reclaim()) {
+                    continue;
+                }
+
+                synchronized (mLock) {
+                    mLock.wait(WAIT_SLICE_MS);
+                }
+                ProgressManager.checkCanceled();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ProcessCanceledException(e);
+        } finally {
+            synchronized (mLock) {
+                mWaiters.remove(waiter);
+                mLock.notifyAll();
+            }
+        }
+    }
+
+    @GuardedBy("mLock")
+    private ReusableContext take(List<String> options) {
+        for (Iterator<ReusableContext> iterator = mIdle.iterator(); iterator.hasNext(); ) {
+            ReusableContext context = iterator.next();
+            if (context.arguments.equals(options)) {
+                iterator.remove();
+                return context;
+            }
+        }
+        if (mContextCount < mMaxContexts) {
+            mContextCount++;
+            return new ReusableContext(new ArrayList<>(options));
+        }
+        if (!mIdle.isEmpty()) {
+            // the idle contexts were created with different options, replace one of them
+            ReusableContext old = mIdle.remove(0);
+            List<String> difference = new ArrayList<>(old.arguments);
+            difference.removeAll(options);
             LOG.warning("Options changed, creating new compiler \n difference: " + difference);
-            currentOptions.clear();
-            currentOptions.addAll(opts);
-            currentContext = new ReusableContext(new ArrayList<>(opts));
+            return new ReusableContext(new ArrayList<>(options));
+        }
+        return null;
+    }
+
+    /**
+     * Cancels the compilations that are still running and have a lower priority than the
+     * given one
+     */
+    @GuardedBy("mLock")
+    private void preempt(CompilePriority priority) {
+        for (Borrow borrow : mBorrowed) {
+            if (borrow.compiling && borrow.priority.isPreemptedBy(priority)) {
+                borrow.preempted = true;
+            }
         }
-        JavacTaskImpl task =
-			(JavacTaskImpl)
-			systemProvider.getTask(
-			null, fileManager, diagnosticListener, opts, classes, compilationUnits, currentContext);
+    }
 
-        task.addTaskListener(currentContext);
-        return new Borrow(task, currentContext);
+    private void release(ReusableContext context, boolean reusable) {
+        synchronized (mLock) {
+            context.borrow = null;
+            if (reusable) {
+                mIdle.add(context);
+            } else {
+                mContextCount--;
+            }
+            mLock.notifyAll();
+        }
     }
 
-    public ReusableContext getCurrentContext() {
-        return currentContext;
+    private static class Waiter implements Comparable<Waiter> {
+
+        final CompilePriority priority;
+        final long order;
+
+        Waiter(CompilePriority priority, long order) {
+            this.priority = priority;
+            this.order = order;
+        }
+
+        @Override
+        public int compareTo(Waiter o) {
+            int compare = priority.compareTo(o.priority);
+            if (compare != 0) {
+                return compare;
+            }
+            return Long.compare(order, o.order);
+        }
     }
 
     public class Borrow implements AutoCloseable {
         final JavacTask task;
+        final ReusableContext context;
+        final CompilePriority priority;
+        final JavaFileManager fileManager;
         boolean closed;
 
-        Borrow(JavacTask task, ReusableContext ctx) {
+        /**
+         * Whether the task is still parsing or attributing its sources, it can only be
+         * preempted while it is
+         */
+        volatile boolean compiling = true;
+        volatile boolean preempted;
+
+        Borrow(JavacTask task, ReusableContext ctx, CompilePriority priority,
+               JavaFileManager fileManager) {
             this.task = task;
+            this.context = ctx;
+            this.priority = priority;
+            this.fileManager = fileManager;
+        }
+
+        /**
+         * Called once the sources have been attributed
+         */
+        void finishCompiling() {
+            compiling = false;
+            preempted = false;
+        }
+
+        public boolean isPreempted() {
+            return preempted;
         }
 
         @Override
         public void close() {
             if (closed) return;
+            closed = true;
+            synchronized (mLock) {
+                mBorrowed.remove(this);
+            }
             // not returning the context to the pool if task crashes with an exception
             // the task/context may be in a broken state
-            currentContext.clear();
+            boolean reusable = false;
             try {
+                context.clear();
                 Method method = JavacTaskImpl.class.getDeclaredMethod("cleanup");
                 method.setAccessible(true);
                 method.invoke(task);
+                reusable = true;
             } catch (NoSuchMethodException | IllegalAccessException | InvocationTargetException e) {
                 throw new RuntimeException(e);
+            } finally {
+                release(context, reusable);
+                releaseFileManager();
             }
-            checkedOut = false;
+        }
+
+        /**
+         * Closes this borrow without returning its context to the pool, used when the
+         * compilation has failed and the context may be in a broken state.
+         */
+        void discard() {
+            if (closed) return;
             closed = true;
+            synchronized (mLock) {
+                mBorrowed.remove(this);
+            }
+            release(context, false);
+            releaseFileManager();
+        }
+
+        private void releaseFileManager() {
+            if (fileManager instanceof SourceFileManager) {
+                ((SourceFileManager) fileManager).release();
+            }
         }
     }
 
@@ -151,6 +413,11 @@ public class ReusableCompiler {
 
         List<String> arguments;
 
+        /**
+         * The borrow that is currently using this context
+         */
+        volatile Borrow borrow;
+
         ReusableContext(List<String> arguments) {
             super();
             this.arguments = arguments;
@@ -185,13 +452,24 @@ public class ReusableCompiler {
         @Override
         @DefinedBy(DefinedBy.Api.COMPILER_TREE)
         public void finished(TaskEvent e) {
-            // do nothing
+            checkPreempted();
         }
 
         @Override
         @DefinedBy(DefinedBy.Api.COMPILER_TREE)
         public void started(TaskEvent e) {
-            // do nothing
+            checkPreempted();
+        }
+
+        /**
+         * Stops the compilation between two phases if a request with a higher priority
+         * is waiting for this context
+         */
+        private void checkPreempted() {
+            Borrow current = borrow;
+            if (current != null && current.preempted) {
+                throw new ProcessCanceledException();
+            }
         }
 
         <T> void drop(Key<T> k) {
@@ -244,6 +522,26 @@ public class ReusableCompiler {
                 this.context = context;
             }
 
+            /**
+             * Forgets the errors that have been reported for the given file and its contents,
+             * used when a part of the file is compiled again with new contents.
+             */
+            void clearSource(JavaFileObject file) {
+                recorded.removeIf(pair -> file.equals(pair.fst));
+                sourceMap.remove(file);
+                nerrors = 0;
+                nwarnings = 0;
+            }
+
+            /**
+             * Sets the end positions of the diagnostics reported for the given file from now
+             * on, the diagnostics that have already been reported keep using the previous ones.
+             */
+            void replaceEndPosTable(JavaFileObject file, EndPosTable endPosTable) {
+                sourceMap.remove(file);
+                setEndPosTable(file, endPosTable);
+            }
+
             void clear() {
                 recorded.clear();
                 sourceMap.clear();
@@ -1,6 +1,7 @@
 package com.tyron.completion.java.compiler;
 
 import android.text.TextUtils;
+import android.util.Log;
 
 import com.tyron.builder.model.SourceFileObject;
 import com.tyron.builder.project.Project;
@@ -16,22 +17,72 @@ import org.openjdk.javax.tools.JavaFileObject;
 import org.openjdk.javax.tools.StandardJavaFileManager;
 import org.openjdk.javax.tools.StandardLocation;
 import org.openjdk.tools.javac.api.JavacTool;
+import org.openjdk.tools.javac.file.JavacFileManager;
 
 import java.io.File;
 import java.io.IOException;
 import java.nio.charset.Charset;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Locale;
 import java.util.Set;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
+/**
+ * The file manager used by the compilations and parses of a project, it is shared through
+ * {@link #forProject(Project)} so the archives on the class path and source path are only
+ * opened and indexed once.
+ */
 public class SourceFileManager extends ForwardingJavaFileManager<StandardJavaFileManager> {
 
+    private static final String TAG = SourceFileManager.class.getSimpleName();
+
+    private static SourceFileManager sShared;
+    private static SourceFileManager sDocs;
+
+    /**
+     * @return The file manager shared by everything that compiles or parses the files of
+     * the project. The file manager of the previous project is closed when another project
+     * is requested.
+     */
+    public static synchronized SourceFileManager forProject(Project project) {
+        if (sShared == null || sShared.mProject != project) {
+            close(sShared);
+            sShared = new SourceFileManager(project);
+        }
+        return sShared;
+    }
+
+    /**
+     * @return The file manager used to read the doc sources of the project. It is kept apart
+     * from {@link #forProject(Project)} so the doc sources set as its source path are never
+     * seen by compilations.
+     */
+    public static synchronized SourceFileManager forDocs(Project project) {
+        if (sDocs == null || sDocs.mProject != project) {
+            close(sDocs);
+            sDocs = new SourceFileManager(project);
+        }
+        return sDocs;
+    }
+
+    private static void close(SourceFileManager fileManager) {
+        if (fileManager == null) {
+            return;
+        }
+        try {
+            fileManager.close();
+        } catch (IOException e) {
+            Log.w(TAG, "Failed to close the file manager of the previous project", e);
+        }
+    }
+
     private final Project mProject;
-    private Module mCurrentModule;
+    private volatile Module mCurrentModule;
 
 	public SourceFileManager(Project project) {
 		super(createDelegateFileManager());
@@ -103,8 +154,9 @@ public class SourceFileManager extends ForwardingJavaFileManager<StandardJavaFil
         if (location == StandardLocation.SOURCE_PATH) {
             String packageName = StringSearch.mostName(className);
             String simpleClassName = StringSearch.lastName(className);
+            String fileName = simpleClassName + kind.extension;
             for (File f : list(mCurrentModule, packageName)) {
-                if (f.getName().equals(simpleClassName + kind.extension)) {
+                if (f.getName().equals(fileName)) {
                     return new SourceFileObject(f.toPath(), (JavaModule) mCurrentModule);
                 }
             }
@@ -129,29 +181,79 @@ public class SourceFileManager extends ForwardingJavaFileManager<StandardJavaFil
         return super.contains(location, fileObject);
     }
 
-    public void setLocation(Location location, Iterable<? extends  File> path) throws IOException {
-	    fileManager.setLocation(location, path);
+    @Override
+    public synchronized boolean handleOption(String current, Iterator<String> remaining) {
+        return super.handleOption(current, remaining);
     }
 
-    public static List<File> list(Module module, String packageName) {
-	    if (!(module instanceof JavaModule)) {
-	        return Collections.emptyList();
+    /**
+     * Sets the paths of the location, nothing is done if the location already has the same
+     * paths so the archives opened for it are kept.
+     */
+    public synchronized void setLocation(Location location, Iterable<? extends  File> path) throws IOException {
+        List<File> files = new ArrayList<>();
+        path.forEach(files::add);
+        Iterable<? extends File> current = fileManager.getLocation(location);
+        if (current != null) {
+            List<File> currentFiles = new ArrayList<>();
+            current.forEach(currentFiles::add);
+            if (currentFiles.equals(files)) {
+                return;
+            }
         }
-	    JavaModule javaModule = (JavaModule) module;
+	    fileManager.setLocation(location, files);
+    }
 
-	    List<File> list = new ArrayList<>();
-        for (String file : javaModule.getJavaFiles().keySet()) {
-            String name = file;
-            if (file.endsWith(".")) {
-                name = file.substring(0, file.length() - 1);
-            }
-            if (!name.startsWith(packageName)) {
+    /**
+     * Closes the given archives if they have been opened, this is called when libraries are
+     * added or removed so that a jar that has been replaced is read again. Archives that
+     * running compilations may still read from are closed once they are released.
+     */
+    public void invalidate(Collection<File> archives) {
+        if (!(fileManager instanceof JavacFileManager)) {
+            return;
+        }
+        for (File archive : archives) {
+            String name = archive.getName();
+            if (!name.endsWith(".jar") && !name.endsWith(".zip")) {
                 continue;
             }
-            if (name.substring(0, name.lastIndexOf(".")).equals(packageName) || name.equals(packageName)) {
-                list.add(javaModule.getJavaFiles().get(file));
+            try {
+                ((JavacFileManager) fileManager).invalidate(archive.toPath());
+            } catch (IOException e) {
+                Log.w(TAG, "Failed to close " + archive, e);
             }
         }
-        return list;
+    }
+
+    /**
+     * Called when a compilation starts to use this file manager, the archives invalidated
+     * until {@link #release()} is called are kept open for it.
+     */
+    public void acquire() {
+        if (fileManager instanceof JavacFileManager) {
+            ((JavacFileManager) fileManager).acquire();
+        }
+    }
+
+    /**
+     * Called when a compilation is done with this file manager
+     */
+    public void release() {
+        if (!(fileManager instanceof JavacFileManager)) {
+            return;
+        }
+        try {
+            ((JavacFileManager) fileManager).release();
+        } catch (IOException e) {
+            Log.w(TAG, "Failed to close the invalidated archives", e);
+        }
+    }
+
+    public static List<File> list(Module module, String packageName) {
+	    if (!(module instanceof JavaModule)) {
+	        return Collections.emptyList();
+        }
+        return ((JavaModule) module).getJavaFilesInPackage(packageName);
     }
 }
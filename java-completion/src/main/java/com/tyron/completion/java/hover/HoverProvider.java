@@ -37,8 +37,11 @@ public class HoverProvider {
     }
 
     public List<String> hover(Path file, int offset) {
-        CompilerContainer container = compiler.compile(file);
+        CompilerContainer container = compiler.compileForRead(file);
         return container.get(task -> {
+            if (task == null) {
+                return NOT_SUPPORTED;
+            }
             Element element = new FindHoverElement(task.task).scan(task.root(), (long) offset);
             if (element == null) {
                 return NOT_SUPPORTED;
@@ -21,6 +21,7 @@ import org.openjdk.source.util.TreePath;
 
 import java.io.File;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Objects;
 import java.util.Set;
 import java.util.function.Predicate;
@@ -68,19 +69,19 @@ public class ClassNameCompletionProvider extends BaseCompletionProvider {
             uniques.add(className);
         }
 
-        for (String className : compiler.publicTopLevelTypes()) {
-            // more strict on matching class names
-            String simpleName = ActionUtil.getSimpleName(className);
-            if (!predicate.test(simpleName)) {
-                continue;
-            }
+        // the index ranks the classes, so the items kept are the best matches
+        // rather than the first ones found. One more is requested to know whether
+        // some were left out
+        List<String> classNames = compiler.getClassNameIndex()
+                .findBest(partial, caseSensitive, Completions.MAX_COMPLETION_ITEMS + 1);
+        if (classNames.size() > Completions.MAX_COMPLETION_ITEMS) {
+            list.incomplete();
+            classNames = classNames.subList(0, Completions.MAX_COMPLETION_ITEMS);
+        }
+        for (String className : classNames) {
             if (uniques.contains(className)) {
                 continue;
             }
-            if (list.getItemCount() >= Completions.MAX_COMPLETION_ITEMS) {
-                list.incomplete();
-                break;
-            }
             if (ActionUtil.hasImport(root, className)) {
                 continue;
             }
@@ -12,6 +12,7 @@ import android.util.Log;
 import com.tyron.builder.model.SourceFileObject;
 import com.tyron.common.util.StringSearch;
 import com.tyron.completion.java.action.FindCurrentPath;
+import com.tyron.completion.java.compiler.CompilePriority;
 import com.tyron.completion.java.compiler.CompileTask;
 import com.tyron.completion.java.compiler.CompilerContainer;
 import com.tyron.completion.java.compiler.JavaCompilerService;
@@ -30,6 +31,7 @@ import org.openjdk.source.tree.Tree;
 import org.openjdk.source.util.JavacTask;
 import org.openjdk.source.util.TreePath;
 import org.openjdk.source.util.Trees;
+import org.openjdk.tools.javac.api.BasicJavacTask;
 import org.openjdk.tools.javac.tree.JCTree;
 
 import java.io.File;
@@ -75,7 +77,7 @@ public class Completions {
             StringBuilder pruned = new PruneMethodBodies(task.task).scan(task.root, index);
             int end = StringSearch.endOfLine(pruned, (int) index);
             pruned.insert(end, ';');
-            contents = new FileContentFixer(compiler.compiler.getCurrentContext())
+            contents = new FileContentFixer(((BasicJavacTask) task.task).getContext())
                     .fixFileContent(pruned);
         } catch (IndexOutOfBoundsException e) {
             Log.w(TAG, "Unable to fix file content", e);
@@ -93,8 +95,13 @@ public class Completions {
         boolean endsWithParen = endsWithParen(contents, (int) cursor);
 
         checkCanceled();
-        CompilerContainer container = compiler.compile(Collections.singletonList(source));
+        CompilerContainer container = compiler.compile(Collections.singletonList(source),
+                CompilePriority.INTERACTIVE);
         return container.get(task -> {
+            if (task == null) {
+                // the compilation has been released for a newer one
+                return null;
+            }
             TreePath path = new FindCurrentPath(task.task).scan(task.root(), cursor);
             String modifiedPartial = partial;
             if (path.getLeaf().getKind() == Tree.Kind.IMPORT) {
@@ -45,10 +45,17 @@ public class IdentifierCompletionProvider extends BaseCompletionProvider {
         ScopeCompletionProvider.addCompletionItems(task, path, partial, endsWithParen, builder);
         addStaticImports(task, path.getCompilationUnit(), partial, endsWithParen, builder);
         if (!builder.isIncomplete()) {
-            if (!caseSensitiveMatch ||
-                partial.length() > 0 && Character.isUpperCase(partial.charAt(0))) {
+            boolean includeClassNames = !caseSensitiveMatch ||
+                    partial.length() > 0 && Character.isUpperCase(partial.charAt(0));
+            if (includeClassNames) {
                 addClassNames(path.getCompilationUnit(), partial, builder, getCompiler(), caseSensitiveMatch);
             }
+            if (includeClassNames || partial.isEmpty()) {
+                // the class names are looked up with the prefix, or are only added once it
+                // starts with an upper case letter, so these items can't be filtered again
+                // as the user types
+                builder.incomplete();
+            }
         }
 
         KeywordCompletionProvider.addKeywords(task, path, partial, builder);
@@ -0,0 +1,131 @@
+package com.tyron.completion.java.compiler;
+
+import static com.google.common.truth.Truth.assertThat;
+import static com.tyron.completion.TestUtil.resolveBasePath;
+
+import androidx.test.core.app.ApplicationProvider;
+
+import com.tyron.builder.model.SourceFileObject;
+import com.tyron.builder.project.Project;
+import com.tyron.builder.project.mock.MockAndroidModule;
+import com.tyron.builder.project.mock.MockFileManager;
+import com.tyron.completion.TestUtil;
+import com.tyron.completion.index.CompilerService;
+import com.tyron.completion.java.CompletionModule;
+import com.tyron.completion.java.JavaCompilerProvider;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.openjdk.javax.tools.Diagnostic;
+import org.openjdk.javax.tools.JavaFileObject;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.io.File;
+import java.io.IOException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Tests that compiling an edit inside a method body by attributing only that method reports
+ * the same diagnostics as compiling the whole file.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest = Config.NONE, resourceDir = Config.NONE)
+public class IncrementalCompileTest {
+
+    private File mFile;
+    private String mContents;
+    private JavaCompilerService mService;
+
+    @Before
+    public void setup() throws IOException {
+        CompletionModule.initialize(ApplicationProvider.getApplicationContext());
+        CompletionModule.setAndroidJar(new File(resolveBasePath(), "classpath/rt.jar"));
+        CompletionModule.setLambdaStubs(new File(resolveBasePath(),
+                "classpath/core-lambda-stubs" + ".jar"));
+
+        JavaCompilerProvider provider = new JavaCompilerProvider();
+        CompilerService.getInstance().registerIndexProvider(JavaCompilerProvider.KEY, provider);
+
+        File root = new File(TestUtil.resolveBasePath(), "EmptyProject");
+        MockFileManager fileManager = new MockFileManager(root);
+        Project project = new Project(root);
+        MockAndroidModule module = new MockAndroidModule(root, fileManager);
+        module.open();
+
+        mFile = new File(root, "completion/MemberSelect.java");
+        module.addJavaFile(mFile);
+        mContents = fileManager.getFileContent(mFile)
+                .orElseThrow(RuntimeException::new)
+                .toString();
+
+        mService = provider.get(project, module);
+        mService.getCompileStatistics().reset();
+    }
+
+    @Test
+    public void testEditInsideMethod() {
+        compileIncrementally(mContents);
+
+        String contents = mContents.replace("/** @insert */", "int x = select;");
+        List<String> diagnostics = compileIncrementally(contents);
+
+        assertThat(mService.getCompileStatistics().getPartialCount()).isEqualTo(1);
+        assertThat(diagnostics).isNotEmpty();
+        assertThat(diagnostics).containsExactlyElementsIn(compileFully(contents));
+    }
+
+    @Test
+    public void testDiagnosticsAfterEditAreRelocated() {
+        String broken = mContents.replace("/** @insert */", "int x = select;");
+        compileIncrementally(broken);
+
+        // the error in main is after the edited method and has to be moved
+        String contents = broken.replace("public void innerMethod() {}",
+                "public void innerMethod() {\n            int y = 0;\n        }");
+        List<String> diagnostics = compileIncrementally(contents);
+
+        assertThat(mService.getCompileStatistics().getPartialCount()).isEqualTo(1);
+        assertThat(diagnostics).containsExactlyElementsIn(compileFully(contents));
+    }
+
+    @Test
+    public void testSignatureChangeCompilesFully() {
+        compileIncrementally(mContents);
+
+        String contents = mContents.replace("public void main() {", "public int main() {");
+        List<String> diagnostics = compileIncrementally(contents);
+
+        assertThat(mService.getCompileStatistics().getPartialCount()).isEqualTo(0);
+        assertThat(mService.getCompileStatistics().getFullCount()).isEqualTo(2);
+        assertThat(diagnostics).containsExactlyElementsIn(compileFully(contents));
+    }
+
+    private List<String> compileIncrementally(String contents) {
+        List<String> diagnostics = new ArrayList<>();
+        mService.compileIncrementally(mFile.toPath(), contents)
+                .run(task -> diagnostics.addAll(format(task.diagnostics)));
+        return diagnostics;
+    }
+
+    private List<String> compileFully(String contents) {
+        List<String> diagnostics = new ArrayList<>();
+        SourceFileObject file = new SourceFileObject(mFile.toPath(), contents, Instant.now());
+        mService.compile(Collections.singletonList(file))
+                .run(task -> diagnostics.addAll(format(task.diagnostics)));
+        return diagnostics;
+    }
+
+    private static List<String> format(List<Diagnostic<? extends JavaFileObject>> diagnostics) {
+        List<String> formatted = new ArrayList<>();
+        for (Diagnostic<? extends JavaFileObject> diagnostic : diagnostics) {
+            formatted.add(diagnostic.getCode() + " " + diagnostic.getStartPosition() + "-" +
+                          diagnostic.getEndPosition() + " line " + diagnostic.getLineNumber());
+        }
+        return formatted;
+    }
+}
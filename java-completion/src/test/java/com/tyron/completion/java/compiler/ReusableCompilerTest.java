@@ -0,0 +1,114 @@
+package com.tyron.completion.java.compiler;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.openjdk.javax.tools.JavaFileObject;
+import org.openjdk.javax.tools.SimpleJavaFileObject;
+import org.openjdk.source.util.JavacTask;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.io.IOException;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Tests that the contexts of the compiler are reused and that waiting callers are given a
+ * context in the order of their priority.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest = Config.NONE, resourceDir = Config.NONE)
+public class ReusableCompilerTest {
+
+    @Test
+    public void testContextsAreReused() {
+        ReusableCompiler compiler = new ReusableCompiler(2);
+        ReusableCompiler.Borrow first = borrow(compiler, CompilePriority.NORMAL);
+        ReusableCompiler.Borrow second = borrow(compiler, CompilePriority.NORMAL);
+        assertThat(second.context).isNotSameInstanceAs(first.context);
+
+        first.close();
+        ReusableCompiler.Borrow third = borrow(compiler, CompilePriority.NORMAL);
+        assertThat(third.context).isSameInstanceAs(first.context);
+
+        second.close();
+        third.close();
+    }
+
+    @Test
+    public void testPriorityAdmission() throws InterruptedException {
+        ReusableCompiler compiler = new ReusableCompiler(1);
+        ReusableCompiler.Borrow held = borrow(compiler, CompilePriority.NORMAL);
+
+        List<CompilePriority> admitted = Collections.synchronizedList(new ArrayList<>());
+        Thread background = borrowLater(compiler, CompilePriority.BACKGROUND, admitted);
+        waitForWaiters(compiler, 1);
+        Thread interactive = borrowLater(compiler, CompilePriority.INTERACTIVE, admitted);
+        waitForWaiters(compiler, 2);
+
+        held.close();
+        background.join();
+        interactive.join();
+
+        assertThat(admitted)
+                .containsExactly(CompilePriority.INTERACTIVE, CompilePriority.BACKGROUND)
+                .inOrder();
+    }
+
+    @Test
+    public void testReclaimer() {
+        ReusableCompiler compiler = new ReusableCompiler(1);
+        ReusableCompiler.Borrow held = borrow(compiler, CompilePriority.NORMAL);
+        compiler.setReclaimer(() -> {
+            held.close();
+            return true;
+        });
+
+        ReusableCompiler.Borrow borrow = borrow(compiler, CompilePriority.NORMAL);
+        assertThat(borrow.context).isSameInstanceAs(held.context);
+        borrow.close();
+    }
+
+    private static ReusableCompiler.Borrow borrow(ReusableCompiler compiler,
+                                                  CompilePriority priority) {
+        JavaFileObject source = new SimpleJavaFileObject(URI.create("string:///Test.java"),
+                JavaFileObject.Kind.SOURCE) {
+            @Override
+            public CharSequence getCharContent(boolean ignoreEncodingErrors) {
+                return "class Test {}";
+            }
+        };
+        ReusableCompiler.Borrow borrow = compiler.getTask(priority, null, null,
+                Collections.emptyList(), Collections.emptyList(),
+                Collections.singletonList(source));
+        try {
+            // initializes the components of the context, as a compilation would
+            ((JavacTask) borrow.task).parse();
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        return borrow;
+    }
+
+    private static Thread borrowLater(ReusableCompiler compiler, CompilePriority priority,
+                                      List<CompilePriority> admitted) {
+        Thread thread = new Thread(() -> {
+            ReusableCompiler.Borrow borrow = borrow(compiler, priority);
+            admitted.add(priority);
+            borrow.close();
+        });
+        thread.start();
+        return thread;
+    }
+
+    private static void waitForWaiters(ReusableCompiler compiler, int count)
+            throws InterruptedException {
+        while (compiler.getWaitingCount() < count) {
+            Thread.sleep(10);
+        }
+    }
+}
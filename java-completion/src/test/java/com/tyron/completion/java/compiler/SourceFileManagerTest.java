@@ -0,0 +1,109 @@
+package com.tyron.completion.java.compiler;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.fail;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.openjdk.javax.tools.JavaFileObject;
+import org.openjdk.javax.tools.StandardLocation;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.ClosedFileSystemException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Tests that the archives of the file manager are kept open and that they are read again
+ * once they are invalidated.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest = Config.NONE, resourceDir = Config.NONE)
+public class SourceFileManagerTest {
+
+    @Rule
+    public TemporaryFolder mFolder = new TemporaryFolder();
+
+    @Test
+    public void testInvalidate() throws IOException {
+        File jar = new File(mFolder.getRoot(), "library.jar");
+        writeJar(jar, "com/example/First.class");
+
+        SourceFileManager fileManager = new SourceFileManager(null);
+        fileManager.setLocation(StandardLocation.CLASS_PATH, Collections.singletonList(jar));
+        assertThat(list(fileManager)).containsExactly("com.example.First");
+        // the listing is kept while the archive is open
+        assertThat(list(fileManager)).containsExactly("com.example.First");
+
+        writeJar(jar, "com/example/First.class", "com/example/Second.class");
+        fileManager.invalidate(Collections.singletonList(jar));
+        assertThat(list(fileManager)).containsExactly("com.example.First", "com.example.Second");
+
+        fileManager.close();
+    }
+
+    @Test
+    public void testInvalidateWhileAcquired() throws IOException {
+        File jar = new File(mFolder.getRoot(), "library.jar");
+        writeJar(jar, "com/example/First.class");
+
+        SourceFileManager fileManager = new SourceFileManager(null);
+        fileManager.setLocation(StandardLocation.CLASS_PATH, Collections.singletonList(jar));
+        fileManager.acquire();
+        JavaFileObject first = listFiles(fileManager).get(0);
+
+        fileManager.invalidate(Collections.singletonList(jar));
+        // the compilation that acquired the file manager can still read the archive
+        try (InputStream input = first.openInputStream()) {
+            assertThat(input.read()).isEqualTo(0xCA);
+        }
+
+        fileManager.release();
+        try (InputStream input = first.openInputStream()) {
+            fail("The archive should be closed once released");
+        } catch (ClosedFileSystemException expected) {
+            // expected
+        }
+
+        fileManager.close();
+    }
+
+    private static List<String> list(SourceFileManager fileManager) throws IOException {
+        List<String> names = new ArrayList<>();
+        for (JavaFileObject file : listFiles(fileManager)) {
+            names.add(fileManager.inferBinaryName(StandardLocation.CLASS_PATH, file));
+        }
+        return names;
+    }
+
+    private static List<JavaFileObject> listFiles(SourceFileManager fileManager)
+            throws IOException {
+        List<JavaFileObject> files = new ArrayList<>();
+        for (JavaFileObject file : fileManager.list(StandardLocation.CLASS_PATH, "com.example",
+                EnumSet.of(JavaFileObject.Kind.CLASS), false)) {
+            files.add(file);
+        }
+        return files;
+    }
+
+    private static void writeJar(File jar, String... entries) throws IOException {
+        try (ZipOutputStream output = new ZipOutputStream(new FileOutputStream(jar))) {
+            for (String entry : entries) {
+                output.putNextEntry(new ZipEntry(entry));
+                output.write(new byte[]{(byte) 0xCA, (byte) 0xFE});
+                output.closeEntry();
+            }
+        }
+    }
+}
@@ -88,6 +88,10 @@ public class CompilerClassPath implements Closeable {
         dest.addAll(added);
     }
 
+    public AndroidModule getProject() {
+        return mProject;
+    }
+
     public Compiler getCompiler() {
         return compiler;
     }
@@ -2,6 +2,7 @@ package com.tyron.kotlin_completion;
 
 import android.util.Log;
 
+import com.tyron.kotlin_completion.classpath.ClassPathEntry;
 import com.tyron.kotlin_completion.compiler.CompletionKind;
 import com.tyron.kotlin_completion.index.SymbolIndex;
 import com.tyron.kotlin_completion.util.AsyncExecutor;
@@ -47,13 +48,15 @@ public class SourcePath {
     }
 
     private final AsyncExecutor indexAsync = new AsyncExecutor();
-    private final SymbolIndex index = new SymbolIndex();
+    private final SymbolIndex index;
     private boolean indexEnabled = false;
     private boolean indexInitialized;
 
 
     public SourcePath(CompilerClassPath classPath) {
         cp = classPath;
+        index = new SymbolIndex(new File(classPath.getProject().getBuildDirectory(),
+                "intermediate/kotlin-symbols"));
     }
 
     public CompilerClassPath getCompilerClassPath() {
@@ -223,7 +226,16 @@ public class SourcePath {
         indexAsync.execute(() -> {
             if (indexEnabled && !indexInitialized) {
                 ModuleDescriptor module = (ModuleDescriptor) container.resolve(ModuleDescriptor.class).getValue();
-                index.refresh(module, true);
+                Set<Path> classPath;
+                synchronized (cp.mClassPath) {
+                    classPath = cp.mClassPath.stream()
+                            .map(ClassPathEntry::getCompiledJar)
+                            .collect(Collectors.toSet());
+                }
+                Set<String> sourcePackages = all(false).stream()
+                        .map(file -> file.getPackageFqName().asString())
+                        .collect(Collectors.toSet());
+                index.refresh(module, classPath, sourcePackages, false);
                 indexInitialized = true;
             }
         });
@@ -2,129 +2,280 @@ package com.tyron.kotlin_completion.index
 
 import android.util.Log
 import com.tyron.kotlin_completion.util.PsiUtils
-import org.jetbrains.exposed.sql.*
-import org.jetbrains.exposed.sql.transactions.transaction
+import org.apache.commons.io.FileUtils
 import org.jetbrains.kotlin.descriptors.DeclarationDescriptor
 import org.jetbrains.kotlin.descriptors.ModuleDescriptor
 import org.jetbrains.kotlin.name.FqName
 import org.jetbrains.kotlin.resolve.scopes.DescriptorKindFilter
 import org.jetbrains.kotlin.resolve.scopes.MemberScope
+import java.io.BufferedInputStream
+import java.io.BufferedOutputStream
+import java.io.DataInputStream
+import java.io.DataOutputStream
+import java.io.File
+import java.io.FileInputStream
+import java.io.FileOutputStream
+import java.io.IOException
 import java.lang.IllegalStateException
-import java.time.Duration
-import java.time.Instant
+import java.nio.file.Path
+import java.util.jar.JarFile
 import kotlin.sequences.Sequence
 
-private const val MAX_FQNAME_LENGTH = 255
-private const val MAX_SHORT_NAME_LENGTH = 80
+private const val INDEX_FILE_NAME = "symbols.bin"
+private const val MAGIC = 0x4B53594D
+private const val VERSION = 1
 
-private object Symbols : Table() {
-    val fqName = varchar("fqname", length = MAX_FQNAME_LENGTH) references FqNames.fqName
-    val kind = integer("kind")
-    val visibility = integer("visibility")
-    val extensionReceiverType = varchar("extensionreceivertype", length = MAX_FQNAME_LENGTH).nullable()
-
-    override val primaryKey = PrimaryKey(fqName)
+/**
+ * The packages of a class path jar at the time it was indexed
+ */
+private class IndexedJar(
+    val path: String,
+    val length: Long,
+    val lastModified: Long,
+    val packages: Set<String>
+) {
+    fun isUpToDate(file: File) = file.length() == length && file.lastModified() == lastModified
 }
 
-private object FqNames : Table() {
-    val fqName = varchar("fqname", length = MAX_FQNAME_LENGTH)
-    val shortName = varchar("shortname", length = MAX_SHORT_NAME_LENGTH)
+/**
+ * Indexes the symbols of a module by their short name for completion.
+ *
+ * The symbols are kept per package along with the packages of each class path jar. When the
+ * class path changes, only the packages of the jars that have been added, removed or modified
+ * are indexed again. The index is saved to the cache directory, so it does not have to be
+ * built again on the next session.
+ */
+class SymbolIndex @JvmOverloads constructor(private val cacheDirectory: File? = null) {
 
-    override val primaryKey = PrimaryKey(fqName)
-}
-class SymbolIndex {
-    private val db = Database.connect("jdbc:h2:mem:symbolindex;DB_CLOSE_DELAY=-1", "org.h2.Driver")
+    @Volatile
+    private var store = SymbolStore.EMPTY
 
-    var indexing: Boolean = false
+    private var packages: Map<String, List<SymbolEntry>> = emptyMap()
+    private var jars: Map<String, IndexedJar> = emptyMap()
+    private var loadedFile: File? = null
 
-    init {
-       transaction (db) {
-           SchemaUtils.create(Symbols, FqNames)
-       }
-    }
+    @Volatile
+    var indexing: Boolean = false
 
-    fun refresh(module: ModuleDescriptor, forced: Boolean = true) {
+    /**
+     * Updates the index with the symbols of the module.
+     *
+     * @param classPath the jars that the module is compiled against
+     * @param sourcePackages the packages of the source files, they are always indexed again
+     * since the source files may have changed
+     * @param forced whether to discard the symbols that have already been indexed
+     */
+    @Synchronized
+    fun refresh(
+        module: ModuleDescriptor,
+        classPath: Collection<Path>,
+        sourcePackages: Set<String>,
+        forced: Boolean
+    ) {
         val started = System.currentTimeMillis()
-        Log.d("SymbolIndex", "Updating symbol index...");
+        Log.d("SymbolIndex", "Updating symbol index...")
 
         indexing = true
         try {
-            transaction(db) {
-                if (forced) {
-                    Symbols.deleteAll()
+            val indexFile = cacheDirectory?.let { File(it, INDEX_FILE_NAME) }
+            if (forced) {
+                packages = emptyMap()
+                jars = emptyMap()
+            } else if (indexFile != null && indexFile != loadedFile) {
+                load(indexFile)
+            }
+            loadedFile = indexFile
+
+            val changedPackages = HashSet<String>()
+            val newJars = HashMap<String, IndexedJar>()
+            for (path in classPath) {
+                val file = path.toFile()
+                if (!file.isFile) {
+                    continue
                 }
-                for (descriptor in allDescriptors(module)) {
-                    val descriptorFqn = PsiUtils.getFqNameSafe(descriptor)
-                    val extensionReceiverFqn = descriptor.accept(ExtractSymbolExtensionReceiverType, Unit)
-
-                    if (canStoreFqName(descriptorFqn) && (extensionReceiverFqn?.let { canStoreFqName(it) } != false)) {
-
-                        for (fqn in listOfNotNull(descriptorFqn, extensionReceiverFqn)) {
-                            FqNames.replace {
-                                it[fqName] = fqn.toString()
-                                it[shortName] = fqn.shortName().toString()
-                            }
-                        }
-
-
-                        Symbols.replace {
-                            it[fqName] = descriptorFqn.toString()
-                            it[kind] = descriptor.accept(ExtractSymbolKind, Unit).rawValue
-                            it[visibility] = descriptor.accept(ExtractSymbolVisibility, Unit).rawValue
-                            it[extensionReceiverType] = extensionReceiverFqn?.toString()
-                        }
-                    } else {
-                        Log.w("SymbolIndex",
-                            "Excluding symbol $descriptorFqn from index since its name is too long"
-                        );
-                    }
+                val old = jars[file.absolutePath]
+                if (old != null && old.isUpToDate(file)) {
+                    newJars[old.path] = old
+                    continue
+                }
+                val indexed = IndexedJar(
+                    file.absolutePath,
+                    file.length(),
+                    file.lastModified(),
+                    getPackages(file)
+                )
+                newJars[indexed.path] = indexed
+                changedPackages += indexed.packages
+                old?.let { changedPackages += it.packages }
+            }
+            for ((path, old) in jars) {
+                if (path !in newJars) {
+                    changedPackages += old.packages
+                }
+            }
+            val jarPackages = newJars.values.flatMapTo(HashSet()) { it.packages }
+
+            var indexedCount = 0
+            val newPackages = HashMap<String, List<SymbolEntry>>()
+            for (packageName in allPackages(module)) {
+                val name = packageName.toString()
+                val old = packages[name]
+                if (old != null && name in jarPackages &&
+                    name !in changedPackages && name !in sourcePackages) {
+                    newPackages[name] = old
+                } else {
+                    newPackages[name] = indexPackage(module, packageName)
+                    indexedCount++
                 }
+            }
 
-                indexing = false
+            packages = newPackages
+            jars = newJars
+            store = SymbolStore.build(newPackages.values.flatten())
+
+            if (indexFile != null) {
+                save(indexFile)
             }
+            Log.d("SymbolIndex", "Indexed " + indexedCount + " of " + newPackages.size +
+                    " packages, " + store.size + " symbols in " +
+                    (System.currentTimeMillis() - started) + " ms")
         } catch (e: Exception) {
-            Log.e("SymbolIndex", "Error while updating symbol index", e);
+            Log.e("SymbolIndex", "Error while updating symbol index", e)
+        } finally {
+            indexing = false
         }
     }
 
-    fun query(prefix: String, receiverType: FqName? = null, limit: Int = 20): List<Symbol> {
-        val start = Instant.now()
+    fun query(prefix: String, receiverType: FqName? = null, limit: Int = 20): List<Symbol> =
+        store.query(prefix, receiverType?.toString(), limit)
+
+    private fun indexPackage(module: ModuleDescriptor, packageName: FqName): List<SymbolEntry> {
+        val descriptors = try {
+            module.getPackage(packageName).memberScope
+                .getContributedDescriptors(DescriptorKindFilter.ALL, MemberScope.ALL_NAME_FILTER)
+        } catch (e: IllegalStateException) {
+            Log.w("SymbolIndex", "Couldn't query descriptors in package $packageName")
+            return emptyList()
+        }
+        return descriptors.map(::toEntry)
+    }
+
+    private fun toEntry(descriptor: DeclarationDescriptor): SymbolEntry {
+        val fqName = PsiUtils.getFqNameSafe(descriptor)
+        return SymbolEntry(
+            shortName = fqName.shortName().toString(),
+            fqName = fqName.toString(),
+            kind = descriptor.accept(ExtractSymbolKind, Unit),
+            visibility = descriptor.accept(ExtractSymbolVisibility, Unit),
+            extensionReceiverType = descriptor.accept(ExtractSymbolExtensionReceiverType, Unit)
+                ?.toString()
+        )
+    }
+
+
+    private fun load(file: File) {
+        packages = emptyMap()
+        jars = emptyMap()
+        if (!file.exists()) {
+            return
+        }
         try {
-            return transaction(db) {
-                (Symbols innerJoin FqNames)
-                    .select { FqNames.shortName.like("$prefix%") and (Symbols.extensionReceiverType eq receiverType?.toString()) }
-                    .limit(limit)
-                    .map {
-                        Symbol(
-                            fqName = FqName(it[Symbols.fqName]),
-                            kind = Symbol.Kind.fromRaw(it[Symbols.kind]),
-                            visibility = Symbol.Visibility.fromRaw(it[Symbols.visibility]),
-                            extensionReceiverType = it[Symbols.extensionReceiverType]?.let(::FqName)
+            DataInputStream(BufferedInputStream(FileInputStream(file))).use { input ->
+                if (input.readInt() != MAGIC || input.readInt() != VERSION) {
+                    return
+                }
+                val loadedJars = HashMap<String, IndexedJar>()
+                repeat(input.readInt()) {
+                    val path = input.readUTF()
+                    val length = input.readLong()
+                    val lastModified = input.readLong()
+                    val jarPackages = HashSet<String>()
+                    repeat(input.readInt()) { jarPackages += input.readUTF() }
+                    loadedJars[path] = IndexedJar(path, length, lastModified, jarPackages)
+                }
+                val loadedPackages = HashMap<String, List<SymbolEntry>>()
+                repeat(input.readInt()) {
+                    val packageName = input.readUTF()
+                    loadedPackages[packageName] = List(input.readInt()) {
+                        SymbolEntry(
+                            shortName = input.readUTF(),
+                            fqName = input.readUTF(),
+                            kind = Symbol.Kind.fromRaw(input.readByte().toInt()),
+                            visibility = Symbol.Visibility.fromRaw(input.readByte().toInt()),
+                            extensionReceiverType = input.readUTF().ifEmpty { null }
                         )
                     }
+                }
+                jars = loadedJars
+                packages = loadedPackages
             }
-        } finally {
-            Log.d("SymbolIndex", "Query took " + Duration.between(start, Instant.now()).toMillis() + " ms")
+        } catch (e: Exception) {
+            Log.w("SymbolIndex", "Unable to read the symbol index, it will be built again", e)
         }
     }
 
-    private fun canStoreFqName(fqName: FqName) =
-        fqName.toString().length <= MAX_FQNAME_LENGTH
-                && fqName.shortName().toString().length <= MAX_SHORT_NAME_LENGTH
-
-    private fun allDescriptors(module: ModuleDescriptor) : Sequence<DeclarationDescriptor> = allPackages(module)
-        .map(module::getPackage)
-        .flatMap {
-            try {
-                it.memberScope.getContributedDescriptors(DescriptorKindFilter.ALL, MemberScope.ALL_NAME_FILTER)
-            } catch (e: IllegalStateException) {
-                Log.w("SymbolIndex", "Couldn't query descriptors in package $it")
-                emptyList()
+    private fun save(file: File) {
+        val temp = File(file.path + ".tmp")
+        try {
+            FileUtils.forceMkdirParent(file)
+            DataOutputStream(BufferedOutputStream(FileOutputStream(temp))).use { output ->
+                output.writeInt(MAGIC)
+                output.writeInt(VERSION)
+                output.writeInt(jars.size)
+                for (jar in jars.values) {
+                    output.writeUTF(jar.path)
+                    output.writeLong(jar.length)
+                    output.writeLong(jar.lastModified)
+                    output.writeInt(jar.packages.size)
+                    jar.packages.forEach(output::writeUTF)
+                }
+                output.writeInt(packages.size)
+                for ((packageName, entries) in packages) {
+                    output.writeUTF(packageName)
+                    output.writeInt(entries.size)
+                    for (entry in entries) {
+                        output.writeUTF(entry.shortName)
+                        output.writeUTF(entry.fqName)
+                        output.writeByte(entry.kind.rawValue)
+                        output.writeByte(entry.visibility.rawValue)
+                        output.writeUTF(entry.extensionReceiverType ?: "")
+                    }
+                }
             }
+            FileUtils.deleteQuietly(file)
+            if (!temp.renameTo(file)) {
+                FileUtils.deleteQuietly(temp)
+            }
+        } catch (e: IOException) {
+            FileUtils.deleteQuietly(temp)
+            Log.w("SymbolIndex", "Unable to save the symbol index", e)
+        }
+    }
+
+    /**
+     * @return the packages that contain at least one file in the jar
+     */
+    private fun getPackages(jar: File): Set<String> {
+        val packages = HashSet<String>()
+        try {
+            JarFile(jar).use { jarFile ->
+                for (entry in jarFile.entries()) {
+                    val name = entry.name
+                    if (entry.isDirectory || name.startsWith("META-INF/")) {
+                        continue
+                    }
+                    val index = name.lastIndexOf('/')
+                    packages += if (index == -1) "" else name.substring(0, index).replace('/', '.')
+                }
+            }
+        } catch (e: IOException) {
+            Log.w("SymbolIndex", "Unable to read the packages of $jar", e)
         }
+        return packages
+    }
 
     private fun allPackages(module: ModuleDescriptor, pkgName: FqName = FqName.ROOT) : Sequence<FqName> = module
         .getSubPackagesOf(pkgName) { it.toString()  != "META-INF"}
         .asSequence()
         .flatMap { sequenceOf(it) + allPackages(module, it) }
-}
\ No newline at end of file
+}
@@ -0,0 +1,111 @@
+package com.tyron.kotlin_completion.index
+
+import org.jetbrains.kotlin.name.FqName
+
+/**
+ * A symbol as it is kept in the index, the [Symbol] is only created once it is returned
+ * from a query.
+ */
+data class SymbolEntry(
+    val shortName: String,
+    val fqName: String,
+    val kind: Symbol.Kind,
+    val visibility: Symbol.Visibility,
+    val extensionReceiverType: String?
+) {
+    fun toSymbol() = Symbol(
+        fqName = FqName(fqName),
+        kind = kind,
+        visibility = visibility,
+        extensionReceiverType = extensionReceiverType?.let(::FqName)
+    )
+}
+
+/**
+ * An immutable table of symbols that is built at once from all of its entries.
+ *
+ * The symbols are grouped by their extension receiver type and each group is sorted by the
+ * short name, so a prefix query is a binary search for the first matching name followed by
+ * a scan of the names that start with the prefix.
+ */
+class SymbolStore private constructor(
+    private val buckets: Map<String, Bucket>,
+    val size: Int
+) {
+
+    /**
+     * @param prefix the prefix of the short name of the symbols, case sensitive
+     * @param receiverType the extension receiver type of the symbols, or null to only
+     * return symbols that are not extensions
+     */
+    fun query(prefix: String, receiverType: String?, limit: Int): List<Symbol> {
+        val bucket = buckets[receiverType ?: NO_RECEIVER] ?: return emptyList()
+        return bucket.query(prefix, limit)
+    }
+
+    private class Bucket(
+        private val names: Array<String>,
+        private val entries: Array<SymbolEntry>
+    ) {
+
+        fun query(prefix: String, limit: Int): List<Symbol> {
+            val result = ArrayList<Symbol>()
+            var i = lowerBound(prefix)
+            while (i < names.size && result.size < limit && names[i].startsWith(prefix)) {
+                result.add(entries[i].toSymbol())
+                i++
+            }
+            return result
+        }
+
+        /**
+         * @return the index of the first name that is not less than the prefix
+         */
+        private fun lowerBound(prefix: String): Int {
+            var low = 0
+            var high = names.size
+            while (low < high) {
+                val mid = (low + high) ushr 1
+                if (names[mid] < prefix) {
+                    low = mid + 1
+                } else {
+                    high = mid
+                }
+            }
+            return low
+        }
+    }
+
+    companion object {
+
+        private const val NO_RECEIVER = ""
+
+        @JvmField
+        val EMPTY = SymbolStore(emptyMap(), 0)
+
+        /**
+         * Builds the store from the given entries, entries with the same fully qualified
+         * name and receiver type such as overloads are only stored once.
+         */
+        @JvmStatic
+        fun build(entries: Collection<SymbolEntry>): SymbolStore {
+            val comparator = compareBy<SymbolEntry>({ it.shortName }, { it.fqName })
+            val buckets = HashMap<String, Bucket>()
+            var size = 0
+            for ((receiver, group) in entries.groupBy { it.extensionReceiverType ?: NO_RECEIVER }) {
+                val sorted = ArrayList<SymbolEntry>(group.size)
+                for (entry in group.sortedWith(comparator)) {
+                    if (sorted.isEmpty() || sorted.last().fqName != entry.fqName) {
+                        sorted.add(entry)
+                    }
+                }
+                buckets[receiver] = Bucket(
+                    Array(sorted.size) { sorted[it].shortName },
+                    sorted.toTypedArray()
+                )
+                size += sorted.size
+            }
+            return SymbolStore(buckets, size)
+        }
+    }
+}
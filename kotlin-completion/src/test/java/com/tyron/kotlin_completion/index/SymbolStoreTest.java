@@ -0,0 +1,76 @@
+package com.tyron.kotlin_completion.index;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.jetbrains.kotlin.name.FqName;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public class SymbolStoreTest {
+
+    @Test
+    public void testQuery() {
+        SymbolStore store = SymbolStore.build(Arrays.asList(
+                entry("kotlin.collections.listOf", null),
+                entry("kotlin.collections.listOfNotNull", null),
+                entry("kotlin.collections.listOf", null),
+                entry("kotlin.collections.List", null),
+                entry("kotlin.text.lines", "kotlin.CharSequence"),
+                entry("kotlin.collections.last", "kotlin.collections.List")));
+
+        // overloads are only stored once
+        assertEquals(5, store.getSize());
+
+        List<Symbol> symbols = store.query("list", null, 20);
+        assertEquals(2, symbols.size());
+        assertEquals(new FqName("kotlin.collections.listOf"), symbols.get(0).getFqName());
+        assertEquals(new FqName("kotlin.collections.listOfNotNull"), symbols.get(1).getFqName());
+
+        // case sensitive, as the previous LIKE query
+        assertEquals(1, store.query("List", null, 20).size());
+        assertEquals(1, store.query("list", null, 1).size());
+
+        // extensions are only returned for their receiver type
+        assertTrue(store.query("l", null, 20).stream()
+                .noneMatch(it -> it.getExtensionReceiverType() != null));
+        symbols = store.query("l", "kotlin.CharSequence", 20);
+        assertEquals(1, symbols.size());
+        assertEquals(new FqName("kotlin.CharSequence"), symbols.get(0).getExtensionReceiverType());
+        assertTrue(store.query("l", "kotlin.Int", 20).isEmpty());
+    }
+
+    @Test
+    public void testLargeStore() {
+        List<SymbolEntry> entries = new ArrayList<>();
+        for (int i = 0; i < 150_000; i++) {
+            String packageName = "com.example.package" + (i % 500);
+            entries.add(entry(packageName + ".Symbol" + i, null));
+        }
+        SymbolStore store = SymbolStore.build(entries);
+        assertEquals(150_000, store.getSize());
+
+        assertEquals(20, store.query("Symbol1", null, 20).size());
+        assertEquals(11, store.query("Symbol14999", null, 20).size());
+        assertEquals(1, store.query("Symbol149999", null, 20).size());
+        assertTrue(store.query("Symbol2x", null, 20).isEmpty());
+
+        int queries = 10_000;
+        long start = System.nanoTime();
+        for (int i = 0; i < queries; i++) {
+            store.query("Symbol" + (i % 1000), null, 20);
+        }
+        long average = (System.nanoTime() - start) / queries;
+        System.out.println("Average query time on " + store.getSize() + " symbols: " +
+                           average / 1000.0 + " us");
+    }
+
+    private static SymbolEntry entry(String fqName, String receiverType) {
+        String shortName = fqName.substring(fqName.lastIndexOf('.') + 1);
+        return new SymbolEntry(shortName, fqName, Symbol.Kind.FUNCTION,
+                Symbol.Visibility.PUBLIC, receiverType);
+    }
+}
@@ -196,6 +196,16 @@ public class Style extends Value {
         return values;
     }
 
+    @NonNull
+    public String getName() {
+        return name;
+    }
+
+    @Nullable
+    public String getParent() {
+        return parent;
+    }
+
     public ObjectValue getAllValues(ProteusContext context) {
         ObjectValue values = new ObjectValue();
         Style current = this;
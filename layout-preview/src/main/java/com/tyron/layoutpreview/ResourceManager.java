@@ -37,7 +37,7 @@ public class ResourceManager {
     public Map<String, DrawableValue> getDrawables() {
         ResourceDrawableParser parser = new ResourceDrawableParser(mContext, mAndroidModule.getAndroidResourcesDirectory(),
                 mFileManager);
-        Map<String, DrawableValue> defaultDrawables = parser.getDefaultDrawables();
+        Map<String, DrawableValue> defaultDrawables = parser.getDrawables();
 
         for (File library : mAndroidModule.getLibraries()) {
             File parent = library.getParentFile();
@@ -48,7 +48,7 @@ public class ResourceManager {
             File resourcesDir = new File(parent, "res");
             if (resourcesDir.exists()) {
                 parser = new ResourceDrawableParser(mContext, resourcesDir, mFileManager);
-                defaultDrawables.putAll(parser.getDefaultDrawables());
+                defaultDrawables.putAll(parser.getDrawables());
             }
         }
 
@@ -0,0 +1,214 @@
+package com.tyron.layoutpreview.convert;
+
+import android.view.View;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.flipkart.android.proteus.FunctionManager;
+import com.flipkart.android.proteus.ProteusConstants;
+import com.flipkart.android.proteus.ProteusContext;
+import com.flipkart.android.proteus.ViewTypeParser;
+import com.flipkart.android.proteus.toolbox.Attributes;
+import com.flipkart.android.proteus.value.Array;
+import com.flipkart.android.proteus.value.Binding;
+import com.flipkart.android.proteus.value.Layout;
+import com.flipkart.android.proteus.value.ObjectValue;
+import com.flipkart.android.proteus.value.Primitive;
+import com.flipkart.android.proteus.value.Value;
+
+import org.xmlpull.v1.XmlPullParser;
+import org.xmlpull.v1.XmlPullParserException;
+import org.xmlpull.v1.XmlPullParserFactory;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Converts an XML layout directly into a proteus {@link Layout} while reading it, without
+ * building and serializing an intermediate JSON object like {@link XmlToJsonConverter}.
+ *
+ * The attributes of each view type are resolved once through its {@link ViewTypeParser} and
+ * reused for every element of the same type, so the converter should be reused when
+ * converting multiple layouts with the same context.
+ */
+public class XmlToLayoutConverter {
+
+    private static final String VECTOR = "vector";
+
+    private final ProteusContext mContext;
+    private final FunctionManager mFunctionManager;
+
+    /**
+     * The resolved attributes of each view type, attributes that are not handled by the
+     * parser of the type are mapped to null.
+     */
+    private final Map<String, Map<String, ViewTypeParser.AttributeSet.Attribute>> mAttributes =
+            new HashMap<>();
+
+    public XmlToLayoutConverter(@NonNull ProteusContext context) {
+        mContext = context;
+        mFunctionManager = context.getFunctionManager();
+    }
+
+    /**
+     * Main entry point for the converter
+     * @param contents The xml string to parse
+     * @return The {@link Layout} of the root element, or an {@link ObjectValue} if the root
+     * element is not a view
+     * @throws IOException if an error has occurred while reading the string content
+     * @throws XmlPullParserException if the XML content is malformed
+     * @throws ConvertException if the XML has no root element
+     */
+    public Value convert(String contents) throws IOException, XmlPullParserException, ConvertException {
+        return convert(new StringReader(contents));
+    }
+
+    public Value convert(File file) throws IOException, XmlPullParserException, ConvertException {
+        try (Reader reader = new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8)) {
+            return convert(reader);
+        }
+    }
+
+    public Value convert(Reader reader) throws IOException, XmlPullParserException, ConvertException {
+        XmlPullParser parser = XmlPullParserFactory.newInstance().newPullParser();
+        parser.setInput(reader);
+        advanceToRootNode(parser);
+
+        return convert(parser);
+    }
+
+    /**
+     * Converts the element at the current START_TAG of the parser along with its children,
+     * the parser is left at the matching END_TAG.
+     */
+    public Value convert(XmlPullParser parser) throws IOException, XmlPullParserException {
+        String type = parser.getName();
+        if (VECTOR.equals(type)) {
+            return convertObject(parser);
+        }
+
+        List<Layout.Attribute> attributes = new ArrayList<>(parser.getAttributeCount());
+        ObjectValue extras = new ObjectValue();
+        Map<String, ViewTypeParser.AttributeSet.Attribute> resolved = getAttributes(type);
+        for (int i = 0; i < parser.getAttributeCount(); i++) {
+            String name = parser.getAttributeName(i);
+            addAttribute(resolved, type, name, compileString(parser.getAttributeValue(i)),
+                    attributes, extras);
+        }
+
+        Array children = convertChildren(parser);
+        if (children.size() > 0) {
+            addAttribute(resolved, type, Attributes.ViewGroup.Children, children,
+                    attributes, extras);
+        }
+
+        return new Layout(type, attributes.isEmpty() ? null : attributes, null,
+                extras.entrySet().isEmpty() ? null : extras);
+    }
+
+    private void addAttribute(Map<String, ViewTypeParser.AttributeSet.Attribute> resolved,
+                              String type,
+                              String name,
+                              Value value,
+                              List<Layout.Attribute> attributes,
+                              ObjectValue extras) {
+        ViewTypeParser.AttributeSet.Attribute attribute;
+        if (resolved.containsKey(name)) {
+            attribute = resolved.get(name);
+        } else {
+            attribute = resolveAttribute(type, name);
+            resolved.put(name, attribute);
+        }
+
+        if (attribute != null) {
+            Value compiled = attribute.processor.precompile(value, mContext, mFunctionManager);
+            attributes.add(new Layout.Attribute(attribute.id, compiled));
+        } else {
+            extras.add(name, value);
+        }
+    }
+
+    /**
+     * Converts elements that are not views, such as vector drawables, into a plain
+     * {@link ObjectValue} with the same structure as the JSON object.
+     */
+    private ObjectValue convertObject(XmlPullParser parser) throws IOException, XmlPullParserException {
+        ObjectValue object = new ObjectValue();
+        object.add(ProteusConstants.TYPE, compileString(parser.getName()));
+        for (int i = 0; i < parser.getAttributeCount(); i++) {
+            object.add(parser.getAttributeName(i), compileString(parser.getAttributeValue(i)));
+        }
+        Array children = convertChildren(parser);
+        if (children.size() > 0) {
+            object.add(Attributes.ViewGroup.Children, children);
+        }
+        return object;
+    }
+
+    private Array convertChildren(XmlPullParser parser) throws IOException, XmlPullParserException {
+        Array children = new Array();
+        final int depth = parser.getDepth();
+        int type;
+
+        while (((type = parser.next()) != XmlPullParser.END_TAG ||
+                parser.getDepth() > depth) && type != XmlPullParser.END_DOCUMENT) {
+            if (type != XmlPullParser.START_TAG) {
+                continue;
+            }
+
+            children.add(convert(parser));
+        }
+
+        return children;
+    }
+
+    private Map<String, ViewTypeParser.AttributeSet.Attribute> getAttributes(String type) {
+        Map<String, ViewTypeParser.AttributeSet.Attribute> attributes = mAttributes.get(type);
+        if (attributes == null) {
+            attributes = new HashMap<>();
+            mAttributes.put(type, attributes);
+        }
+        return attributes;
+    }
+
+    @Nullable
+    private ViewTypeParser.AttributeSet.Attribute resolveAttribute(String type, String name) {
+        ViewTypeParser<View> parser = mContext.getParser(type);
+        return parser != null ? parser.getAttributeSet().getAttribute(name) : null;
+    }
+
+    private Value compileString(String string) {
+        if (Binding.isBindingValue(string)) {
+            return Binding.valueOf(string, mContext, mFunctionManager);
+        } else {
+            return new Primitive(string);
+        }
+    }
+
+    /**
+     * Advances the given parser to the first START_TAG. Throws ConvertException if no start tag is
+     * found.
+     */
+    private void advanceToRootNode(XmlPullParser parser) throws IOException, XmlPullParserException, ConvertException {
+        int type;
+        while ((type = parser.next()) != XmlPullParser.START_TAG &&
+                type != XmlPullParser.END_DOCUMENT) {
+            // Empty
+        }
+
+        if (type != XmlPullParser.START_TAG) {
+            throw new ConvertException(parser.getPositionDescription()
+                    + ": No start tag found!");
+        }
+    }
+}
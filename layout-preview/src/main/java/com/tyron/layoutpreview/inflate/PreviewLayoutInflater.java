@@ -33,7 +33,7 @@ import com.tyron.layout.appcompat.AppCompatModule;
 import com.tyron.layout.cardview.CardViewModule;
 import com.tyron.layout.constraintlayout.ConstraintLayoutModule;
 import com.tyron.layoutpreview.ResourceManager;
-import com.tyron.layoutpreview.convert.XmlToJsonConverter;
+import com.tyron.layoutpreview.convert.XmlToLayoutConverter;
 import com.tyron.layoutpreview.convert.adapter.ProteusTypeAdapterFactory;
 import com.tyron.layoutpreview.manager.ResourceDrawableManager;
 import com.tyron.layoutpreview.manager.ResourceLayoutManager;
@@ -54,6 +54,7 @@ public class PreviewLayoutInflater {
     private final Proteus mProteus;
     private final AndroidModule mProject;
     private ProteusContext mContext;
+    private final XmlToLayoutConverter mConverter;
 
     private final ProteusLayoutInflater.Callback mCallback = new ProteusLayoutInflater.Callback() {
         @Override
@@ -158,6 +159,7 @@ public class PreviewLayoutInflater {
                 .setLayoutManager(mLayoutManager)
                 .build();
         mContext.setParserFactory(new MaterialParserFactory(mContext));
+        mConverter = new XmlToLayoutConverter(mContext);
         ProteusTypeAdapterFactory.PROTEUS_INSTANCE_HOLDER.setProteus(mProteus);
 
         mParser.setProteusContext(mContext);
@@ -176,10 +178,8 @@ public class PreviewLayoutInflater {
             File sources = extractAndGetAndroidXml();
             File valuesFile = new File(sources, "android-31/data/res/values");
             if (valuesFile.exists()) {
-                File[] children = valuesFile.listFiles(c -> c.getName().endsWith(".xml"));
-                if (children != null) {
-                    mParser.parse(children, "android");
-                }
+                mParser.parseFramework(valuesFile,
+                        new File(sources, "android-31/values.snapshot"), "android");
             }
 
             try {
@@ -216,12 +216,10 @@ public class PreviewLayoutInflater {
                 inflate(name, value));
     }
 
-    @Deprecated
     public ProteusView inflate(String xml) throws InflateException {
         try {
-            JsonObject object = new XmlToJsonConverter()
-                    .convert(xml);
-            return inflate(object);
+            Value value = mConverter.convert(xml);
+            return inflate(value.getAsLayout());
         } catch (Exception e) {
             throw new InflateException("Unable to inflate layout: " + e.getMessage());
         }
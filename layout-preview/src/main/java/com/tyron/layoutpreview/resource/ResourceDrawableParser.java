@@ -37,6 +37,13 @@ public class ResourceDrawableParser {
         drawableValueMap.putAll(getDefaultDrawables());
     }
 
+    /**
+     * @return The drawables that were parsed when this parser was created
+     */
+    public Map<String, DrawableValue> getDrawables() {
+        return drawableValueMap;
+    }
+
     public Map<String, DrawableValue> getDefaultDrawables() {
         Map<String, DrawableValue> map = new HashMap<>();
         File defaultValues = new File(mResourceDirectory, "drawable");
@@ -0,0 +1,253 @@
+package com.tyron.layoutpreview.resource;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.flipkart.android.proteus.value.Color;
+import com.flipkart.android.proteus.value.Primitive;
+import com.flipkart.android.proteus.value.Resource;
+import com.flipkart.android.proteus.value.Style;
+import com.flipkart.android.proteus.value.Value;
+
+import org.apache.commons.io.FileUtils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.BufferUnderflowException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Saves the values parsed by a {@link ResourceValueParser} into a binary file, so resources
+ * that do not change such as the framework values are only parsed from XML once.
+ *
+ * Every string is written once into a string table at the start of the file and referenced by
+ * its index, the file is memory mapped when it is read back.
+ */
+class ResourceSnapshot {
+
+    private static final int MAGIC = 0x52534E50;
+    private static final int VERSION = 1;
+
+    private static final byte TYPE_PRIMITIVE = 0;
+    private static final byte TYPE_COLOR = 1;
+    private static final byte TYPE_RESOURCE = 2;
+
+    /**
+     * @return A value computed from the names, sizes and modification times of the XML files
+     * in the given directories, it changes when one of the files is added, removed or modified
+     */
+    static long getStamp(@NonNull File... directories) {
+        long stamp = VERSION;
+        directories = directories.clone();
+        Arrays.sort(directories);
+        for (File directory : directories) {
+            File[] files = directory.listFiles(c -> c.getName().endsWith(".xml"));
+            if (files == null) {
+                continue;
+            }
+            Arrays.sort(files);
+            for (File file : files) {
+                stamp = 31 * stamp + file.getAbsolutePath().hashCode();
+                stamp = 31 * stamp + file.length();
+                stamp = 31 * stamp + file.lastModified();
+            }
+        }
+        return stamp;
+    }
+
+    /**
+     * Writes the values of the parser to the file, the values can only be read back if the
+     * given stamp matches.
+     *
+     * @throws IOException if the file cannot be written or if the parser contains values
+     * that cannot be saved
+     */
+    static void write(@NonNull File file, long stamp, @NonNull ResourceValueParser parser)
+            throws IOException {
+        StringTable table = new StringTable();
+        ByteArrayOutputStream sections = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(sections);
+        writeValues(out, table, parser.mStrings);
+        writeValues(out, table, parser.mColors);
+        writeValues(out, table, parser.getDimensions());
+        out.writeInt(parser.mStyles.size());
+        for (Map.Entry<String, Style> entry : parser.mStyles.entrySet()) {
+            Style style = entry.getValue();
+            out.writeInt(table.get(entry.getKey()));
+            out.writeInt(table.get(style.getName()));
+            out.writeInt(style.getParent() == null ? -1 : table.get(style.getParent()));
+            writeValues(out, table, toMap(style));
+        }
+        out.flush();
+
+        FileUtils.forceMkdirParent(file);
+        File temp = new File(file.getPath() + ".tmp");
+        try (DataOutputStream fileOut = new DataOutputStream(new FileOutputStream(temp))) {
+            fileOut.writeInt(MAGIC);
+            fileOut.writeInt(VERSION);
+            fileOut.writeLong(stamp);
+            fileOut.writeInt(table.size());
+            for (String string : table.strings()) {
+                byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+                fileOut.writeInt(bytes.length);
+                fileOut.write(bytes);
+            }
+            sections.writeTo(fileOut);
+        }
+        FileUtils.deleteQuietly(file);
+        if (!temp.renameTo(file)) {
+            FileUtils.deleteQuietly(temp);
+            throw new IOException("Unable to save resource snapshot to " + file);
+        }
+    }
+
+    /**
+     * Reads the values saved in the file into the given parser
+     *
+     * @return false if the file does not exist, is corrupt or was saved with a different stamp,
+     * in that case the parser is left unchanged
+     */
+    static boolean read(@NonNull File file, long stamp, @NonNull ResourceValueParser parser) {
+        if (!file.exists()) {
+            return false;
+        }
+        ResourceValueParser values = new ResourceValueParser();
+        try (RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r");
+             FileChannel channel = randomAccessFile.getChannel()) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION ||
+                buffer.getLong() != stamp) {
+                return false;
+            }
+
+            String[] strings = new String[buffer.getInt()];
+            byte[] bytes = new byte[256];
+            for (int i = 0; i < strings.length; i++) {
+                int length = buffer.getInt();
+                if (bytes.length < length) {
+                    bytes = new byte[length];
+                }
+                buffer.get(bytes, 0, length);
+                strings[i] = new String(bytes, 0, length, StandardCharsets.UTF_8);
+            }
+
+            readValues(buffer, strings, values.mStrings);
+            readValues(buffer, strings, values.mColors);
+            readValues(buffer, strings, values.getDimensions());
+            int styleCount = buffer.getInt();
+            for (int i = 0; i < styleCount; i++) {
+                String key = strings[buffer.getInt()];
+                String name = strings[buffer.getInt()];
+                int parent = buffer.getInt();
+                Style style = new Style(name, parent == -1 ? null : strings[parent]);
+                Map<String, Value> items = new LinkedHashMap<>();
+                readValues(buffer, strings, items);
+                for (Map.Entry<String, Value> item : items.entrySet()) {
+                    style.getValues().add(item.getKey(), item.getValue());
+                }
+                values.mStyles.put(key, style);
+            }
+        } catch (IOException | BufferUnderflowException | IndexOutOfBoundsException |
+                 NegativeArraySizeException e) {
+            return false;
+        }
+
+        parser.addAll(values);
+        return true;
+    }
+
+    private static Map<String, Value> toMap(Style style) {
+        Map<String, Value> map = new LinkedHashMap<>();
+        for (Map.Entry<String, Value> entry : style.getValues().entrySet()) {
+            map.put(entry.getKey(), entry.getValue());
+        }
+        return map;
+    }
+
+    private static void writeValues(DataOutputStream out, StringTable table,
+                                    Map<String, ? extends Value> values) throws IOException {
+        out.writeInt(values.size());
+        for (Map.Entry<String, ? extends Value> entry : values.entrySet()) {
+            out.writeInt(table.get(entry.getKey()));
+            Value value = entry.getValue();
+            if (value instanceof Color.Int) {
+                out.writeByte(TYPE_COLOR);
+                out.writeInt(((Color.Int) value).value);
+            } else if (value instanceof Resource) {
+                out.writeByte(TYPE_RESOURCE);
+                out.writeInt(table.get(value.toString()));
+            } else if (value.isPrimitive()) {
+                out.writeByte(TYPE_PRIMITIVE);
+                out.writeInt(table.get(value.getAsString()));
+            } else {
+                throw new IOException("Unsupported value for " + entry.getKey() + ": " + value);
+            }
+        }
+    }
+
+    private static void readValues(MappedByteBuffer buffer, String[] strings,
+                                   Map<String, Value> values) throws IOException {
+        int size = buffer.getInt();
+        for (int i = 0; i < size; i++) {
+            String name = strings[buffer.getInt()];
+            values.put(name, readValue(buffer, strings));
+        }
+    }
+
+    @NonNull
+    private static Value readValue(MappedByteBuffer buffer, String[] strings) throws IOException {
+        byte type = buffer.get();
+        switch (type) {
+            case TYPE_PRIMITIVE:
+                return new Primitive(strings[buffer.getInt()]);
+            case TYPE_COLOR:
+                return Color.Int.valueOf(buffer.getInt());
+            case TYPE_RESOURCE:
+                return new Resource(strings[buffer.getInt()]);
+            default:
+                throw new IOException("Unknown value type: " + type);
+        }
+    }
+
+    /**
+     * Assigns an index to each distinct string in the order they are added
+     */
+    private static class StringTable {
+
+        private final Map<String, Integer> mIndices = new HashMap<>();
+        private final List<String> mStrings = new ArrayList<>();
+
+        int get(@Nullable String string) {
+            if (string == null) {
+                string = "";
+            }
+            Integer index = mIndices.get(string);
+            if (index == null) {
+                index = mStrings.size();
+                mIndices.put(string, index);
+                mStrings.add(string);
+            }
+            return index;
+        }
+
+        int size() {
+            return mStrings.size();
+        }
+
+        List<String> strings() {
+            return mStrings;
+        }
+    }
+}
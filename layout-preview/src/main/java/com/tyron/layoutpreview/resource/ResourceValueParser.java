@@ -45,6 +45,7 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class ResourceValueParser {
 
@@ -59,6 +60,14 @@ public class ResourceValueParser {
         sSupportedDirs.add("values-night-v8");
     }
 
+    /**
+     * The values of each resource directory of the project and its libraries, reused until
+     * one of the files in the directory is changed. Only the parsed values are kept, the
+     * color state lists are compiled against the context of the preview so they are parsed
+     * each time.
+     */
+    private static final Map<File, CachedValues> sDirectoryCache = new ConcurrentHashMap<>();
+
     public Map<String, Value> mStrings = new HashMap<>();
     public Map<String, Style> mStyles = new HashMap<>();
     public Map<String, Value> mColors = new HashMap<>();
@@ -113,6 +122,46 @@ public class ResourceValueParser {
         return mDimensionManager;
     }
 
+    Map<String, Value> getDimensions() {
+        return mDimensions;
+    }
+
+    /**
+     * Adds the values of the other parser, values that already exist in this parser are kept.
+     */
+    void addAll(@NonNull ResourceValueParser other) {
+        other.mStrings.forEach(mStrings::putIfAbsent);
+        other.mStyles.forEach(mStyles::putIfAbsent);
+        other.mColors.forEach(mColors::putIfAbsent);
+        other.mDimensions.forEach(mDimensions::putIfAbsent);
+    }
+
+    /**
+     * Parses the values of the framework in the given directory. The parsed values are saved
+     * to the snapshot file and read back from it until the XML files of the directory change.
+     */
+    public void parseFramework(@NonNull File valuesDir, @NonNull File snapshotFile,
+                               @NonNull String namePrefix) {
+        long stamp = 31 * ResourceSnapshot.getStamp(valuesDir) + namePrefix.hashCode();
+        if (ResourceSnapshot.read(snapshotFile, stamp, this)) {
+            return;
+        }
+
+        File[] children = valuesDir.listFiles(c -> c.getName().endsWith(".xml"));
+        if (children == null) {
+            return;
+        }
+        ResourceValueParser values = new ResourceValueParser();
+        values.setProteusContext(mContext);
+        values.parse(children, namePrefix);
+        try {
+            ResourceSnapshot.write(snapshotFile, stamp, values);
+        } catch (IOException e) {
+            Log.e("ResourceValueParser", "Unable to save framework values", e);
+        }
+        addAll(values);
+    }
+
     public void parse(AndroidModule module) {
         File resourcesDir = module.getAndroidResourcesDirectory();
         parseResDirectory(resourcesDir, "");
@@ -131,25 +180,52 @@ public class ResourceValueParser {
             return;
         }
 
-        File[] files = resDir.listFiles(File::isDirectory);
-        if (files != null) {
-            for (File file : files) {
-                if (!sSupportedDirs.contains(file.getName())) {
-                    continue;
-                }
+        File[] files = resDir.listFiles(c -> c.isDirectory() && sSupportedDirs.contains(c.getName()));
+        if (files == null) {
+            return;
+        }
+
+        long stamp = 31 * ResourceSnapshot.getStamp(files) + prefix.hashCode();
+        CachedValues cached = sDirectoryCache.get(resDir);
+        if (cached == null || cached.stamp != stamp) {
+            ResourceValueParser values = new ResourceValueParser();
+            values.parseResDirectories(files, prefix);
+            cached = new CachedValues(stamp, values);
+            sDirectoryCache.put(resDir, cached);
+        }
+        cached.strings.forEach(mStrings::putIfAbsent);
+        cached.styles.forEach(mStyles::putIfAbsent);
+        cached.colors.forEach(mColors::putIfAbsent);
+        cached.dimensions.forEach(mDimensions::putIfAbsent);
 
+        for (File file : files) {
+            if ("color".equals(file.getName())) {
                 File[] children = file.listFiles(c -> c.getName().endsWith(".xml"));
                 if (children != null) {
-                    if ("color".equals(file.getName())) {
-                        parseColor(children, prefix);
-                    } else {
-                        parse(children, prefix);
-                    }
+                    ResourceValueParser colors = new ResourceValueParser();
+                    colors.setProteusContext(mContext);
+                    colors.parseColor(children, prefix);
+                    addAll(colors);
                 }
             }
         }
     }
 
+    /**
+     * Parses the values of the directories that do not depend on the context
+     */
+    private void parseResDirectories(File[] files, String prefix) {
+        for (File file : files) {
+            if ("color".equals(file.getName())) {
+                continue;
+            }
+            File[] children = file.listFiles(c -> c.getName().endsWith(".xml"));
+            if (children != null) {
+                parse(children, prefix);
+            }
+        }
+    }
+
     public void parse(@NonNull File[] children, String namePrefix) {
         for (File child : children) {
             try {
@@ -322,4 +398,21 @@ public class ResourceValueParser {
             mStrings.put(namePrefix + pair.first, pair.second);
         }
     }
+
+    private static class CachedValues {
+
+        private final long stamp;
+        private final Map<String, Value> strings;
+        private final Map<String, Style> styles;
+        private final Map<String, Value> colors;
+        private final Map<String, Value> dimensions;
+
+        CachedValues(long stamp, ResourceValueParser values) {
+            this.stamp = stamp;
+            this.strings = values.mStrings;
+            this.styles = values.mStyles;
+            this.colors = values.mColors;
+            this.dimensions = values.mDimensions;
+        }
+    }
 }
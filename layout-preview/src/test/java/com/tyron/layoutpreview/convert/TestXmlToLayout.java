@@ -0,0 +1,126 @@
+package com.tyron.layoutpreview.convert;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.flipkart.android.proteus.ProteusContext;
+import com.flipkart.android.proteus.value.Layout;
+import com.flipkart.android.proteus.value.Value;
+import com.google.gson.JsonObject;
+import com.google.gson.stream.JsonReader;
+import com.tyron.layoutpreview.BaseTest;
+import com.tyron.layoutpreview.convert.adapter.ProteusTypeAdapterFactory;
+
+import org.junit.Test;
+
+import java.io.StringReader;
+
+public class TestXmlToLayout extends BaseTest {
+
+    private static final String TEST_LAYOUT = "<?xml version=\"1.0\" encoding=\"utf-8\"?>\n" +
+            "<LinearLayout xmlns:android=\"http://schemas.android.com/apk/res/android\"\n" +
+            "    android:layout_width=\"match_parent\"\n" +
+            "    android:layout_height=\"match_parent\"\n" +
+            "    android:orientation=\"vertical\">\n" +
+            "\n" +
+            "    <TextView\n" +
+            "        android:id=\"@+id/text\"\n" +
+            "        android:layout_width=\"wrap_content\"\n" +
+            "        android:layout_height=\"wrap_content\"\n" +
+            "        android:text=\"Hello\"\n" +
+            "        android:textSize=\"16sp\" />\n" +
+            "\n" +
+            "    <com.example.UnknownView\n" +
+            "        android:layout_width=\"match_parent\"\n" +
+            "        android:layout_height=\"48dp\"\n" +
+            "        android:unknownAttribute=\"value\" />\n" +
+            "</LinearLayout>";
+
+    private static final int BENCHMARK_ITERATIONS = 20;
+
+    @Test
+    public void testConvert() throws Exception {
+        ProteusContext context = mInflater.getContext();
+        Layout expected = convertWithJson(context, TEST_LAYOUT);
+        Value value = new XmlToLayoutConverter(context).convert(TEST_LAYOUT);
+
+        assertThat(value.isLayout()).isTrue();
+        Layout layout = value.getAsLayout();
+        assertThat(layout.type).isEqualTo("LinearLayout");
+
+        LayoutToXmlConverter converter = new LayoutToXmlConverter(context);
+        assertThat(converter.convert(layout)).isEqualTo(converter.convert(expected));
+    }
+
+    /**
+     * Compares the time taken to convert a large layout with the direct converter and by
+     * converting it into JSON first.
+     */
+    @Test
+    public void testBenchmark() throws Exception {
+        ProteusContext context = mInflater.getContext();
+        String xml = createLargeLayout(50, 40);
+
+        // warm up both paths before measuring
+        convertWithJson(context, xml);
+        new XmlToLayoutConverter(context).convert(xml);
+
+        long start = System.nanoTime();
+        for (int i = 0; i < BENCHMARK_ITERATIONS; i++) {
+            convertWithJson(context, xml);
+        }
+        long jsonTime = System.nanoTime() - start;
+
+        XmlToLayoutConverter converter = new XmlToLayoutConverter(context);
+        start = System.nanoTime();
+        for (int i = 0; i < BENCHMARK_ITERATIONS; i++) {
+            converter.convert(xml);
+        }
+        long directTime = System.nanoTime() - start;
+
+        System.out.println("Converted a layout of " + xml.length() + " characters " +
+                           BENCHMARK_ITERATIONS + " times");
+        System.out.println("XML -> JSON -> Layout: " + jsonTime / 1_000_000 + "ms");
+        System.out.println("XML -> Layout: " + directTime / 1_000_000 + "ms");
+
+        LayoutToXmlConverter layoutToXml = new LayoutToXmlConverter(context);
+        assertThat(layoutToXml.convert(converter.convert(xml).getAsLayout()))
+                .isEqualTo(layoutToXml.convert(convertWithJson(context, xml)));
+    }
+
+    private static Layout convertWithJson(ProteusContext context, String xml) throws Exception {
+        JsonObject object = new XmlToJsonConverter().convert(xml);
+        Value value = new ProteusTypeAdapterFactory(context).VALUE_TYPE_ADAPTER
+                .read(new JsonReader(new StringReader(object.toString())), false);
+        return value.getAsLayout();
+    }
+
+    /**
+     * Creates a vertical LinearLayout with the given amount of rows, each containing
+     * a horizontal LinearLayout of views.
+     */
+    private static String createLargeLayout(int rows, int columns) {
+        StringBuilder builder = new StringBuilder();
+        builder.append("<LinearLayout xmlns:android=\"http://schemas.android.com/apk/res/android\"\n")
+                .append("    android:layout_width=\"match_parent\"\n")
+                .append("    android:layout_height=\"match_parent\"\n")
+                .append("    android:orientation=\"vertical\">\n");
+        for (int row = 0; row < rows; row++) {
+            builder.append("  <LinearLayout android:layout_width=\"match_parent\"")
+                    .append(" android:layout_height=\"wrap_content\"")
+                    .append(" android:orientation=\"horizontal\">\n");
+            for (int column = 0; column < columns; column++) {
+                String tag = column % 2 == 0 ? "TextView" : "ImageView";
+                builder.append("    <").append(tag)
+                        .append(" android:id=\"@+id/view_").append(row).append('_').append(column).append('"')
+                        .append(" android:layout_width=\"0dp\"")
+                        .append(" android:layout_height=\"wrap_content\"")
+                        .append(" android:layout_weight=\"1\"")
+                        .append(" android:padding=\"4dp\"")
+                        .append(" android:contentDescription=\"Item ").append(column).append("\"/>\n");
+            }
+            builder.append("  </LinearLayout>\n");
+        }
+        builder.append("</LinearLayout>");
+        return builder.toString();
+    }
+}
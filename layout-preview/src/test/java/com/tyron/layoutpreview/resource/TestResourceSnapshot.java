@@ -0,0 +1,65 @@
+package com.tyron.layoutpreview.resource;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.flipkart.android.proteus.value.Style;
+import com.flipkart.android.proteus.value.Value;
+import com.tyron.layoutpreview.TestResourceManager;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.io.File;
+import java.util.Map;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest = Config.NONE)
+public class TestResourceSnapshot {
+
+    @Rule
+    public TemporaryFolder mFolder = new TemporaryFolder();
+
+    @Test
+    public void testSnapshot() throws Exception {
+        ResourceValueParser parser = new ResourceValueParser();
+        parser.parse(TestResourceManager.STYLE_XML);
+        parser.parse(TestResourceManager.COLOR_XML);
+        parser.parse("<resources>\n" +
+                     "    <string name=\"app_name\">CodeAssist</string>\n" +
+                     "    <dimen name=\"margin\">16dp</dimen>\n" +
+                     "</resources>");
+
+        File file = new File(mFolder.getRoot(), "values.snapshot");
+        ResourceSnapshot.write(file, 1, parser);
+
+        ResourceValueParser read = new ResourceValueParser();
+        assertThat(ResourceSnapshot.read(file, 2, read)).isFalse();
+        assertThat(read.mStyles).isEmpty();
+
+        assertThat(ResourceSnapshot.read(file, 1, read)).isTrue();
+        assertValuesEqual(read.mStrings, parser.mStrings);
+        assertValuesEqual(read.mColors, parser.mColors);
+        assertValuesEqual(read.getDimensions(), parser.getDimensions());
+
+        assertThat(read.mStyles.keySet()).isEqualTo(parser.mStyles.keySet());
+        for (Map.Entry<String, Style> entry : parser.mStyles.entrySet()) {
+            Style style = read.mStyles.get(entry.getKey());
+            assertThat(style.getName()).isEqualTo(entry.getValue().getName());
+            assertThat(style.getParent()).isEqualTo(entry.getValue().getParent());
+            assertThat(style.getValues().toString())
+                    .isEqualTo(entry.getValue().getValues().toString());
+        }
+    }
+
+    private static void assertValuesEqual(Map<String, Value> actual, Map<String, Value> expected) {
+        assertThat(actual.keySet()).isEqualTo(expected.keySet());
+        for (Map.Entry<String, Value> entry : expected.entrySet()) {
+            assertThat(actual.get(entry.getKey()).toString())
+                    .isEqualTo(entry.getValue().toString());
+        }
+    }
+}
@@ -3,19 +3,29 @@ package com.tyron.completion.xml;
 import android.content.Context;
 import android.util.AttributeSet;
 import android.view.View;
-import android.view.ViewGroup;
 
-import com.tyron.builder.BuildModule;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
 
-import org.apache.bcel.Repository;
-import org.apache.bcel.classfile.ClassParser;
-import org.apache.bcel.classfile.JavaClass;
-import org.apache.bcel.classfile.Method;
-import org.apache.bcel.generic.Type;
+import com.tyron.completion.xml.model.ClassInfo;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
 import org.jetbrains.org.objectweb.asm.ClassReader;
+import org.jetbrains.org.objectweb.asm.ClassVisitor;
+import org.jetbrains.org.objectweb.asm.MethodVisitor;
+import org.jetbrains.org.objectweb.asm.Opcodes;
+import org.jetbrains.org.objectweb.asm.Type;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.Enumeration;
 import java.util.List;
@@ -23,127 +33,162 @@ import java.util.jar.JarEntry;
 import java.util.jar.JarFile;
 
 /**
- * Scans jar files and saves all the class files that extends {@link View} and has the
- * appropriate constructors to be inflated in XML.
+ * Scans jar files for the class hierarchy needed to find the classes that extends
+ * {@link View} and has the appropriate constructors to be inflated in XML.
+ *
+ * Only the class header and the constructor descriptors are read, method bodies are
+ * skipped. The result of each jar is saved in an index file so it is only scanned once.
  */
 public class BytecodeScanner {
 
-    public static void loadJar(File jar) throws IOException {
-        try (JarFile jarFile = new JarFile(jar)) {
-            Enumeration<JarEntry> entries = jarFile.entries();
-            while (entries.hasMoreElements()) {
-                JarEntry element = entries.nextElement();
-                if (!element.getName().endsWith(".class")) {
-                    continue;
-                }
-                ClassParser classParser = new ClassParser(jar.getAbsolutePath(), element.getName());
-                JavaClass parse = classParser.parse();
-                Repository.addClass(parse);
-            }
+    private static final int INDEX_MAGIC = 0x56494458;
+    private static final int INDEX_VERSION = 1;
+
+    private static final String VIEW_CONSTRUCTOR_DESCRIPTOR = Type.getMethodDescriptor(
+            Type.VOID_TYPE,
+            Type.getObjectType(Context.class.getName().replace('.', '/')),
+            Type.getObjectType(AttributeSet.class.getName().replace('.', '/')));
+
+    /**
+     * Returns the classes of the jar from its index in the given directory, scanning the jar
+     * if it has not been indexed yet or if it has changed since.
+     */
+    @NonNull
+    public static List<ClassInfo> getClasses(@NonNull File jar, @NonNull File indexDirectory)
+            throws IOException {
+        File indexFile = getIndexFile(jar, indexDirectory);
+        List<ClassInfo> classes = readIndex(indexFile, jar);
+        if (classes != null) {
+            return classes;
         }
+
+        classes = scan(jar);
+        try {
+            writeIndex(indexFile, jar, classes);
+        } catch (IOException e) {
+            // the jar will be scanned again next time
+            FileUtils.deleteQuietly(indexFile);
+        }
+        return classes;
     }
 
-    public static List<JavaClass> scan(File file) throws IOException {
-        String path = file.getAbsolutePath();
-        List<JavaClass> viewClasses = new ArrayList<>();
-        try (JarFile jarFile = new JarFile(file)) {
+    /**
+     * Reads the name, super class and constructors of every class in the jar
+     */
+    @NonNull
+    public static List<ClassInfo> scan(@NonNull File jar) throws IOException {
+        List<ClassInfo> classes = new ArrayList<>();
+        try (JarFile jarFile = new JarFile(jar)) {
             Enumeration<JarEntry> entries = jarFile.entries();
             while (entries.hasMoreElements()) {
                 JarEntry element = entries.nextElement();
                 if (!element.getName().endsWith(".class")) {
                     continue;
                 }
-                ClassParser classParser = new ClassParser(path, element.getName());
-                JavaClass parse = classParser.parse();
-                if (isViewClass(parse)) {
-                    viewClasses.add(parse);
+                try (InputStream inputStream = jarFile.getInputStream(element)) {
+                    ClassInfo info = scanClass(inputStream);
+                    if (info != null) {
+                        classes.add(info);
+                    }
+                } catch (RuntimeException e) {
+                    // malformed class file, skip it
                 }
             }
         }
-        return viewClasses;
+        return classes;
     }
 
-    public static boolean isViewGroup(JavaClass javaClass) {
-        JavaClass[] superClasses;
-        try {
-            superClasses = javaClass.getSuperClasses();
-        } catch (ClassNotFoundException e) {
-            return false;
+    @Nullable
+    private static ClassInfo scanClass(InputStream inputStream) throws IOException {
+        ClassReader reader = new ClassReader(IOUtils.toByteArray(inputStream));
+        if ((reader.getAccess() & Opcodes.ACC_INTERFACE) != 0) {
+            return null;
         }
-        for (JavaClass superClass : superClasses) {
-            if (ViewGroup.class.getName().equals(superClass.getClassName())) {
-                return true;
-            }
-        }
-        return false;
+        ConstructorVisitor visitor = new ConstructorVisitor();
+        reader.accept(visitor,
+                ClassReader.SKIP_CODE | ClassReader.SKIP_DEBUG | ClassReader.SKIP_FRAMES);
+        String superName = reader.getSuperName();
+        return new ClassInfo(reader.getClassName().replace('/', '.'),
+                superName == null ? null : superName.replace('/', '.'),
+                visitor.hasViewConstructor);
     }
 
-    public static void scanBootstrapIfNeeded() {
-        if (!needScanBootstrap()) {
-            return;
-        }
-
-        File androidJar = BuildModule.getAndroidJar();
-        if (androidJar != null && androidJar.exists()) {
-            try (JarFile jarFile = new JarFile(androidJar)) {
-                Enumeration<JarEntry> entries = jarFile.entries();
-                while (entries.hasMoreElements()) {
-                    JarEntry element = entries.nextElement();
-                    if (!element.getName().endsWith(".class")) {
-                        continue;
-                    }
-                    ClassParser classParser = new ClassParser(androidJar.getAbsolutePath(),
-                            element.getName());
-                    JavaClass parse = classParser.parse();
-                    Repository.addClass(parse);
-                }
-            } catch (IOException e) {
-                // ignored
-            }
-        }
+    private static File getIndexFile(File jar, File indexDirectory) {
+        String path = jar.getAbsolutePath();
+        return new File(indexDirectory, jar.getName() + "-" +
+                                        Integer.toHexString(path.hashCode()) + ".idx");
     }
 
-    private static boolean needScanBootstrap() {
-        try {
-            Repository.getRepository().loadClass(View.class);
-            return false;
-        } catch (ClassNotFoundException e) {
-            return true;
+    @Nullable
+    private static List<ClassInfo> readIndex(File indexFile, File jar) {
+        if (!indexFile.exists()) {
+            return null;
+        }
+        try (DataInputStream in = new DataInputStream(
+                new BufferedInputStream(new FileInputStream(indexFile)))) {
+            if (in.readInt() != INDEX_MAGIC || in.readInt() != INDEX_VERSION) {
+                return null;
+            }
+            if (!jar.getAbsolutePath().equals(in.readUTF()) ||
+                in.readLong() != jar.length() ||
+                in.readLong() != jar.lastModified()) {
+                return null;
+            }
+            int size = in.readInt();
+            List<ClassInfo> classes = new ArrayList<>(size);
+            for (int i = 0; i < size; i++) {
+                String name = in.readUTF();
+                String superName = in.readUTF();
+                boolean hasViewConstructor = in.readBoolean();
+                classes.add(new ClassInfo(name, superName.isEmpty() ? null : superName,
+                        hasViewConstructor));
+            }
+            return classes;
+        } catch (IOException e) {
+            return null;
         }
     }
 
-    private static boolean isViewClass(JavaClass javaClass) {
-        try {
-            JavaClass[] superClasses = javaClass.getSuperClasses();
-            for (JavaClass superClass : superClasses) {
-                if (View.class.getName().equals(superClass.getClassName())) {
-                    Method[] methods = javaClass.getMethods();
-                    if (containsViewConstructors(methods)) {
-                        return true;
-                    }
-                }
+    private static void writeIndex(File indexFile, File jar, List<ClassInfo> classes)
+            throws IOException {
+        FileUtils.forceMkdirParent(indexFile);
+        File temp = new File(indexFile.getPath() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(new FileOutputStream(temp)))) {
+            out.writeInt(INDEX_MAGIC);
+            out.writeInt(INDEX_VERSION);
+            out.writeUTF(jar.getAbsolutePath());
+            out.writeLong(jar.length());
+            out.writeLong(jar.lastModified());
+            out.writeInt(classes.size());
+            for (ClassInfo info : classes) {
+                out.writeUTF(info.getName());
+                out.writeUTF(info.getSuperName() == null ? "" : info.getSuperName());
+                out.writeBoolean(info.hasViewConstructor());
             }
-            return false;
-        } catch (ClassNotFoundException e) {
-            return false;
+        }
+        FileUtils.deleteQuietly(indexFile);
+        if (!temp.renameTo(indexFile)) {
+            FileUtils.deleteQuietly(temp);
+            throw new IOException("Failed to save index of " + jar);
         }
     }
 
-    private static boolean containsViewConstructors(Method[] methods) {
-        for (Method method : methods) {
-            if (!"<init>".equals(method.getName())) {
-                continue;
-            }
+    private static class ConstructorVisitor extends ClassVisitor {
 
-            Type[] argumentTypes = method.getArgumentTypes();
-            if (argumentTypes.length == 2) {
-                if (Context.class.getName().equals(argumentTypes[0].toString())) {
-                    if (AttributeSet.class.getName().equals(argumentTypes[1].toString())) {
-                        return true;
-                    }
-                }
+        private boolean hasViewConstructor;
+
+        ConstructorVisitor() {
+            super(Opcodes.ASM9);
+        }
+
+        @Override
+        public MethodVisitor visitMethod(int access, String name, String descriptor,
+                                         String signature, String[] exceptions) {
+            if ("<init>".equals(name) && VIEW_CONSTRUCTOR_DESCRIPTOR.equals(descriptor)) {
+                hasViewConstructor = true;
             }
+            return null;
         }
-        return false;
     }
 }
@@ -0,0 +1,120 @@
+package com.tyron.completion.xml;
+
+import android.view.View;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.tyron.completion.xml.model.ClassInfo;
+import com.tyron.completion.xml.model.ViewClass;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Holds the classes of multiple jars, so the super classes of a class in a library can be
+ * resolved from the other libraries and from the android jar.
+ */
+public class ViewClassIndex {
+
+    private final File mIndexDirectory;
+    private final Map<String, ClassInfo> mClasses = new HashMap<>();
+
+    /**
+     * @param indexDirectory The directory where the index of each jar is saved
+     */
+    public ViewClassIndex(@NonNull File indexDirectory) {
+        mIndexDirectory = indexDirectory;
+    }
+
+    /**
+     * Adds the classes of the jar, classes that have already been added from another jar
+     * are kept.
+     *
+     * @return The classes of the jar
+     */
+    @NonNull
+    public List<ClassInfo> addJar(@NonNull File jar) throws IOException {
+        List<ClassInfo> classes = BytecodeScanner.getClasses(jar, mIndexDirectory);
+        for (ClassInfo info : classes) {
+            mClasses.putIfAbsent(info.getName(), info);
+        }
+        return classes;
+    }
+
+    /**
+     * @return The super classes of the class starting from its direct super class, or null
+     * if one of them cannot be found in the added jars
+     */
+    @Nullable
+    public List<String> getSuperClasses(@NonNull String className) {
+        ClassInfo info = mClasses.get(className);
+        if (info == null) {
+            return null;
+        }
+        List<String> superClasses = new ArrayList<>();
+        Set<String> visited = new HashSet<>();
+        visited.add(className);
+        String superName = info.getSuperName();
+        while (superName != null) {
+            if (!visited.add(superName)) {
+                // cyclic hierarchy from broken jars
+                return null;
+            }
+            superClasses.add(superName);
+            if (Object.class.getName().equals(superName)) {
+                // not every jar contains the java.lang classes
+                break;
+            }
+            ClassInfo superInfo = mClasses.get(superName);
+            if (superInfo == null) {
+                return null;
+            }
+            superName = superInfo.getSuperName();
+        }
+        return superClasses;
+    }
+
+    /**
+     * @return The view of the given name if it is or extends {@link View}, regardless of
+     * whether it can be inflated
+     */
+    @Nullable
+    public ViewClass getViewClass(@NonNull String className) {
+        List<String> superClasses = getSuperClasses(className);
+        if (superClasses == null) {
+            return null;
+        }
+        if (!View.class.getName().equals(className) &&
+            !superClasses.contains(View.class.getName())) {
+            return null;
+        }
+        return new ViewClass(className, Collections.unmodifiableList(superClasses));
+    }
+
+    /**
+     * @return The classes of the given list that extend {@link View} and have the
+     * constructor used when inflating them
+     */
+    @NonNull
+    public List<ViewClass> getInflatableViews(@NonNull List<ClassInfo> classes) {
+        List<ViewClass> views = new ArrayList<>();
+        for (ClassInfo info : classes) {
+            if (!info.hasViewConstructor()) {
+                continue;
+            }
+            ViewClass viewClass = getViewClass(info.getName());
+            if (viewClass != null) {
+                views.add(viewClass);
+            }
+        }
+        return views;
+    }
+}
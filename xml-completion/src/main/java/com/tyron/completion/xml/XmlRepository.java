@@ -21,17 +21,18 @@ import android.widget.TextView;
 import android.widget.ViewFlipper;
 import android.widget.ViewSwitcher;
 
+import com.tyron.builder.BuildModule;
 import com.tyron.builder.project.api.AndroidModule;
 import com.tyron.common.ApplicationProvider;
 import com.tyron.common.util.Decompress;
 import com.tyron.completion.xml.model.AttributeInfo;
+import com.tyron.completion.xml.model.ClassInfo;
 import com.tyron.completion.xml.model.DeclareStyleable;
 import com.tyron.completion.xml.model.Format;
+import com.tyron.completion.xml.model.ViewClass;
 import com.tyron.completion.xml.repository.ResourceRepository;
 import com.tyron.completion.xml.util.StyleUtils;
 
-import org.apache.bcel.Repository;
-import org.apache.bcel.classfile.JavaClass;
 import org.xmlpull.v1.XmlPullParser;
 import org.xmlpull.v1.XmlPullParserException;
 import org.xmlpull.v1.XmlPullParserFactory;
@@ -41,6 +42,7 @@ import java.io.FileReader;
 import java.io.IOException;
 import java.io.Reader;
 import java.util.ArrayList;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -51,7 +53,7 @@ public class XmlRepository {
     private final Map<String, DeclareStyleable> mDeclareStyleables = new TreeMap<>();
     private final Map<String, DeclareStyleable> mManifestAttrs = new TreeMap<>();
     private final Map<String, AttributeInfo> mExtraAttributes = new TreeMap<>();
-    private final Map<String, JavaClass> mJavaViewClasses = new TreeMap<>();
+    private final Map<String, ViewClass> mJavaViewClasses = new TreeMap<>();
 
     private boolean mInitialized = false;
     private ResourceRepository mRepository;
@@ -70,7 +72,7 @@ public class XmlRepository {
         return mDeclareStyleables;
     }
 
-    public Map<String, JavaClass> getJavaViewClasses() {
+    public Map<String, ViewClass> getJavaViewClasses() {
         return mJavaViewClasses;
     }
 
@@ -83,11 +85,24 @@ public class XmlRepository {
         if (mInitialized) {
             return;
         }
-        BytecodeScanner.scanBootstrapIfNeeded();
-
         mRepository = new ResourceRepository(module);
         mRepository.initialize();
 
+        File indexDirectory = new File(ApplicationProvider.getApplicationContext().getCacheDir(),
+                "view-index");
+        ViewClassIndex index = new ViewClassIndex(indexDirectory);
+        File androidJar = BuildModule.getAndroidJar();
+        if (androidJar != null && androidJar.exists()) {
+            try {
+                index.addJar(androidJar);
+            } catch (IOException ignored) {
+
+            }
+        }
+
+        // every jar is added before resolving the views, as views can extend classes from
+        // other libraries
+        Set<File> jars = new LinkedHashSet<>();
         for (File library : module.getLibraries()) {
             File parent = library.getParentFile();
             if (parent == null) {
@@ -95,66 +110,59 @@ public class XmlRepository {
             }
             File classesFile = new File(parent, "classes.jar");
             if (classesFile.exists()) {
-                try {
-                    BytecodeScanner.loadJar(classesFile);
-                } catch (IOException ignored) {
-
-                }
+                jars.add(classesFile);
             }
         }
+        jars.addAll(module.getLibraries());
 
-        for (File library : module.getLibraries()) {
+        List<List<ClassInfo>> libraryClasses = new ArrayList<>();
+        for (File jar : jars) {
             try {
-                List<JavaClass> scan =
-                        BytecodeScanner.scan(library);
-                for (JavaClass javaClass : scan) {
-                    StyleUtils.putStyles(javaClass);
-                    mJavaViewClasses.put(javaClass.getClassName(), javaClass);
-                }
+                libraryClasses.add(index.addJar(jar));
             } catch (IOException e) {
                 e.printStackTrace();
             }
         }
 
-        addFrameworkViews();
+        for (List<ClassInfo> classes : libraryClasses) {
+            for (ViewClass viewClass : index.getInflatableViews(classes)) {
+                StyleUtils.putStyles(viewClass);
+                mJavaViewClasses.put(viewClass.getClassName(), viewClass);
+            }
+        }
 
-        Repository.clearCache();
+        addFrameworkViews(index);
 
         mInitialized = true;
     }
 
-    private void addFrameworkViews() {
-        addFrameworkView(View.class);
-        addFrameworkView(ViewGroup.class);
-        addFrameworkView(FrameLayout.class);
-        addFrameworkView(RelativeLayout.class);
-        addFrameworkView(LinearLayout.class);
-        addFrameworkView(AbsoluteLayout.class);
-        addFrameworkView(ListView.class);
-        addFrameworkView(EditText.class);
-        addFrameworkView(Button.class);
-        addFrameworkView(TextView.class);
-        addFrameworkView(ImageView.class);
-        addFrameworkView(ImageButton.class);
-        addFrameworkView(ImageSwitcher.class);
-        addFrameworkView(ViewFlipper.class);
-        addFrameworkView(ViewSwitcher.class);
-        addFrameworkView(ScrollView.class);
-        addFrameworkView(HorizontalScrollView.class);
-        addFrameworkView(CompoundButton.class);
-        addFrameworkView(ProgressBar.class);
-        addFrameworkView(CheckBox.class);
+    private void addFrameworkViews(ViewClassIndex index) {
+        addFrameworkView(index, View.class);
+        addFrameworkView(index, ViewGroup.class);
+        addFrameworkView(index, FrameLayout.class);
+        addFrameworkView(index, RelativeLayout.class);
+        addFrameworkView(index, LinearLayout.class);
+        addFrameworkView(index, AbsoluteLayout.class);
+        addFrameworkView(index, ListView.class);
+        addFrameworkView(index, EditText.class);
+        addFrameworkView(index, Button.class);
+        addFrameworkView(index, TextView.class);
+        addFrameworkView(index, ImageView.class);
+        addFrameworkView(index, ImageButton.class);
+        addFrameworkView(index, ImageSwitcher.class);
+        addFrameworkView(index, ViewFlipper.class);
+        addFrameworkView(index, ViewSwitcher.class);
+        addFrameworkView(index, ScrollView.class);
+        addFrameworkView(index, HorizontalScrollView.class);
+        addFrameworkView(index, CompoundButton.class);
+        addFrameworkView(index, ProgressBar.class);
+        addFrameworkView(index, CheckBox.class);
     }
 
-    private void addFrameworkView(Class<? extends View> viewClass) {
-        org.apache.bcel.util.Repository repository = Repository.getRepository();
-        try {
-            JavaClass javaClass = repository.loadClass(viewClass);
-            if (javaClass != null) {
-                mJavaViewClasses.put(javaClass.getClassName(), javaClass);
-            }
-        } catch (ClassNotFoundException e) {
-            // ignored
+    private void addFrameworkView(ViewClassIndex index, Class<? extends View> viewClass) {
+        ViewClass frameworkView = index.getViewClass(viewClass.getName());
+        if (frameworkView != null) {
+            mJavaViewClasses.put(frameworkView.getClassName(), frameworkView);
         }
     }
 
@@ -0,0 +1,44 @@
+package com.tyron.completion.xml.model;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+/**
+ * The parts of a class file needed to find the views that can be inflated from XML
+ */
+public class ClassInfo {
+
+    private final String name;
+    private final String superName;
+    private final boolean hasViewConstructor;
+
+    public ClassInfo(@NonNull String name, @Nullable String superName,
+                     boolean hasViewConstructor) {
+        this.name = name;
+        this.superName = superName;
+        this.hasViewConstructor = hasViewConstructor;
+    }
+
+    /**
+     * @return The fully qualified name of the class, e.g. {@code android.widget.TextView}
+     */
+    @NonNull
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return The fully qualified name of the super class, null for {@link Object}
+     */
+    @Nullable
+    public String getSuperName() {
+        return superName;
+    }
+
+    /**
+     * @return Whether the class has a {@code (Context, AttributeSet)} constructor
+     */
+    public boolean hasViewConstructor() {
+        return hasViewConstructor;
+    }
+}
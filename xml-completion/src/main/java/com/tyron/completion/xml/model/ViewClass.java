@@ -0,0 +1,48 @@
+package com.tyron.completion.xml.model;
+
+import android.view.ViewGroup;
+
+import androidx.annotation.NonNull;
+
+import java.util.List;
+
+/**
+ * A class that extends {@link android.view.View} and can be used as a tag in a layout
+ */
+public class ViewClass {
+
+    private final String className;
+    private final List<String> superClasses;
+
+    public ViewClass(@NonNull String className, @NonNull List<String> superClasses) {
+        this.className = className;
+        this.superClasses = superClasses;
+    }
+
+    @NonNull
+    public String getClassName() {
+        return className;
+    }
+
+    @NonNull
+    public String getPackageName() {
+        int index = className.lastIndexOf('.');
+        if (index == -1) {
+            return "";
+        }
+        return className.substring(0, index);
+    }
+
+    /**
+     * @return The names of the super classes of this class, starting from the direct super
+     * class up to {@link Object}
+     */
+    @NonNull
+    public List<String> getSuperClasses() {
+        return superClasses;
+    }
+
+    public boolean isViewGroup() {
+        return superClasses.contains(ViewGroup.class.getName());
+    }
+}
@@ -0,0 +1,380 @@
+package com.tyron.completion.xml.repository;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.google.common.collect.HashBasedTable;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Table;
+import com.google.common.collect.TreeBasedTable;
+import com.tyron.builder.compiler.manifest.resources.FolderTypeRelationship;
+import com.tyron.builder.compiler.manifest.resources.ResourceFolderType;
+import com.tyron.builder.compiler.manifest.resources.ResourceType;
+import com.tyron.builder.compiler.symbol.SymbolLoader;
+import com.tyron.builder.log.ILogger;
+import com.tyron.builder.project.api.AndroidModule;
+import com.tyron.completion.xml.repository.api.AttrResourceValue;
+import com.tyron.completion.xml.repository.api.ResourceNamespace;
+import com.tyron.completion.xml.repository.api.ResourceValue;
+import com.tyron.completion.xml.repository.api.StyleableResourceValue;
+import com.tyron.completion.xml.repository.parser.ValuesXmlParser;
+
+import org.apache.commons.io.FileUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * An in memory table of the R symbols of an {@link AndroidModule}, used to keep the R class
+ * up to date while resource files are being edited without running aapt2.
+ *
+ * The ids of the last aapt2 link (bin/res/R.txt) are reused so the values stay the same
+ * between builds, new resources are assigned ids after the linked ones.
+ */
+public class ResourceSymbolTable {
+
+    private static final int PACKAGE_ID = 0x7f;
+    private static final String TYPE_INT = "int";
+    private static final String TYPE_INT_ARRAY = "int[]";
+    private static final Pattern ID_PATTERN = Pattern.compile("@\\+id/([A-Za-z0-9_.]+)");
+
+    private static class Symbol {
+
+        private final String mType;
+        private final String mName;
+        private final List<String> mAttributes;
+
+        public Symbol(String type, String name) {
+            this(type, name, Collections.emptyList());
+        }
+
+        public Symbol(String type, String name, List<String> attributes) {
+            mType = type;
+            mName = name;
+            mAttributes = attributes;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+            Symbol symbol = (Symbol) o;
+            return mType.equals(symbol.mType) &&
+                   mName.equals(symbol.mName) &&
+                   mAttributes.equals(symbol.mAttributes);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(mType, mName, mAttributes);
+        }
+    }
+
+    private final AndroidModule mModule;
+    private final ILogger mLogger;
+    private final File mSymbolFile;
+    private final ValuesXmlParser mValuesParser = new ValuesXmlParser();
+
+    private long mSymbolFileModified;
+    private Table<String, String, SymbolLoader.SymbolEntry> mLinkedSymbols =
+            HashBasedTable.create();
+    private final Table<String, String, SymbolLoader.SymbolEntry> mLibrarySymbols =
+            HashBasedTable.create();
+    private final Map<File, Set<Symbol>> mFileSymbols = new HashMap<>();
+
+    private final Table<String, String, Integer> mAllocatedIds = HashBasedTable.create();
+    private final Map<String, Integer> mTypeIds = new HashMap<>();
+    private final Map<String, Integer> mNextEntries = new HashMap<>();
+
+    public ResourceSymbolTable(@NonNull AndroidModule module, @NonNull ILogger logger) {
+        mModule = module;
+        mLogger = logger;
+        mSymbolFile = new File(module.getBuildDirectory(), "bin/res/R.txt");
+    }
+
+    /**
+     * Loads the symbols of the last build and parses all the resource files of the module.
+     */
+    public synchronized void initialize() throws IOException {
+        mLinkedSymbols = HashBasedTable.create();
+        mLibrarySymbols.clear();
+        mFileSymbols.clear();
+        mAllocatedIds.clear();
+        mTypeIds.clear();
+        mNextEntries.clear();
+
+        mSymbolFileModified = mSymbolFile.lastModified();
+        if (mSymbolFile.exists()) {
+            SymbolLoader loader = new SymbolLoader(mSymbolFile, mLogger);
+            loader.load();
+            mLinkedSymbols = loader.getSymbols();
+        }
+        for (Table.Cell<String, String, SymbolLoader.SymbolEntry> cell :
+                mLinkedSymbols.cellSet()) {
+            SymbolLoader.SymbolEntry entry = cell.getValue();
+            if (entry != null && TYPE_INT.equals(entry.getType())) {
+                reserveId(cell.getRowKey(), entry.getValue());
+            }
+        }
+
+        for (File library : mModule.getLibraries()) {
+            File parent = library.getParentFile();
+            if (parent == null) {
+                continue;
+            }
+            File rFile = new File(parent, "R.txt");
+            if (!rFile.exists()) {
+                continue;
+            }
+            SymbolLoader loader = new SymbolLoader(rFile, mLogger);
+            loader.load();
+            mLibrarySymbols.putAll(loader.getSymbols());
+        }
+
+        File resDir = mModule.getAndroidResourcesDirectory();
+        File[] folders = resDir.listFiles(File::isDirectory);
+        if (folders == null) {
+            return;
+        }
+        for (File folder : folders) {
+            File[] files = folder.listFiles(File::isFile);
+            if (files == null) {
+                continue;
+            }
+            for (File file : files) {
+                String contents = null;
+                if (file.getName().endsWith(".xml")) {
+                    Optional<CharSequence> snapshot = mModule.getFileManager().getFileContent(file);
+                    contents = snapshot.isPresent()
+                            ? snapshot.get().toString()
+                            : FileUtils.readFileToString(file, StandardCharsets.UTF_8);
+                }
+                mFileSymbols.put(file, parseSymbols(file, contents));
+            }
+        }
+    }
+
+    /**
+     * @return Whether the module has been built since this table was initialized, in which
+     * case the linked ids are outdated
+     */
+    public synchronized boolean isOutdated() {
+        return mSymbolFile.lastModified() != mSymbolFileModified;
+    }
+
+    /**
+     * Parses the contents of a resource file and updates its symbols.
+     *
+     * @param file The resource file
+     * @param contents The contents of the file, it does not need to be saved to disk
+     * @return Whether the symbols declared by this file have changed
+     */
+    public synchronized boolean updateFile(@NonNull File file, @Nullable String contents) {
+        Set<Symbol> symbols = parseSymbols(file, contents);
+        Set<Symbol> previous = mFileSymbols.put(file, symbols);
+        return !symbols.equals(previous);
+    }
+
+    /**
+     * @return The source of the R class of the module in the same format aapt2 generates it
+     */
+    @NonNull
+    public synchronized String generateRClass() {
+        Table<String, String, String> values = TreeBasedTable.create();
+        Table<String, String, String> types = HashBasedTable.create();
+
+        for (Table.Cell<String, String, SymbolLoader.SymbolEntry> cell :
+                mLibrarySymbols.cellSet()) {
+            String className = cell.getRowKey();
+            SymbolLoader.SymbolEntry entry = cell.getValue();
+            if (entry == null) {
+                continue;
+            }
+            SymbolLoader.SymbolEntry linked = mLinkedSymbols.get(className, entry.getName());
+            String value = linked != null ? linked.getValue() : entry.getValue();
+            values.put(className, entry.getName(), value);
+            types.put(className, entry.getName(), entry.getType());
+        }
+
+        for (Set<Symbol> symbols : mFileSymbols.values()) {
+            for (Symbol symbol : symbols) {
+                if (ResourceType.STYLEABLE.getName().equals(symbol.mType)) {
+                    putStyleable(symbol, values, types);
+                } else {
+                    values.put(symbol.mType, symbol.mName, toHex(getId(symbol.mType, symbol.mName)));
+                    types.put(symbol.mType, symbol.mName, TYPE_INT);
+                }
+            }
+        }
+
+        StringBuilder builder = new StringBuilder();
+        builder.append("/* AUTO-GENERATED FILE. DO NOT MODIFY. \n");
+        builder.append(" *\n");
+        builder.append(" * This class was automatically generated by the\n");
+        builder.append(" * aapt tool from the resource data it found.  It\n");
+        builder.append(" * should not be modified by hand.\n");
+        builder.append(" */\n");
+        builder.append("package ").append(mModule.getPackageName()).append(";\n\n");
+        builder.append("public final class R {\n");
+        for (String className : values.rowKeySet()) {
+            builder.append("\tpublic static final class ").append(className).append(" {\n");
+            for (Map.Entry<String, String> entry : values.row(className).entrySet()) {
+                builder.append("\t\tpublic static final ")
+                        .append(types.get(className, entry.getKey()))
+                        .append(" ")
+                        .append(entry.getKey())
+                        .append(" = ")
+                        .append(entry.getValue())
+                        .append(";\n");
+            }
+            builder.append("\t}\n");
+        }
+        builder.append("}\n");
+        return builder.toString();
+    }
+
+    private void putStyleable(Symbol symbol,
+                              Table<String, String, String> values,
+                              Table<String, String, String> types) {
+        String className = ResourceType.STYLEABLE.getName();
+        List<String> ids = new ArrayList<>();
+        for (int i = 0; i < symbol.mAttributes.size(); i++) {
+            String attribute = symbol.mAttributes.get(i);
+            String indexName = symbol.mName + "_" + toJavaName(attribute);
+            values.put(className, indexName, String.valueOf(i));
+            types.put(className, indexName, TYPE_INT);
+
+            if (attribute.startsWith("android:")) {
+                // framework ids are not known without the platform R.txt
+                ids.add(toHex(0));
+            } else {
+                ids.add(toHex(getId(ResourceType.ATTR.getName(), toJavaName(attribute))));
+            }
+        }
+        values.put(className, symbol.mName, "{ " + String.join(", ", ids) + " }");
+        types.put(className, symbol.mName, TYPE_INT_ARRAY);
+    }
+
+    private int getId(String className, String name) {
+        SymbolLoader.SymbolEntry linked = mLinkedSymbols.get(className, name);
+        if (linked != null && TYPE_INT.equals(linked.getType())) {
+            return Integer.decode(linked.getValue());
+        }
+        Integer allocated = mAllocatedIds.get(className, name);
+        if (allocated != null) {
+            return allocated;
+        }
+
+        Integer typeId = mTypeIds.get(className);
+        if (typeId == null) {
+            typeId = mTypeIds.values().stream()
+                    .max(Integer::compare)
+                    .orElse(0) + 1;
+            mTypeIds.put(className, typeId);
+        }
+        int entry = mNextEntries.getOrDefault(className, 0);
+        mNextEntries.put(className, entry + 1);
+
+        int id = (PACKAGE_ID << 24) | (typeId << 16) | entry;
+        mAllocatedIds.put(className, name, id);
+        return id;
+    }
+
+    private void reserveId(String className, String value) {
+        int id;
+        try {
+            id = Integer.decode(value);
+        } catch (NumberFormatException e) {
+            return;
+        }
+        if ((id >>> 24) != PACKAGE_ID) {
+            return;
+        }
+        mTypeIds.put(className, (id >> 16) & 0xff);
+        mNextEntries.merge(className, (id & 0xffff) + 1, Math::max);
+    }
+
+    private Set<Symbol> parseSymbols(File file, @Nullable String contents) {
+        File parent = file.getParentFile();
+        if (parent == null) {
+            return Collections.emptySet();
+        }
+        ResourceFolderType folderType = ResourceFolderType.getFolderType(parent.getName());
+        if (folderType == null) {
+            return Collections.emptySet();
+        }
+
+        Set<Symbol> symbols = new LinkedHashSet<>();
+        if (folderType == ResourceFolderType.VALUES) {
+            if (contents != null) {
+                parseValues(contents, symbols);
+            }
+            return symbols;
+        }
+
+        ResourceType type = FolderTypeRelationship.getNonIdRelatedResourceType(folderType);
+        String name = file.getName();
+        int dot = name.indexOf('.');
+        if (dot != -1) {
+            name = name.substring(0, dot);
+        }
+        symbols.add(new Symbol(type.getName(), name));
+
+        if (contents != null && FolderTypeRelationship.isIdGeneratingFolderType(folderType)) {
+            Matcher matcher = ID_PATTERN.matcher(contents);
+            while (matcher.find()) {
+                symbols.add(new Symbol(ResourceType.ID.getName(), toJavaName(matcher.group(1))));
+            }
+        }
+        return symbols;
+    }
+
+    private void parseValues(String contents, Set<Symbol> symbols) {
+        List<ResourceValue> values = mValuesParser.parse(contents, ResourceNamespace.RES_AUTO);
+        for (ResourceValue value : values) {
+            ResourceType type = value.getResourceType();
+            String name = toJavaName(value.getName());
+            switch (type) {
+                case PUBLIC:
+                    break;
+                case STYLEABLE:
+                    List<String> attributes = new ArrayList<>();
+                    for (AttrResourceValue attr : ((StyleableResourceValue) value).getAllAttributes()) {
+                        String attrName = attr.getName();
+                        attributes.add(attrName);
+                        if (!attrName.contains(":")) {
+                            symbols.add(new Symbol(ResourceType.ATTR.getName(), toJavaName(attrName)));
+                        }
+                    }
+                    symbols.add(new Symbol(type.getName(), name, ImmutableList.copyOf(attributes)));
+                    break;
+                default:
+                    symbols.add(new Symbol(type.getName(), name));
+            }
+        }
+    }
+
+    private static String toJavaName(String name) {
+        return name.replace('.', '_').replace(':', '_').replace('-', '_');
+    }
+
+    private static String toHex(int id) {
+        return "0x" + String.format("%08x", id);
+    }
+}
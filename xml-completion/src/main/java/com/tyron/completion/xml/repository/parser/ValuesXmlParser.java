@@ -43,6 +43,13 @@ public class ValuesXmlParser implements ResourceParser {
     public List<ResourceValue> parse(@NonNull File file,
                                      ResourceNamespace namespace) throws IOException {
         String contents = FileUtils.readFileToString(file, StandardCharsets.UTF_8);
+        return parse(contents, namespace);
+    }
+
+    /**
+     * Parses the contents of a values file that may not be saved to disk yet
+     */
+    public List<ResourceValue> parse(@NonNull String contents, ResourceNamespace namespace) {
         DOMDocument document = DOMParser.getInstance()
                 .parse(contents, "", null);
         List<DOMNode> roots = document.getRoots();
@@ -102,6 +109,13 @@ public class ValuesXmlParser implements ResourceParser {
                 return parseAttrResourceValue(child, namespace);
             case PUBLIC:
                 return parsePublic(child, namespace);
+            case DIMEN:
+            case ID:
+            case ARRAY:
+            case PLURALS:
+            case FRACTION:
+            case DRAWABLE:
+                return parseNamedValue(resourceType, child, namespace);
             default:
                 return null;
         }
@@ -126,6 +140,27 @@ public class ValuesXmlParser implements ResourceParser {
         return new ResourceValueImpl(resourceReference, null);
     }
 
+    /**
+     * Parses a resource whose name is all that is needed, the value is only set if it is text
+     */
+    @Nullable
+    private ResourceValue parseNamedValue(ResourceType resourceType,
+                                          DOMNode node,
+                                          ResourceNamespace namespace) {
+        String name = node.getAttribute("name");
+        if (name == null) {
+            return null;
+        }
+
+        String value = null;
+        DOMNode firstChild = node.getFirstChild();
+        if (firstChild != null && firstChild.isText()) {
+            value = firstChild.getTextContent();
+        }
+        ResourceReference reference = new ResourceReference(namespace, resourceType, name);
+        return new ResourceValueImpl(reference, value);
+    }
+
     @Nullable
     private ResourceValue parseColor(DOMNode child, ResourceNamespace namespace) {
         String name = child.getAttribute("name");
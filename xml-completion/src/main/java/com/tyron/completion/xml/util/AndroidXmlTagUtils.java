@@ -17,9 +17,9 @@ import com.tyron.completion.model.CompletionList;
 import com.tyron.completion.model.DrawableKind;
 import com.tyron.completion.xml.XmlRepository;
 import com.tyron.completion.xml.insert.LayoutTagInsertHandler;
+import com.tyron.completion.xml.model.ViewClass;
 import com.tyron.completion.xml.model.XmlCachedCompletion;
 
-import org.apache.bcel.classfile.JavaClass;
 import org.openjdk.javax.lang.model.element.TypeElement;
 
 import java.util.ArrayList;
@@ -112,7 +112,7 @@ public class AndroidXmlTagUtils {
     public static void addTagItems(@NonNull XmlRepository repository,
                                    @NonNull String prefix,
                                    @NonNull CompletionList.Builder builder) {
-        for (Map.Entry<String, JavaClass> entry : repository.getJavaViewClasses()
+        for (Map.Entry<String, ViewClass> entry : repository.getJavaViewClasses()
                 .entrySet()) {
             CompletionItem item = new CompletionItem();
             String commitPrefix = "<";
@@ -0,0 +1,106 @@
+package com.tyron.completion.xml;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import com.tyron.completion.xml.model.ClassInfo;
+import com.tyron.completion.xml.model.ViewClass;
+
+import org.jetbrains.org.objectweb.asm.ClassWriter;
+import org.jetbrains.org.objectweb.asm.Opcodes;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+
+public class ViewClassIndexTest {
+
+    private static final String VIEW_CONSTRUCTOR =
+            "(Landroid/content/Context;Landroid/util/AttributeSet;)V";
+
+    @Rule
+    public TemporaryFolder mTemporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void testViewsAcrossJars() throws IOException {
+        File framework = createJar("framework.jar",
+                createClass("java/lang/Object", null, false),
+                createClass("android/view/View", "java/lang/Object", true),
+                createClass("android/view/ViewGroup", "android/view/View", true));
+        File library = createJar("library.jar",
+                createClass("com/test/Base", "android/view/ViewGroup", false),
+                createClass("com/test/Custom", "com/test/Base", true),
+                createClass("com/test/NotAView", "java/lang/Object", true),
+                createClass("com/test/Missing", "com/other/Unknown", true));
+        File indexDirectory = mTemporaryFolder.newFolder("index");
+
+        ViewClassIndex index = new ViewClassIndex(indexDirectory);
+        index.addJar(framework);
+        List<ClassInfo> classes = index.addJar(library);
+
+        List<ViewClass> views = index.getInflatableViews(classes);
+        assertEquals(1, views.size());
+        ViewClass custom = views.get(0);
+        assertEquals("com.test.Custom", custom.getClassName());
+        assertEquals("com.test", custom.getPackageName());
+        assertEquals(Arrays.asList("com.test.Base", "android.view.ViewGroup",
+                "android.view.View", "java.lang.Object"), custom.getSuperClasses());
+        assertTrue(custom.isViewGroup());
+
+        assertNotNull(index.getViewClass("android.view.View"));
+        assertNull(index.getViewClass("com.test.NotAView"));
+    }
+
+    @Test
+    public void testIndexIsReused() throws IOException {
+        File library = createJar("library.jar",
+                createClass("com/test/Custom", "android/view/View", true));
+        File indexDirectory = mTemporaryFolder.newFolder("index");
+
+        List<ClassInfo> scanned = BytecodeScanner.getClasses(library, indexDirectory);
+        File[] indexFiles = indexDirectory.listFiles();
+        assertNotNull(indexFiles);
+        assertEquals(1, indexFiles.length);
+        long indexModified = indexFiles[0].lastModified();
+
+        List<ClassInfo> indexed = BytecodeScanner.getClasses(library, indexDirectory);
+        assertEquals(indexModified, indexFiles[0].lastModified());
+        assertEquals(scanned.size(), indexed.size());
+        assertEquals("com.test.Custom", indexed.get(0).getName());
+        assertEquals("android.view.View", indexed.get(0).getSuperName());
+        assertTrue(indexed.get(0).hasViewConstructor());
+    }
+
+    private static byte[][] createClass(String name, String superName,
+                                        boolean viewConstructor) {
+        ClassWriter writer = new ClassWriter(0);
+        writer.visit(Opcodes.V1_8, Opcodes.ACC_PUBLIC, name, null, superName, null);
+        if (viewConstructor) {
+            writer.visitMethod(Opcodes.ACC_PUBLIC, "<init>", VIEW_CONSTRUCTOR, null, null)
+                    .visitEnd();
+        }
+        writer.visitEnd();
+        return new byte[][]{(name + ".class").getBytes(), writer.toByteArray()};
+    }
+
+    private File createJar(String name, byte[][]... classes) throws IOException {
+        File jar = mTemporaryFolder.newFile(name);
+        try (JarOutputStream out = new JarOutputStream(new FileOutputStream(jar))) {
+            for (byte[][] entry : classes) {
+                out.putNextEntry(new JarEntry(new String(entry[0])));
+                out.write(entry[1]);
+                out.closeEntry();
+            }
+        }
+        return jar;
+    }
+}
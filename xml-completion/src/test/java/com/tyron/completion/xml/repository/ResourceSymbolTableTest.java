@@ -0,0 +1,156 @@
+package com.tyron.completion.xml.repository;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import com.tyron.builder.log.ILogger;
+import com.tyron.builder.project.mock.MockAndroidModule;
+import com.tyron.builder.project.mock.MockFileManager;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import javax.tools.DiagnosticCollector;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.SimpleJavaFileObject;
+import javax.tools.ToolProvider;
+
+/**
+ * Tests that editing a values file only changes its own symbols and that the generated R
+ * class compiles.
+ */
+public class ResourceSymbolTableTest {
+
+    private static final String STRINGS = "<resources>\n" +
+            "    <string name=\"app_name\">Test</string>\n" +
+            "</resources>\n";
+
+    private static final String VALUES = "<resources>\n" +
+            "    <dimen name=\"margin\">8dp</dimen>\n" +
+            "    <item type=\"id\" name=\"shared_id\"/>\n" +
+            "    <string-array name=\"planets\">\n" +
+            "        <item>Mercury</item>\n" +
+            "    </string-array>\n" +
+            "    <plurals name=\"songs\">\n" +
+            "        <item quantity=\"one\">One song</item>\n" +
+            "    </plurals>\n" +
+            "    <fraction name=\"ratio\">50%</fraction>\n" +
+            "    <drawable name=\"background\">#ffffff</drawable>\n" +
+            "    <declare-styleable name=\"CustomView\">\n" +
+            "        <attr name=\"customColor\" format=\"color\"/>\n" +
+            "    </declare-styleable>\n" +
+            "</resources>\n";
+
+    @Rule
+    public TemporaryFolder mFolder = new TemporaryFolder();
+
+    private File mStrings;
+    private File mValues;
+    private ResourceSymbolTable mTable;
+
+    @Before
+    public void setup() throws IOException {
+        File root = mFolder.newFolder("app");
+        FileUtils.writeStringToFile(new File(root, "src/main/AndroidManifest.xml"),
+                "<manifest xmlns:android=\"http://schemas.android.com/apk/res/android\"\n" +
+                "    package=\"com.test\"/>\n", StandardCharsets.UTF_8);
+        mStrings = new File(root, "src/main/res/values/strings.xml");
+        FileUtils.writeStringToFile(mStrings, STRINGS, StandardCharsets.UTF_8);
+        mValues = new File(root, "src/main/res/values/values.xml");
+        FileUtils.writeStringToFile(mValues, VALUES, StandardCharsets.UTF_8);
+        FileUtils.writeStringToFile(new File(root, "src/main/res/layout/main.xml"),
+                "<LinearLayout android:id=\"@+id/container\"/>\n", StandardCharsets.UTF_8);
+
+        MockAndroidModule module = new MockAndroidModule(root, new MockFileManager(root));
+        module.open();
+        mTable = new ResourceSymbolTable(module, ILogger.EMPTY);
+        mTable.initialize();
+    }
+
+    @Test
+    public void testValueTypes() {
+        String rClass = mTable.generateRClass();
+        assertNotNull(getId(rClass, "string", "app_name"));
+        assertNotNull(getId(rClass, "dimen", "margin"));
+        assertNotNull(getId(rClass, "id", "shared_id"));
+        assertNotNull(getId(rClass, "array", "planets"));
+        assertNotNull(getId(rClass, "plurals", "songs"));
+        assertNotNull(getId(rClass, "fraction", "ratio"));
+        assertNotNull(getId(rClass, "drawable", "background"));
+        assertNotNull(getId(rClass, "attr", "customColor"));
+        assertNotNull(getId(rClass, "styleable", "CustomView_customColor"));
+        assertNotNull(getId(rClass, "layout", "main"));
+        assertNotNull(getId(rClass, "id", "container"));
+        assertCompiles(rClass);
+    }
+
+    @Test
+    public void testUpdateFile() {
+        String before = mTable.generateRClass();
+
+        assertFalse(mTable.updateFile(mStrings, STRINGS));
+        String edited = STRINGS.replace("</resources>",
+                "    <string name=\"title\">Title</string>\n</resources>");
+        assertTrue(mTable.updateFile(mStrings, edited));
+
+        String after = mTable.generateRClass();
+        assertNull(getId(before, "string", "title"));
+        assertNotNull(getId(after, "string", "title"));
+        // the symbols of the other files keep their ids
+        for (String[] symbol : new String[][]{{"string", "app_name"}, {"dimen", "margin"},
+                {"id", "shared_id"}, {"array", "planets"}, {"id", "container"}}) {
+            assertEquals(getId(before, symbol[0], symbol[1]), getId(after, symbol[0], symbol[1]));
+        }
+        assertCompiles(after);
+
+        assertTrue(mTable.updateFile(mStrings, STRINGS));
+        assertNull(getId(mTable.generateRClass(), "string", "title"));
+    }
+
+    /**
+     * @return The value of the field in the given inner class of the R class
+     */
+    private static String getId(String rClass, String className, String name) {
+        int start = rClass.indexOf("public static final class " + className + " {");
+        if (start == -1) {
+            return null;
+        }
+        int end = rClass.indexOf("\t}", start);
+        Matcher matcher = Pattern.compile(" " + Pattern.quote(name) + " = ([^;]+);")
+                .matcher(rClass.substring(start, end));
+        return matcher.find() ? matcher.group(1) : null;
+    }
+
+    private void assertCompiles(String rClass) {
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        assertNotNull(compiler);
+        JavaFileObject source = new SimpleJavaFileObject(
+                URI.create("string:///com/test/R.java"), JavaFileObject.Kind.SOURCE) {
+            @Override
+            public CharSequence getCharContent(boolean ignoreEncodingErrors) {
+                return rClass;
+            }
+        };
+        DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<>();
+        boolean success = compiler.getTask(null, null, diagnostics,
+                Arrays.asList("-d", mFolder.getRoot().getAbsolutePath()), null,
+                Collections.singletonList(source)).call();
+        assertTrue(diagnostics.getDiagnostics().toString(), success);
+    }
+}